@@ -0,0 +1,234 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client of the time service, for applications which need the platform time frequently, e.g. once per business
+ * operation, which calculates it locally rather than requesting it from the service on every read.
+ * <p>
+ * On construction, and then periodically in the background, the client makes a few requests to the service's 'Get
+ * Platform Time' API ({@value #PLATFORM_TIME_PATH}). The request with the shortest round-trip time (RTT) is used to
+ * estimate the platform time at the midpoint of the round-trip, anchored to a reading of the local monotonic clock
+ * ({@link System#nanoTime()}). See {@link PlatformTimeEstimate}. Reading the platform time is then a read of the
+ * monotonic clock plus the elapsed time since the anchor - lock-free, allocation-free and with no network round-trip,
+ * so the load on the service is a few requests per refresh interval, regardless of the no. of reads.
+ * <p>
+ * The accuracy of the time read is the error of the estimate (half the shortest RTT, plus a millisecond), plus the
+ * drift of the local monotonic clock since the estimate was made, typically less than a millisecond per minute. Each
+ * refresh replaces the estimate, so the time read may step, forwards or backwards, by up to the sum of these errors.
+ * If a refresh fails, the previous estimate continues to be used, and the failure is counted.
+ * <p>
+ * Has no dependencies other than the JDK.
+ * <p>
+ * Thread-safe.
+ */
+public class PlatformTimeClient implements AutoCloseable {
+
+  /** Path of the 'Get Platform Time' API, relative to the base URL of the service. */
+  public static final String PLATFORM_TIME_PATH = "/v1/platform-time";
+
+  static final int DEFAULT_SAMPLES_PER_REFRESH = 5;
+  static final long DEFAULT_REFRESH_INTERVAL_MILLIS = 60_000L;
+  static final int DEFAULT_TIMEOUT_MILLIS = 1000;
+
+  /** Resolution of the platform time returned by the service, which is truncated to the millisecond. */
+  private static final long RESOLUTION_NANOS = 1_000_000L;
+
+  private final URL platformTimeUrl;
+  private final int samplesPerRefresh;
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+  private final ScheduledExecutorService refresher;
+  private final AtomicLong refreshFailures = new AtomicLong();
+
+  /** The current estimate. Replaced, rather than mutated, on each refresh, so is read without locking. */
+  private volatile PlatformTimeEstimate estimate;
+
+  /**
+   * Creates a client which uses the default no. of samples, refresh interval and timeouts.
+   *
+   * @param baseUrl the base URL of the time service, e.g. http://time-service:8080.
+   * @throws IOException if the platform time can't be estimated from any request to the service.
+   */
+  public PlatformTimeClient(URI baseUrl) throws IOException {
+    this(baseUrl, DEFAULT_SAMPLES_PER_REFRESH, DEFAULT_REFRESH_INTERVAL_MILLIS, DEFAULT_TIMEOUT_MILLIS,
+      DEFAULT_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Creates a client, and makes its initial estimate of the platform time.
+   *
+   * @param baseUrl the base URL of the time service, e.g. http://time-service:8080.
+   * @param samplesPerRefresh the no. of requests made to the service per estimate, of which the one with the shortest
+   * round-trip is used. Greater than zero.
+   * @param refreshIntervalMillis the interval, in milliseconds, at which the estimate is refreshed. Greater than zero.
+   * @param connectTimeoutMillis the max time to wait to connect to the service, in milliseconds.
+   * @param readTimeoutMillis the max time to wait for the service to respond, in milliseconds.
+   * @throws IOException if the platform time can't be estimated from any request to the service.
+   */
+  public PlatformTimeClient(URI baseUrl, int samplesPerRefresh, long refreshIntervalMillis, int connectTimeoutMillis,
+    int readTimeoutMillis) throws IOException {
+    if (samplesPerRefresh <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'samplesPerRefresh' must be greater than zero, not [" + samplesPerRefresh + "].");
+    }
+    if (refreshIntervalMillis <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'refreshIntervalMillis' must be greater than zero, not [" + refreshIntervalMillis + "].");
+    }
+    this.platformTimeUrl = baseUrl.resolve(PLATFORM_TIME_PATH + "?format=unix-millis").toURL();
+    this.samplesPerRefresh = samplesPerRefresh;
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.readTimeoutMillis = readTimeoutMillis;
+    this.estimate = estimate();
+    this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "platform-time-client-refresher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.refresher.scheduleWithFixedDelay(this::refreshSafely, refreshIntervalMillis, refreshIntervalMillis,
+      TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return the current platform time, in milliseconds since the epoch. Lock-free and allocation-free.
+   */
+  public long currentTimeMillis() {
+    return this.estimate.epochMilliAt(System.nanoTime());
+  }
+
+  /**
+   * @return the current platform time, as an {@link Instant}.
+   */
+  public Instant now() {
+    return Instant.ofEpochMilli(currentTimeMillis());
+  }
+
+  /**
+   * @return the current {@link PlatformTimeEstimate estimate} from which the platform time is calculated.
+   */
+  public PlatformTimeEstimate getEstimate() {
+    return this.estimate;
+  }
+
+  /**
+   * @return the no. of refreshes of the estimate which have failed, since the client was created.
+   */
+  public long getRefreshFailures() {
+    return this.refreshFailures.get();
+  }
+
+  /**
+   * Makes a new estimate of the platform time, replacing the current estimate. Invoked periodically in the
+   * background, but can also be invoked on demand, e.g. after the host has been suspended.
+   *
+   * @throws IOException if the platform time can't be estimated from any request to the service.
+   */
+  public void refresh() throws IOException {
+    this.estimate = estimate();
+  }
+
+  /**
+   * Stops refreshing the estimate. The client continues to calculate the platform time from the last estimate.
+   */
+  @Override
+  public void close() {
+    this.refresher.shutdownNow();
+  }
+
+  private PlatformTimeEstimate estimate() throws IOException {
+    PlatformTimeEstimate best = null;
+    IOException firstFailure = null;
+    for (int i = 0; i < this.samplesPerRefresh; i++) {
+      try {
+        final PlatformTimeEstimate sample = sample();
+        if (best == null || sample.getRoundTripNanos() < best.getRoundTripNanos()) {
+          best = sample;
+        }
+      } catch (IOException e) {
+        if (firstFailure == null) {
+          firstFailure = e;
+        }
+      }
+    }
+    if (best == null) {
+      throw firstFailure;
+    }
+    return best;
+  }
+
+  private PlatformTimeEstimate sample() throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection) this.platformTimeUrl.openConnection();
+    connection.setConnectTimeout(this.connectTimeoutMillis);
+    connection.setReadTimeout(this.readTimeoutMillis);
+    connection.setInstanceFollowRedirects(false);
+    connection.setRequestProperty("Accept", "text/plain");
+    // Connect before the round-trip is timed, so a new connection's handshake doesn't inflate it
+    connection.connect();
+    final long startNanoTime = System.nanoTime();
+    final int status = connection.getResponseCode();
+    long epochMilli = 0;
+    int digits = 0;
+    boolean valid = status == HttpURLConnection.HTTP_OK;
+    // The response body is read in full, even if invalid, so that the connection can be reused
+    try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+      int b;
+      while (in != null && (b = in.read()) >= 0) {
+        if (b >= '0' && b <= '9' && digits < 18) {
+          epochMilli = epochMilli * 10 + (b - '0');
+          digits++;
+        } else if (b != '\r' && b != '\n') {
+          valid = false;
+        }
+      }
+    }
+    final long endNanoTime = System.nanoTime();
+    final long endLocalEpochMilli = System.currentTimeMillis();
+    if (!valid || digits == 0) {
+      throw new IOException("Request to [" + this.platformTimeUrl + "] failed with status [" + status
+        + "], or returned an invalid time.");
+    }
+    final long roundTripNanos = endNanoTime - startNanoTime;
+    // The service read the platform time at some point during the round-trip, so it's assumed to have been read at
+    // the midpoint. The time is truncated to the millisecond, so is assumed to be half way through that millisecond
+    final long anchorNanoTime = startNanoTime + roundTripNanos / 2;
+    final long anchorEpochNanos = epochMilli * RESOLUTION_NANOS + RESOLUTION_NANOS / 2;
+    final long anchorLocalEpochMilli = endLocalEpochMilli - (endNanoTime - anchorNanoTime) / RESOLUTION_NANOS;
+    return new PlatformTimeEstimate(anchorNanoTime, anchorEpochNanos, roundTripNanos / 2 + RESOLUTION_NANOS / 2,
+      roundTripNanos, epochMilli - anchorLocalEpochMilli);
+  }
+
+  private void refreshSafely() {
+    try {
+      refresh();
+    } catch (IOException | RuntimeException e) {
+      // The previous estimate continues to be used
+      this.refreshFailures.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.client;
+
+/**
+ * An immutable estimate of the platform time, made by a {@link PlatformTimeClient} from the round-trip to the service
+ * with the shortest round-trip time (RTT), from which the client calculates the current platform time locally.
+ * <p>
+ * The estimate anchors the platform time to a reading of the local monotonic clock ({@link System#nanoTime()}), so
+ * the time calculated from it is unaffected by changes to the local system clock. Its offset from the local system
+ * clock is also recorded, for information.
+ */
+public final class PlatformTimeEstimate {
+
+  private final long anchorNanoTime;
+  private final long anchorEpochNanos;
+  private final long errorNanos;
+  private final long roundTripNanos;
+  private final long localClockOffsetMillis;
+
+  PlatformTimeEstimate(long anchorNanoTime, long anchorEpochNanos, long errorNanos, long roundTripNanos,
+    long localClockOffsetMillis) {
+    this.anchorNanoTime = anchorNanoTime;
+    this.anchorEpochNanos = anchorEpochNanos;
+    this.errorNanos = errorNanos;
+    this.roundTripNanos = roundTripNanos;
+    this.localClockOffsetMillis = localClockOffsetMillis;
+  }
+
+  /**
+   * @return the reading of the local monotonic clock, in nanoseconds, at which the platform time was estimated.
+   */
+  public long getAnchorNanoTime() {
+    return this.anchorNanoTime;
+  }
+
+  /**
+   * @return the estimated platform time at the anchor, in nanoseconds since the epoch.
+   */
+  public long getAnchorEpochNanos() {
+    return this.anchorEpochNanos;
+  }
+
+  /**
+   * @return the max error of the estimate, in nanoseconds, at the anchor - half the round-trip, plus the resolution of
+   * the platform time returned by the service. The error grows thereafter by the drift of the local monotonic clock.
+   */
+  public long getErrorNanos() {
+    return this.errorNanos;
+  }
+
+  /**
+   * @return the round-trip time of the request from which the estimate was made, in nanoseconds.
+   */
+  public long getRoundTripNanos() {
+    return this.roundTripNanos;
+  }
+
+  /**
+   * @return the offset of the platform time from the local system clock, in milliseconds, when estimated.
+   */
+  public long getLocalClockOffsetMillis() {
+    return this.localClockOffsetMillis;
+  }
+
+  /**
+   * @param nanoTime a reading of the local monotonic clock, in nanoseconds.
+   * @return the platform time at the supplied reading, in milliseconds since the epoch.
+   */
+  long epochMilliAt(long nanoTime) {
+    return Math.floorDiv(this.anchorEpochNanos + (nanoTime - this.anchorNanoTime), 1_000_000L);
+  }
+
+  @Override
+  public String toString() {
+    return "PlatformTimeEstimate{anchorNanoTime=" + this.anchorNanoTime + ", anchorEpochNanos="
+      + this.anchorEpochNanos + ", errorNanos=" + this.errorNanos + ", roundTripNanos=" + this.roundTripNanos
+      + ", localClockOffsetMillis=" + this.localClockOffsetMillis + "}";
+  }
+}
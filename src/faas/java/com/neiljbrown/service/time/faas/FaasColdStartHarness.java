@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.faas;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A local harness for measuring the cold-start time of the {@link PlatformTimeRequestHandler}, as experienced by the
+ * first request to a new function instance.
+ * <p>
+ * Each run of the harness must be in a new JVM, so that it includes the cost of loading and initialising classes.
+ * It creates the handler, as the Lambda runtime would, invokes it with a sample API Gateway event, and then outputs
+ * a single line reporting the elapsed time (in milliseconds) from the start of the JVM to -
+ * <br>
+ * - main - The start of the harness' main method, i.e. the JVM's own start-up time.
+ * <br>
+ * - init - The handler having been created (initialised).
+ * <br>
+ * - first-response - The first response having been returned.
+ * <p>
+ * Runs are typically launched by the 'faasColdStart' task in the build script.
+ */
+public final class FaasColdStartHarness {
+
+  private static final byte[] SAMPLE_EVENT = ("{\"httpMethod\":\"GET\",\"path\":\"/v1/platform-time\","
+    + "\"queryStringParameters\":{\"format\":\"unix\"},\"headers\":{\"Accept\":\"application/json\"}}")
+    .getBytes(StandardCharsets.UTF_8);
+
+  private FaasColdStartHarness() {
+  }
+
+  /**
+   * @param args unused.
+   * @throws IOException if an unexpected error occurs invoking the handler.
+   */
+  public static void main(String[] args) throws IOException {
+    final long mainStartMillis = System.currentTimeMillis();
+    final PlatformTimeRequestHandler handler = new PlatformTimeRequestHandler();
+    final long initEndMillis = System.currentTimeMillis();
+    final ByteArrayOutputStream response = new ByteArrayOutputStream();
+    handler.handleRequest(new ByteArrayInputStream(SAMPLE_EVENT), response, null);
+    final long firstResponseEndMillis = System.currentTimeMillis();
+
+    // Read the JVM's start time last, so the cost of loading the management API isn't included in the measurements
+    final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    System.out.println("Cold start (ms since JVM start): main=" + (mainStartMillis - jvmStartMillis)
+      + ", init=" + (initEndMillis - jvmStartMillis)
+      + ", first-response=" + (firstResponseEndMillis - jvmStartMillis)
+      + ". Response: " + new String(response.toByteArray(), StandardCharsets.UTF_8));
+    handler.getApplicationContext().close();
+  }
+}
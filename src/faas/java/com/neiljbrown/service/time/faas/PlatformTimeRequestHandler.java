@@ -0,0 +1,231 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.faas;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+import com.neiljbrown.service.time.business.PlatformDateTimeProviderImpl;
+import com.neiljbrown.service.time.business.TenantClockProvider;
+import com.neiljbrown.service.time.business.TenantClockProviderImpl;
+import com.neiljbrown.service.time.presentation.controller.TimesController;
+
+/**
+ * An AWS Lambda handler which serves the 'Get Platform Time' API in serverless (FaaS) mode, as an alternative to
+ * running the service as a Spring Boot app in a web container.
+ * <p>
+ * Minimises cold-start time by creating only the beans needed to serve the API - the {@link PlatformDateTimeProvider}
+ * and {@link TimesController} - using functional bean registration in a plain {@link GenericApplicationContext},
+ * rather than Spring Boot auto-configuration, component scanning, Spring MVC, or an embedded web container. The
+ * context is created once, when the handler is instantiated by the Lambda runtime, and reused by all requests to the
+ * same function instance.
+ * <p>
+ * Handles API Gateway (Lambda proxy integration) events. The optional 'format' query string param, and 'Accept' and
+ * 'If-None-Match' headers, are passed to {@link TimesController#getPlatformTime}, and its response, including its
+ * headers, is returned as an API Gateway proxy response. Bodies which aren't JSON or text (i.e. CBOR and binary) are
+ * Base64 encoded, as required by API Gateway.
+ * Events are parsed, and responses generated, using Jackson's streaming API, rather than data binding, to avoid the
+ * cost of loading and initialising the latter.
+ * <p>
+ * Thread-safe.
+ */
+public class PlatformTimeRequestHandler implements RequestStreamHandler {
+
+  /** Format in which the Platform time is returned if none is requested, as per the 'Get Platform Time' API. */
+  private static final String DEFAULT_FORMAT = "iso-8601";
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final GenericApplicationContext applicationContext;
+  private final TimesController timesController;
+
+  /**
+   * Creates an instance of the handler, and the application context from which it's served. Invoked by the Lambda
+   * runtime when it initialises a new function instance.
+   */
+  public PlatformTimeRequestHandler() {
+    this.applicationContext = createApplicationContext();
+    this.timesController = this.applicationContext.getBean(TimesController.class);
+  }
+
+  /**
+   * Creates the minimal application context needed to serve the API, registering each bean functionally, using a
+   * supplier, so that no reflection or annotation processing is needed to create it.
+   *
+   * @return the refreshed application context.
+   */
+  static GenericApplicationContext createApplicationContext() {
+    final GenericApplicationContext context = new GenericApplicationContext();
+    context.registerBean(PlatformDateTimeProvider.class, PlatformDateTimeProviderImpl::new);
+    context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+    context.registerBean(TenantClockProvider.class, () -> new TenantClockProviderImpl(1));
+    context.registerBean(TimesController.class, () -> new TimesController(
+      context.getBean(PlatformDateTimeProvider.class), context.getBean(TenantClockProvider.class),
+      context.getBean(MeterRegistry.class)));
+    context.refresh();
+    return context;
+  }
+
+  @Override
+  public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+    final ApiGatewayRequest request = ApiGatewayRequest.parse(input);
+    final ResponseEntity<byte[]> response = this.timesController.getPlatformTime(
+      request.format != null ? request.format : DEFAULT_FORMAT,
+      request.accept, request.ifNoneMatch, null);
+    writeResponse(response, output);
+  }
+
+  /**
+   * Writes a response as an API Gateway proxy response.
+   *
+   * @param response the response to write.
+   * @param output the stream to which the JSON encoded response is written.
+   * @throws IOException if an error occurs writing the response.
+   */
+  static void writeResponse(ResponseEntity<byte[]> response, OutputStream output) throws IOException {
+    final MediaType contentType = response.getHeaders().getContentType();
+    final boolean isTextual = contentType != null
+      && (MediaType.APPLICATION_JSON.isCompatibleWith(contentType) || "text".equals(contentType.getType()));
+    final byte[] body = response.getBody();
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8)) {
+      generator.writeStartObject();
+      generator.writeNumberField("statusCode", response.getStatusCodeValue());
+      generator.writeObjectFieldStart("headers");
+      for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+        generator.writeStringField(header.getKey(), String.join(", ", header.getValue()));
+      }
+      generator.writeEndObject();
+      // A response without a body, e.g. Not Modified, isn't encoded, even if it's of a binary media type
+      generator.writeBooleanField("isBase64Encoded", body != null && !isTextual);
+      if (body != null) {
+        generator.writeFieldName("body");
+        if (isTextual) {
+          generator.writeUTF8String(body, 0, body.length);
+        } else {
+          generator.writeString(Base64.getEncoder().encodeToString(body));
+        }
+      }
+      generator.writeEndObject();
+    }
+  }
+
+  /**
+   * @return the application context from which this handler is served.
+   */
+  GenericApplicationContext getApplicationContext() {
+    return this.applicationContext;
+  }
+
+  /**
+   * The subset of the fields of an API Gateway proxy request event used by this handler.
+   */
+  static final class ApiGatewayRequest {
+    private String format;
+    private String accept;
+    private String ifNoneMatch;
+
+    /**
+     * @return the value of the 'format' query string param, or null if there isn't one.
+     */
+    String getFormat() {
+      return this.format;
+    }
+
+    /**
+     * @return the value of the 'Accept' header, or null if there isn't one.
+     */
+    String getAccept() {
+      return this.accept;
+    }
+
+    /**
+     * @return the value of the 'If-None-Match' header, or null if there isn't one.
+     */
+    String getIfNoneMatch() {
+      return this.ifNoneMatch;
+    }
+
+    /**
+     * @param input the JSON encoded event.
+     * @return the parsed request.
+     * @throws IOException if the event can't be read or isn't valid JSON.
+     */
+    static ApiGatewayRequest parse(InputStream input) throws IOException {
+      final ApiGatewayRequest request = new ApiGatewayRequest();
+      try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+          return request;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          final String fieldName = parser.getCurrentName();
+          final JsonToken value = parser.nextToken();
+          if (value == JsonToken.START_OBJECT && "queryStringParameters".equals(fieldName)) {
+            request.format = readStringFields(parser, "format")[0];
+          } else if (value == JsonToken.START_OBJECT && "headers".equals(fieldName)) {
+            final String[] headers = readStringFields(parser, HttpHeaders.ACCEPT, HttpHeaders.IF_NONE_MATCH);
+            request.accept = headers[0];
+            request.ifNoneMatch = headers[1];
+          } else {
+            parser.skipChildren();
+          }
+        }
+      }
+      return request;
+    }
+
+    /**
+     * Reads the values of named string fields (matched ignoring case) from the current object, consuming the object.
+     *
+     * @return the values of the fields, in the order of their names, null for any that aren't present.
+     */
+    private static String[] readStringFields(JsonParser parser, String... fieldNames) throws IOException {
+      final String[] fieldValues = new String[fieldNames.length];
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String currentName = parser.getCurrentName();
+        final JsonToken value = parser.nextToken();
+        int field = fieldNames.length - 1;
+        while (field >= 0 && !fieldNames[field].equalsIgnoreCase(currentName)) {
+          field--;
+        }
+        if (field >= 0 && value == JsonToken.VALUE_STRING) {
+          fieldValues[field] = parser.getText();
+        } else {
+          parser.skipChildren();
+        }
+      }
+      return fieldValues;
+    }
+  }
+}
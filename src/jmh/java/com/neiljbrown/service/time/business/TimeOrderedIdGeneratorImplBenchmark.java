@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for {@link TimeOrderedIdGeneratorImpl}.
+ * <p>
+ * Measures the throughput and (sampled) latency distribution of issuing IDs from multiple threads concurrently, and
+ * hence the cost of contention on the generator's CAS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class TimeOrderedIdGeneratorImplBenchmark {
+
+  private TimeOrderedIdGenerator timeOrderedIdGenerator;
+
+  @Setup
+  public void setUp() {
+    this.timeOrderedIdGenerator = new TimeOrderedIdGeneratorImpl(new PlatformDateTimeProviderImpl(), 0);
+  }
+
+  /**
+   * @return a new ID. Returned to avoid the JVM eliminating the call as dead code.
+   */
+  @Benchmark
+  public long nextId() {
+    return this.timeOrderedIdGenerator.nextId();
+  }
+
+  /**
+   * @return a new block of IDs. Returned to avoid the JVM eliminating the call as dead code.
+   */
+  @Benchmark
+  public long[] nextIds() {
+    return this.timeOrderedIdGenerator.nextIds(100);
+  }
+}
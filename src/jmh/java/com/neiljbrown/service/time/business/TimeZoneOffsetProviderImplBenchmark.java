@@ -0,0 +1,79 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for {@link TimeZoneOffsetProviderImpl}.
+ * <p>
+ * Compares the cost of looking up a time-zone's offset at the current time using the provider's precomputed index of
+ * transitions, with that of using the zone's {@link ZoneRules} directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeZoneOffsetProviderImplBenchmark {
+
+  /** The time-zone. Includes zones with and without recurring daylight saving rules. */
+  @Param({"Europe/London", "Asia/Tokyo"})
+  public String zoneId;
+
+  private TimeZoneOffsetProvider timeZoneOffsetProvider;
+  private ZoneRules zoneRules;
+  private long epochSecond;
+
+  @Setup
+  public void setUp() {
+    this.timeZoneOffsetProvider = new TimeZoneOffsetProviderImpl(new String[] {this.zoneId});
+    this.zoneRules = ZoneId.of(this.zoneId).getRules();
+    this.epochSecond = Instant.now().getEpochSecond();
+  }
+
+  /**
+   * @return the offset. Returned to avoid the JVM eliminating the call as dead code.
+   */
+  @Benchmark
+  public int getOffsetSecondsFromIndex() {
+    return this.timeZoneOffsetProvider.getOffsetSeconds(this.zoneId, this.epochSecond);
+  }
+
+  /**
+   * @return the offset. Returned to avoid the JVM eliminating the call as dead code.
+   */
+  @Benchmark
+  public int getOffsetSecondsFromZoneRules() {
+    return this.zoneRules.getOffset(Instant.ofEpochSecond(this.epochSecond)).getTotalSeconds();
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.ClientCalls;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+import com.neiljbrown.service.time.presentation.grpc.GrpcServer;
+
+/**
+ * JMH benchmarks comparing the latency and throughput of requesting the platform time over the loopback interface
+ * using the 'GetPlatformTime' RPC of the gRPC {@link PlatformTimeGrpcService}, with using the 'Get Platform Time' API
+ * of {@link TimesController}.
+ * <p>
+ * The application is launched in-process, in the benchmark's (forked) JVM, with both its web server and gRPC server
+ * listening on random ports. gRPC calls are made using a blocking stub over a single shared channel, i.e. HTTP/2
+ * connection, on which calls from all benchmark threads are multiplexed, as would be the case for a service in the
+ * platform's mesh. HTTP requests are made using the JDK's {@link HttpURLConnection}, reusing persistent (keep-alive)
+ * HTTP/1.1 connections, one per benchmark thread. Both request the time in the same format.
+ * <p>
+ * Throughput is reported in operations per second, and latency (sample time, including percentiles) in microseconds.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class PlatformTimeGrpcBenchmark {
+
+  private static final String FORMAT = PlatformTimeFormats.UNIX_MILLIS_TIMESTAMP;
+
+  /**
+   * Benchmark (shared) state comprising the running application, and the gRPC channel and URL used to call it.
+   */
+  @State(Scope.Benchmark)
+  public static class RunningApplication {
+
+    private ConfigurableApplicationContext applicationContext;
+    private ManagedChannel channel;
+    private byte[] grpcRequest;
+    private URL url;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+      this.applicationContext = new SpringApplicationBuilder(Application.class)
+        .properties("server.port=0", "logging.level.root=WARN", "grpc.enabled=true", "grpc.port=0")
+        .run();
+      this.channel = NettyChannelBuilder.forAddress("localhost",
+        this.applicationContext.getBean(GrpcServer.class).getPort())
+        .usePlaintext()
+        .build();
+      this.grpcRequest = PlatformTimeProtobuf.encodeRequest(FORMAT, null);
+      this.url = new URL("http://localhost:" + this.applicationContext.getEnvironment().getProperty("local.server.port")
+        + "/v1/platform-time?format=" + FORMAT);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException {
+      this.channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      this.applicationContext.close();
+    }
+  }
+
+  /**
+   * Per-thread state comprising a buffer into which each HTTP response body is read.
+   */
+  @State(Scope.Thread)
+  public static class HttpClient {
+    private final byte[] responseBodyBuffer = new byte[1024];
+  }
+
+  /**
+   * @param application the benchmark's {@link RunningApplication} state.
+   * @return the number of bytes in the response message. Returned to avoid the JVM eliminating the call as dead code.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public int getPlatformTimeOverGrpc(RunningApplication application) {
+    return ClientCalls.blockingUnaryCall(application.channel, PlatformTimeGrpcService.GET_PLATFORM_TIME_METHOD,
+      CallOptions.DEFAULT, application.grpcRequest).length;
+  }
+
+  /**
+   * @param application the benchmark's {@link RunningApplication} state.
+   * @param client the benchmark thread's {@link HttpClient} state.
+   * @return the number of bytes in the response body. Returned to avoid the JVM eliminating the call as dead code.
+   * @throws IOException if an error occurs making the request.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public int getPlatformTimeOverRest(RunningApplication application, HttpClient client) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection) application.url.openConnection();
+    connection.setRequestProperty("Accept", "application/json");
+    // Response body must be fully read and the stream closed for the connection to be returned to keep-alive cache
+    final int status = connection.getResponseCode();
+    int bodyLength = 0;
+    try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+      int bytesRead;
+      while ((bytesRead = body.read(client.responseBodyBuffer)) != -1) {
+        bodyLength += bytesRead;
+      }
+    }
+    return status + bodyLength;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProviderImpl;
+import com.neiljbrown.service.time.business.TenantClockProviderImpl;
+
+/**
+ * JMH benchmarks for {@link TimesController}, invoking its handler methods directly, outside of the web stack.
+ * <p>
+ * Isolates the cost of the controller's own logic (request param validation, building of the API resource) from that
+ * of Spring MVC, the web container and serialisation of the response body. See {@link TimesControllerWebBenchmark} for
+ * a benchmark of the full request processing path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimesControllerBenchmark {
+
+  /**
+   * The value of the 'format' request param. Includes second resolution formats, whose responses are cached, finer
+   * resolution formats which are encoded on every request, including a date/time pattern, and a couple of invalid
+   * values, one of which only differs from a supported value by its case.
+   */
+  @Param({
+    TimesController.PlatformTimeFormatRequestParamValues.ISO_8601,
+    TimesController.PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP,
+    PlatformTimeFormats.ISO_8601_MILLIS,
+    PlatformTimeFormats.UNIX_MILLIS_TIMESTAMP,
+    PlatformTimeFormats.PATTERN_PREFIX + "yyyy-MM-dd HH:mm:ss.SSS",
+    "invalid",
+    "ISO-8601"})
+  public String format;
+
+  /**
+   * The value of the Accept request header. Includes a value which selects a representation without being parsed, and
+   * one which requires parsing.
+   */
+  @Param({"application/json", "application/octet-stream", "text/plain;q=0.5, application/cbor"})
+  public String accept;
+
+  private TimesController timesController;
+
+  @Setup
+  public void setUp() {
+    this.timesController = new TimesController(new PlatformDateTimeProviderImpl(),
+      new TenantClockProviderImpl(1), new SimpleMeterRegistry());
+  }
+
+  /**
+   * @return the response entity returned by the controller. Returned to avoid the JVM eliminating the call as dead
+   * code.
+   */
+  @Benchmark
+  public ResponseEntity<?> getPlatformTime() {
+    return this.timesController.getPlatformTime(this.format, this.accept, null, null);
+  }
+
+  /**
+   * Benchmarks a conditional request which is answered with a 304 Not Modified response.
+   *
+   * @return the response entity returned by the controller.
+   */
+  @Benchmark
+  public ResponseEntity<?> getPlatformTimeNotModified() {
+    return this.timesController.getPlatformTime(this.format, this.accept, "*", null);
+  }
+}
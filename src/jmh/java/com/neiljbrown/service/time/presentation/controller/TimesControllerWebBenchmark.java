@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+
+/**
+ * JMH benchmarks for the 'Get Platform Time' API, served by {@link TimesController}, via the full request processing
+ * path - HTTP client, (loopback) network, embedded web container, Spring MVC, controller and serialisation of the
+ * response body.
+ * <p>
+ * The application is launched in-process, in the benchmark's (forked) JVM, listening on a random port. Requests are
+ * made using the JDK's {@link HttpURLConnection}, reusing persistent (keep-alive) connections, one per benchmark
+ * thread.
+ * <p>
+ * Note that the reported figures include the cost of the HTTP client, which shares the same JVM and CPUs as the
+ * server, so are most useful for comparing the relative cost of changes to the server side of the request path.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class TimesControllerWebBenchmark {
+
+  /**
+   * Benchmark (shared) state comprising the running application.
+   */
+  @State(Scope.Benchmark)
+  public static class RunningApplication {
+
+    private ConfigurableApplicationContext applicationContext;
+    private int port;
+
+    @Setup(Level.Trial)
+    public void start() {
+      this.applicationContext = new SpringApplicationBuilder(Application.class)
+        .properties("server.port=0", "logging.level.root=WARN")
+        .run();
+      this.port = Integer.parseInt(this.applicationContext.getEnvironment().getProperty("local.server.port"));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+      this.applicationContext.close();
+    }
+  }
+
+  /**
+   * Per-thread state comprising the URL of the API and a buffer into which each response body is read.
+   */
+  @State(Scope.Thread)
+  public static class Client {
+
+    /** The value of the 'format' request param. Includes each of the supported values and an invalid value. */
+    @Param({
+      TimesController.PlatformTimeFormatRequestParamValues.ISO_8601,
+      TimesController.PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP,
+      "invalid"})
+    public String format;
+
+    private URL url;
+    private final byte[] responseBodyBuffer = new byte[1024];
+
+    @Setup(Level.Trial)
+    public void setUp(RunningApplication application) throws IOException {
+      this.url = new URL("http://localhost:" + application.port + "/v1/platform-time?format=" + this.format);
+    }
+  }
+
+  /**
+   * @param client the benchmark thread's {@link Client} state.
+   * @return the response's status code plus the number of bytes in its body. Not meaningful in itself - it's only
+   * returned (and so consumed by JMH) to stop the JVM eliminating the request and the reading of its body as dead code.
+   * @throws IOException if an error occurs making the request.
+   */
+  @Benchmark
+  public int getPlatformTime(Client client) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection) client.url.openConnection();
+    connection.setRequestProperty("Accept", "application/json");
+    // Response body must be fully read and the stream closed for the connection to be returned to keep-alive cache
+    final int status = connection.getResponseCode();
+    int bodyLength = 0;
+    try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+      int bytesRead;
+      while ((bytesRead = body.read(client.responseBodyBuffer)) != -1) {
+        bodyLength += bytesRead;
+      }
+    }
+    return status + bodyLength;
+  }
+}
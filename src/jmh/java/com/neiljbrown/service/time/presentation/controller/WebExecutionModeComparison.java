@@ -0,0 +1,359 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+
+/**
+ * Compares the throughput and latency of the 'Get Platform Time' API, served by {@link TimesController}, when the
+ * application is run in each of its web execution modes - servlet (Spring MVC on Tomcat) and reactive (Spring WebFlux
+ * on Netty) - under a large no. of concurrent, persistent (keep-alive) connections.
+ * <p>
+ * For each mode the application is launched in-process, listening on a random port, and a closed-loop load is
+ * generated using a fixed no. of client threads, each of which multiplexes its share of the connections using a NIO
+ * {@link Selector}, so that the no. of connections isn't bounded by the no. of client threads. Each connection sends
+ * its next request as soon as it receives the response to the previous one. Connections are opened gradually, with a
+ * bounded no. of connects pending per client thread, during the warm-up period. The latency of each request is
+ * recorded in an HdrHistogram, and a summary of the measurement period is output for each mode.
+ * <p>
+ * The comparison is configured using the following optional system properties -
+ * <br>
+ * - modes - Comma separated list of the web execution modes to compare. Defaults to servlet,reactive.
+ * <br>
+ * - connections - No. of concurrent connections. Defaults to 10000. (Requires a sufficient open files limit).
+ * <br>
+ * - clientThreads - No. of client threads generating the load. Defaults to 4.
+ * <br>
+ * - warmupSeconds - Duration of the warm-up period, in which connections are opened. Defaults to 15.
+ * <br>
+ * - durationSeconds - Duration of the measurement period. Defaults to 30.
+ * <br>
+ * - path - Path and query of the requested URL. Defaults to /v1/platform-time?format=unix.
+ * <p>
+ * As with {@link TimesControllerWebBenchmark}, the client shares the same JVM and CPUs as the server, so the figures
+ * are most useful for comparing the modes relative to one another, rather than as absolute measures of capacity.
+ */
+public final class WebExecutionModeComparison {
+
+  private static final int MAX_PENDING_CONNECTS_PER_THREAD = 64;
+  private static final int MAX_RESPONSE_SIZE = 8192;
+  private static final byte[] HEADERS_END = {'\r', '\n', '\r', '\n'};
+  private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+  private static final byte[] CONTENT_LENGTH_HEADER = "\r\ncontent-length:".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] CONNECTION_CLOSE_HEADER = "\r\nconnection: close".getBytes(StandardCharsets.US_ASCII);
+  private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private WebExecutionModeComparison() {
+  }
+
+  /**
+   * @param args unused. See the class Javadoc for supported system properties.
+   * @throws Exception if an unexpected error occurs.
+   */
+  public static void main(String[] args) throws Exception {
+    final String[] modes = System.getProperty("modes", "servlet,reactive").split(",");
+    final int connections = Integer.getInteger("connections", 10000);
+    final int clientThreads = Integer.getInteger("clientThreads", 4);
+    final int warmupSeconds = Integer.getInteger("warmupSeconds", 15);
+    final int durationSeconds = Integer.getInteger("durationSeconds", 30);
+    final String path = System.getProperty("path", "/v1/platform-time?format=unix");
+
+    for (String mode : modes) {
+      try (ConfigurableApplicationContext applicationContext = startApplication(mode.trim(), connections)) {
+        int port = Integer.parseInt(applicationContext.getEnvironment().getProperty("local.server.port"));
+        LoadGenerator loadGenerator = new LoadGenerator(new InetSocketAddress("localhost", port), path, connections,
+          clientThreads);
+        loadGenerator.start();
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        int connected = loadGenerator.getConnectedCount();
+        loadGenerator.reset();
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        Histogram latencies = loadGenerator.getIntervalHistogram();
+        int liveThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        loadGenerator.stop();
+        System.out.printf("mode=%s connections=%d connected=%d throughput=%.0f req/s latency(ms) p50=%.3f p99=%.3f " +
+            "p99.9=%.3f max=%.3f errors=%d reconnects=%d liveThreads=%d%n", mode.trim(), connections, connected,
+          latencies.getTotalCount() / (double) durationSeconds, toMillis(latencies.getValueAtPercentile(50)),
+          toMillis(latencies.getValueAtPercentile(99)), toMillis(latencies.getValueAtPercentile(99.9)),
+          toMillis(latencies.getMaxValue()), loadGenerator.errors.sum(), loadGenerator.reconnects.sum(), liveThreads);
+      }
+    }
+  }
+
+  private static ConfigurableApplicationContext startApplication(String mode, int connections) {
+    return new SpringApplicationBuilder(Application.class, UnlimitedKeepAliveRequests.class)
+      .properties("server.port=0", "logging.level.root=WARN", "spring.main.web-application-type=" + mode,
+        "server.tomcat.max-connections=" + (connections + MAX_PENDING_CONNECTS_PER_THREAD))
+      .run();
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000d;
+  }
+
+  /**
+   * Removes Tomcat's default limit on the no. of requests served on a keep-alive connection (100), after which it
+   * closes the connection, so that, like Netty, the servlet mode doesn't pay the cost of reconnecting.
+   */
+  static class UnlimitedKeepAliveRequests implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+      factory.addConnectorCustomizers(connector -> {
+        if (connector.getProtocolHandler() instanceof AbstractHttp11Protocol) {
+          ((AbstractHttp11Protocol<?>) connector.getProtocolHandler()).setMaxKeepAliveRequests(-1);
+        }
+      });
+    }
+  }
+
+  /**
+   * Generates a closed-loop load over a set of persistent connections, shared between a fixed no. of client threads.
+   */
+  private static final class LoadGenerator {
+
+    private final InetSocketAddress address;
+    private final ByteBuffer request;
+    private final List<ClientThread> clientThreads = new ArrayList<>();
+    private final Recorder recorder = new Recorder(MAX_LATENCY_NANOS, 3);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private volatile boolean running = true;
+
+    LoadGenerator(InetSocketAddress address, String path, int connections, int threads) {
+      this.address = address;
+      String request = "GET " + path + " HTTP/1.1\r\nHost: localhost\r\nAccept: application/json\r\n\r\n";
+      this.request = ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+      for (int i = 0; i < threads; i++) {
+        this.clientThreads.add(new ClientThread("load-generator-" + i, connections / threads +
+          (i < connections % threads ? 1 : 0)));
+      }
+    }
+
+    void start() {
+      this.clientThreads.forEach(Thread::start);
+    }
+
+    int getConnectedCount() {
+      return this.clientThreads.stream().mapToInt(t -> t.connected).sum();
+    }
+
+    void reset() {
+      this.recorder.reset();
+      this.errors.reset();
+      this.reconnects.reset();
+    }
+
+    Histogram getIntervalHistogram() {
+      return this.recorder.getIntervalHistogram();
+    }
+
+    void stop() throws InterruptedException {
+      this.running = false;
+      for (ClientThread clientThread : this.clientThreads) {
+        clientThread.join();
+      }
+    }
+
+    /**
+     * A client thread which opens, and repeatedly sends requests on, its share of the connections.
+     */
+    private final class ClientThread extends Thread {
+
+      private final int connections;
+      private int opened;
+      private int pendingConnects;
+      private volatile int connected;
+
+      ClientThread(String name, int connections) {
+        super(name);
+        this.connections = connections;
+      }
+
+      @Override
+      public void run() {
+        try (Selector selector = Selector.open()) {
+          while (running) {
+            while (this.opened < this.connections && this.pendingConnects < MAX_PENDING_CONNECTS_PER_THREAD) {
+              open(selector);
+            }
+            selector.select(100);
+            for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext(); ) {
+              SelectionKey key = keys.next();
+              keys.remove();
+              process(key);
+            }
+          }
+          for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+          }
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+
+      private void open(Selector selector) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.connect(address);
+        channel.register(selector, SelectionKey.OP_CONNECT, new Connection());
+        this.opened++;
+        this.pendingConnects++;
+      }
+
+      private void process(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        try {
+          if (key.isConnectable()) {
+            channel.finishConnect();
+            connection.established = true;
+            this.pendingConnects--;
+            this.connected++;
+            connection.sendRequest(key);
+          } else if (key.isWritable()) {
+            connection.continueRequest(key);
+          } else if (key.isReadable()) {
+            connection.readResponse(key);
+          }
+        } catch (IOException e) {
+          errors.increment();
+          close(key);
+        }
+      }
+
+      private void close(SelectionKey key) {
+        if (((Connection) key.attachment()).established) {
+          this.connected--;
+        } else {
+          this.pendingConnects--;
+        }
+        try {
+          key.channel().close();
+        } catch (IOException e) {
+          // Ignore
+        }
+        // Reopened on the next iteration of the event loop
+        this.opened--;
+        reconnects.increment();
+      }
+
+      /**
+       * A connection, and the state of its current request/response exchange.
+       */
+      private final class Connection {
+
+        private final ByteBuffer response = ByteBuffer.allocate(MAX_RESPONSE_SIZE);
+        private boolean established;
+        private ByteBuffer pendingRequest;
+        private long requestStartNanos;
+
+        void sendRequest(SelectionKey key) throws IOException {
+          this.requestStartNanos = System.nanoTime();
+          this.pendingRequest = request.duplicate();
+          continueRequest(key);
+        }
+
+        void continueRequest(SelectionKey key) throws IOException {
+          ((SocketChannel) key.channel()).write(this.pendingRequest);
+          key.interestOps(this.pendingRequest.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        void readResponse(SelectionKey key) throws IOException {
+          if (((SocketChannel) key.channel()).read(this.response) == -1) {
+            throw new IOException("Connection closed by server.");
+          }
+          int headersEnd = indexOfIgnoreCase(this.response, HEADERS_END, 0, this.response.position());
+          if (headersEnd == -1 || !isComplete(headersEnd + HEADERS_END.length)) {
+            if (!this.response.hasRemaining()) {
+              throw new IOException("Response exceeds " + MAX_RESPONSE_SIZE + " bytes.");
+            }
+            return;
+          }
+          recorder.recordValue(Math.min(System.nanoTime() - this.requestStartNanos, MAX_LATENCY_NANOS));
+          if (this.response.get(9) >= '4') {
+            errors.increment();
+          }
+          boolean connectionClose = indexOfIgnoreCase(this.response, CONNECTION_CLOSE_HEADER, 0, headersEnd) != -1;
+          this.response.clear();
+          if (connectionClose) {
+            close(key);
+          } else {
+            sendRequest(key);
+          }
+        }
+
+        private boolean isComplete(int bodyStart) {
+          int contentLengthHeader = indexOfIgnoreCase(this.response, CONTENT_LENGTH_HEADER, 0, bodyStart);
+          if (contentLengthHeader != -1) {
+            int contentLength = 0;
+            for (int i = contentLengthHeader + CONTENT_LENGTH_HEADER.length; this.response.get(i) != '\r'; i++) {
+              byte b = this.response.get(i);
+              if (b >= '0' && b <= '9') {
+                contentLength = contentLength * 10 + (b - '0');
+              }
+            }
+            return this.response.position() >= bodyStart + contentLength;
+          }
+          // Chunked transfer encoding - complete on receipt of the last (zero length) chunk
+          return indexOfIgnoreCase(this.response, LAST_CHUNK, this.response.position() - LAST_CHUNK.length,
+            this.response.position()) != -1;
+        }
+      }
+    }
+
+    /**
+     * @return the index of the first occurrence of the supplied (lower case ASCII) bytes in the supplied buffer,
+     * between the supplied start (inclusive) and end (exclusive) indexes, ignoring case, or -1 if there's no such
+     * occurrence.
+     */
+    private static int indexOfIgnoreCase(ByteBuffer buffer, byte[] bytes, int start, int end) {
+      outer:
+      for (int i = Math.max(start, 0); i <= end - bytes.length; i++) {
+        for (int j = 0; j < bytes.length; j++) {
+          if (Character.toLowerCase((char) buffer.get(i + j)) != bytes[j]) {
+            continue outer;
+          }
+        }
+        return i;
+      }
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.shm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+
+/**
+ * JMH benchmarks comparing the cost, for a co-located client, of reading the platform time published to shared memory
+ * by {@link SharedMemoryPlatformTimePublisher}, using a {@link SharedMemoryPlatformTimeReader}, with requesting it from
+ * the 'Get Platform Time' API over the loopback interface.
+ * <p>
+ * The application is launched in-process, in the benchmark's (forked) JVM, listening on a random port, and publishing
+ * the time to a file in the build directory. The reader maps the same file, as would a reader in another process, so
+ * the reported figures for the shared memory benchmark are representative of a sidecar. HTTP requests are made using
+ * the JDK's {@link HttpURLConnection}, reusing persistent (keep-alive) connections, one per benchmark thread.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class SharedMemoryPlatformTimeBenchmark {
+
+  private static final String SHARED_MEMORY_PATH = "build/tmp/jmh-platform-time.shm";
+
+  /**
+   * Benchmark (shared) state comprising the running application, and a reader of the time it publishes.
+   */
+  @State(Scope.Benchmark)
+  public static class RunningApplication {
+
+    private ConfigurableApplicationContext applicationContext;
+    private SharedMemoryPlatformTimeReader reader;
+    private URL url;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+      this.applicationContext = new SpringApplicationBuilder(Application.class)
+        .properties("server.port=0", "logging.level.root=WARN", "shared-memory.enabled=true",
+          "shared-memory.path=" + SHARED_MEMORY_PATH)
+        .run();
+      this.reader = new SharedMemoryPlatformTimeReader(Paths.get(SHARED_MEMORY_PATH));
+      this.url = new URL("http://localhost:" + this.applicationContext.getEnvironment().getProperty("local.server.port")
+        + "/v1/platform-time?format=unix-millis");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+      this.reader.close();
+      this.applicationContext.close();
+    }
+  }
+
+  /**
+   * Per-thread state comprising a buffer into which each response body is read.
+   */
+  @State(Scope.Thread)
+  public static class Client {
+    private final byte[] responseBodyBuffer = new byte[1024];
+  }
+
+  /**
+   * @param application the benchmark's {@link RunningApplication} state.
+   * @return the platform time. Returned to avoid the JVM eliminating the call as dead code.
+   */
+  @Benchmark
+  public long readSharedMemory(RunningApplication application) {
+    return application.reader.getEpochMilli();
+  }
+
+  /**
+   * @param application the benchmark's {@link RunningApplication} state.
+   * @param client the benchmark thread's {@link Client} state.
+   * @return the number of bytes in the response body. Returned to avoid the JVM eliminating the call as dead code.
+   * @throws IOException if an error occurs making the request.
+   */
+  @Benchmark
+  public int getPlatformTimeOverLoopback(RunningApplication application, Client client) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection) application.url.openConnection();
+    connection.setRequestProperty("Accept", "application/json");
+    // Response body must be fully read and the stream closed for the connection to be returned to keep-alive cache
+    final int status = connection.getResponseCode();
+    int bodyLength = 0;
+    try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+      int bytesRead;
+      while ((bytesRead = body.read(client.responseBodyBuffer)) != -1) {
+        bodyLength += bytesRead;
+      }
+    }
+    return status + bodyLength;
+  }
+}
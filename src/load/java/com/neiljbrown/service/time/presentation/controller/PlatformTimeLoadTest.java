@@ -0,0 +1,380 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+
+/**
+ * A load (and soak) test of the 'Get Platform Time' API, served by {@link TimesController}, which fails if the API's
+ * latency, error rate, throughput or the application's heap growth don't meet the thresholds (service level
+ * objectives) in a config file. Intended to be run before a release, to catch regressions which functional tests such
+ * as TimesControllerIntegrationTest can't.
+ * <p>
+ * The application is launched in-process, listening on a random port. Load is then generated for a warm-up period,
+ * whose results are discarded, followed by a measurement period, using an open model - requests are sent at a fixed
+ * arrival rate, regardless of how quickly the API responds. Each request has an intended start time, on a fixed
+ * schedule, and its latency is measured from that time, rather than from when it was actually sent, so that a stall
+ * in the API is reflected in the latency of all the requests which should have been sent during it. This avoids the
+ * 'coordinated omission' of a closed model, in which a slow response delays the next request, hiding the stall. The
+ * schedule is shared by a fixed no. of client threads, each with its own persistent (keep-alive) connection, so the
+ * no. of client threads bounds the no. of requests in flight, not the arrival rate.
+ * <p>
+ * Each request is for one of a weighted mix of formats, some of which may be invalid, to exercise the API's error
+ * path. A request for a valid format is successful if answered with a 200 response, and a request for an invalid
+ * format if answered with a 400. Any other response, or an I/O error, counts as an error.
+ * <p>
+ * The test is configured by a properties file, see load-test.properties, any of whose properties can be overridden by
+ * a system property of the same name. On completion the test outputs a summary, followed by a line for each SLO
+ * stating whether it passed, and writes the distribution of latencies (in HdrHistogram's percentile format) to the
+ * report dir. The JVM exits with a status of 1 if any SLO failed.
+ * <p>
+ * As with {@link WebExecutionModeComparison}, the load generator shares the same JVM and CPUs as the application, so
+ * the thresholds should be set relative to a baseline measured on the same hardware, rather than as absolute measures
+ * of capacity. Heap growth is measured after a full GC at the end of the warm-up and measurement periods, so includes
+ * any growth of the load generator's (small, bounded) heap.
+ */
+public final class PlatformTimeLoadTest {
+
+  private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private static final String INVALID_FORMAT_PREFIX = "!";
+
+  private PlatformTimeLoadTest() {
+  }
+
+  /**
+   * @param args the path of the config (properties) file, and of the dir to which reports are written.
+   * @throws Exception if an unexpected error occurs.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length != 2) {
+      System.err.println("Usage: PlatformTimeLoadTest <config-file> <report-dir>");
+      System.exit(2);
+    }
+    final Config config = Config.load(Paths.get(args[0]));
+    final Path reportDir = Files.createDirectories(Paths.get(args[1]));
+    // Allow each client thread's keep-alive connection to be cached, rather than the default of 5 per destination
+    System.setProperty("http.maxConnections", Integer.toString(config.clientThreads));
+
+    final boolean passed;
+    try (ConfigurableApplicationContext applicationContext = startApplication(config)) {
+      final String baseUrl = "http://localhost:" + applicationContext.getEnvironment().getProperty("local.server.port")
+        + "/v1/platform-time";
+      final LoadGenerator loadGenerator = new LoadGenerator(config, baseUrl);
+      System.out.printf("Running load test - rate=%d req/s clientThreads=%d warmup=%ds duration=%ds mix=%s%n",
+        config.ratePerSecond, config.clientThreads, config.warmupSeconds, config.durationSeconds, config.mix);
+      loadGenerator.start();
+      TimeUnit.SECONDS.sleep(config.warmupSeconds);
+      final long heapBeforeBytes = usedHeapAfterGc();
+      // Let the requests delayed by the GC pause complete before measuring, so the pause isn't counted as latency
+      TimeUnit.SECONDS.sleep(1);
+      loadGenerator.reset();
+      TimeUnit.SECONDS.sleep(config.durationSeconds);
+      final Histogram latencies = loadGenerator.getIntervalHistogram();
+      final long errors = loadGenerator.errors.sum();
+      loadGenerator.stop();
+      final long heapGrowthBytes = usedHeapAfterGc() - heapBeforeBytes;
+      writeLatencyDistribution(latencies, reportDir.resolve("latency.hgrm"));
+      passed = assertSlos(config, latencies, errors, heapGrowthBytes);
+    }
+    System.exit(passed ? 0 : 1);
+  }
+
+  private static ConfigurableApplicationContext startApplication(Config config) {
+    final List<String> properties = new ArrayList<>();
+    properties.add("server.port=0");
+    properties.add("logging.level.root=WARN");
+    properties.add("spring.main.web-application-type=" + config.webApplicationType);
+    properties.addAll(config.applicationProperties);
+    return new SpringApplicationBuilder(Application.class).properties(properties.toArray(new String[0])).run();
+  }
+
+  private static boolean assertSlos(Config config, Histogram latencies, long errors, long heapGrowthBytes) {
+    final long requests = latencies.getTotalCount();
+    final double throughput = requests / (double) config.durationSeconds;
+    final double errorRate = requests == 0 ? 1 : errors / (double) requests;
+    final double p99Millis = toMillis(latencies.getValueAtPercentile(99));
+    final double p999Millis = toMillis(latencies.getValueAtPercentile(99.9));
+    final double heapGrowthMb = heapGrowthBytes / (1024d * 1024d);
+    System.out.printf("Results - requests=%d throughput=%.0f req/s errors=%d latency(ms) p50=%.3f p99=%.3f " +
+        "p99.9=%.3f max=%.3f heapGrowth=%.1fMB%n", requests, throughput, errors,
+      toMillis(latencies.getValueAtPercentile(50)), p99Millis, p999Millis, toMillis(latencies.getMaxValue()),
+      heapGrowthMb);
+    boolean passed = check("throughput (req/s)", throughput, ">=", config.ratePerSecond * config.minThroughputRatio,
+      throughput >= config.ratePerSecond * config.minThroughputRatio);
+    passed &= check("p99 latency (ms)", p99Millis, "<=", config.maxP99Millis, p99Millis <= config.maxP99Millis);
+    passed &= check("p99.9 latency (ms)", p999Millis, "<=", config.maxP999Millis, p999Millis <= config.maxP999Millis);
+    passed &= check("error rate", errorRate, "<=", config.maxErrorRate, errorRate <= config.maxErrorRate);
+    passed &= check("heap growth (MB)", heapGrowthMb, "<=", config.maxHeapGrowthMb,
+      heapGrowthMb <= config.maxHeapGrowthMb);
+    System.out.println(passed ? "Load test PASSED." : "Load test FAILED.");
+    return passed;
+  }
+
+  private static boolean check(String name, double actual, String operator, double threshold, boolean passed) {
+    System.out.printf("%s %s - actual=%.4f, required %s %.4f%n", passed ? "PASS" : "FAIL", name, actual, operator,
+      threshold);
+    return passed;
+  }
+
+  private static long usedHeapAfterGc() {
+    final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    memory.gc();
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  private static void writeLatencyDistribution(Histogram latencies, Path path) throws FileNotFoundException {
+    try (PrintStream out = new PrintStream(path.toFile())) {
+      // Output in milliseconds
+      latencies.outputPercentileDistribution(out, 1_000_000d);
+    }
+    System.out.println("Latency distribution written to [" + path + "].");
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000d;
+  }
+
+  /**
+   * The test's config, loaded from a properties file, overridden by any system properties of the same name.
+   */
+  private static final class Config {
+
+    private final String webApplicationType;
+    private final List<String> applicationProperties = new ArrayList<>();
+    private final int ratePerSecond;
+    private final int clientThreads;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final String mix;
+    private final List<MixEntry> mixEntries = new ArrayList<>();
+    private final int totalWeight;
+    private final double maxP99Millis;
+    private final double maxP999Millis;
+    private final double maxErrorRate;
+    private final double maxHeapGrowthMb;
+    private final double minThroughputRatio;
+
+    private Config(Properties properties) {
+      this.webApplicationType = get(properties, "load.web-application-type");
+      for (String property : get(properties, "load.application-properties").split(",")) {
+        if (!property.trim().isEmpty()) {
+          this.applicationProperties.add(property.trim());
+        }
+      }
+      this.ratePerSecond = Integer.parseInt(get(properties, "load.rate-per-second"));
+      this.clientThreads = Integer.parseInt(get(properties, "load.client-threads"));
+      this.warmupSeconds = Integer.parseInt(get(properties, "load.warmup-seconds"));
+      this.durationSeconds = Integer.parseInt(get(properties, "load.duration-seconds"));
+      this.mix = get(properties, "load.mix");
+      int totalWeight = 0;
+      for (String entry : this.mix.split(",")) {
+        // <weight>:<format>, where the format may itself contain a ':', e.g. pattern:HH:mm
+        final String[] weightAndFormat = entry.trim().split(":", 2);
+        if (weightAndFormat.length != 2) {
+          throw new IllegalArgumentException("Invalid load.mix entry [" + entry + "]. Must be <weight>:<format>.");
+        }
+        final int weight = Integer.parseInt(weightAndFormat[0]);
+        totalWeight += weight;
+        this.mixEntries.add(new MixEntry(weightAndFormat[1], totalWeight));
+      }
+      this.totalWeight = totalWeight;
+      this.maxP99Millis = Double.parseDouble(get(properties, "slo.max-p99-latency-millis"));
+      this.maxP999Millis = Double.parseDouble(get(properties, "slo.max-p999-latency-millis"));
+      this.maxErrorRate = Double.parseDouble(get(properties, "slo.max-error-rate"));
+      this.maxHeapGrowthMb = Double.parseDouble(get(properties, "slo.max-heap-growth-mb"));
+      this.minThroughputRatio = Double.parseDouble(get(properties, "slo.min-throughput-ratio"));
+      if (this.ratePerSecond <= 0 || this.clientThreads <= 0 || this.durationSeconds <= 0 || this.totalWeight <= 0) {
+        throw new IllegalArgumentException("load.rate-per-second, load.client-threads, load.duration-seconds and the "
+          + "total weight of load.mix must be greater than zero.");
+      }
+    }
+
+    static Config load(Path path) throws IOException {
+      final Properties properties = new Properties();
+      try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+        properties.load(reader);
+      }
+      return new Config(properties);
+    }
+
+    private static String get(Properties properties, String name) {
+      final String value = System.getProperty(name, properties.getProperty(name));
+      if (value == null) {
+        throw new IllegalArgumentException("Missing load test config property [" + name + "].");
+      }
+      return value.trim();
+    }
+
+    /**
+     * @param random a random no. between zero (inclusive) and the total weight of the mix (exclusive).
+     * @return the index of the entry of the mix selected by the random no.
+     */
+    int select(int random) {
+      for (int i = 0; i < this.mixEntries.size(); i++) {
+        if (random < this.mixEntries.get(i).cumulativeWeight) {
+          return i;
+        }
+      }
+      throw new IllegalStateException("Random no. [" + random + "] exceeds total weight [" + this.totalWeight + "].");
+    }
+  }
+
+  /**
+   * An entry in the mix of requests - a requested format, which may be expected to be invalid, and its cumulative
+   * weight (the sum of its own and all the preceding entries' weights).
+   */
+  private static final class MixEntry {
+
+    private final String query;
+    private final int expectedStatus;
+    private final int cumulativeWeight;
+
+    MixEntry(String format, int cumulativeWeight) {
+      final boolean invalid = format.startsWith(INVALID_FORMAT_PREFIX);
+      try {
+        this.query = "?format=" + URLEncoder.encode(invalid ? format.substring(INVALID_FORMAT_PREFIX.length())
+          : format, StandardCharsets.UTF_8.name());
+      } catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException(e);
+      }
+      this.expectedStatus = invalid ? HttpURLConnection.HTTP_BAD_REQUEST : HttpURLConnection.HTTP_OK;
+      this.cumulativeWeight = cumulativeWeight;
+    }
+  }
+
+  /**
+   * Generates an open-model load, following a fixed schedule of intended request start times, shared by a fixed no.
+   * of client threads.
+   */
+  private static final class LoadGenerator {
+
+    private final Config config;
+    private final URL[] urls;
+    private final List<Thread> clientThreads = new ArrayList<>();
+    private final Recorder recorder = new Recorder(MAX_LATENCY_NANOS, 3);
+    private final LongAdder errors = new LongAdder();
+    /** Sequence no. of the next request in the schedule. */
+    private final AtomicLong nextRequest = new AtomicLong();
+    private final long intervalNanos;
+    private long scheduleStartNanos;
+    private volatile boolean running = true;
+
+    LoadGenerator(Config config, String baseUrl) throws IOException {
+      this.config = config;
+      this.urls = new URL[config.mixEntries.size()];
+      for (int i = 0; i < this.urls.length; i++) {
+        this.urls[i] = new URL(baseUrl + config.mixEntries.get(i).query);
+      }
+      this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / config.ratePerSecond;
+      for (int i = 0; i < config.clientThreads; i++) {
+        this.clientThreads.add(new Thread(this::run, "load-generator-" + i));
+      }
+    }
+
+    void start() {
+      this.scheduleStartNanos = System.nanoTime();
+      this.clientThreads.forEach(Thread::start);
+    }
+
+    void reset() {
+      this.recorder.reset();
+      this.errors.reset();
+    }
+
+    Histogram getIntervalHistogram() {
+      return this.recorder.getIntervalHistogram();
+    }
+
+    void stop() throws InterruptedException {
+      this.running = false;
+      for (Thread clientThread : this.clientThreads) {
+        clientThread.join();
+      }
+    }
+
+    private void run() {
+      final byte[] responseBodyBuffer = new byte[1024];
+      while (this.running) {
+        final long intendedStartNanos = this.scheduleStartNanos + this.nextRequest.getAndIncrement()
+          * this.intervalNanos;
+        long delayNanos;
+        while ((delayNanos = intendedStartNanos - System.nanoTime()) > 0 && this.running) {
+          LockSupport.parkNanos(delayNanos);
+        }
+        if (!this.running) {
+          return;
+        }
+        final int mixIndex = this.config.select(ThreadLocalRandom.current().nextInt(this.config.totalWeight));
+        final boolean succeeded = send(this.urls[mixIndex], this.config.mixEntries.get(mixIndex).expectedStatus,
+          responseBodyBuffer);
+        // Latency is measured from the intended start time, not when the request was actually sent
+        this.recorder.recordValue(Math.min(System.nanoTime() - intendedStartNanos, MAX_LATENCY_NANOS));
+        if (!succeeded) {
+          this.errors.increment();
+        }
+      }
+    }
+
+    private static boolean send(URL url, int expectedStatus, byte[] responseBodyBuffer) {
+      try {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Accept", "application/json");
+        // Response body must be fully read and the stream closed for the connection to be returned to keep-alive cache
+        final int status = connection.getResponseCode();
+        try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+          if (body != null) {
+            while (body.read(responseBodyBuffer) != -1) {
+              // Discard
+            }
+          }
+        }
+        return status == expectedStatus;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A business calendar compiled into a compact index of its business days, over a fixed range of years, supporting
+ * business-day computations in constant time (or logarithmic in the no. of years), without allocating.
+ * <p>
+ * Comprises a bitset of each year's days, in which the bit for each business day is set, and a parallel array of the
+ * cumulative no. of business days before the start of each year. The no. of business days before any date is the
+ * cumulative count for its year, plus a popcount ({@link Long#bitCount}) of the year's bits before the date. Counting
+ * the business days between two dates is the difference of two such counts, and adding business days to a date is a
+ * search for the date with the required count, rather than a day-by-day loop over the dates in either case.
+ * <p>
+ * Dates are expressed as a number of days since the epoch of 1970-01-01 (UTC).
+ * <p>
+ * Immutable. Thread-safe.
+ */
+final class BusinessCalendar {
+
+  /** First year (inclusive) of the range of dates which is indexed. */
+  static final int FIRST_YEAR = 1900;
+
+  /** Last year (exclusive) of the range of dates which is indexed. */
+  static final int END_YEAR = 2100;
+
+  /** First date (inclusive) which is indexed - 1900-01-01. */
+  static final long FIRST_EPOCH_DAY = LocalDate.of(FIRST_YEAR, 1, 1).toEpochDay();
+
+  /** Last date (exclusive) which is indexed - 2100-01-01. */
+  static final long END_EPOCH_DAY = LocalDate.of(END_YEAR, 1, 1).toEpochDay();
+
+  /** No. of 64-bit words in each year's bitset - enough for a leap year of 366 days. */
+  private static final int WORDS_PER_YEAR = 6;
+
+  private static final int DAYS_PER_400_YEAR_CYCLE = 146_097;
+
+  private final String name;
+
+  /** Days since the epoch of the start of each year, plus the end of the last year. */
+  private final long[] yearStartEpochDays;
+
+  /** No. of business days from the start of the first year to the start of each year, plus the end of the last year. */
+  private final int[] businessDaysBeforeYear;
+
+  /** Bitset of the business days in each year, {@link #WORDS_PER_YEAR} words per year. Bit n is the nth day of year. */
+  private final long[] businessDayBits;
+
+  private BusinessCalendar(String name, long[] yearStartEpochDays, int[] businessDaysBeforeYear,
+    long[] businessDayBits) {
+    this.name = name;
+    this.yearStartEpochDays = yearStartEpochDays;
+    this.businessDaysBeforeYear = businessDaysBeforeYear;
+    this.businessDayBits = businessDayBits;
+  }
+
+  /**
+   * Compiles a business calendar, in which business days are all days other than those which fall on a weekend, or
+   * are holidays.
+   *
+   * @param name the name of the calendar.
+   * @param weekend the days of the week which are not business days, e.g. Saturday and Sunday.
+   * @param holidays dates which are not business days.
+   * @param annualHolidays days of the year which are not business days in any year, e.g. 25 December. A holiday on 29
+   * February only applies in leap years.
+   * @return the compiled calendar.
+   */
+  static BusinessCalendar compile(String name, Set<DayOfWeek> weekend, Collection<LocalDate> holidays,
+    Collection<MonthDay> annualHolidays) {
+    final Set<LocalDate> holidaySet = new HashSet<>(holidays);
+    final Set<MonthDay> annualHolidaySet = new HashSet<>(annualHolidays);
+    final int years = END_YEAR - FIRST_YEAR;
+    final long[] yearStartEpochDays = new long[years + 1];
+    final int[] businessDaysBeforeYear = new int[years + 1];
+    final long[] businessDayBits = new long[years * WORDS_PER_YEAR];
+    int businessDays = 0;
+    for (int yearIndex = 0; yearIndex < years; yearIndex++) {
+      final LocalDate yearStart = LocalDate.of(FIRST_YEAR + yearIndex, 1, 1);
+      yearStartEpochDays[yearIndex] = yearStart.toEpochDay();
+      businessDaysBeforeYear[yearIndex] = businessDays;
+      for (int dayOfYear = 0; dayOfYear < yearStart.lengthOfYear(); dayOfYear++) {
+        final LocalDate date = yearStart.plusDays(dayOfYear);
+        if (!weekend.contains(date.getDayOfWeek()) && !holidaySet.contains(date)
+          && !annualHolidaySet.contains(MonthDay.from(date))) {
+          businessDayBits[yearIndex * WORDS_PER_YEAR + (dayOfYear >>> 6)] |= 1L << dayOfYear;
+          businessDays++;
+        }
+      }
+    }
+    yearStartEpochDays[years] = END_EPOCH_DAY;
+    businessDaysBeforeYear[years] = businessDays;
+    return new BusinessCalendar(name, yearStartEpochDays, businessDaysBeforeYear, businessDayBits);
+  }
+
+  /**
+   * @return the name of the calendar.
+   */
+  String getName() {
+    return this.name;
+  }
+
+  /**
+   * @param epochDay a date, as the number of days since the epoch.
+   * @return true if the date is within the range of dates which is indexed, false otherwise.
+   */
+  static boolean isIndexed(long epochDay) {
+    return epochDay >= FIRST_EPOCH_DAY && epochDay < END_EPOCH_DAY;
+  }
+
+  /**
+   * @param epochDay an {@link #isIndexed indexed} date, as the number of days since the epoch.
+   * @return true if the date is a business day, false otherwise.
+   * @throws IllegalArgumentException if the date is not indexed.
+   */
+  boolean isBusinessDay(long epochDay) {
+    requireIndexed(epochDay, "epochDay");
+    final int yearIndex = yearIndex(epochDay);
+    final int dayOfYear = (int) (epochDay - this.yearStartEpochDays[yearIndex]);
+    return (this.businessDayBits[yearIndex * WORDS_PER_YEAR + (dayOfYear >>> 6)] & 1L << dayOfYear) != 0;
+  }
+
+  /**
+   * @param epochDay a date, as the number of days since the epoch.
+   * @return true if the date can bound a range of indexed dates - it's either indexed, or the (exclusive) end of the
+   * indexed range - false otherwise.
+   */
+  static boolean isRangeBoundary(long epochDay) {
+    return epochDay >= FIRST_EPOCH_DAY && epochDay <= END_EPOCH_DAY;
+  }
+
+  /**
+   * @param fromEpochDay the start (inclusive) of a range of {@link #isIndexed indexed} dates.
+   * @param toEpochDay the end (exclusive) of a range of {@link #isIndexed indexed} dates, which may be the end of the
+   * indexed range.
+   * @return the no. of business days in the range. Negative if the end date is before the start date.
+   * @throws IllegalArgumentException if either date is not a {@link #isRangeBoundary range boundary}.
+   */
+  long countBusinessDays(long fromEpochDay, long toEpochDay) {
+    requireRangeBoundary(fromEpochDay, "fromEpochDay");
+    requireRangeBoundary(toEpochDay, "toEpochDay");
+    return businessDaysBefore(toEpochDay) - businessDaysBefore(fromEpochDay);
+  }
+
+  /**
+   * @param epochDay an {@link #isIndexed indexed} date, as the number of days since the epoch.
+   * @param days the no. of business days to add. A negative value subtracts business days.
+   * @return the business day which is the given no. of business days after (or before) the date, or the date itself
+   * if the no. of days is zero.
+   * @throws IllegalArgumentException if the date is not indexed, or the result would be outside of the indexed range.
+   */
+  long addBusinessDays(long epochDay, long days) {
+    requireIndexed(epochDay, "epochDay");
+    if (days == 0) {
+      return epochDay;
+    }
+    // Business days are ranked from zero, from the first indexed date. Find the rank of the required business day
+    final long rank = days > 0 ? businessDaysBefore(epochDay + 1) + days - 1 : businessDaysBefore(epochDay) + days;
+    if (rank < 0 || rank >= this.businessDaysBeforeYear[this.businessDaysBeforeYear.length - 1]) {
+      throw new IllegalArgumentException("Adding [" + days + "] business days to epoch day [" + epochDay
+        + "] results in a date outside of the range of indexed dates, in calendar [" + this.name + "].");
+    }
+    return selectBusinessDay((int) rank);
+  }
+
+  /**
+   * @return the no. of business days from the first indexed date up to (excluding) the supplied date, which may be
+   * the end of the indexed range.
+   */
+  private int businessDaysBefore(long epochDay) {
+    if (epochDay == END_EPOCH_DAY) {
+      return this.businessDaysBeforeYear[this.businessDaysBeforeYear.length - 1];
+    }
+    final int yearIndex = yearIndex(epochDay);
+    final int dayOfYear = (int) (epochDay - this.yearStartEpochDays[yearIndex]);
+    final int firstWord = yearIndex * WORDS_PER_YEAR;
+    final int wholeWords = dayOfYear >>> 6;
+    int count = this.businessDaysBeforeYear[yearIndex];
+    for (int i = 0; i < wholeWords; i++) {
+      count += Long.bitCount(this.businessDayBits[firstWord + i]);
+    }
+    final int remainingDays = dayOfYear & 63;
+    if (remainingDays > 0) {
+      count += Long.bitCount(this.businessDayBits[firstWord + wholeWords] & ((1L << remainingDays) - 1));
+    }
+    return count;
+  }
+
+  /**
+   * @return the business day of the supplied rank, i.e. which has the supplied no. of business days before it.
+   */
+  private long selectBusinessDay(int rank) {
+    // Find the year, as the last whose cumulative count doesn't exceed the rank. Years with no business days have the
+    // same count as the following year, so search for the last rather than any match
+    int yearIndex = Arrays.binarySearch(this.businessDaysBeforeYear, rank);
+    if (yearIndex < 0) {
+      yearIndex = -yearIndex - 2;
+    }
+    while (yearIndex + 1 < this.businessDaysBeforeYear.length - 1
+      && this.businessDaysBeforeYear[yearIndex + 1] <= rank) {
+      yearIndex++;
+    }
+    int remaining = rank - this.businessDaysBeforeYear[yearIndex];
+    final int firstWord = yearIndex * WORDS_PER_YEAR;
+    for (int i = 0; i < WORDS_PER_YEAR; i++) {
+      long word = this.businessDayBits[firstWord + i];
+      final int count = Long.bitCount(word);
+      if (remaining < count) {
+        // Clear the lowest set bits, until the required one is the lowest
+        for (; remaining > 0; remaining--) {
+          word &= word - 1;
+        }
+        return this.yearStartEpochDays[yearIndex] + i * 64 + Long.numberOfTrailingZeros(word);
+      }
+      remaining -= count;
+    }
+    throw new IllegalStateException("Business day of rank [" + rank + "] not found in calendar [" + this.name + "].");
+  }
+
+  /**
+   * @return the index of the year of an indexed date. Estimated from the mean length of a year, and then corrected.
+   */
+  private int yearIndex(long epochDay) {
+    int yearIndex = (int) ((epochDay - FIRST_EPOCH_DAY) * 400 / DAYS_PER_400_YEAR_CYCLE);
+    while (epochDay < this.yearStartEpochDays[yearIndex]) {
+      yearIndex--;
+    }
+    while (epochDay >= this.yearStartEpochDays[yearIndex + 1]) {
+      yearIndex++;
+    }
+    return yearIndex;
+  }
+
+  private static void requireIndexed(long epochDay, String argName) {
+    if (!isIndexed(epochDay)) {
+      throw new IllegalArgumentException("Arg '" + argName + "' must be between [" + FIRST_EPOCH_DAY + "] (inclusive)"
+        + " and [" + END_EPOCH_DAY + "] (exclusive), not [" + epochDay + "].");
+    }
+  }
+
+  private static void requireRangeBoundary(long epochDay, String argName) {
+    if (!isRangeBoundary(epochDay)) {
+      throw new IllegalArgumentException("Arg '" + argName + "' must be between [" + FIRST_EPOCH_DAY + "] and ["
+        + END_EPOCH_DAY + "] (both inclusive), not [" + epochDay + "].");
+    }
+  }
+}
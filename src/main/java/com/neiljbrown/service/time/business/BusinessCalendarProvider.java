@@ -0,0 +1,77 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+/**
+ * Provides a local business API for business-day computations, such as settlement date calculations, against one of a
+ * set of named business calendars, each of which defines which days are business days, e.g. weekdays other than
+ * public holidays.
+ * <p>
+ * Dates are expressed as a number of days since the epoch of 1970-01-01, i.e. {@link java.time.LocalDate#toEpochDay()},
+ * and are dates in the UTC time-zone, consistent with the platform time returned by {@link PlatformDateTimeProvider},
+ * e.g. the current date is {@code Math.floorDiv(platformDateTimeProvider.getEpochSecond(), 86400)}.
+ */
+public interface BusinessCalendarProvider {
+
+  /**
+   * @param calendar the name of a business calendar, e.g. "target".
+   * @return true if the calendar is supported, false otherwise.
+   */
+  boolean isSupportedCalendar(String calendar);
+
+  /**
+   * @param epochDay a date, as the number of days since the epoch.
+   * @return true if the date is within the range of dates supported by all calendars, false otherwise.
+   */
+  boolean isSupportedDate(long epochDay);
+
+  /**
+   * @param calendar the name of a {@link #isSupportedCalendar supported} business calendar.
+   * @param epochDay a {@link #isSupportedDate supported} date, as the number of days since the epoch.
+   * @return true if the date is a business day in the calendar, false otherwise.
+   * @throws IllegalArgumentException if the calendar or date is not supported.
+   */
+  boolean isBusinessDay(String calendar, long epochDay);
+
+  /**
+   * Adds (or subtracts) a number of business days to a date. The result is the business day which is the given number
+   * of business days after (or before) the date, e.g. adding 1 business day to a Friday, which is followed by a
+   * weekend, returns the following Monday, if it's a business day. The date itself needn't be a business day.
+   *
+   * @param calendar the name of a {@link #isSupportedCalendar supported} business calendar.
+   * @param epochDay a {@link #isSupportedDate supported} date, as the number of days since the epoch.
+   * @param days the no. of business days to add. A negative value subtracts business days. If zero, the date is
+   * returned unchanged.
+   * @return the resulting date, as the number of days since the epoch.
+   * @throws IllegalArgumentException if the calendar or date is not supported, or the result is outside of the range
+   * of supported dates.
+   */
+  long addBusinessDays(String calendar, long epochDay, long days);
+
+  /**
+   * Counts the number of business days in a range of dates.
+   *
+   * @param calendar the name of a {@link #isSupportedCalendar supported} business calendar.
+   * @param fromEpochDay the start (inclusive) of the range, as a {@link #isSupportedDate supported} number of days
+   * since the epoch.
+   * @param toEpochDay the end (exclusive) of the range, as a {@link #isSupportedDate supported} number of days since
+   * the epoch, or the day after the last supported date.
+   * @return the no. of business days from the start date (inclusive) to the end date (exclusive). Negative if the end
+   * date is before the start date.
+   * @throws IllegalArgumentException if the calendar or either date is not supported.
+   */
+  long countBusinessDays(String calendar, long fromEpochDay, long toEpochDay);
+}
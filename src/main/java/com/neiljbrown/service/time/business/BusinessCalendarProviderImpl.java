@@ -0,0 +1,206 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+/**
+ * A POJO implementation of {@link BusinessCalendarProvider} for use in production, which answers queries using a
+ * {@link BusinessCalendar} compiled for each named calendar.
+ * <p>
+ * Calendars are loaded, and compiled, on creation, from a configurable set of local files, or classpath resources.
+ * The name of each calendar is the name of its file, excluding its extension, e.g. target.calendar defines the
+ * 'target' calendar, and may only contain letters, digits, '-' and '_'. Each file is a text file (UTF-8), with one
+ * entry per line, comprising -
+ * <br>
+ * - weekend: DAY[, DAY]... - The days of the week which are not business days, e.g. weekend: SATURDAY, SUNDAY.
+ * Optional. If not specified, defaults to Saturday and Sunday.
+ * <br>
+ * - yyyy-MM-dd - A date which is a holiday (not a business day), e.g. 2019-04-19.
+ * <br>
+ * - --MM-dd - A day of the year which is a holiday in every year, e.g. --12-25.
+ * <br>
+ * - easter[+|-]N - A day relative to (Western) Easter Sunday which is a holiday in every year, e.g. easter-2 for Good
+ * Friday, or easter+1 for Easter Monday. Easter is computed for each year, so moveable feasts needn't be listed.
+ * <p>
+ * Blank lines, and comments, from '#' to the end of the line, are ignored.
+ * <p>
+ * Dates are supported from 1900-01-01 to 2099-12-31.
+ * <p>
+ * Thread-safe.
+ */
+@Service
+public class BusinessCalendarProviderImpl implements BusinessCalendarProvider {
+
+  private static final String WEEKEND_PREFIX = "weekend:";
+  private static final String ANNUAL_HOLIDAY_PREFIX = "--";
+  private static final Pattern EASTER_HOLIDAY = Pattern.compile("easter([+-]\\d{1,3})?");
+  private static final Pattern CALENDAR_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+  private static final Logger logger = LoggerFactory.getLogger(BusinessCalendarProviderImpl.class);
+
+  private final Map<String, BusinessCalendar> calendarsByName;
+
+  /**
+   * @param calendarResources the files (or classpath resources) from which the calendars are loaded.
+   * @throws IllegalArgumentException if a file's name or content is invalid, or two files define the same calendar.
+   * @throws UncheckedIOException if a file can't be read.
+   */
+  public BusinessCalendarProviderImpl(
+    @Value("${business-calendar.locations:classpath*:calendars/*.calendar}") Resource[] calendarResources) {
+    final Map<String, BusinessCalendar> calendarsByName = new HashMap<>();
+    for (Resource resource : calendarResources) {
+      final BusinessCalendar calendar = load(resource);
+      if (calendarsByName.putIfAbsent(calendar.getName(), calendar) != null) {
+        throw new IllegalArgumentException("Duplicate business calendar [" + calendar.getName() + "] in [" + resource
+          + "].");
+      }
+    }
+    this.calendarsByName = Collections.unmodifiableMap(calendarsByName);
+    logger.info("Loaded business calendars {}.", this.calendarsByName.keySet());
+  }
+
+  @Override
+  public boolean isSupportedCalendar(String calendar) {
+    return this.calendarsByName.containsKey(calendar);
+  }
+
+  @Override
+  public boolean isSupportedDate(long epochDay) {
+    return BusinessCalendar.isIndexed(epochDay);
+  }
+
+  @Override
+  public boolean isBusinessDay(String calendar, long epochDay) {
+    return getCalendar(calendar).isBusinessDay(epochDay);
+  }
+
+  @Override
+  public long addBusinessDays(String calendar, long epochDay, long days) {
+    return getCalendar(calendar).addBusinessDays(epochDay, days);
+  }
+
+  @Override
+  public long countBusinessDays(String calendar, long fromEpochDay, long toEpochDay) {
+    return getCalendar(calendar).countBusinessDays(fromEpochDay, toEpochDay);
+  }
+
+  private BusinessCalendar getCalendar(String calendar) {
+    final BusinessCalendar businessCalendar = this.calendarsByName.get(calendar);
+    if (businessCalendar == null) {
+      throw new IllegalArgumentException("Unsupported business calendar [" + calendar + "].");
+    }
+    return businessCalendar;
+  }
+
+  private static BusinessCalendar load(Resource resource) {
+    final String filename = resource.getFilename() != null ? resource.getFilename() : "";
+    final String name = filename.lastIndexOf('.') > 0 ? filename.substring(0, filename.lastIndexOf('.')) : filename;
+    if (!CALENDAR_NAME.matcher(name).matches()) {
+      throw new IllegalArgumentException("Invalid business calendar name [" + name + "] in [" + resource + "]. May "
+        + "only contain letters, digits, '-' and '_'.");
+    }
+    Set<DayOfWeek> weekend = EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY);
+    final List<LocalDate> holidays = new ArrayList<>();
+    final List<MonthDay> annualHolidays = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(
+      new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+      int lineNumber = 0;
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        lineNumber++;
+        final int commentStart = line.indexOf('#');
+        final String entry = (commentStart >= 0 ? line.substring(0, commentStart) : line).trim();
+        if (entry.isEmpty()) {
+          continue;
+        }
+        try {
+          if (entry.startsWith(WEEKEND_PREFIX)) {
+            weekend = EnumSet.noneOf(DayOfWeek.class);
+            for (String day : entry.substring(WEEKEND_PREFIX.length()).split("[,\\s]+")) {
+              if (!day.isEmpty()) {
+                weekend.add(DayOfWeek.valueOf(day.toUpperCase(Locale.ROOT)));
+              }
+            }
+          } else if (EASTER_HOLIDAY.matcher(entry).matches()) {
+            final int daysFromEaster = entry.length() > "easter".length()
+              ? Integer.parseInt(entry.substring("easter".length())) : 0;
+            for (int year = BusinessCalendar.FIRST_YEAR; year < BusinessCalendar.END_YEAR; year++) {
+              holidays.add(easterSunday(year).plusDays(daysFromEaster));
+            }
+          } else if (entry.startsWith(ANNUAL_HOLIDAY_PREFIX)) {
+            annualHolidays.add(MonthDay.parse(entry));
+          } else {
+            holidays.add(LocalDate.parse(entry));
+          }
+        } catch (DateTimeException | IllegalArgumentException e) {
+          throw new IllegalArgumentException("Invalid entry [" + entry + "] at line [" + lineNumber + "] of business "
+            + "calendar [" + resource + "].", e);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read business calendar [" + resource + "].", e);
+    }
+    return BusinessCalendar.compile(name, weekend, holidays, annualHolidays);
+  }
+
+  /**
+   * Computes the date of (Western) Easter Sunday in the Gregorian calendar, using the anonymous Gregorian algorithm
+   * (Meeus/Jones/Butcher).
+   *
+   * @param year the year.
+   * @return the date of Easter Sunday in the year.
+   */
+  static LocalDate easterSunday(int year) {
+    final int a = year % 19;
+    final int b = year / 100;
+    final int c = year % 100;
+    final int d = b / 4;
+    final int e = b % 4;
+    final int f = (b + 8) / 25;
+    final int g = (b - f + 1) / 3;
+    final int h = (19 * a + b - d - g + 15) % 30;
+    final int i = c / 4;
+    final int k = c % 4;
+    final int l = (32 + 2 * e + 2 * i - h - k) % 7;
+    final int m = (a + 11 * h + 22 * l) / 451;
+    final int month = (h + l - 7 * m + 114) / 31;
+    final int day = (h + l - 7 * m + 114) % 31 + 1;
+    return LocalDate.of(year, month, day);
+  }
+}
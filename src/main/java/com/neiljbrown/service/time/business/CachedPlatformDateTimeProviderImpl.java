@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * An implementation of {@link PlatformDateTimeProvider} for use in production, which serves a cached, coarse-grained
+ * copy of the platform time, to a configurable resolution, e.g. 1 millisecond or 1 second.
+ * <p>
+ * A background 'ticker' thread reads a {@link Clock} once per period of the configured resolution, and publishes the
+ * time to a volatile field. Retrieving the platform time is therefore reduced to a read of that field, rather than a
+ * read of the clock and allocation of a new {@link Instant} on every call. Each tick is scheduled for the start of the
+ * next period of the clock's time (e.g. the start of the next second, for a resolution of 1 second), rather than at a
+ * fixed rate, so that ticks stay aligned to the clock, and the time published isn't truncated, so that it isn't
+ * behind the clock when it's published. The returned time therefore lags the clock by at most the resolution (plus
+ * any delay in scheduling the ticker thread).
+ * <p>
+ * Selected as the implementation of {@link PlatformDateTimeProvider} by setting the application property
+ * 'platform-date-time-provider.type' to 'cached'.
+ * <p>
+ * Thread-safe.
+ */
+@Service
+@ConditionalOnProperty(name = "platform-date-time-provider.type", havingValue = "cached")
+public class CachedPlatformDateTimeProviderImpl implements PlatformDateTimeProvider {
+
+  private final Clock clock;
+  private final long resolutionMillis;
+  private final ScheduledExecutorService ticker;
+  private volatile Instant dateTime;
+
+  /**
+   * Creates an instance that uses the node's system clock as the source of the platform time.
+   *
+   * @param resolutionMillis the resolution, in milliseconds, of the cached platform time, and the period at which it
+   * is updated. Must be greater than zero.
+   */
+  @Autowired
+  public CachedPlatformDateTimeProviderImpl(
+    @Value("${platform-date-time-provider.cached.resolution-millis:1}") long resolutionMillis) {
+    this(Clock.systemUTC(), resolutionMillis);
+  }
+
+  /**
+   * Creates an instance that uses the supplied {@link Clock} as the source of the platform time.
+   * <p>
+   * Only provided to aid testing by allowing a {@link Clock#fixed fixed Clock} to be used where a static time is
+   * needed.
+   *
+   * @param clock a {@link Clock}. Must be configured with a time zone of UTC.
+   * @param resolutionMillis the resolution, in milliseconds, of the cached platform time, and the period at which it
+   * is updated. Must be greater than zero.
+   */
+  CachedPlatformDateTimeProviderImpl(Clock clock, long resolutionMillis) {
+    this.clock = Clocks.requireUtc(clock);
+    if (resolutionMillis <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'resolutionMillis' must be greater than zero, not [" + resolutionMillis + "].");
+    }
+    this.resolutionMillis = resolutionMillis;
+    this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "platform-clock-ticker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    tick();
+  }
+
+  @Override
+  public Instant getDateTime() {
+    return this.dateTime;
+  }
+
+  @Override
+  public long getEpochMilli() {
+    return this.dateTime.toEpochMilli();
+  }
+
+  @Override
+  public long getEpochSecond() {
+    return this.dateTime.getEpochSecond();
+  }
+
+  /**
+   * Stops the background thread which updates the cached platform time. Invoked by the Spring container on shutdown.
+   */
+  @PreDestroy
+  public void shutdown() {
+    this.ticker.shutdownNow();
+  }
+
+  /**
+   * Publishes the clock's time, and schedules the next tick for the start of the next period of the resolution.
+   */
+  private void tick() {
+    final long epochMilli = this.clock.millis();
+    this.dateTime = Instant.ofEpochMilli(epochMilli);
+    try {
+      this.ticker.schedule(this::tick, this.resolutionMillis - Math.floorMod(epochMilli, this.resolutionMillis),
+        TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // Shut down
+    }
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.io.IOException;
+
+/**
+ * Makes a {@link ScheduledCallback callback} when it's due. Decouples a {@link CallbackScheduler} from the transport.
+ */
+interface CallbackDispatcher {
+
+  /**
+   * Makes a callback, blocking until it's been made, or has failed.
+   *
+   * @param callback the callback.
+   * @param firedEpochMilli the platform time at which the callback fired, as a number of milliseconds since the epoch.
+   * @throws IOException if the callback failed, e.g. the webhook couldn't be reached, or didn't respond successfully.
+   */
+  void dispatch(ScheduledCallback callback, long firedEpochMilli) throws IOException;
+}
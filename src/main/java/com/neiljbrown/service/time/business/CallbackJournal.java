@@ -0,0 +1,278 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal, in a local file, of the callbacks scheduled by a {@link CallbackScheduler}, from which
+ * the pending callbacks are recovered on a restart.
+ * <p>
+ * The journal is a text file with a record per line, either -
+ * <br>
+ * - S [id] [fire epoch milli] [url] - A callback was scheduled.
+ * <br>
+ * - D [id] - A callback was done - made or cancelled.
+ * <p>
+ * Replaying the records in order yields the pending callbacks. A partially written (torn) record, e.g. the last one,
+ * following a crash, is ignored. The journal is compacted by rewriting it to contain only the pending callbacks, to a
+ * temporary file, which then atomically replaces it.
+ * <p>
+ * A compaction of a journal which is in use is made without blocking appends whilst the bulk of it is written - the
+ * pending callbacks are snapshotted, and the journal's length {@link #markSnapshot() marked}, the snapshot is then
+ * {@link #compact(Collection, long) written} to the temporary file, to which the (few) records appended since the mark
+ * are then copied, before it replaces the journal.
+ * <p>
+ * Records are flushed to the OS as they're appended, so they survive a crash of the service, but aren't forced
+ * (synced) to the disk, except on compaction, as that would limit the rate at which callbacks can be scheduled.
+ * <p>
+ * Thread-safe.
+ */
+final class CallbackJournal implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(CallbackJournal.class);
+
+  private final Path path;
+  private Writer writer;
+  private long doneRecordCount;
+  private long snapshotDoneRecordCount;
+
+  /**
+   * @param path the path of the journal file. Its parent directory is created if it doesn't exist.
+   * @throws IOException if the journal's directory can't be created.
+   */
+  CallbackJournal(Path path) throws IOException {
+    this.path = path.toAbsolutePath();
+    Files.createDirectories(this.path.getParent());
+  }
+
+  /**
+   * Replays the journal, if it exists.
+   *
+   * @return the pending callbacks, keyed by ID, in order of scheduling.
+   * @throws IOException if the journal can't be read.
+   */
+  synchronized Map<Long, ScheduledCallback> replay() throws IOException {
+    final Map<Long, ScheduledCallback> pending = new LinkedHashMap<>();
+    if (!Files.exists(this.path)) {
+      return pending;
+    }
+    int invalidRecordCount = 0;
+    try (BufferedReader reader = Files.newBufferedReader(this.path, StandardCharsets.US_ASCII)) {
+      String record;
+      while ((record = reader.readLine()) != null) {
+        try {
+          final String[] fields = record.split(" ");
+          if (fields.length == 4 && fields[0].equals("S")) {
+            final long id = Long.parseLong(fields[1]);
+            pending.put(id, new ScheduledCallback(id, Long.parseLong(fields[2]), new URI(fields[3])));
+          } else if (fields.length == 2 && fields[0].equals("D")) {
+            pending.remove(Long.parseLong(fields[1]));
+          } else {
+            invalidRecordCount++;
+          }
+        } catch (NumberFormatException | URISyntaxException e) {
+          invalidRecordCount++;
+        }
+      }
+    }
+    if (invalidRecordCount > 0) {
+      logger.warn("Ignored [{}] invalid records in callback journal [{}].", invalidRecordCount, this.path);
+    }
+    return pending;
+  }
+
+  /**
+   * Rewrites the journal to contain only the supplied pending callbacks, and (re)opens it for appending.
+   *
+   * @param pending the pending callbacks.
+   * @throws IOException if the journal can't be written.
+   */
+  synchronized void rewrite(Collection<ScheduledCallback> pending) throws IOException {
+    if (this.writer != null) {
+      this.writer.close();
+      this.writer = null;
+    }
+    final Path tempPath = writeTemp(pending);
+    forceTemp(tempPath);
+    replaceWithTemp(tempPath);
+    this.doneRecordCount = 0;
+  }
+
+  /**
+   * Marks the point in the journal at which the pending callbacks are snapshotted, for a subsequent
+   * {@link #compact(Collection, long) compaction}. Must be called whilst no records are being appended for the
+   * callbacks in the snapshot, e.g. whilst holding the lock which guards them.
+   *
+   * @return the length of the journal, in bytes, once all the records appended so far have been flushed.
+   * @throws IOException if the journal can't be flushed, or its length read.
+   */
+  synchronized long markSnapshot() throws IOException {
+    requireOpen().flush();
+    this.snapshotDoneRecordCount = this.doneRecordCount;
+    return Files.size(this.path);
+  }
+
+  /**
+   * Compacts the journal to contain the supplied snapshot of the pending callbacks, followed by the records appended
+   * since the snapshot was {@link #markSnapshot() marked}. Records can continue to be appended whilst the snapshot is
+   * written. They're only blocked whilst those appended since the mark are copied, and the journal replaced.
+   * <p>
+   * Must not be called concurrently with another compaction, or a {@link #rewrite(Collection) rewrite}.
+   *
+   * @param snapshot the pending callbacks, when the snapshot was marked.
+   * @param snapshotLength the length of the journal when the snapshot was marked.
+   * @throws IOException if the journal can't be written.
+   */
+  void compact(Collection<ScheduledCallback> snapshot, long snapshotLength) throws IOException {
+    final Path tempPath = writeTemp(snapshot);
+    forceTemp(tempPath);
+    synchronized (this) {
+      requireOpen().flush();
+      try (InputStream in = Files.newInputStream(this.path);
+           OutputStream out = Files.newOutputStream(tempPath, StandardOpenOption.APPEND)) {
+        long skipped = 0;
+        while (skipped < snapshotLength) {
+          final long count = in.skip(snapshotLength - skipped);
+          if (count <= 0) {
+            throw new IOException("Callback journal [" + this.path + "] is shorter than its snapshot.");
+          }
+          skipped += count;
+        }
+        final byte[] buffer = new byte[8192];
+        for (int read; (read = in.read(buffer)) >= 0; ) {
+          out.write(buffer, 0, read);
+        }
+      }
+      forceTemp(tempPath);
+      this.writer.close();
+      this.writer = null;
+      replaceWithTemp(tempPath);
+      this.doneRecordCount -= this.snapshotDoneRecordCount;
+      this.snapshotDoneRecordCount = 0;
+    }
+  }
+
+  /**
+   * Appends a record of a scheduled callback, and flushes it.
+   *
+   * @param callback the callback.
+   * @throws IOException if the record can't be written.
+   */
+  synchronized void appendScheduled(ScheduledCallback callback) throws IOException {
+    writeScheduled(requireOpen(), callback);
+    this.writer.flush();
+  }
+
+  /**
+   * Appends records of callbacks which are done, and flushes them.
+   *
+   * @param ids the IDs of the callbacks.
+   * @throws IOException if the records can't be written.
+   */
+  synchronized void appendDone(long... ids) throws IOException {
+    final Writer writer = requireOpen();
+    for (long id : ids) {
+      writer.write("D ");
+      writer.write(Long.toString(id));
+      writer.write('\n');
+    }
+    writer.flush();
+    this.doneRecordCount += ids.length;
+  }
+
+  /**
+   * @return the no. of records of callbacks which are done, appended since the journal was last rewritten. Used to
+   * decide when to compact the journal.
+   */
+  synchronized long getDoneRecordCount() {
+    return this.doneRecordCount;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (this.writer != null) {
+      this.writer.close();
+      this.writer = null;
+    }
+  }
+
+  private Writer requireOpen() {
+    if (this.writer == null) {
+      throw new IllegalStateException("Callback journal [" + this.path + "] isn't open.");
+    }
+    return this.writer;
+  }
+
+  private Path writeTemp(Collection<ScheduledCallback> pending) throws IOException {
+    final Path tempPath = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+    try (Writer tempWriter = Files.newBufferedWriter(tempPath, StandardCharsets.US_ASCII)) {
+      for (ScheduledCallback callback : pending) {
+        writeScheduled(tempWriter, callback);
+      }
+    }
+    return tempPath;
+  }
+
+  private static void forceTemp(Path tempPath) throws IOException {
+    try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Atomically replaces the journal with the temporary file, and (re)opens it for appending - the existing journal,
+   * if it can't be replaced.
+   */
+  private void replaceWithTemp(Path tempPath) throws IOException {
+    try {
+      Files.move(tempPath, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      this.writer = Files.newBufferedWriter(this.path, StandardCharsets.US_ASCII, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+  }
+
+  private static void writeScheduled(Writer writer, ScheduledCallback callback) throws IOException {
+    writer.write("S ");
+    writer.write(Long.toString(callback.getId()));
+    writer.write(' ');
+    writer.write(Long.toString(callback.getFireEpochMilli()));
+    writer.write(' ');
+    writer.write(callback.getUrl().toASCIIString());
+    writer.write('\n');
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.net.URI;
+
+/**
+ * Provides a local business API for scheduling callbacks - HTTP POSTs to a client's webhook URL - to be made at a
+ * platform time, and cancelling them, for clients which would otherwise each schedule their own timers against the
+ * platform time.
+ * <p>
+ * Each pending callback is attempted at least once, at or shortly after its scheduled time, including after a
+ * restart of the service. A callback to which the webhook doesn't respond successfully isn't retried.
+ */
+public interface CallbackScheduler {
+
+  /**
+   * Schedules a callback.
+   *
+   * @param fireEpochMilli the platform time at which the callback is to be made, as a number of milliseconds since the
+   * epoch. A time in the past is made as soon as possible.
+   * @param url the URL of the webhook to which the callback is made. Must be an absolute http or https URL, whose
+   * host is allowed, and resolves only to public addresses.
+   * @return the scheduled callback, including its ID.
+   * @throws CallbackUrlNotPermittedException if the URL isn't permitted, which may be the case even if it was
+   * previously reported as {@link #isPermittedUrl permitted}, as its host is resolved again.
+   * @throws IllegalArgumentException if the time is too far in the future.
+   * @throws IllegalStateException if the max no. of pending callbacks would be exceeded.
+   */
+  ScheduledCallback schedule(long fireEpochMilli, URI url);
+
+  /**
+   * @param url the URL of a webhook.
+   * @return true if callbacks can be made to the URL - it's an absolute http or https URL, whose host is allowed, and
+   * resolves only to public addresses - false otherwise.
+   */
+  boolean isPermittedUrl(URI url);
+
+  /**
+   * @param id the ID of a callback.
+   * @return the callback, if it's pending (scheduled, and neither made nor cancelled), else null.
+   */
+  ScheduledCallback getPendingCallback(long id);
+
+  /**
+   * Cancels a pending callback.
+   *
+   * @param id the ID of the callback.
+   * @return true if the callback was pending, and has been cancelled, false otherwise.
+   */
+  boolean cancel(long id);
+
+  /**
+   * @return the no. of pending callbacks.
+   */
+  int getPendingCount();
+}
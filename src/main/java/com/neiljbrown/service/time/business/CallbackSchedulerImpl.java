@@ -0,0 +1,501 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * An implementation of {@link CallbackScheduler} for use in production, which holds the pending callbacks in a
+ * {@link TimingWheel hierarchical timing wheel}, journals them to a local file, and makes them as HTTP webhooks.
+ * <p>
+ * Scheduling and cancelling a callback are O(1), regardless of the no. of pending callbacks - a timer is linked into,
+ * or unlinked from, a bucket of the wheel, and a record appended to the {@link CallbackJournal journal}. A background
+ * 'ticker' thread advances the wheel to the platform time once per tick (e.g. 10 milliseconds), which costs O(1) per
+ * tick, plus O(1) per expiring callback, and so a callback is made up to a tick after its scheduled time. The expired
+ * callbacks are dispatched in batches, as tasks on a bounded pool of threads, so that a slow webhook holds up neither
+ * the ticker, nor more than its own batch. If the pool's queue is full, the batch is rescheduled for a retry a second
+ * later.
+ * <p>
+ * A callback is journaled as done once it's been attempted, or cancelled. On creation, the pending callbacks are
+ * recovered by replaying the journal, which is then compacted, as it is when the no. of records of done callbacks
+ * exceeds the no. of pending callbacks (or a min). The latter compaction takes a snapshot of the pending callbacks on
+ * the ticker thread, but writes it on a separate thread, so neither the ticks, nor scheduling, wait for it. The
+ * snapshot includes the callbacks which have expired, but are yet to be journaled as done (are in flight), e.g. as
+ * they're queued for dispatch, so that they're still made after a restart. Callbacks which were due whilst the service
+ * was down are made straight away.
+ * <p>
+ * To stop callbacks being used to reach internal services (server-side request forgery), a callback can only be made
+ * to one of a non-empty list of allowed hosts, and only if none of the addresses to which the host resolves is a
+ * loopback, link-local, site-local (private), unique local, wildcard or multicast address. The host is resolved, and
+ * checked, both when a callback is scheduled and again just before it's made, as its DNS record may have changed.
+ * <p>
+ * Only enabled when the callback-scheduler.enabled property is true.
+ * <p>
+ * Thread-safe. The wheel and indexes of pending and in flight callbacks are guarded by the lock on this object.
+ */
+@Service
+@ConditionalOnProperty(name = "callback-scheduler.enabled", havingValue = "true")
+public class CallbackSchedulerImpl implements CallbackScheduler {
+
+  private static final Logger logger = LoggerFactory.getLogger(CallbackSchedulerImpl.class);
+
+  /** Min no. of records of done callbacks in the journal before it's compacted. */
+  private static final long MIN_COMPACTION_DONE_RECORDS = 100_000;
+
+  /** Delay before retrying a batch of callbacks which couldn't be dispatched as the pool's queue was full. */
+  private static final long REJECTED_RETRY_DELAY_MILLIS = 1000;
+
+  private final PlatformDateTimeProvider platformDateTimeProvider;
+  private final TimeOrderedIdGenerator timeOrderedIdGenerator;
+  private final CallbackDispatcher callbackDispatcher;
+  private final CallbackJournal journal;
+  private final long tickMillis;
+  private final int maxPending;
+  private final long maxDelayMillis;
+  private final Set<String> allowedHosts;
+  private final HostResolver hostResolver;
+  private final int batchSize;
+  private final TimingWheel<ScheduledCallback> wheel;
+  private final Map<Long, TimingWheel.Timer<ScheduledCallback>> pending = new HashMap<>();
+  /** Callbacks which have expired, but aren't yet journaled as done, keyed by ID. */
+  private final Map<Long, ScheduledCallback> inFlight = new HashMap<>();
+  private final ScheduledExecutorService ticker;
+  private final ThreadPoolExecutor dispatchExecutor;
+  private final ExecutorService compactor;
+
+  /** Whether a compaction of the journal is in progress. Guarded by the lock on this object. */
+  private boolean compacting;
+
+  /** Callbacks which expired on the current tick. Only accessed by the ticker thread. */
+  private final List<ScheduledCallback> expired = new ArrayList<>();
+  private final Consumer<ScheduledCallback> expiredConsumer = this.expired::add;
+
+  /**
+   * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to obtain current platform
+   * date/time.
+   * @param timeOrderedIdGenerator instance of {@link TimeOrderedIdGenerator} used to issue the IDs of callbacks.
+   * @param journalPath the path of the file in which callbacks are journaled.
+   * @param tickMillis the resolution, in milliseconds, of the wheel, and the period at which it's advanced. Must be
+   * greater than zero.
+   * @param maxPending the max no. of pending callbacks. Must be greater than zero.
+   * @param maxDelayMillis the max time, in milliseconds, ahead of the platform time, for which a callback can be
+   * scheduled. Must be greater than zero.
+   * @param allowedHosts comma separated list of the hosts to which callbacks can be made. Must not be empty.
+   * @param dispatchThreads the no. of threads which make callbacks. Must be greater than zero.
+   * @param dispatchQueueCapacity the max no. of batches of callbacks queued for a dispatch thread. Must be greater
+   * than zero.
+   * @param batchSize the max no. of callbacks dispatched in a batch, by a single task. Must be greater than zero.
+   * @param connectTimeoutMillis the max time to wait to connect to a webhook, in milliseconds.
+   * @param readTimeoutMillis the max time to wait for a webhook to respond, in milliseconds.
+   * @throws IOException if the journal can't be replayed, or compacted.
+   */
+  @Autowired
+  public CallbackSchedulerImpl(PlatformDateTimeProvider platformDateTimeProvider,
+    TimeOrderedIdGenerator timeOrderedIdGenerator,
+    @Value("${callback-scheduler.journal-path:data/callbacks.journal}") String journalPath,
+    @Value("${callback-scheduler.tick-millis:10}") long tickMillis,
+    @Value("${callback-scheduler.max-pending:1000000}") int maxPending,
+    @Value("${callback-scheduler.max-delay-millis:31622400000}") long maxDelayMillis,
+    @Value("${callback-scheduler.allowed-hosts:}") String allowedHosts,
+    @Value("${callback-scheduler.dispatch-threads:16}") int dispatchThreads,
+    @Value("${callback-scheduler.dispatch-queue-capacity:1000}") int dispatchQueueCapacity,
+    @Value("${callback-scheduler.batch-size:100}") int batchSize,
+    @Value("${callback-scheduler.connect-timeout-millis:1000}") int connectTimeoutMillis,
+    @Value("${callback-scheduler.read-timeout-millis:5000}") int readTimeoutMillis) throws IOException {
+    this(platformDateTimeProvider, timeOrderedIdGenerator,
+      new WebhookCallbackDispatcher(connectTimeoutMillis, readTimeoutMillis), Paths.get(journalPath), tickMillis,
+      maxPending, maxDelayMillis, parseHosts(allowedHosts), InetAddress::getAllByName, dispatchThreads,
+      dispatchQueueCapacity, batchSize);
+  }
+
+  /**
+   * Creates an instance which makes callbacks using the supplied {@link CallbackDispatcher}, and resolves the hosts
+   * of webhooks using the supplied {@link HostResolver}.
+   * <p>
+   * Only provided to aid testing.
+   *
+   * @see #CallbackSchedulerImpl(PlatformDateTimeProvider, TimeOrderedIdGenerator, String, long, int, long, String,
+   * int, int, int, int, int) for the params.
+   */
+  CallbackSchedulerImpl(PlatformDateTimeProvider platformDateTimeProvider,
+    TimeOrderedIdGenerator timeOrderedIdGenerator, CallbackDispatcher callbackDispatcher, Path journalPath,
+    long tickMillis, int maxPending, long maxDelayMillis, Set<String> allowedHosts, HostResolver hostResolver,
+    int dispatchThreads, int dispatchQueueCapacity, int batchSize) throws IOException {
+    this.platformDateTimeProvider = Objects.requireNonNull(platformDateTimeProvider,
+      "Arg 'platformDateTimeProvider' must not be null.");
+    this.timeOrderedIdGenerator = Objects.requireNonNull(timeOrderedIdGenerator,
+      "Arg 'timeOrderedIdGenerator' must not be null.");
+    this.callbackDispatcher = Objects.requireNonNull(callbackDispatcher, "Arg 'callbackDispatcher' must not be null.");
+    this.tickMillis = requirePositive(tickMillis, "tickMillis");
+    this.maxPending = (int) requirePositive(maxPending, "maxPending");
+    this.maxDelayMillis = requirePositive(maxDelayMillis, "maxDelayMillis");
+    if (allowedHosts.isEmpty()) {
+      throw new IllegalArgumentException("Arg 'allowedHosts' must not be empty.");
+    }
+    this.allowedHosts = Collections.unmodifiableSet(new HashSet<>(allowedHosts));
+    this.hostResolver = Objects.requireNonNull(hostResolver, "Arg 'hostResolver' must not be null.");
+    this.batchSize = (int) requirePositive(batchSize, "batchSize");
+    requirePositive(dispatchThreads, "dispatchThreads");
+    requirePositive(dispatchQueueCapacity, "dispatchQueueCapacity");
+
+    this.wheel = new TimingWheel<>(Math.floorDiv(platformDateTimeProvider.getEpochMilli(), tickMillis));
+    this.journal = new CallbackJournal(journalPath);
+    final Map<Long, ScheduledCallback> recovered = this.journal.replay();
+    recovered.values().forEach(this::addToWheel);
+    this.journal.rewrite(recovered.values());
+    logger.info("Recovered [{}] pending callbacks from journal [{}].", recovered.size(), journalPath);
+
+    final AtomicInteger threadCount = new AtomicInteger();
+    this.dispatchExecutor = new ThreadPoolExecutor(dispatchThreads, dispatchThreads, 0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(dispatchQueueCapacity), runnable -> {
+      final Thread thread = new Thread(runnable, "callback-dispatcher-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "callback-journal-compactor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "callback-ticker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public ScheduledCallback schedule(long fireEpochMilli, URI url) {
+    Objects.requireNonNull(url, "Arg 'url' must not be null.");
+    if (!isPermittedUrl(url)) {
+      throw new CallbackUrlNotPermittedException(
+        "Arg 'url' must be an absolute http or https URL, for one of the allowed hosts, not [" + url + "].");
+    }
+    if (fireEpochMilli - this.platformDateTimeProvider.getEpochMilli() > this.maxDelayMillis) {
+      throw new IllegalArgumentException("Arg 'fireEpochMilli' must be no more than [" + this.maxDelayMillis
+        + "] ms after the platform time, not [" + fireEpochMilli + "].");
+    }
+    final ScheduledCallback callback = new ScheduledCallback(this.timeOrderedIdGenerator.nextId(), fireEpochMilli, url);
+    synchronized (this) {
+      if (this.pending.size() >= this.maxPending) {
+        throw new IllegalStateException("Max no. of pending callbacks [" + this.maxPending + "] reached.");
+      }
+      try {
+        this.journal.appendScheduled(callback);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Error journaling callback [" + callback + "].", e);
+      }
+      addToWheel(callback);
+    }
+    return callback;
+  }
+
+  @Override
+  public boolean isPermittedUrl(URI url) {
+    final String scheme = url.getScheme() != null ? url.getScheme().toLowerCase(Locale.ROOT) : null;
+    if (!("http".equals(scheme) || "https".equals(scheme)) || url.getHost() == null) {
+      return false;
+    }
+    return this.allowedHosts.contains(url.getHost().toLowerCase(Locale.ROOT)) && isPublicHost(url.getHost());
+  }
+
+  @Override
+  public synchronized ScheduledCallback getPendingCallback(long id) {
+    final TimingWheel.Timer<ScheduledCallback> timer = this.pending.get(id);
+    return timer != null ? timer.getValue() : null;
+  }
+
+  @Override
+  public synchronized boolean cancel(long id) {
+    final TimingWheel.Timer<ScheduledCallback> timer = this.pending.remove(id);
+    if (timer == null) {
+      return false;
+    }
+    this.wheel.remove(timer);
+    try {
+      this.journal.appendDone(id);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error journaling cancellation of callback [" + id + "].", e);
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized int getPendingCount() {
+    return this.pending.size();
+  }
+
+  /**
+   * Stops advancing the wheel, and making callbacks, waiting briefly for those in progress to complete, and closes the
+   * journal. Callbacks still pending are made on restart. Invoked by the Spring container on shutdown.
+   *
+   * @throws InterruptedException if interrupted whilst waiting for the callbacks in progress to complete.
+   */
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    this.ticker.shutdownNow();
+    this.ticker.awaitTermination(1, TimeUnit.SECONDS);
+    this.dispatchExecutor.shutdown();
+    this.dispatchExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    this.compactor.shutdown();
+    this.compactor.awaitTermination(5, TimeUnit.SECONDS);
+    try {
+      this.journal.close();
+    } catch (IOException e) {
+      logger.warn("Error closing callback journal.", e);
+    }
+  }
+
+  /**
+   * Advances the wheel to the current platform time, and dispatches the callbacks which expire, in batches.
+   */
+  private void tick() {
+    try {
+      // The last whole tick which has elapsed, so that no callback is made before its scheduled time
+      final long nowTick = Math.floorDiv(this.platformDateTimeProvider.getEpochMilli(), this.tickMillis);
+      synchronized (this) {
+        this.wheel.advance(nowTick, this.expiredConsumer);
+        for (ScheduledCallback callback : this.expired) {
+          this.pending.remove(callback.getId());
+          this.inFlight.put(callback.getId(), callback);
+        }
+        if (!this.compacting && this.journal.getDoneRecordCount()
+          > Math.max(this.pending.size() + this.inFlight.size(), MIN_COMPACTION_DONE_RECORDS)) {
+          startJournalCompaction();
+        }
+      }
+      for (int from = 0; from < this.expired.size(); from += this.batchSize) {
+        final List<ScheduledCallback> batch =
+          new ArrayList<>(this.expired.subList(from, Math.min(from + this.batchSize, this.expired.size())));
+        try {
+          this.dispatchExecutor.execute(() -> dispatch(batch));
+        } catch (RejectedExecutionException e) {
+          logger.warn("Callback dispatch queue full. Retrying [{}] callbacks in [{}] ms.", batch.size(),
+            REJECTED_RETRY_DELAY_MILLIS);
+          reschedule(batch, nowTick + Math.max(1, REJECTED_RETRY_DELAY_MILLIS / this.tickMillis));
+        }
+      }
+    } catch (RuntimeException e) {
+      // Caught, as an exception would stop the scheduled ticks
+      logger.warn("Error advancing callback timing wheel.", e);
+    } finally {
+      this.expired.clear();
+    }
+  }
+
+  /**
+   * Makes each of a batch of callbacks, and then journals them as done, whether or not they succeeded.
+   */
+  private void dispatch(List<ScheduledCallback> batch) {
+    final long firedEpochMilli = this.platformDateTimeProvider.getEpochMilli();
+    final long[] ids = new long[batch.size()];
+    for (int i = 0; i < ids.length; i++) {
+      final ScheduledCallback callback = batch.get(i);
+      ids[i] = callback.getId();
+      if (!isPublicHost(callback.getUrl().getHost())) {
+        logger.warn("Callback [{}] not made, as its host no longer resolves to only public addresses.", callback);
+        continue;
+      }
+      try {
+        this.callbackDispatcher.dispatch(callback, firedEpochMilli);
+      } catch (IOException | RuntimeException e) {
+        logger.warn("Callback [{}] failed. {}", callback, e.toString());
+      }
+    }
+    // Journaled under the lock, so that a snapshot includes a callback unless its record of being done precedes it
+    synchronized (this) {
+      try {
+        this.journal.appendDone(ids);
+      } catch (IOException | IllegalStateException e) {
+        // Callbacks not journaled as done are made again on restart
+        logger.warn("Error journaling [{}] callbacks as done.", ids.length, e);
+      }
+      for (long id : ids) {
+        this.inFlight.remove(id);
+      }
+    }
+  }
+
+  private synchronized void reschedule(List<ScheduledCallback> batch, long retryTick) {
+    for (ScheduledCallback callback : batch) {
+      this.inFlight.remove(callback.getId());
+      this.pending.put(callback.getId(), this.wheel.add(retryTick, callback));
+    }
+  }
+
+  /**
+   * Compacts the journal now, unless a compaction is already in progress, and waits for it to complete.
+   * <p>
+   * Only provided to aid testing.
+   *
+   * @throws Exception if interrupted whilst waiting, or the compactor has been shut down.
+   */
+  void compactJournalNow() throws Exception {
+    synchronized (this) {
+      if (!this.compacting) {
+        startJournalCompaction();
+      }
+    }
+    this.compactor.submit(() -> { }).get();
+  }
+
+  /**
+   * Snapshots the pending and in flight callbacks, and starts compacting the journal to them, on the compactor thread.
+   * Must be called whilst holding the lock on this object, so that no records are journaled between the snapshot, and
+   * the mark of the journal's length.
+   */
+  private void startJournalCompaction() {
+    final List<ScheduledCallback> snapshot = new ArrayList<>(this.pending.size() + this.inFlight.size());
+    this.pending.values().forEach(timer -> snapshot.add(timer.getValue()));
+    snapshot.addAll(this.inFlight.values());
+    final long snapshotLength;
+    try {
+      snapshotLength = this.journal.markSnapshot();
+    } catch (IOException e) {
+      logger.warn("Error snapshotting callback journal for compaction.", e);
+      return;
+    }
+    this.compacting = true;
+    try {
+      this.compactor.execute(() -> compactJournal(snapshot, snapshotLength));
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+      this.compacting = false;
+    }
+  }
+
+  private void compactJournal(List<ScheduledCallback> snapshot, long snapshotLength) {
+    try {
+      this.journal.compact(snapshot, snapshotLength);
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Error compacting callback journal.", e);
+    } finally {
+      synchronized (this) {
+        this.compacting = false;
+      }
+    }
+  }
+
+  private void addToWheel(ScheduledCallback callback) {
+    this.pending.put(callback.getId(), this.wheel.add(toTick(callback.getFireEpochMilli()), callback));
+  }
+
+  /**
+   * @return the tick of the wheel on which a callback scheduled for the supplied time is made - the first tick which
+   * isn't before it.
+   */
+  private long toTick(long epochMilli) {
+    return Math.floorDiv(epochMilli + this.tickMillis - 1, this.tickMillis);
+  }
+
+  /**
+   * @return true if the supplied host resolves, and only to public addresses, false otherwise.
+   */
+  private boolean isPublicHost(String host) {
+    final InetAddress[] addresses;
+    try {
+      addresses = this.hostResolver.resolve(host);
+    } catch (UnknownHostException e) {
+      return false;
+    }
+    if (addresses == null || addresses.length == 0) {
+      return false;
+    }
+    for (InetAddress address : addresses) {
+      if (!isPublicAddress(address)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the supplied address isn't a loopback, link-local, site-local, unique local (IPv6 fc00::/7),
+   * wildcard (any-local) or multicast address, false otherwise.
+   */
+  static boolean isPublicAddress(InetAddress address) {
+    return !(address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+      || address.isAnyLocalAddress() || address.isMulticastAddress()
+      || (address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc));
+  }
+
+  private static long requirePositive(long value, String name) {
+    if (value <= 0) {
+      throw new IllegalArgumentException("Arg '" + name + "' must be greater than zero, not [" + value + "].");
+    }
+    return value;
+  }
+
+  /**
+   * Resolves a host name, or IP address literal, to its IP addresses.
+   */
+  @FunctionalInterface
+  interface HostResolver {
+
+    /**
+     * @param host the host name, or IP address literal.
+     * @return the IP addresses of the host.
+     * @throws UnknownHostException if the host can't be resolved.
+     */
+    InetAddress[] resolve(String host) throws UnknownHostException;
+  }
+
+  private static Set<String> parseHosts(String hosts) {
+    final Set<String> parsed = new HashSet<>();
+    for (String host : hosts.split(",")) {
+      if (!host.trim().isEmpty()) {
+        parsed.add(host.trim().toLowerCase(Locale.ROOT));
+      }
+    }
+    return parsed;
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+/**
+ * Thrown when a callback can't be scheduled because callbacks aren't permitted to its URL, e.g. because its host
+ * resolved to a non-public address when the callback was scheduled, even if it previously resolved to a public one.
+ * <p>
+ * Distinguishes a rejected URL from other invalid args, such as a time which is too far in the future.
+ */
+public class CallbackUrlNotPermittedException extends IllegalArgumentException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * @param message the detail message.
+   */
+  public CallbackUrlNotPermittedException(String message) {
+    super(message);
+  }
+}
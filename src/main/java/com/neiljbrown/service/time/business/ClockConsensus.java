@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+/**
+ * An immutable snapshot of the agreement between the clocks of the nodes in a cluster, from which the platform time is
+ * derived by {@link ConsensusPlatformDateTimeProviderImpl}. See {@link ClockConsensusProvider}.
+ * <p>
+ * The consensus is the offset from the local clock, and its error bound, agreed by the greatest no. of the sampled
+ * clocks - the intersection of their confidence intervals.
+ */
+public final class ClockConsensus {
+
+  private final long sampledEpochMilli;
+  private final long offsetNanos;
+  private final long errorNanos;
+  private final int agreeingSources;
+  private final int respondingSources;
+  private final int configuredSources;
+  private final boolean quorate;
+
+  ClockConsensus(long sampledEpochMilli, long offsetNanos, long errorNanos, int agreeingSources, int respondingSources,
+    int configuredSources, boolean quorate) {
+    this.sampledEpochMilli = sampledEpochMilli;
+    this.offsetNanos = offsetNanos;
+    this.errorNanos = errorNanos;
+    this.agreeingSources = agreeingSources;
+    this.respondingSources = respondingSources;
+    this.configuredSources = configuredSources;
+    this.quorate = quorate;
+  }
+
+  /**
+   * @return the local time at which the clocks were last sampled, as a number of milliseconds since the epoch.
+   */
+  public long getSampledEpochMilli() {
+    return this.sampledEpochMilli;
+  }
+
+  /**
+   * @return the offset of the platform time from the local clock, in nanoseconds. If the last sample wasn't
+   * {@link #isQuorate() quorate}, this is the last offset agreed by a quorum.
+   */
+  public long getOffsetNanos() {
+    return this.offsetNanos;
+  }
+
+  /**
+   * @return the max error of the offset, in nanoseconds - half the width of the intersection of the agreeing clocks'
+   * confidence intervals.
+   */
+  public long getErrorNanos() {
+    return this.errorNanos;
+  }
+
+  /**
+   * @return the no. of clocks, including the local clock, whose confidence interval contains the agreed offset.
+   */
+  public int getAgreeingSources() {
+    return this.agreeingSources;
+  }
+
+  /**
+   * @return the no. of clocks, including the local clock, which were successfully sampled.
+   */
+  public int getRespondingSources() {
+    return this.respondingSources;
+  }
+
+  /**
+   * @return the no. of clocks, including the local clock, in the cluster.
+   */
+  public int getConfiguredSources() {
+    return this.configuredSources;
+  }
+
+  /**
+   * @return true if a majority of the clocks in the cluster agreed the offset when they were last sampled.
+   */
+  public boolean isQuorate() {
+    return this.quorate;
+  }
+
+  @Override
+  public String toString() {
+    return "ClockConsensus{sampledEpochMilli=" + this.sampledEpochMilli + ", offsetNanos=" + this.offsetNanos
+      + ", errorNanos=" + this.errorNanos + ", agreeingSources=" + this.agreeingSources + ", respondingSources="
+      + this.respondingSources + ", configuredSources=" + this.configuredSources + ", quorate=" + this.quorate + "}";
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+/**
+ * Provides a local business API for retrieving the agreement between the clocks of the nodes in a cluster, for
+ * implementations of {@link PlatformDateTimeProvider} which derive the platform time from it.
+ */
+public interface ClockConsensusProvider {
+
+  /**
+   * @return a snapshot of the consensus, as of the last time the clocks were sampled.
+   */
+  ClockConsensus getClockConsensus();
+
+  /**
+   * @return the current time of this node's local clock, as a number of milliseconds since the epoch. Sampled by the
+   * other nodes in the cluster.
+   */
+  long getLocalEpochMilli();
+}
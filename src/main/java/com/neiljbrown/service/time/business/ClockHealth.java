@@ -0,0 +1,125 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+/**
+ * A snapshot of the health of the clock from which the platform time is derived - the offset of the platform time
+ * from the system clock, the clock steps detected, its drift, and whether a correction is being slewed.
+ * <p>
+ * Immutable. Thread-safe.
+ */
+public final class ClockHealth {
+
+  private final long checkedEpochMilli;
+  private final long offsetNanos;
+  private final boolean slewing;
+  private final long forwardSteps;
+  private final long backwardSteps;
+  private final long lastStepNanos;
+  private final long lastStepEpochMilli;
+  private final double driftPpm;
+  private final boolean healthy;
+
+  ClockHealth(long checkedEpochMilli, long offsetNanos, boolean slewing, long forwardSteps, long backwardSteps,
+    long lastStepNanos, long lastStepEpochMilli, double driftPpm, boolean healthy) {
+    this.checkedEpochMilli = checkedEpochMilli;
+    this.offsetNanos = offsetNanos;
+    this.slewing = slewing;
+    this.forwardSteps = forwardSteps;
+    this.backwardSteps = backwardSteps;
+    this.lastStepNanos = lastStepNanos;
+    this.lastStepEpochMilli = lastStepEpochMilli;
+    this.driftPpm = driftPpm;
+    this.healthy = healthy;
+  }
+
+  /**
+   * @return the platform time at which the clock was last checked, as a number of milliseconds since the epoch.
+   */
+  public long getCheckedEpochMilli() {
+    return this.checkedEpochMilli;
+  }
+
+  /**
+   * @return the offset of the system clock from the platform time, when the clock was last checked, in nanoseconds.
+   * Positive if the system clock is ahead of the platform time. Includes any correction which is still being slewed.
+   */
+  public long getOffsetNanos() {
+    return this.offsetNanos;
+  }
+
+  /**
+   * @return true if a correction of the platform time is being slewed (applied gradually), false otherwise.
+   */
+  public boolean isSlewing() {
+    return this.slewing;
+  }
+
+  /**
+   * @return the no. of times the system clock has been detected stepping forwards.
+   */
+  public long getForwardSteps() {
+    return this.forwardSteps;
+  }
+
+  /**
+   * @return the no. of times the system clock has been detected stepping backwards.
+   */
+  public long getBackwardSteps() {
+    return this.backwardSteps;
+  }
+
+  /**
+   * @return the size of the last step of the system clock detected, in nanoseconds, negative for a step backwards, or
+   * zero if none has been detected.
+   */
+  public long getLastStepNanos() {
+    return this.lastStepNanos;
+  }
+
+  /**
+   * @return the platform time at which the last step of the system clock was detected, as a number of milliseconds
+   * since the epoch, or zero if none has been detected.
+   */
+  public long getLastStepEpochMilli() {
+    return this.lastStepEpochMilli;
+  }
+
+  /**
+   * @return the average rate at which the system clock has drifted from the monotonic clock, in parts per million,
+   * measured from the last detected step (or, if none has been detected, from startup) to the last check in which no
+   * step was detected. Positive if the system clock runs fast.
+   */
+  public double getDriftPpm() {
+    return this.driftPpm;
+  }
+
+  /**
+   * @return true if the platform time is within the max healthy offset from the system clock, false otherwise.
+   */
+  public boolean isHealthy() {
+    return this.healthy;
+  }
+
+  @Override
+  public String toString() {
+    return "ClockHealth{checkedEpochMilli=" + this.checkedEpochMilli + ", offsetNanos=" + this.offsetNanos
+      + ", slewing=" + this.slewing + ", forwardSteps=" + this.forwardSteps + ", backwardSteps=" + this.backwardSteps
+      + ", lastStepNanos=" + this.lastStepNanos + ", lastStepEpochMilli=" + this.lastStepEpochMilli + ", driftPpm="
+      + this.driftPpm + ", healthy=" + this.healthy + "}";
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * Utility methods for {@link Clock} shared by implementations of {@link PlatformDateTimeProvider}.
+ */
+final class Clocks {
+
+  private static final ZoneId ZONE_ID_UTC = ZoneId.of("Z");
+
+  private Clocks() {
+  }
+
+  /**
+   * Checks that a supplied {@link Clock} can be used as the source of the platform time, which is always expressed in
+   * the UTC time-zone.
+   *
+   * @param clock a {@link Clock}. Must be configured with a time zone of UTC.
+   * @return the supplied clock.
+   * @throws NullPointerException if the supplied clock is null.
+   * @throws IllegalArgumentException if the supplied clock does not use the UTC time zone.
+   */
+  static Clock requireUtc(Clock clock) {
+    Objects.requireNonNull(clock,"Arg 'clock' must not be null.");
+    if(!clock.getZone().equals(ZONE_ID_UTC)) {
+      throw new IllegalArgumentException("Arg 'clock' must use a time zone of UTC, not [" + clock.getZone() + "].");
+    }
+    return clock;
+  }
+}
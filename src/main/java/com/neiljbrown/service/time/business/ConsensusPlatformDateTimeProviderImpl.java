@@ -0,0 +1,267 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * An implementation of {@link PlatformDateTimeProvider} for use in a cluster of nodes, which derives the platform time
+ * from the agreement of the nodes' clocks, so that every node serves (approximately) the same time, rather than the
+ * time of its own system clock.
+ * <p>
+ * A background thread periodically samples the local (system) clocks of a configured set of peer nodes, in parallel,
+ * using a bounded pool of threads. Each peer's clock is read several times, over HTTP, and the read with the shortest
+ * round-trip is used to estimate the offset of the peer's clock from the local clock, within a confidence interval of
+ * half the round-trip. The intervals of the peers and the local clock are then intersected, using Marzullo's
+ * algorithm, and the midpoint of the interval agreed by the greatest no. of clocks becomes the offset of the platform
+ * time from the local clock. See {@link MarzulloIntersection}. As every node samples the same set of clocks, they all
+ * arrive at (approximately) the same platform time, and a minority of clocks which are wrong (false-tickers), or
+ * peers which don't respond, don't affect it.
+ * <p>
+ * Retrieving the platform time is a read of the local clock plus the cached offset, so the sampling of peers doesn't
+ * add to the latency of requests. If the clocks sampled don't include a majority of the cluster in agreement, the last
+ * offset agreed by a majority continues to be used. A change in the agreed offset is applied immediately, so the
+ * platform time may step, by up to the error of the consensus, when the peers are resampled.
+ * <p>
+ * The results of sampling are available as a {@link ClockConsensus}.
+ * <p>
+ * Selected as the implementation of {@link PlatformDateTimeProvider} by setting the application property
+ * 'platform-date-time-provider.type' to 'consensus'.
+ * <p>
+ * Thread-safe.
+ */
+@Service
+@ConditionalOnProperty(name = "platform-date-time-provider.type", havingValue = "consensus")
+public class ConsensusPlatformDateTimeProviderImpl implements PlatformDateTimeProvider, ClockConsensusProvider {
+
+  private static final Logger logger = LoggerFactory.getLogger(ConsensusPlatformDateTimeProviderImpl.class);
+
+  private static final long NANOS_PER_MILLI = 1_000_000L;
+
+  private final Clock clock;
+  private final PeerClockSampler peerClockSampler;
+  private final List<URI> peerClockUrls;
+  private final int quorum;
+  private final long sampleTimeoutMillis;
+  private final ExecutorService samplers;
+  private final ScheduledExecutorService scheduler;
+
+  /** The offset of the platform time from the local clock, rounded to the millisecond. */
+  private volatile long offsetMillis;
+  private volatile ClockConsensus clockConsensus;
+
+  /**
+   * Creates an instance that derives the platform time from the agreement of the node's system clock, and the clocks
+   * of its peers.
+   *
+   * @param peerClockUrls comma separated list of the URLs of the peer nodes' local clocks, e.g.
+   * http://10.0.0.2:8080/v1/cluster/clock. Excluding this node. Empty if the node has no peers.
+   * @param sampleIntervalMillis the interval, in milliseconds, at which the peers' clocks are sampled. Greater than
+   * zero.
+   * @param readsPerSample the no. of reads made of each peer's clock per sample, from which the read with the shortest
+   * round-trip is used. Greater than zero.
+   * @param samplerThreads the max no. of peers which are sampled concurrently. Greater than zero.
+   * @param connectTimeoutMillis the max time to wait to connect to a peer, in milliseconds.
+   * @param readTimeoutMillis the max time to wait for a peer to respond, in milliseconds.
+   */
+  @Autowired
+  public ConsensusPlatformDateTimeProviderImpl(
+    @Value("${platform-date-time-provider.consensus.peer-clock-urls:}") String peerClockUrls,
+    @Value("${platform-date-time-provider.consensus.sample-interval-millis:1000}") long sampleIntervalMillis,
+    @Value("${platform-date-time-provider.consensus.reads-per-sample:3}") int readsPerSample,
+    @Value("${platform-date-time-provider.consensus.sampler-threads:4}") int samplerThreads,
+    @Value("${platform-date-time-provider.consensus.connect-timeout-millis:200}") int connectTimeoutMillis,
+    @Value("${platform-date-time-provider.consensus.read-timeout-millis:200}") int readTimeoutMillis) {
+    this(Clock.systemUTC(), parseUrls(peerClockUrls), sampleIntervalMillis,
+      new PeerClockSampler(Clock.systemUTC(), System::nanoTime, connectTimeoutMillis, readTimeoutMillis,
+        readsPerSample), samplerThreads, (long) readsPerSample * (connectTimeoutMillis + readTimeoutMillis));
+  }
+
+  /**
+   * Creates an instance that uses the supplied {@link Clock} as the local clock.
+   * <p>
+   * Only provided to aid testing by allowing local and peer clocks with known offsets to be used.
+   *
+   * @param clock a {@link Clock}. Must be configured with a time zone of UTC.
+   * @param peerClockUrls the URLs of the peer nodes' local clocks.
+   * @param sampleIntervalMillis the interval, in milliseconds, at which the peers' clocks are sampled.
+   * @param peerClockSampler the {@link PeerClockSampler} used to sample a peer's clock.
+   * @param samplerThreads the max no. of peers which are sampled concurrently.
+   * @param sampleTimeoutMillis the max time, in milliseconds, to wait for the peers to be sampled.
+   */
+  ConsensusPlatformDateTimeProviderImpl(Clock clock, List<URI> peerClockUrls, long sampleIntervalMillis,
+    PeerClockSampler peerClockSampler, int samplerThreads, long sampleTimeoutMillis) {
+    if (sampleIntervalMillis <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'sampleIntervalMillis' must be greater than zero, not [" + sampleIntervalMillis + "].");
+    }
+    if (samplerThreads <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'samplerThreads' must be greater than zero, not [" + samplerThreads + "].");
+    }
+    this.clock = Clocks.requireUtc(clock);
+    this.peerClockUrls = Collections.unmodifiableList(new ArrayList<>(peerClockUrls));
+    this.peerClockSampler = peerClockSampler;
+    this.sampleTimeoutMillis = sampleTimeoutMillis;
+    // A majority of the cluster, including this node
+    this.quorum = (this.peerClockUrls.size() + 1) / 2 + 1;
+    this.clockConsensus = new ClockConsensus(this.clock.millis(), 0, PeerClockSampler.CLOCK_RESOLUTION_NANOS, 1, 1,
+      this.peerClockUrls.size() + 1, this.quorum == 1);
+    final AtomicInteger samplerCount = new AtomicInteger();
+    this.samplers = Executors.newFixedThreadPool(samplerThreads, runnable -> {
+      final Thread thread = new Thread(runnable, "platform-clock-sampler-" + samplerCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "platform-clock-consensus");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (!this.peerClockUrls.isEmpty()) {
+      this.scheduler.scheduleWithFixedDelay(this::sampleSafely, 0, sampleIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public Instant getDateTime() {
+    return Instant.ofEpochMilli(getEpochMilli());
+  }
+
+  @Override
+  public long getEpochMilli() {
+    return this.clock.millis() + this.offsetMillis;
+  }
+
+  @Override
+  public ClockConsensus getClockConsensus() {
+    return this.clockConsensus;
+  }
+
+  @Override
+  public long getLocalEpochMilli() {
+    return this.clock.millis();
+  }
+
+  /**
+   * Stops the background threads which sample the peers' clocks. Invoked by the Spring container on shutdown.
+   */
+  @PreDestroy
+  public void shutdown() {
+    this.scheduler.shutdownNow();
+    this.samplers.shutdownNow();
+  }
+
+  /**
+   * Samples the peers' clocks, in parallel, intersects their confidence intervals with that of the local clock, and
+   * if a majority of the cluster agree, updates the offset of the platform time. Package-private to aid testing.
+   */
+  synchronized void sample() {
+    final List<Callable<PeerClockSampler.Sample>> tasks = new ArrayList<>(this.peerClockUrls.size());
+    for (URI peerClockUrl : this.peerClockUrls) {
+      tasks.add(() -> this.peerClockSampler.sample(peerClockUrl));
+    }
+    final List<Future<PeerClockSampler.Sample>> futures;
+    try {
+      // Any peers which haven't been sampled by the timeout are cancelled, and excluded
+      futures = this.samplers.invokeAll(tasks, this.sampleTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+      return;
+    }
+    final long[] lowNanos = new long[futures.size() + 1];
+    final long[] highNanos = new long[futures.size() + 1];
+    // The local clock, which has no offset from itself, other than the error of its resolution
+    lowNanos[0] = -PeerClockSampler.CLOCK_RESOLUTION_NANOS;
+    highNanos[0] = PeerClockSampler.CLOCK_RESOLUTION_NANOS;
+    int sources = 1;
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        final PeerClockSampler.Sample sample = futures.get(i).get();
+        lowNanos[sources] = sample.getOffsetNanos() - sample.getErrorNanos();
+        highNanos[sources] = sample.getOffsetNanos() + sample.getErrorNanos();
+        sources++;
+      } catch (ExecutionException | CancellationException e) {
+        logger.debug("Failed to sample clock of peer [{}].", this.peerClockUrls.get(i), e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+    final MarzulloIntersection intersection = MarzulloIntersection.of(lowNanos, highNanos, sources);
+    final ClockConsensus previous = this.clockConsensus;
+    final boolean quorate = intersection.getSources() >= this.quorum;
+    final long offsetNanos = quorate ? intersection.getMidpoint() : previous.getOffsetNanos();
+    final long errorNanos = quorate ? (intersection.getHigh() - intersection.getLow()) / 2 : previous.getErrorNanos();
+    if (quorate) {
+      this.offsetMillis = Math.floorDiv(offsetNanos + NANOS_PER_MILLI / 2, NANOS_PER_MILLI);
+    } else if (previous.isQuorate()) {
+      logger.warn("Lost clock consensus. Only [{}] of [{}] clocks agree, fewer than a quorum of [{}].",
+        intersection.getSources(), this.peerClockUrls.size() + 1, this.quorum);
+    }
+    this.clockConsensus = new ClockConsensus(this.clock.millis(), offsetNanos, errorNanos, intersection.getSources(),
+      sources, this.peerClockUrls.size() + 1, quorate);
+  }
+
+  /**
+   * Samples the peers, catching any exception, as an exception would stop the scheduled sampling.
+   */
+  private void sampleSafely() {
+    try {
+      sample();
+    } catch (RuntimeException e) {
+      logger.warn("Error sampling the clocks of peer nodes.", e);
+    }
+  }
+
+  private static List<URI> parseUrls(String urls) {
+    final List<URI> parsed = new ArrayList<>();
+    for (String url : urls.split(",")) {
+      if (!url.trim().isEmpty()) {
+        parsed.add(URI.create(url.trim()));
+      }
+    }
+    return parsed;
+  }
+}
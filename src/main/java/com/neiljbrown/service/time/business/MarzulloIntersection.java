@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.util.Arrays;
+
+/**
+ * The intersection of a set of confidence intervals, each the range within which a source (clock) estimates the true
+ * value (time) to lie, found using Marzullo's algorithm - the smallest interval which is consistent with the greatest
+ * no. of sources.
+ * <p>
+ * Sources whose interval doesn't contain the intersection are assumed to be faulty (false-tickers), so provided a
+ * majority of the sources are correct, the intersection contains the true value, and a minority of faulty sources,
+ * however wrong, can't move it outside the intervals of the correct sources.
+ * <p>
+ * Immutable.
+ */
+final class MarzulloIntersection {
+
+  private final long low;
+  private final long high;
+  private final int sources;
+
+  private MarzulloIntersection(long low, long high, int sources) {
+    this.low = low;
+    this.high = high;
+    this.sources = sources;
+  }
+
+  /**
+   * Intersects the supplied intervals. Intervals which only touch, at their ends, are considered to overlap.
+   *
+   * @param lows the lower bounds of the intervals.
+   * @param highs the upper bounds of the intervals, in the same order as their lower bounds. Each must be greater than
+   * or equal to its lower bound.
+   * @param count the no. of intervals. Greater than zero.
+   * @return the intersection.
+   */
+  static MarzulloIntersection of(long[] lows, long[] highs, int count) {
+    if (count <= 0) {
+      throw new IllegalArgumentException("Arg 'count' must be greater than zero, not [" + count + "].");
+    }
+    // Each interval contributes a start edge, at an even index, and an end edge, at the following odd index
+    final long[] edgeValues = new long[count * 2];
+    for (int i = 0; i < count; i++) {
+      if (highs[i] < lows[i]) {
+        throw new IllegalArgumentException(
+          "Interval [" + i + "] has an upper bound [" + highs[i] + "] less than its lower bound [" + lows[i] + "].");
+      }
+      edgeValues[i * 2] = lows[i];
+      edgeValues[i * 2 + 1] = highs[i];
+    }
+    final Integer[] sortedEdges = new Integer[count * 2];
+    for (int i = 0; i < sortedEdges.length; i++) {
+      sortedEdges[i] = i;
+    }
+    // Starts sort before ends of the same value, so intervals which touch overlap
+    Arrays.sort(sortedEdges, (a, b) -> {
+      final int byValue = Long.compare(edgeValues[a], edgeValues[b]);
+      return byValue != 0 ? byValue : Integer.compare(a & 1, b & 1);
+    });
+    int overlapping = 0;
+    int bestSources = 0;
+    long bestLow = 0;
+    long bestHigh = 0;
+    for (int i = 0; i < sortedEdges.length; i++) {
+      final int edge = sortedEdges[i];
+      if ((edge & 1) == 0) {
+        overlapping++;
+        if (overlapping > bestSources) {
+          bestSources = overlapping;
+          bestLow = edgeValues[edge];
+          // If the next edge is another start, it supersedes this one as the best, so this is only final if it's an end
+          bestHigh = edgeValues[sortedEdges[i + 1]];
+        }
+      } else {
+        overlapping--;
+      }
+    }
+    return new MarzulloIntersection(bestLow, bestHigh, bestSources);
+  }
+
+  /**
+   * @return the lower bound of the intersection.
+   */
+  long getLow() {
+    return this.low;
+  }
+
+  /**
+   * @return the upper bound of the intersection.
+   */
+  long getHigh() {
+    return this.high;
+  }
+
+  /**
+   * @return the midpoint of the intersection, the best estimate of the true value.
+   */
+  long getMidpoint() {
+    return this.low + (this.high - this.low) / 2;
+  }
+
+  /**
+   * @return the no. of sources whose interval contains the intersection.
+   */
+  int getSources() {
+    return this.sources;
+  }
+
+  @Override
+  public String toString() {
+    return "MarzulloIntersection{low=" + this.low + ", high=" + this.high + ", sources=" + this.sources + "}";
+  }
+}
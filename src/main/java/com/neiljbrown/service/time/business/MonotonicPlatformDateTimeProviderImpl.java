@@ -0,0 +1,319 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * An implementation of {@link PlatformDateTimeProvider} for use in production, which derives the platform time from
+ * the node's monotonic clock ({@link System#nanoTime()}), anchored to the system clock, rather than trusting the
+ * system clock on every read.
+ * <p>
+ * The platform time is calculated from an anchor - a pair of a monotonic clock reading and the platform time at that
+ * reading - plus the monotonic time elapsed since. Retrieving the platform time is therefore a read of the monotonic
+ * clock, and some arithmetic, and is unaffected by the system clock being stepped, e.g. by an operator, or a
+ * misbehaving NTP daemon.
+ * <p>
+ * A background 'checker' thread periodically compares the platform time with the system clock -
+ * <br>
+ * - A change in the system clock, between checks, which differs from the elapsed monotonic time by more than a step
+ * threshold is recorded as a forward or backward step.
+ * <br>
+ * - The rate at which the system clock drifts from the monotonic clock is measured since the last step.
+ * <br>
+ * - If the platform time is offset from the system clock by more than a drift threshold, it's corrected. Either the
+ * correction is slewed (smeared) - the platform time is run slightly faster or slower than the monotonic clock, by a
+ * configurable rate, until the offset is made up, so that it never goes backwards, and never jumps - or, if slewing
+ * is disabled, the platform time is stepped to the system clock.
+ * <p>
+ * The results of the checks are available as a {@link ClockHealth}, which is unhealthy whilst the platform time is
+ * offset from the system clock by more than a max, e.g. whilst slewing the correction of a large step.
+ * <p>
+ * Selected as the implementation of {@link PlatformDateTimeProvider} by setting the application property
+ * 'platform-date-time-provider.type' to 'monotonic'.
+ * <p>
+ * Thread-safe.
+ */
+@Service
+@ConditionalOnProperty(name = "platform-date-time-provider.type", havingValue = "monotonic")
+public class MonotonicPlatformDateTimeProviderImpl implements PlatformDateTimeProvider, ClockHealthProvider {
+
+  private static final Logger logger = LoggerFactory.getLogger(MonotonicPlatformDateTimeProviderImpl.class);
+
+  private static final long NANOS_PER_MILLI = 1_000_000L;
+  private static final double PPM = 1_000_000d;
+
+  private final Clock clock;
+  private final LongSupplier nanoClock;
+  private final long driftThresholdNanos;
+  private final long stepThresholdNanos;
+  private final double slewRate;
+  private final long maxHealthyOffsetNanos;
+  private final ScheduledExecutorService checker;
+
+  /** The anchor from which the platform time is calculated. Replaced, rather than mutated, by the checker. */
+  private volatile Anchor anchor;
+  private volatile ClockHealth clockHealth;
+
+  // State of the checks. Only accessed whilst holding the lock on this object.
+  private long lastCheckNanos;
+  private long lastCheckWallMilli;
+  private long driftBaseNanos;
+  private long driftBaseWallMilli;
+  private double driftPpm;
+  private long forwardSteps;
+  private long backwardSteps;
+  private long lastStepNanos;
+  private long lastStepEpochMilli;
+
+  /**
+   * Creates an instance that anchors the platform time to the node's system clock.
+   *
+   * @param checkIntervalMillis the interval, in milliseconds, at which the platform time is checked against the system
+   * clock. Must be greater than zero.
+   * @param driftThresholdMillis the max offset, in milliseconds, of the platform time from the system clock, which is
+   * tolerated before it's corrected. Zero or greater.
+   * @param stepThresholdMillis the min difference, in milliseconds, between the change in the system clock and the
+   * elapsed monotonic time, between checks, which is recorded as a step of the system clock. Zero or greater.
+   * @param slewEnabled true if corrections should be slewed, false if they should be stepped.
+   * @param slewRatePpm the rate at which corrections are slewed, in parts per million, e.g. 500 for 0.5 milliseconds
+   * per second. Greater than zero, and less than a million.
+   * @param maxHealthyOffsetMillis the max offset, in milliseconds, of the platform time from the system clock, which
+   * is considered healthy. Zero or greater.
+   */
+  @Autowired
+  public MonotonicPlatformDateTimeProviderImpl(
+    @Value("${platform-date-time-provider.monotonic.check-interval-millis:1000}") long checkIntervalMillis,
+    @Value("${platform-date-time-provider.monotonic.drift-threshold-millis:2}") long driftThresholdMillis,
+    @Value("${platform-date-time-provider.monotonic.step-threshold-millis:50}") long stepThresholdMillis,
+    @Value("${platform-date-time-provider.monotonic.slew-enabled:true}") boolean slewEnabled,
+    @Value("${platform-date-time-provider.monotonic.slew-rate-ppm:500}") long slewRatePpm,
+    @Value("${platform-date-time-provider.monotonic.max-healthy-offset-millis:100}") long maxHealthyOffsetMillis) {
+    this(Clock.systemUTC(), System::nanoTime, checkIntervalMillis, driftThresholdMillis, stepThresholdMillis,
+      slewEnabled ? requireValidSlewRate(slewRatePpm) : 0, maxHealthyOffsetMillis);
+  }
+
+  /**
+   * Creates an instance that anchors the platform time to the supplied {@link Clock}, using the supplied monotonic
+   * clock.
+   * <p>
+   * Only provided to aid testing by allowing clocks which are stepped and drift on demand to be used.
+   *
+   * @param clock a {@link Clock}. Must be configured with a time zone of UTC.
+   * @param nanoClock supplies the value of a monotonic clock, in nanoseconds, e.g. {@link System#nanoTime()}.
+   * @param slewRatePpm the rate at which corrections are slewed, in parts per million, or zero if they should be
+   * stepped.
+   * @see #MonotonicPlatformDateTimeProviderImpl(long, long, long, boolean, long, long) for the other params.
+   */
+  MonotonicPlatformDateTimeProviderImpl(Clock clock, LongSupplier nanoClock, long checkIntervalMillis,
+    long driftThresholdMillis, long stepThresholdMillis, long slewRatePpm, long maxHealthyOffsetMillis) {
+    this.clock = Clocks.requireUtc(clock);
+    this.nanoClock = nanoClock;
+    if (checkIntervalMillis <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'checkIntervalMillis' must be greater than zero, not [" + checkIntervalMillis + "].");
+    }
+    this.driftThresholdNanos = requireNotNegative(driftThresholdMillis, "driftThresholdMillis") * NANOS_PER_MILLI;
+    this.stepThresholdNanos = requireNotNegative(stepThresholdMillis, "stepThresholdMillis") * NANOS_PER_MILLI;
+    this.slewRate = (slewRatePpm != 0 ? requireValidSlewRate(slewRatePpm) : 0) / PPM;
+    this.maxHealthyOffsetNanos = requireNotNegative(maxHealthyOffsetMillis, "maxHealthyOffsetMillis")
+      * NANOS_PER_MILLI;
+    synchronized (this) {
+      final long nanoTime = this.nanoClock.getAsLong();
+      final long wallMilli = this.clock.millis();
+      this.anchor = new Anchor(nanoTime, wallMilli * NANOS_PER_MILLI, 0, 0);
+      this.lastCheckNanos = this.driftBaseNanos = nanoTime;
+      this.lastCheckWallMilli = this.driftBaseWallMilli = wallMilli;
+      this.clockHealth = new ClockHealth(wallMilli, 0, false, 0, 0, 0, 0, 0, true);
+    }
+    this.checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "platform-clock-checker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.checker.scheduleWithFixedDelay(this::checkSafely, checkIntervalMillis, checkIntervalMillis,
+      TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public Instant getDateTime() {
+    return Instant.ofEpochMilli(getEpochMilli());
+  }
+
+  @Override
+  public long getEpochMilli() {
+    return Math.floorDiv(this.anchor.epochNanosAt(this.nanoClock.getAsLong()), NANOS_PER_MILLI);
+  }
+
+  @Override
+  public ClockHealth getClockHealth() {
+    return this.clockHealth;
+  }
+
+  /**
+   * Stops the background thread which checks the platform time against the system clock. Invoked by the Spring
+   * container on shutdown.
+   */
+  @PreDestroy
+  public void shutdown() {
+    this.checker.shutdownNow();
+  }
+
+  /**
+   * Checks the platform time against the system clock - detecting steps, measuring drift and correcting the platform
+   * time if necessary - and publishes the resulting {@link ClockHealth}. Package-private to aid testing.
+   */
+  synchronized void check() {
+    final long nanoTime = this.nanoClock.getAsLong();
+    final long wallMilli = this.clock.millis();
+    final long wallNanos = wallMilli * NANOS_PER_MILLI;
+    final Anchor anchor = this.anchor;
+    final long epochNanos = anchor.epochNanosAt(nanoTime);
+
+    // A step is detected as a change in the system clock, since the last check, which the monotonic clock didn't see
+    final long stepNanos = (wallMilli - this.lastCheckWallMilli) * NANOS_PER_MILLI - (nanoTime - this.lastCheckNanos);
+    if (Math.abs(stepNanos) > this.stepThresholdNanos) {
+      if (stepNanos > 0) {
+        this.forwardSteps++;
+      } else {
+        this.backwardSteps++;
+      }
+      this.lastStepNanos = stepNanos;
+      this.lastStepEpochMilli = Math.floorDiv(epochNanos, NANOS_PER_MILLI);
+      this.driftBaseNanos = nanoTime;
+      this.driftBaseWallMilli = wallMilli;
+      logger.warn("System clock stepped {} by [{}] ms.", stepNanos > 0 ? "forwards" : "backwards",
+        Math.abs(stepNanos) / NANOS_PER_MILLI);
+    } else if (nanoTime > this.driftBaseNanos) {
+      // Measured since the last step, rather than the last check, as the system clock only has millisecond resolution
+      final long elapsedNanos = nanoTime - this.driftBaseNanos;
+      this.driftPpm = ((wallMilli - this.driftBaseWallMilli) * NANOS_PER_MILLI - elapsedNanos) * PPM / elapsedNanos;
+    }
+    this.lastCheckNanos = nanoTime;
+    this.lastCheckWallMilli = wallMilli;
+
+    final long offsetNanos = wallNanos - epochNanos;
+    final Anchor nextAnchor;
+    if (Math.abs(offsetNanos) <= this.driftThresholdNanos) {
+      nextAnchor = anchor;
+    } else if (this.slewRate == 0) {
+      nextAnchor = new Anchor(nanoTime, wallNanos, 0, 0);
+    } else {
+      // Re-anchored at the current platform time, so that it's continuous, with any remaining correction replaced
+      nextAnchor = new Anchor(nanoTime, epochNanos, offsetNanos, this.slewRate);
+    }
+    this.anchor = nextAnchor;
+
+    final long remainingOffsetNanos = wallNanos - nextAnchor.epochNanosAt(nanoTime);
+    this.clockHealth = new ClockHealth(Math.floorDiv(nextAnchor.epochNanosAt(nanoTime), NANOS_PER_MILLI),
+      remainingOffsetNanos, nextAnchor.isSlewingAt(nanoTime), this.forwardSteps, this.backwardSteps,
+      this.lastStepNanos, this.lastStepEpochMilli, this.driftPpm,
+      Math.abs(remainingOffsetNanos) <= this.maxHealthyOffsetNanos);
+  }
+
+  /**
+   * Checks the clock, catching any exception, as an exception would stop the scheduled checks.
+   */
+  private void checkSafely() {
+    try {
+      check();
+    } catch (RuntimeException e) {
+      logger.warn("Error checking the platform time against the system clock.", e);
+    }
+  }
+
+  private static long requireNotNegative(long value, String name) {
+    if (value < 0) {
+      throw new IllegalArgumentException("Arg '" + name + "' must be zero or greater, not [" + value + "].");
+    }
+    return value;
+  }
+
+  private static long requireValidSlewRate(long slewRatePpm) {
+    if (slewRatePpm <= 0 || slewRatePpm >= PPM) {
+      throw new IllegalArgumentException(
+        "Arg 'slewRatePpm' must be greater than zero, and less than a million, not [" + slewRatePpm + "].");
+    }
+    return slewRatePpm;
+  }
+
+  /**
+   * An anchor from which the platform time is calculated - a monotonic clock reading, the platform time at that
+   * reading, and any correction which is slewed from it.
+   * <p>
+   * Whilst slewing, the platform time passes at (1 + slew rate) times the monotonic time, where the slew rate has the
+   * sign of the correction, until the correction is made up. As the magnitude of the slew rate is less than one, the
+   * platform time never goes backwards. Successive anchors are continuous, as each is created from the platform time
+   * calculated from its predecessor.
+   * <p>
+   * Immutable. Thread-safe.
+   */
+  private static final class Anchor {
+
+    private final long nanoTime;
+    private final long epochNanos;
+    private final long correctionNanos;
+    private final double slewRate;
+    /** The monotonic time elapsed from the anchor after which the correction has been made up. */
+    private final long slewNanos;
+
+    /**
+     * @param nanoTime the monotonic clock reading.
+     * @param epochNanos the platform time at the reading, as a number of nanoseconds since the epoch.
+     * @param correctionNanos the correction to slew, in nanoseconds. Negative to slow the platform time.
+     * @param slewRate the (unsigned) rate at which the correction is slewed, as a fraction, e.g. 0.0005.
+     */
+    Anchor(long nanoTime, long epochNanos, long correctionNanos, double slewRate) {
+      this.nanoTime = nanoTime;
+      this.epochNanos = epochNanos;
+      this.correctionNanos = correctionNanos;
+      this.slewRate = correctionNanos < 0 ? -slewRate : slewRate;
+      this.slewNanos = correctionNanos == 0 ? 0 : (long) Math.ceil(Math.abs(correctionNanos) / slewRate);
+    }
+
+    /**
+     * @param nanoTime a monotonic clock reading.
+     * @return the platform time at the reading, as a number of nanoseconds since the epoch.
+     */
+    long epochNanosAt(long nanoTime) {
+      final long elapsedNanos = nanoTime - this.nanoTime;
+      // Calculated in floating point, as the product of a large correction's slew time and the rate can overflow
+      final long appliedNanos = elapsedNanos >= this.slewNanos
+        ? this.correctionNanos
+        : (long) (elapsedNanos * this.slewRate);
+      return this.epochNanos + elapsedNanos + appliedNanos;
+    }
+
+    boolean isSlewingAt(long nanoTime) {
+      return nanoTime - this.nanoTime < this.slewNanos;
+    }
+  }
+}
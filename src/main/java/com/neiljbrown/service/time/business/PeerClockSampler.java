@@ -0,0 +1,162 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.time.Clock;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples the clock of a peer node, by requesting its local time over HTTP, and estimates the offset of the peer's
+ * clock from the local clock, compensated for the round-trip time of the request.
+ * <p>
+ * The peer's time is read at some (unknown) point during the round-trip, so the offset is estimated as though it
+ * were read at the midpoint, with an error of half the round-trip, plus the resolution of the two clocks. Several
+ * reads are made, and the one with the shortest round-trip, and therefore smallest error, is used.
+ * <p>
+ * Uses the JDK's {@link HttpURLConnection}, which pools and reuses (keeps alive) connections to the same host,
+ * provided each response is fully read.
+ * <p>
+ * Thread-safe.
+ */
+final class PeerClockSampler {
+
+  /** Resolution of the local and peer clocks, which are read to the millisecond, in nanoseconds. */
+  static final long CLOCK_RESOLUTION_NANOS = 1_000_000L;
+
+  private final Clock clock;
+  private final LongSupplier nanoClock;
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+  private final int readsPerSample;
+
+  /**
+   * @param clock the local {@link Clock}.
+   * @param nanoClock supplies the value of a monotonic clock, in nanoseconds, used to time the round-trip.
+   * @param connectTimeoutMillis the max time to wait to connect to a peer, in milliseconds.
+   * @param readTimeoutMillis the max time to wait for a peer to respond, in milliseconds.
+   * @param readsPerSample the no. of reads made of a peer's clock per sample. Greater than zero.
+   */
+  PeerClockSampler(Clock clock, LongSupplier nanoClock, int connectTimeoutMillis, int readTimeoutMillis,
+    int readsPerSample) {
+    if (readsPerSample <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'readsPerSample' must be greater than zero, not [" + readsPerSample + "].");
+    }
+    this.clock = clock;
+    this.nanoClock = nanoClock;
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.readTimeoutMillis = readTimeoutMillis;
+    this.readsPerSample = readsPerSample;
+  }
+
+  /**
+   * @param clockUrl the URL from which a peer's local time is read, as a number of milliseconds since the epoch.
+   * @return the {@link Sample} of the peer's clock with the shortest round-trip.
+   * @throws IOException if an error occurs reading the peer's time.
+   */
+  Sample sample(URI clockUrl) throws IOException {
+    Sample best = null;
+    for (int i = 0; i < this.readsPerSample; i++) {
+      final Sample sample = read(clockUrl);
+      if (best == null || sample.getRoundTripNanos() < best.getRoundTripNanos()) {
+        best = sample;
+      }
+    }
+    return best;
+  }
+
+  private Sample read(URI clockUrl) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection) clockUrl.toURL().openConnection();
+    connection.setConnectTimeout(this.connectTimeoutMillis);
+    connection.setReadTimeout(this.readTimeoutMillis);
+    connection.setInstanceFollowRedirects(false);
+    connection.setRequestProperty("Accept", "text/plain");
+    // Connect before the round-trip is timed, so a new connection's handshake doesn't inflate it
+    connection.connect();
+    final long startEpochMilli = this.clock.millis();
+    final long startNanos = this.nanoClock.getAsLong();
+    final int status = connection.getResponseCode();
+    long peerEpochMilli = 0;
+    boolean valid = status == HttpURLConnection.HTTP_OK;
+    // The response body is read in full, even if invalid, so that the connection can be reused
+    try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+      int digits = 0;
+      int b;
+      while (in != null && (b = in.read()) >= 0) {
+        if (b >= '0' && b <= '9' && digits < 18) {
+          peerEpochMilli = peerEpochMilli * 10 + (b - '0');
+          digits++;
+        } else if (b != '\r' && b != '\n') {
+          valid = false;
+        }
+      }
+      valid &= digits > 0;
+    }
+    final long roundTripNanos = this.nanoClock.getAsLong() - startNanos;
+    if (!valid) {
+      throw new IOException("Peer [" + clockUrl + "] responded with status [" + status + "], or an invalid time.");
+    }
+    // The peer's clock was read at a local time of between the start and end of the round-trip. Both clocks'
+    // readings are truncated to the millisecond, so may be up to a millisecond behind
+    final long offsetNanos = (peerEpochMilli - startEpochMilli) * CLOCK_RESOLUTION_NANOS - roundTripNanos / 2;
+    return new Sample(offsetNanos, roundTripNanos);
+  }
+
+  /**
+   * An estimate of the offset of a peer's clock from the local clock. Immutable.
+   */
+  static final class Sample {
+
+    private final long offsetNanos;
+    private final long roundTripNanos;
+
+    Sample(long offsetNanos, long roundTripNanos) {
+      this.offsetNanos = offsetNanos;
+      this.roundTripNanos = roundTripNanos;
+    }
+
+    /**
+     * @return the estimated offset of the peer's clock from the local clock, in nanoseconds.
+     */
+    long getOffsetNanos() {
+      return this.offsetNanos;
+    }
+
+    /**
+     * @return the round-trip time of the read of the peer's clock, in nanoseconds.
+     */
+    long getRoundTripNanos() {
+      return this.roundTripNanos;
+    }
+
+    /**
+     * @return the max error of the offset, in nanoseconds - half the round-trip, plus the resolution of the clocks.
+     */
+    long getErrorNanos() {
+      return this.roundTripNanos / 2 + CLOCK_RESOLUTION_NANOS;
+    }
+
+    @Override
+    public String toString() {
+      return "Sample{offsetNanos=" + this.offsetNanos + ", roundTripNanos=" + this.roundTripNanos + "}";
+    }
+  }
+}
@@ -29,4 +29,26 @@ public interface PlatformDateTimeProvider {
    * @return an {@link Instant} representing the platform's current date and time (UTC).
    */
   Instant getDateTime();
+
+  /**
+   * Returns the platform's current date and time as a primitive number of milliseconds since the epoch. Supports
+   * callers which don't need an {@link Instant}, and may be implemented without allocating one.
+   *
+   * @return the platform's current date and time (UTC), as the number of milliseconds since the epoch of
+   * 1970-01-01T00:00:00Z.
+   */
+  default long getEpochMilli() {
+    return getDateTime().toEpochMilli();
+  }
+
+  /**
+   * Returns the platform's current date and time as a primitive number of seconds since the epoch. Supports callers
+   * which don't need an {@link Instant}, and may be implemented without allocating one.
+   *
+   * @return the platform's current date and time (UTC), as the number of whole seconds since the epoch of
+   * 1970-01-01T00:00:00Z.
+   */
+  default long getEpochSecond() {
+    return Math.floorDiv(getEpochMilli(), 1000L);
+  }
 }
@@ -17,17 +17,20 @@ package com.neiljbrown.service.time.business;
 
 import java.time.Clock;
 import java.time.Instant;
-import java.time.ZoneId;
-import java.util.Objects;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 /**
  * A POJO implementation of {@link PlatformDateTimeProvider} for use in production.
  * <p>
- * Uses a {@link java.time.Clock} to derive the current platform time.
+ * Uses a {@link java.time.Clock} to derive the current platform time, reading the clock on every call.
+ * <p>
+ * This is the default implementation, used unless another is selected via the 'platform-date-time-provider.type'
+ * application property.
  */
 @Service
+@ConditionalOnProperty(name = "platform-date-time-provider.type", havingValue = "system", matchIfMissing = true)
 public class PlatformDateTimeProviderImpl implements PlatformDateTimeProvider {
 
   private final Clock clock;
@@ -48,15 +51,16 @@ public class PlatformDateTimeProviderImpl implements PlatformDateTimeProvider {
    * @param clock a {@link Clock}. Must be configured with a time zone of UTC.
    */
   PlatformDateTimeProviderImpl(Clock clock) {
-    Objects.requireNonNull(clock,"Arg 'clock' must not be null.");
-    if(!clock.getZone().equals(ZoneId.of("Z"))) {
-      throw new IllegalArgumentException("Arg 'clock' must use a time zone of UTC, not [" + clock.getZone() + "].");
-    }
-    this.clock = clock;
+    this.clock = Clocks.requireUtc(clock);
   }
 
   @Override
   public Instant getDateTime() {
     return this.clock.instant();
   }
+
+  @Override
+  public long getEpochMilli() {
+    return this.clock.millis();
+  }
 }
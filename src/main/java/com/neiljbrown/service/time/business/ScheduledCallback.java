@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * A callback which has been scheduled to be made, by a {@link CallbackScheduler}, at a platform time - an HTTP POST
+ * to a client's webhook URL.
+ * <p>
+ * Immutable. Thread-safe.
+ */
+public final class ScheduledCallback {
+
+  private final long id;
+  private final long fireEpochMilli;
+  private final URI url;
+
+  /**
+   * @param id the unique ID of the callback.
+   * @param fireEpochMilli the platform time at which the callback is to be made, as a number of milliseconds since the
+   * epoch.
+   * @param url the URL of the webhook to which the callback is made.
+   */
+  public ScheduledCallback(long id, long fireEpochMilli, URI url) {
+    this.id = id;
+    this.fireEpochMilli = fireEpochMilli;
+    this.url = Objects.requireNonNull(url, "Arg 'url' must not be null.");
+  }
+
+  /**
+   * @return the unique ID of the callback.
+   */
+  public long getId() {
+    return this.id;
+  }
+
+  /**
+   * @return the platform time at which the callback is to be made, as a number of milliseconds since the epoch.
+   */
+  public long getFireEpochMilli() {
+    return this.fireEpochMilli;
+  }
+
+  /**
+   * @return the URL of the webhook to which the callback is made.
+   */
+  public URI getUrl() {
+    return this.url;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ScheduledCallback)) {
+      return false;
+    }
+    final ScheduledCallback that = (ScheduledCallback) o;
+    return this.id == that.id && this.fireEpochMilli == that.fireEpochMilli && this.url.equals(that.url);
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(this.id);
+  }
+
+  @Override
+  public String toString() {
+    return "ScheduledCallback{id=" + this.id + ", fireEpochMilli=" + this.fireEpochMilli + ", url=" + this.url + "}";
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+/**
+ * A clock which derives a tenant's own view of the platform time from the platform time, e.g. to support a test
+ * environment which needs the platform time to be shifted, frozen, or to pass faster than real time.
+ * <p>
+ * The tenant's time is anchored to the platform time at a point in time, from which it passes at a rate relative to
+ * the platform time - 1 for real time (i.e. a fixed offset from the platform time), 0 for a frozen time, or e.g. 60
+ * for a minute per second. The tenant's time is then a calculation on the platform time, without reading any other
+ * clock or allocating.
+ * <p>
+ * Immutable. Thread-safe.
+ */
+public final class TenantClock {
+
+  private final long anchorPlatformEpochMilli;
+  private final long anchorTenantEpochMilli;
+  private final double rate;
+
+  private TenantClock(long anchorPlatformEpochMilli, long anchorTenantEpochMilli, double rate) {
+    if (rate < 0 || Double.isNaN(rate) || Double.isInfinite(rate)) {
+      throw new IllegalArgumentException("Arg 'rate' must be a finite number, zero or greater, not [" + rate + "].");
+    }
+    this.anchorPlatformEpochMilli = anchorPlatformEpochMilli;
+    this.anchorTenantEpochMilli = anchorTenantEpochMilli;
+    this.rate = rate;
+  }
+
+  /**
+   * Creates a clock whose time is the platform time shifted by a fixed offset.
+   *
+   * @param offsetMillis the offset from the platform time, in milliseconds. Negative for a time in the past.
+   * @return the clock.
+   */
+  public static TenantClock offset(long offsetMillis) {
+    return new TenantClock(0, offsetMillis, 1);
+  }
+
+  /**
+   * Creates a clock whose time is frozen at a fixed time.
+   *
+   * @param epochMilli the fixed time, as a number of milliseconds since the epoch.
+   * @return the clock.
+   */
+  public static TenantClock frozen(long epochMilli) {
+    return new TenantClock(0, epochMilli, 0);
+  }
+
+  /**
+   * Creates a clock whose time starts from a given time, at a given platform time, and then passes at a rate relative
+   * to the platform time.
+   *
+   * @param platformEpochMilli the platform time at which the clock starts, as a number of milliseconds since the epoch.
+   * @param startEpochMilli the clock's time at the platform time at which it starts.
+   * @param rate the rate at which the clock's time passes relative to the platform time, e.g. 2 for twice as fast.
+   * Must be zero (frozen) or greater.
+   * @return the clock.
+   * @throws IllegalArgumentException if the rate is invalid.
+   */
+  public static TenantClock scaled(long platformEpochMilli, long startEpochMilli, double rate) {
+    return new TenantClock(platformEpochMilli, startEpochMilli, rate);
+  }
+
+  /**
+   * @param platformEpochMilli the platform time, as a number of milliseconds since the epoch.
+   * @return the tenant's time at the supplied platform time, as a number of milliseconds since the epoch.
+   */
+  public long getEpochMilli(long platformEpochMilli) {
+    final long elapsedMillis = platformEpochMilli - this.anchorPlatformEpochMilli;
+    // Avoids floating point arithmetic for the common case of a fixed offset
+    return this.anchorTenantEpochMilli + (this.rate == 1 ? elapsedMillis : (long) (elapsedMillis * this.rate));
+  }
+
+  /**
+   * @return the rate at which the clock's time passes relative to the platform time. Zero if the clock is frozen.
+   */
+  public double getRate() {
+    return this.rate;
+  }
+
+  @Override
+  public String toString() {
+    return "TenantClock{anchorPlatformEpochMilli=" + this.anchorPlatformEpochMilli + ", anchorTenantEpochMilli="
+      + this.anchorTenantEpochMilli + ", rate=" + this.rate + "}";
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.util.Map;
+
+/**
+ * Provides a local business API for managing, and looking up, the {@link TenantClock clocks} of tenants whose view of
+ * the platform time differs from the platform time, e.g. test environments which need a shifted or frozen time.
+ * <p>
+ * Tenants without a clock see the platform time.
+ */
+public interface TenantClockProvider {
+
+  /**
+   * Looks up a tenant's clock. Called on the path of every request from a tenant, so must be cheap, and not block.
+   *
+   * @param tenantId the ID of a tenant.
+   * @return the tenant's clock, or null if the tenant doesn't have one.
+   */
+  TenantClock getTenantClock(String tenantId);
+
+  /**
+   * @return the clocks of all tenants which have one, keyed by tenant ID. An immutable snapshot.
+   */
+  Map<String, TenantClock> getTenantClocks();
+
+  /**
+   * Sets (or replaces) a tenant's clock.
+   *
+   * @param tenantId the ID of the tenant.
+   * @param tenantClock the tenant's clock.
+   * @throws IllegalStateException if the max no. of tenants which can have a clock would be exceeded.
+   */
+  void setTenantClock(String tenantId, TenantClock tenantClock);
+
+  /**
+   * Removes a tenant's clock, after which the tenant sees the platform time.
+   *
+   * @param tenantId the ID of the tenant.
+   * @return true if the tenant had a clock, false otherwise.
+   */
+  boolean removeTenantClock(String tenantId);
+}
@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * A POJO implementation of {@link TenantClockProvider} for use in production, which holds the tenants' clocks in
+ * memory, in a copy-on-write map.
+ * <p>
+ * Lookups, which are made on the request path, read an immutable map via a volatile reference, without locking.
+ * Changes, which are rare administrative operations, copy the map, and publish the copy, under a lock. The no. of
+ * tenants which can have a clock is limited to a configurable max, to bound the cost of copying the map.
+ * <p>
+ * Thread-safe.
+ */
+@Service
+public class TenantClockProviderImpl implements TenantClockProvider {
+
+  private final int maxTenants;
+  private volatile Map<String, TenantClock> tenantClocks = Collections.emptyMap();
+
+  /**
+   * @param maxTenants the max no. of tenants which can have a clock. Must be greater than zero.
+   */
+  public TenantClockProviderImpl(@Value("${tenant-clock.max-tenants:1000}") int maxTenants) {
+    if (maxTenants <= 0) {
+      throw new IllegalArgumentException("Arg 'maxTenants' must be greater than zero, not [" + maxTenants + "].");
+    }
+    this.maxTenants = maxTenants;
+  }
+
+  @Override
+  public TenantClock getTenantClock(String tenantId) {
+    return this.tenantClocks.get(tenantId);
+  }
+
+  @Override
+  public Map<String, TenantClock> getTenantClocks() {
+    return this.tenantClocks;
+  }
+
+  @Override
+  public synchronized void setTenantClock(String tenantId, TenantClock tenantClock) {
+    Objects.requireNonNull(tenantId, "Arg 'tenantId' must not be null.");
+    Objects.requireNonNull(tenantClock, "Arg 'tenantClock' must not be null.");
+    if (!this.tenantClocks.containsKey(tenantId) && this.tenantClocks.size() >= this.maxTenants) {
+      throw new IllegalStateException("Max no. of tenant clocks [" + this.maxTenants + "] reached.");
+    }
+    final Map<String, TenantClock> tenantClocks = new HashMap<>(this.tenantClocks);
+    tenantClocks.put(tenantId, tenantClock);
+    this.tenantClocks = Collections.unmodifiableMap(tenantClocks);
+  }
+
+  @Override
+  public synchronized boolean removeTenantClock(String tenantId) {
+    if (!this.tenantClocks.containsKey(tenantId)) {
+      return false;
+    }
+    final Map<String, TenantClock> tenantClocks = new HashMap<>(this.tenantClocks);
+    tenantClocks.remove(tenantId);
+    this.tenantClocks = Collections.unmodifiableMap(tenantClocks);
+    return true;
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+/**
+ * Provides a local business API for issuing unique, time-ordered 64-bit IDs, for use by other platform services and
+ * clients, e.g. to order events.
+ * <p>
+ * IDs issued by a single node are strictly increasing. IDs issued by different nodes are unique, provided each node is
+ * configured with a different node ID, and are ordered by the platform time at which they were issued, to a
+ * resolution of a millisecond.
+ */
+public interface TimeOrderedIdGenerator {
+
+  /**
+   * @return a new unique ID, greater than any previously issued by this node.
+   */
+  long nextId();
+
+  /**
+   * Reserves a block of new unique IDs in a single operation.
+   *
+   * @param count the number of IDs to reserve. Must be greater than zero.
+   * @return an array of the reserved IDs, in increasing order, all of which are greater than any previously issued by
+   * this node.
+   */
+  long[] nextIds(int count);
+
+  /**
+   * @param id an ID issued by this generator.
+   * @return the platform time embedded in the ID, as the number of milliseconds since the epoch (UTC).
+   */
+  long getEpochMilli(long id);
+}
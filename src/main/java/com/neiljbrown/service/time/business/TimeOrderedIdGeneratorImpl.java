@@ -0,0 +1,137 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * A POJO implementation of {@link TimeOrderedIdGenerator} for use in production, which issues 'Snowflake' style IDs.
+ * <p>
+ * Each ID is a positive 64-bit long comprising, from most to least significant bits -
+ * <br>
+ * - 41 bits - Timestamp - The no. of milliseconds since a custom epoch of {@link #CUSTOM_EPOCH}, read from the
+ * {@link PlatformDateTimeProvider}. Sufficient for ~69 years.
+ * <br>
+ * - 10 bits - Node ID - Configured per node, to ensure IDs issued by different nodes are unique.
+ * <br>
+ * - 12 bits - Sequence - Distinguishes IDs issued within the same millisecond, up to 4096 per millisecond.
+ * <p>
+ * The hot path is lock-free. The timestamp and sequence of the last issued ID are packed into a single long, which is
+ * advanced using a compare-and-set (CAS), so that reserving any no. of IDs costs a single successful CAS. The packed
+ * value is advanced to the current platform time, or if that is not later than the last issued ID, by incrementing
+ * the sequence. As a result -
+ * <br>
+ * - IDs never go backwards, even if the platform (wall) clock does. If the clock steps back, IDs continue to be issued
+ * from the last timestamp, by incrementing the sequence, until the clock catches up.
+ * <br>
+ * - If more than 4096 IDs are issued in a millisecond, the sequence overflows into the timestamp, so that the IDs'
+ * embedded timestamp runs ahead of the platform time, until the rate of issue falls.
+ * <p>
+ * Thread-safe.
+ */
+@Service
+public class TimeOrderedIdGeneratorImpl implements TimeOrderedIdGenerator {
+
+  /** The epoch from which the timestamp embedded in IDs is measured. */
+  static final Instant CUSTOM_EPOCH = Instant.parse("2018-01-01T00:00:00Z");
+
+  static final int NODE_ID_BITS = 10;
+  static final int SEQUENCE_BITS = 12;
+  static final int TIMESTAMP_BITS = Long.SIZE - 1 - NODE_ID_BITS - SEQUENCE_BITS;
+  static final long MAX_NODE_ID = (1L << NODE_ID_BITS) - 1;
+
+  private static final long CUSTOM_EPOCH_MILLI = CUSTOM_EPOCH.toEpochMilli();
+  private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+  private static final long MAX_PACKED_TIMESTAMP_AND_SEQUENCE = (1L << (TIMESTAMP_BITS + SEQUENCE_BITS)) - 1;
+
+  private final PlatformDateTimeProvider platformDateTimeProvider;
+  private final long shiftedNodeId;
+
+  /** Packed timestamp (relative to the custom epoch) and sequence of the last issued ID. */
+  private final AtomicLong lastTimestampAndSequence = new AtomicLong(-1);
+
+  /**
+   * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to obtain current platform
+   * date/time.
+   * @param nodeId the ID of this node, which must be unique across all nodes that issue IDs. Must be between 0 and
+   * {@link #MAX_NODE_ID} (1023) inclusive.
+   */
+  public TimeOrderedIdGeneratorImpl(PlatformDateTimeProvider platformDateTimeProvider,
+    @Value("${time-ordered-id.node-id:0}") long nodeId) {
+    this.platformDateTimeProvider = Objects.requireNonNull(platformDateTimeProvider,
+      "Arg 'platformDateTimeProvider' must not be null.");
+    if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+      throw new IllegalArgumentException(
+        "Arg 'nodeId' must be between 0 and " + MAX_NODE_ID + " inclusive, not [" + nodeId + "].");
+    }
+    this.shiftedNodeId = nodeId << SEQUENCE_BITS;
+  }
+
+  @Override
+  public long nextId() {
+    return toId(reserve(1));
+  }
+
+  @Override
+  public long[] nextIds(int count) {
+    if (count <= 0) {
+      throw new IllegalArgumentException("Arg 'count' must be greater than zero, not [" + count + "].");
+    }
+    final long first = reserve(count);
+    final long[] ids = new long[count];
+    for (int i = 0; i < count; i++) {
+      ids[i] = toId(first + i);
+    }
+    return ids;
+  }
+
+  @Override
+  public long getEpochMilli(long id) {
+    return (id >>> (NODE_ID_BITS + SEQUENCE_BITS)) + CUSTOM_EPOCH_MILLI;
+  }
+
+  /**
+   * Reserves a contiguous range of packed timestamp and sequence values.
+   *
+   * @param count the no. of values to reserve.
+   * @return the first reserved value.
+   */
+  private long reserve(int count) {
+    for (;;) {
+      final long last = this.lastTimestampAndSequence.get();
+      final long now = (this.platformDateTimeProvider.getEpochMilli() - CUSTOM_EPOCH_MILLI) << SEQUENCE_BITS;
+      final long first = Math.max(last + 1, now);
+      final long newLast = first + count - 1;
+      if (newLast > MAX_PACKED_TIMESTAMP_AND_SEQUENCE) {
+        throw new IllegalStateException("Timestamp of IDs has exceeded the max supported value.");
+      }
+      if (this.lastTimestampAndSequence.compareAndSet(last, newLast)) {
+        return first;
+      }
+    }
+  }
+
+  private long toId(long timestampAndSequence) {
+    return ((timestampAndSequence & ~SEQUENCE_MASK) << NODE_ID_BITS)
+      | this.shiftedNodeId
+      | (timestampAndSequence & SEQUENCE_MASK);
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+/**
+ * Provides a local business API for obtaining the offset from UTC of an IANA time-zone, at a given instant, e.g. to
+ * support converting the platform time, which is always in UTC, to the local time in one or more time-zones.
+ */
+public interface TimeZoneOffsetProvider {
+
+  /**
+   * @param zoneId an IANA time-zone (region) ID, e.g. "Europe/London".
+   * @return true if the time-zone is supported, false otherwise.
+   */
+  boolean isSupportedZone(String zoneId);
+
+  /**
+   * @param zoneId the ID of a {@link #isSupportedZone supported} IANA time-zone, e.g. "Europe/London".
+   * @param epochSecond an instant, as the number of seconds since the epoch.
+   * @return the total offset from UTC of the time-zone at the instant, in seconds.
+   * @throws IllegalArgumentException if the time-zone is not supported.
+   */
+  int getOffsetSeconds(String zoneId, long epochSecond);
+}
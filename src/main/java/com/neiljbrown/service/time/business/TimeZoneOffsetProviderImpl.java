@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * A POJO implementation of {@link TimeZoneOffsetProvider} for use in production, which looks up offsets in a
+ * precomputed {@link ZoneTransitionIndex} per time-zone.
+ * <p>
+ * Supports all IANA time-zone (region) IDs known to the JVM. A zone's index is built on first use, and then cached,
+ * except for a configurable set of commonly used zones, whose indexes are built (warmed) on creation, so that
+ * requests for them never pay the cost. As the set of supported zones is fixed, the cache is bounded.
+ * <p>
+ * Thread-safe.
+ */
+@Service
+public class TimeZoneOffsetProviderImpl implements TimeZoneOffsetProvider {
+
+  private final Set<String> supportedZoneIds = Collections.unmodifiableSet(new HashSet<>(ZoneId.getAvailableZoneIds()));
+  private final ConcurrentMap<String, ZoneTransitionIndex> indexesByZoneId = new ConcurrentHashMap<>();
+
+  /**
+   * @param warmZoneIds the IDs of the time-zones whose index should be built on creation, rather than on first use.
+   * Each must be a supported IANA time-zone ID.
+   * @throws IllegalArgumentException if any of the time-zone IDs are not supported.
+   */
+  public TimeZoneOffsetProviderImpl(
+    @Value("${time-zone.warm-zone-ids:UTC,Europe/London,America/New_York}") String[] warmZoneIds) {
+    for (String zoneId : warmZoneIds) {
+      getIndex(zoneId.trim());
+    }
+  }
+
+  @Override
+  public boolean isSupportedZone(String zoneId) {
+    return this.supportedZoneIds.contains(zoneId);
+  }
+
+  @Override
+  public int getOffsetSeconds(String zoneId, long epochSecond) {
+    return getIndex(zoneId).getOffsetSeconds(epochSecond);
+  }
+
+  private ZoneTransitionIndex getIndex(String zoneId) {
+    final ZoneTransitionIndex index = this.indexesByZoneId.get(zoneId);
+    if (index != null) {
+      return index;
+    }
+    if (!isSupportedZone(zoneId)) {
+      throw new IllegalArgumentException("Unsupported time-zone ID [" + zoneId + "].");
+    }
+    return this.indexesByZoneId.computeIfAbsent(zoneId, id -> ZoneTransitionIndex.of(ZoneId.of(id)));
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel, which holds timers, each of which expires at a deadline, expressed as a number of
+ * ticks, and is advanced through time, tick by tick, yielding the timers which expire.
+ * <p>
+ * Comprises {@link #LEVELS} wheels, each of {@link #WHEEL_SIZE} buckets. A bucket of the lowest wheel spans a single
+ * tick, and a bucket of each higher wheel spans a whole revolution of the wheel below it. A timer is placed in the
+ * bucket of the lowest wheel which can hold its deadline, relative to the current tick. When the current tick crosses
+ * the boundary of a higher wheel's bucket, the timers in that bucket are cascaded (re-placed) into the lower wheels.
+ * Timers whose deadline is beyond the range of the highest wheel are held in an overflow list, which is cascaded on
+ * each revolution of the highest wheel. With a 10 millisecond tick, the wheels span ~21 years.
+ * <p>
+ * Each bucket is an intrusive, circular, doubly-linked list of its timers, so that adding and removing (cancelling) a
+ * timer are O(1), and allocate no more than the timer itself. Advancing the wheel costs O(1) per expiring timer, and
+ * O(1) per cascade of a timer, of which there are at most {@link #LEVELS} per timer. Ticks on which no timer expires,
+ * and no timers are cascaded, are skipped, by scanning for the next occupied bucket, at a cost of at most
+ * {@link #WHEEL_SIZE} per wheel, so that advancing over a large jump in time, e.g. following a correction of the
+ * platform time, costs no more than the buckets which are occupied, rather than the no. of ticks.
+ * <p>
+ * Not thread-safe. Access must be synchronised by the caller.
+ *
+ * @param <T> the type of the value held by each timer.
+ */
+final class TimingWheel<T> {
+
+  static final int WHEEL_BITS = 9;
+  static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+  static final int LEVELS = 4;
+
+  private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+  /** The buckets of each wheel, indexed by level, then slot. Each is the sentinel of a circular list. */
+  private final Timer<T>[][] wheels;
+  private final Timer<T> overflow = new Timer<>(0, null);
+  private long currentTick;
+  private int size;
+
+  /**
+   * @param currentTick the tick from which the wheel is advanced. Timers expire on ticks after it. Zero or greater.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  TimingWheel(long currentTick) {
+    if (currentTick < 0) {
+      throw new IllegalArgumentException("Arg 'currentTick' must be zero or greater, not [" + currentTick + "].");
+    }
+    this.currentTick = currentTick;
+    this.wheels = new Timer[LEVELS][WHEEL_SIZE];
+    for (Timer<T>[] wheel : this.wheels) {
+      for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+        wheel[slot] = new Timer<>(0, null);
+      }
+    }
+  }
+
+  /**
+   * @return the tick to which the wheel has been advanced.
+   */
+  long getCurrentTick() {
+    return this.currentTick;
+  }
+
+  /**
+   * @return the no. of timers in the wheel, which have neither expired nor been removed.
+   */
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Adds a timer to the wheel.
+   *
+   * @param deadlineTick the tick on which the timer expires. A deadline which isn't after the current tick expires on
+   * the next tick.
+   * @param value the value held by the timer. Must not be null.
+   * @return the timer, which can be used to {@link #remove} it.
+   */
+  Timer<T> add(long deadlineTick, T value) {
+    Objects.requireNonNull(value, "Arg 'value' must not be null.");
+    final Timer<T> timer = new Timer<>(Math.max(deadlineTick, this.currentTick + 1), value);
+    place(timer);
+    this.size++;
+    return timer;
+  }
+
+  /**
+   * Removes a timer from the wheel, if it has neither expired nor already been removed.
+   *
+   * @param timer a timer returned by {@link #add}.
+   * @return true if the timer was removed, false otherwise.
+   */
+  boolean remove(Timer<T> timer) {
+    if (!timer.isLinked()) {
+      return false;
+    }
+    timer.unlink();
+    this.size--;
+    return true;
+  }
+
+  /**
+   * Advances the wheel to a tick, yielding each of the timers which expires on or before it, in order of deadline.
+   * The expired timers are removed from the wheel before they're yielded.
+   *
+   * @param toTick the tick to which the wheel is advanced. Ignored if it isn't after the current tick.
+   * @param expired the consumer to which the values of the expired timers are yielded.
+   */
+  void advance(long toTick, Consumer<? super T> expired) {
+    while (this.currentTick < toTick) {
+      // Skips the ticks on which there's nothing to expire or cascade, straight to the tick if there's none before it
+      final long tick = this.size == 0 ? Long.MAX_VALUE : nextOccupiedTick();
+      if (tick > toTick) {
+        this.currentTick = toTick;
+        return;
+      }
+      this.currentTick = tick;
+      // Cascade from the highest wheel whose bucket boundary is crossed down, as timers cascaded from a higher wheel
+      // may be re-placed in the bucket of a lower wheel which is due to be cascaded on the same tick
+      for (int level = LEVELS; level > 0; level--) {
+        if ((tick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+          cascade(level == LEVELS ? this.overflow : this.wheels[level][slot(tick, level)]);
+        }
+      }
+      final Timer<T> bucket = this.wheels[0][slot(tick, 0)];
+      for (Timer<T> timer = bucket.next; timer != bucket; timer = bucket.next) {
+        timer.unlink();
+        this.size--;
+        expired.accept(timer.value);
+      }
+    }
+  }
+
+  /**
+   * @return the first tick after the current tick on which either a timer expires, or an occupied bucket of a higher
+   * wheel, or the overflow list, is cascaded, or {@link Long#MAX_VALUE} if there's none.
+   */
+  private long nextOccupiedTick() {
+    long next = Long.MAX_VALUE;
+    for (int level = 0; level < LEVELS; level++) {
+      // A bucket of a wheel is cascaded (or expires, for the lowest) on the tick on which its span starts, and only
+      // the buckets in the current revolution of the wheel can be occupied
+      final int bucketShift = WHEEL_BITS * level;
+      final int revolutionShift = bucketShift + WHEEL_BITS;
+      final long revolutionEndTick = ((this.currentTick >>> revolutionShift) + 1) << revolutionShift;
+      for (long tick = ((this.currentTick >>> bucketShift) + 1) << bucketShift;
+           tick < revolutionEndTick && tick < next; tick += 1L << bucketShift) {
+        final Timer<T> bucket = this.wheels[level][slot(tick, level)];
+        if (bucket.next != bucket) {
+          next = tick;
+        }
+      }
+    }
+    if (this.overflow.next != this.overflow) {
+      final int revolutionShift = WHEEL_BITS * LEVELS;
+      next = Math.min(next, ((this.currentTick >>> revolutionShift) + 1) << revolutionShift);
+    }
+    return next;
+  }
+
+  private void cascade(Timer<T> bucket) {
+    if (bucket.next == bucket) {
+      return;
+    }
+    // Detaches the bucket's timers first, as those in the overflow list may be re-placed in it
+    Timer<T> timer = bucket.next;
+    bucket.previous.next = null;
+    bucket.previous = bucket;
+    bucket.next = bucket;
+    while (timer != null) {
+      final Timer<T> next = timer.next;
+      place(timer);
+      timer = next;
+    }
+  }
+
+  /**
+   * Places a timer in the bucket of the lowest wheel whose current revolution includes its deadline, which is always
+   * after the current tick.
+   */
+  private void place(Timer<T> timer) {
+    for (int level = 0; level < LEVELS; level++) {
+      final int revolutionShift = WHEEL_BITS * (level + 1);
+      if ((timer.deadlineTick >>> revolutionShift) == (this.currentTick >>> revolutionShift)) {
+        timer.linkBefore(this.wheels[level][slot(timer.deadlineTick, level)]);
+        return;
+      }
+    }
+    timer.linkBefore(this.overflow);
+  }
+
+  private static int slot(long tick, int level) {
+    return (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+  }
+
+  /**
+   * A timer in the wheel, which is also a node in the list of its bucket.
+   *
+   * @param <T> the type of the value held by the timer.
+   */
+  static final class Timer<T> {
+
+    private final long deadlineTick;
+    private final T value;
+    private Timer<T> previous;
+    private Timer<T> next;
+
+    private Timer(long deadlineTick, T value) {
+      this.deadlineTick = deadlineTick;
+      this.value = value;
+      // A sentinel is an empty circular list
+      if (value == null) {
+        this.previous = this;
+        this.next = this;
+      }
+    }
+
+    /**
+     * @return the tick on which the timer expires.
+     */
+    long getDeadlineTick() {
+      return this.deadlineTick;
+    }
+
+    /**
+     * @return the value held by the timer.
+     */
+    T getValue() {
+      return this.value;
+    }
+
+    private boolean isLinked() {
+      return this.next != null;
+    }
+
+    private void linkBefore(Timer<T> sentinel) {
+      this.previous = sentinel.previous;
+      this.next = sentinel;
+      sentinel.previous.next = this;
+      sentinel.previous = this;
+    }
+
+    private void unlink() {
+      this.previous.next = this.next;
+      this.next.previous = this.previous;
+      this.previous = null;
+      this.next = null;
+    }
+  }
+}
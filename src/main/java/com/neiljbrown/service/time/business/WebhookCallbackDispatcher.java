@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * A {@link CallbackDispatcher} which makes callbacks as an HTTP POST of a JSON representation of the callback to its
+ * webhook URL, e.g. {"id":123,"scheduledTime":"2018-10-06T09:30:00Z","firedTime":"2018-10-06T09:30:00.004Z"}. Any
+ * 2xx response is a success.
+ * <p>
+ * Uses the JDK's {@link HttpURLConnection}, which pools and reuses (keeps alive) connections to the same host,
+ * provided each response is fully read.
+ * <p>
+ * Thread-safe.
+ */
+final class WebhookCallbackDispatcher implements CallbackDispatcher {
+
+  /** Name of the request header containing the ID of the callback, which a webhook can use to de-duplicate them. */
+  static final String CALLBACK_ID_HEADER = "X-Callback-Id";
+
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+
+  /**
+   * @param connectTimeoutMillis the max time to wait to connect to a webhook, in milliseconds.
+   * @param readTimeoutMillis the max time to wait for a webhook to respond, in milliseconds.
+   */
+  WebhookCallbackDispatcher(int connectTimeoutMillis, int readTimeoutMillis) {
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  @Override
+  public void dispatch(ScheduledCallback callback, long firedEpochMilli) throws IOException {
+    final byte[] body = ("{\"id\":" + callback.getId()
+      + ",\"scheduledTime\":\"" + Instant.ofEpochMilli(callback.getFireEpochMilli())
+      + "\",\"firedTime\":\"" + Instant.ofEpochMilli(firedEpochMilli) + "\"}").getBytes(StandardCharsets.US_ASCII);
+    final HttpURLConnection connection = (HttpURLConnection) callback.getUrl().toURL().openConnection();
+    connection.setConnectTimeout(this.connectTimeoutMillis);
+    connection.setReadTimeout(this.readTimeoutMillis);
+    connection.setInstanceFollowRedirects(false);
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Content-Type", "application/json");
+    connection.setRequestProperty(CALLBACK_ID_HEADER, Long.toString(callback.getId()));
+    connection.setFixedLengthStreamingMode(body.length);
+    connection.setDoOutput(true);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(body);
+    }
+    final int status = connection.getResponseCode();
+    // The response body is read, and discarded, so that the connection can be reused
+    try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+      if (in != null) {
+        final byte[] buffer = new byte[512];
+        while (in.read(buffer) >= 0) {
+          // Discard
+        }
+      }
+    }
+    if (status < 200 || status >= 300) {
+      throw new IOException("Webhook [" + callback.getUrl() + "] responded with status [" + status + "].");
+    }
+  }
+}
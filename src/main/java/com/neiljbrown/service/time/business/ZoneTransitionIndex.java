@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * A compact, precomputed index of the transitions in the offset from UTC of a single time-zone, over a fixed range of
+ * years, supporting lookup of the offset at an instant without allocating.
+ * <p>
+ * Comprises a sorted array of the instants (epoch seconds) at which the zone's offset changes, and a parallel array of
+ * the offsets in effect between them, searched using binary search. This avoids the cost of {@link ZoneRules}, which
+ * allocates on every lookup, and which has to compute transitions from the zone's recurring rules for the current and
+ * future years. Lookups outside of the indexed range, which are expected to be rare, fall back to the zone's rules.
+ * <p>
+ * Immutable. Thread-safe.
+ */
+final class ZoneTransitionIndex {
+
+  /** Start (inclusive) of the range of instants which is indexed - 1900-01-01T00:00:00Z. */
+  static final long INDEX_START_EPOCH_SECOND = Instant.parse("1900-01-01T00:00:00Z").getEpochSecond();
+
+  /** End (exclusive) of the range of instants which is indexed - 2100-01-01T00:00:00Z. */
+  static final long INDEX_END_EPOCH_SECOND = Instant.parse("2100-01-01T00:00:00Z").getEpochSecond();
+
+  private final ZoneRules zoneRules;
+
+  /** Instants, as epoch seconds, at which the offset changes, in ascending order. */
+  private final long[] transitionEpochSeconds;
+
+  /**
+   * Total offset in seconds in effect before each transition, plus the offset after the last transition. Offset [i]
+   * is in effect from transition [i - 1] (inclusive) to transition [i] (exclusive).
+   */
+  private final int[] offsetSeconds;
+
+  private ZoneTransitionIndex(ZoneRules zoneRules, long[] transitionEpochSeconds, int[] offsetSeconds) {
+    this.zoneRules = zoneRules;
+    this.transitionEpochSeconds = transitionEpochSeconds;
+    this.offsetSeconds = offsetSeconds;
+  }
+
+  /**
+   * @param zoneId the time-zone to index.
+   * @return a new index of the zone's transitions.
+   */
+  static ZoneTransitionIndex of(ZoneId zoneId) {
+    final ZoneRules zoneRules = zoneId.getRules();
+    long[] transitions = new long[16];
+    int[] offsets = new int[17];
+    offsets[0] = zoneRules.getOffset(Instant.ofEpochSecond(INDEX_START_EPOCH_SECOND)).getTotalSeconds();
+    int transitionCount = 0;
+    ZoneOffsetTransition transition = zoneRules.nextTransition(Instant.ofEpochSecond(INDEX_START_EPOCH_SECOND));
+    while (transition != null && transition.toEpochSecond() < INDEX_END_EPOCH_SECOND) {
+      if (transitionCount == transitions.length) {
+        transitions = Arrays.copyOf(transitions, transitionCount * 2);
+        offsets = Arrays.copyOf(offsets, transitionCount * 2 + 1);
+      }
+      transitions[transitionCount] = transition.toEpochSecond();
+      offsets[++transitionCount] = transition.getOffsetAfter().getTotalSeconds();
+      transition = zoneRules.nextTransition(transition.getInstant());
+    }
+    return new ZoneTransitionIndex(zoneRules, Arrays.copyOf(transitions, transitionCount),
+      Arrays.copyOf(offsets, transitionCount + 1));
+  }
+
+  /**
+   * @param epochSecond an instant, as the number of seconds since the epoch.
+   * @return the total offset from UTC of the zone at the instant, in seconds.
+   */
+  int getOffsetSeconds(long epochSecond) {
+    if (epochSecond < INDEX_START_EPOCH_SECOND || epochSecond >= INDEX_END_EPOCH_SECOND) {
+      return this.zoneRules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+    }
+    final int index = Arrays.binarySearch(this.transitionEpochSeconds, epochSecond);
+    // An exact match is the instant of a transition, from which the offset after the transition is in effect
+    return this.offsetSeconds[index >= 0 ? index + 1 : -index - 1];
+  }
+
+  /**
+   * @return the no. of transitions in the index.
+   */
+  int getTransitionCount() {
+    return this.transitionEpochSeconds.length;
+  }
+}
@@ -28,5 +28,13 @@ package com.neiljbrown.service.time.presentation;
  */
 public enum ApiErrorCode {
 
-  INVALID_REQUEST_PARAM_VALUE
+  INVALID_REQUEST_PARAM_VALUE,
+
+  INVALID_REQUEST_BODY_VALUE,
+
+  RATE_LIMIT_EXCEEDED,
+
+  TENANT_LIMIT_EXCEEDED,
+
+  CALLBACK_LIMIT_EXCEEDED
 }
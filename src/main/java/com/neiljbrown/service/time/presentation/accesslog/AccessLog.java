@@ -0,0 +1,530 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.accesslog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+
+/**
+ * A structured access log, recording an entry for each request to the service's APIs - the time it completed, its
+ * method, path and requested format, the status of its response, its latency, and the client which made it. Entries
+ * are written to a local file, as JSON, one entry per line, e.g.
+ * <pre>
+ * {"timestamp":"2018-10-06T18:51:44.500Z","method":"GET","path":"/v1/platform-time","format":"unix","status":200,
+ *   "latencyMicros":42,"client":"10.0.0.1"}
+ * </pre>
+ * (without the line break). Entries are recorded by {@link AccessLogFilter} or {@link AccessLogWebFilter}, depending on
+ * the web execution mode.
+ * <p>
+ * Recording an entry never blocks the request thread, on either I/O or a lock. Entries are written into a
+ * preallocated ring buffer of fixed-size records, from which a single background writer thread drains them in
+ * batches, encodes them, and writes them to the file using a {@link FileChannel}. Each request thread claims the next
+ * record with a compare-and-set of the buffer's claim sequence, copies its entry into the record, and then publishes
+ * it, by setting the record's sequence, which the writer waits for before reading the record. Variable length fields
+ * are truncated to the space reserved for them in the record, and non ASCII characters are replaced with '?'. If the
+ * buffer is full, because the writer has fallen behind, the entry is dropped (and counted), rather than the request
+ * waiting for space.
+ * <p>
+ * The writer doesn't signal or wait on request threads. When the buffer is empty it sleeps for a configurable flush
+ * interval, which therefore bounds the delay before an entry is written. Once the file reaches a configurable max
+ * size it's rotated - renamed with a numeric suffix, e.g. access.log.1, shifting the suffix of any older files, and
+ * deleting the oldest - and a new file started.
+ * <p>
+ * A record is only freed for reuse once its entry has been written. If writing to (or rotating) the file fails, e.g.
+ * as the disk is full, the failure is counted, the file is closed, and the writer backs off, for an interval which
+ * doubles on each consecutive failure, up to a max of {@link #MAX_RETRY_INTERVAL_MILLIS}. The entries which weren't
+ * written remain in the buffer, and are retried in the next batch, which reopens the file. (Hence an entry which was
+ * partially written by a failed write is repeated, on a line of its own.) Entries logged whilst the buffer is full are
+ * dropped as usual.
+ * <p>
+ * The no. of entries written and dropped are published as the access.log.entries metric, tagged by outcome, and the
+ * no. of failed writes as the access.log.write.failures metric.
+ * <p>
+ * Only enabled if the application property 'access-log.enabled' is set to 'true'.
+ * <p>
+ * Thread-safe.
+ */
+@Component
+@ConditionalOnProperty(name = "access-log.enabled", havingValue = "true")
+public class AccessLog {
+
+  /** Size of each record in the ring buffer, in bytes. */
+  static final int RECORD_SIZE = 256;
+
+  /** Max no. of characters of each variable length field which are recorded. Longer values are truncated. */
+  static final int MAX_METHOD_LENGTH = 7;
+  static final int MAX_PATH_LENGTH = 119;
+  static final int MAX_FORMAT_LENGTH = 63;
+  static final int MAX_CLIENT_LENGTH = 43;
+
+  // Layout of a record. Each variable length field is preceded by its length, in a single byte
+  private static final int EPOCH_MILLI_OFFSET = 0;
+  private static final int LATENCY_NANOS_OFFSET = 8;
+  private static final int STATUS_OFFSET = 16;
+  private static final int METHOD_OFFSET = 20;
+  private static final int PATH_OFFSET = METHOD_OFFSET + 1 + MAX_METHOD_LENGTH;
+  private static final int FORMAT_OFFSET = PATH_OFFSET + 1 + MAX_PATH_LENGTH;
+  private static final int CLIENT_OFFSET = FORMAT_OFFSET + 1 + MAX_FORMAT_LENGTH;
+
+  /** Max interval, in milliseconds, for which the writer backs off, before retrying a failed write. */
+  static final long MAX_RETRY_INTERVAL_MILLIS = 10_000;
+
+  /** Max no. of records drained by the writer in a single batch. */
+  private static final int MAX_BATCH_SIZE = 1024;
+
+  /**
+   * Max length of an encoded entry, in bytes - the JSON field names and punctuation, plus every variable length field
+   * escaped with a (6 byte) unicode escape sequence per character.
+   */
+  private static final int MAX_ENTRY_LENGTH = 256 + 6 * (MAX_METHOD_LENGTH + MAX_PATH_LENGTH + MAX_FORMAT_LENGTH
+    + MAX_CLIENT_LENGTH);
+
+  private static final DateTimeFormatter TIMESTAMP_FORMATTER =
+    DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+  private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+  private static final Logger logger = LoggerFactory.getLogger(AccessLog.class);
+
+  private final PlatformDateTimeProvider platformDateTimeProvider;
+  private final Path path;
+  private final long maxFileSizeBytes;
+  private final int maxFiles;
+  private final long flushIntervalNanos;
+  private final int capacity;
+  private final int indexMask;
+  /** The ring buffer. Accessed by absolute index only, so is safely shared by all threads. */
+  private final ByteBuffer records;
+  /** Sequence of the entry last published in each record, or -1 if none has been. */
+  private final AtomicLongArray publishedSequences;
+  /** Sequence of the next record to be claimed by a request thread. */
+  private final AtomicLong claimSequence = new AtomicLong();
+  /** Sequence of the next record to be read by the writer. Records before it are free to be claimed. */
+  private final AtomicLong readSequence = new AtomicLong();
+  private final LongAdder written = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder writeFailures = new LongAdder();
+  private final Thread writer;
+  private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(MAX_BATCH_SIZE * 512);
+  private final StringBuilder timestamp = new StringBuilder(24);
+  private volatile boolean running;
+  private FileChannel channel;
+  private long fileSizeBytes;
+
+  /**
+   * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to timestamp entries.
+   * @param path the path of the file to which entries are written. Its parent directories are created if need be.
+   * @param bufferCapacity the capacity of the ring buffer, in entries. Rounded up to a power of two. Must be greater
+   * than zero.
+   * @param maxFileSizeBytes the size, in bytes, at which the file is rotated. Must be greater than zero.
+   * @param maxFiles the max no. of rotated files which are kept, in addition to the current file.
+   * @param flushIntervalMillis the interval, in milliseconds, at which the writer checks for new entries when the
+   * buffer is empty. Must be greater than zero.
+   * @param meterRegistry the {@link MeterRegistry} in which the access log's metrics are registered.
+   */
+  @Autowired
+  public AccessLog(PlatformDateTimeProvider platformDateTimeProvider,
+    @Value("${access-log.path:logs/access.log}") String path,
+    @Value("${access-log.buffer-capacity:65536}") int bufferCapacity,
+    @Value("${access-log.max-file-size-bytes:104857600}") long maxFileSizeBytes,
+    @Value("${access-log.max-files:10}") int maxFiles,
+    @Value("${access-log.flush-interval-millis:100}") long flushIntervalMillis,
+    MeterRegistry meterRegistry) {
+    if (bufferCapacity <= 0 || bufferCapacity > 1 << 24) {
+      throw new IllegalArgumentException(
+        "Arg 'bufferCapacity' must be between 1 and " + (1 << 24) + ", not [" + bufferCapacity + "].");
+    }
+    if (maxFileSizeBytes <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'maxFileSizeBytes' must be greater than zero, not [" + maxFileSizeBytes + "].");
+    }
+    if (maxFiles < 0) {
+      throw new IllegalArgumentException("Arg 'maxFiles' must be zero or greater, not [" + maxFiles + "].");
+    }
+    if (flushIntervalMillis <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'flushIntervalMillis' must be greater than zero, not [" + flushIntervalMillis + "].");
+    }
+    this.platformDateTimeProvider = platformDateTimeProvider;
+    this.path = Paths.get(path).toAbsolutePath();
+    this.maxFileSizeBytes = maxFileSizeBytes;
+    this.maxFiles = maxFiles;
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    this.capacity = bufferCapacity == 1 ? 1 : Integer.highestOneBit(bufferCapacity - 1) << 1;
+    this.indexMask = this.capacity - 1;
+    this.records = ByteBuffer.allocate(this.capacity * RECORD_SIZE);
+    this.publishedSequences = new AtomicLongArray(this.capacity);
+    for (int i = 0; i < this.capacity; i++) {
+      this.publishedSequences.set(i, -1);
+    }
+    this.writer = new Thread(this::drain, "access-log-writer");
+    this.writer.setDaemon(true);
+    FunctionCounter.builder("access.log.entries", this.written, LongAdder::doubleValue)
+      .description("No. of access log entries, by outcome - written to the file, or dropped as the buffer was full.")
+      .tag("outcome", "written")
+      .register(meterRegistry);
+    FunctionCounter.builder("access.log.entries", this.dropped, LongAdder::doubleValue)
+      .description("No. of access log entries, by outcome - written to the file, or dropped as the buffer was full.")
+      .tag("outcome", "dropped")
+      .register(meterRegistry);
+    FunctionCounter.builder("access.log.write.failures", this.writeFailures, LongAdder::doubleValue)
+      .description("No. of failed writes of batches of access log entries to the file, which were retried.")
+      .register(meterRegistry);
+  }
+
+  /**
+   * Opens the file and starts the writer. Invoked by the Spring container once the bean has been created.
+   */
+  @PostConstruct
+  public void start() {
+    try {
+      openFile();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to open access log file [" + this.path + "].", e);
+    }
+    this.running = true;
+    this.writer.start();
+    logger.info("Writing access log to [{}].", this.path);
+  }
+
+  /**
+   * Stops the writer, once it's written any entries remaining in the buffer, and closes the file. Invoked by the
+   * Spring container on shutdown.
+   */
+  @PreDestroy
+  public void stop() {
+    this.running = false;
+    LockSupport.unpark(this.writer);
+    try {
+      this.writer.join(TimeUnit.SECONDS.toMillis(10));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Records an entry for a completed request, timestamped with the current platform time. Never blocks.
+   *
+   * @param method the request's HTTP method.
+   * @param path the request's path.
+   * @param format the value of the request's 'format' param, or null if it has none.
+   * @param status the status code of the response.
+   * @param latencyNanos the time taken to handle the request, in nanoseconds.
+   * @param client the IP address of the client which made the request.
+   * @return true if the entry was recorded, false if it was dropped as the buffer was full.
+   */
+  public boolean log(String method, String path, String format, int status, long latencyNanos, String client) {
+    long sequence;
+    do {
+      sequence = this.claimSequence.get();
+      if (sequence - this.readSequence.get() >= this.capacity) {
+        this.dropped.increment();
+        return false;
+      }
+    } while (!this.claimSequence.compareAndSet(sequence, sequence + 1));
+    final int index = (int) sequence & this.indexMask;
+    final int offset = index * RECORD_SIZE;
+    this.records.putLong(offset + EPOCH_MILLI_OFFSET, this.platformDateTimeProvider.getEpochMilli());
+    this.records.putLong(offset + LATENCY_NANOS_OFFSET, latencyNanos);
+    this.records.putInt(offset + STATUS_OFFSET, status);
+    putField(offset + METHOD_OFFSET, method, MAX_METHOD_LENGTH);
+    putField(offset + PATH_OFFSET, path, MAX_PATH_LENGTH);
+    putField(offset + FORMAT_OFFSET, format, MAX_FORMAT_LENGTH);
+    putField(offset + CLIENT_OFFSET, client, MAX_CLIENT_LENGTH);
+    // Publishes the record to the writer. The (release) store orders it after the writes of the record's fields
+    this.publishedSequences.lazySet(index, sequence);
+    return true;
+  }
+
+  /**
+   * @return the no. of entries which have been written to the file.
+   */
+  public long getWrittenCount() {
+    return this.written.sum();
+  }
+
+  /**
+   * @return the no. of entries which were dropped, as the buffer was full.
+   */
+  public long getDroppedCount() {
+    return this.dropped.sum();
+  }
+
+  /**
+   * @return the no. of writes of a batch of entries to the file which failed, and were retried.
+   */
+  public long getWriteFailureCount() {
+    return this.writeFailures.sum();
+  }
+
+  /**
+   * @return the capacity of the ring buffer, in entries.
+   */
+  int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * @return the path of the file to which entries are written.
+   */
+  Path getPath() {
+    return this.path;
+  }
+
+  private void putField(int offset, String value, int maxLength) {
+    final int length = value == null ? 0 : Math.min(value.length(), maxLength);
+    this.records.put(offset, (byte) length);
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      this.records.put(offset + 1 + i, c < 0x80 ? (byte) c : (byte) '?');
+    }
+  }
+
+  /**
+   * The writer thread's loop. Drains and writes batches of entries until stopped, backing off after a failed write,
+   * and then drains any remaining.
+   */
+  private void drain() {
+    try {
+      long retryIntervalNanos = 0;
+      while (this.running) {
+        try {
+          if (drainBatch() == 0) {
+            LockSupport.parkNanos(this, this.flushIntervalNanos);
+          }
+          retryIntervalNanos = 0;
+        } catch (IOException e) {
+          retryIntervalNanos = retryIntervalNanos == 0 ? this.flushIntervalNanos
+            : Math.min(retryIntervalNanos * 2, TimeUnit.MILLISECONDS.toNanos(MAX_RETRY_INTERVAL_MILLIS));
+          handleWriteFailure(e, retryIntervalNanos);
+          LockSupport.parkNanos(this, retryIntervalNanos);
+        }
+      }
+      try {
+        while (drainBatch() > 0) {
+          // Drain remaining entries
+        }
+      } catch (IOException e) {
+        logger.error("Error writing access log file [{}], remaining entries won't be written.", this.path, e);
+      }
+    } catch (RuntimeException e) {
+      logger.error("Unexpected error writing access log, no further entries will be written.", e);
+    } finally {
+      closeFile();
+    }
+  }
+
+  private void handleWriteFailure(IOException e, long retryIntervalNanos) {
+    this.writeFailures.increment();
+    logger.warn("Error writing access log file [{}], retrying in [{}] ms.", this.path,
+      TimeUnit.NANOSECONDS.toMillis(retryIntervalNanos), e);
+    // Any entries in the write buffer which weren't written are still in the ring buffer, and are re-encoded
+    this.writeBuffer.clear();
+    closeFile();
+    this.channel = null;
+  }
+
+  private int drainBatch() throws IOException {
+    long sequence = this.readSequence.get();
+    int count = 0;
+    this.writeBuffer.clear();
+    while (count < MAX_BATCH_SIZE) {
+      final int index = (int) sequence & this.indexMask;
+      // Stops at the first record which is unclaimed, or claimed but not yet published
+      if (this.publishedSequences.get(index) != sequence) {
+        break;
+      }
+      if (this.writeBuffer.remaining() < MAX_ENTRY_LENGTH) {
+        write(sequence);
+      }
+      encode(index * RECORD_SIZE);
+      sequence++;
+      count++;
+    }
+    if (count > 0) {
+      write(sequence);
+      if (this.fileSizeBytes >= this.maxFileSizeBytes) {
+        rotateFile();
+      }
+    }
+    return count;
+  }
+
+  private void encode(int offset) {
+    this.timestamp.setLength(0);
+    TIMESTAMP_FORMATTER.formatTo(Instant.ofEpochMilli(this.records.getLong(offset + EPOCH_MILLI_OFFSET)),
+      this.timestamp);
+    putAscii("{\"timestamp\":\"");
+    putAscii(this.timestamp);
+    putAscii("\",\"method\":\"");
+    putEscapedField(offset + METHOD_OFFSET);
+    putAscii("\",\"path\":\"");
+    putEscapedField(offset + PATH_OFFSET);
+    putAscii("\",\"format\":\"");
+    putEscapedField(offset + FORMAT_OFFSET);
+    putAscii("\",\"status\":");
+    putLong(this.records.getInt(offset + STATUS_OFFSET));
+    putAscii(",\"latencyMicros\":");
+    putLong(TimeUnit.NANOSECONDS.toMicros(this.records.getLong(offset + LATENCY_NANOS_OFFSET)));
+    putAscii(",\"client\":\"");
+    putEscapedField(offset + CLIENT_OFFSET);
+    putAscii("\"}\n");
+  }
+
+  private void putAscii(CharSequence ascii) {
+    for (int i = 0; i < ascii.length(); i++) {
+      this.writeBuffer.put((byte) ascii.charAt(i));
+    }
+  }
+
+  private void putEscapedField(int offset) {
+    final int length = this.records.get(offset);
+    for (int i = 0; i < length; i++) {
+      final byte b = this.records.get(offset + 1 + i);
+      if (b < 0x20 || b == '"' || b == '\\' || b == 0x7F) {
+        this.writeBuffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+          .put(HEX_DIGITS[(b >> 4) & 0xF]).put(HEX_DIGITS[b & 0xF]);
+      } else {
+        this.writeBuffer.put(b);
+      }
+    }
+  }
+
+  private void putLong(long value) {
+    if (value < 0) {
+      this.writeBuffer.put((byte) '-');
+      value = -value;
+    }
+    long divisor = 1;
+    while (divisor <= value / 10) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      this.writeBuffer.put((byte) ('0' + (value / divisor) % 10));
+    }
+  }
+
+  /**
+   * Writes the entries in the write buffer to the file, reopening it first if a previous write failed, and then frees
+   * their records for reuse.
+   *
+   * @param endSequence the sequence of the record following the last of those whose entries are in the write buffer.
+   */
+  private void write(long endSequence) throws IOException {
+    if (this.channel == null) {
+      openFile();
+    }
+    this.writeBuffer.flip();
+    while (this.writeBuffer.hasRemaining()) {
+      this.fileSizeBytes += this.channel.write(this.writeBuffer);
+    }
+    this.writeBuffer.clear();
+    this.written.add(endSequence - this.readSequence.get());
+    // Frees the records for reuse by request threads
+    this.readSequence.lazySet(endSequence);
+  }
+
+  private void openFile() throws IOException {
+    if (this.path.getParent() != null) {
+      Files.createDirectories(this.path.getParent());
+    }
+    this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.APPEND);
+    this.fileSizeBytes = this.channel.size();
+    terminateLastLine();
+  }
+
+  /**
+   * Ends the last line of the file, if a failed write left it partially written, so that the next entry starts on a
+   * line of its own.
+   */
+  private void terminateLastLine() throws IOException {
+    if (this.fileSizeBytes == 0) {
+      return;
+    }
+    final ByteBuffer lastByte = ByteBuffer.allocate(1);
+    try (FileChannel reader = FileChannel.open(this.path, StandardOpenOption.READ)) {
+      reader.read(lastByte, this.fileSizeBytes - 1);
+    }
+    if (lastByte.get(0) != '\n') {
+      this.fileSizeBytes += this.channel.write(ByteBuffer.wrap(new byte[] {'\n'}));
+    }
+  }
+
+  private void rotateFile() throws IOException {
+    this.channel.close();
+    if (this.maxFiles == 0) {
+      Files.delete(this.path);
+    } else {
+      Files.deleteIfExists(rotatedPath(this.maxFiles));
+      for (int i = this.maxFiles - 1; i > 0; i--) {
+        if (Files.exists(rotatedPath(i))) {
+          Files.move(rotatedPath(i), rotatedPath(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+      Files.move(this.path, rotatedPath(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+    openFile();
+  }
+
+  private Path rotatedPath(int index) {
+    return this.path.resolveSibling(this.path.getFileName() + "." + index);
+  }
+
+  private void closeFile() {
+    try {
+      if (this.channel != null && this.channel.isOpen()) {
+        try {
+          this.channel.force(false);
+        } finally {
+          this.channel.close();
+        }
+      }
+    } catch (IOException e) {
+      logger.warn("Error closing access log file [{}].", this.path, e);
+    }
+  }
+}
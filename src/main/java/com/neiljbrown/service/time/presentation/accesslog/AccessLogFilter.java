@@ -0,0 +1,164 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.accesslog;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Servlet {@link javax.servlet.Filter} which records an entry in the {@link AccessLog} for each request to the
+ * service's (versioned) APIs, i.e. those whose path starts with {@link #LOGGED_PATH_PREFIX}.
+ * <p>
+ * Ordered ahead of the service's other filters, so that requests they reject, e.g. by admission control, are also
+ * logged. A request which fails with an exception is logged with a status of 500. The client's IP address is that of
+ * the connection, unless the web container has been configured to derive it from the headers of a proxy (e.g. using
+ * the application property 'server.use-forward-headers').
+ * <p>
+ * A request which is processed asynchronously, e.g. a stream of server-sent events, is only logged once it completes,
+ * with its final status, and its latency to that point, rather than when its (initial) dispatch returns. The filter
+ * also handles its async dispatches, and the request is logged on the last of them, or, if it completes without a
+ * further dispatch, e.g. on a timeout or error, by an {@link AsyncListener}. Whichever comes first logs it.
+ * <p>
+ * Only created in the servlet web execution mode, if the access log is enabled. See {@link AccessLogWebFilter} for the
+ * reactive web execution mode.
+ * <p>
+ * Thread-safe.
+ */
+@Component
+@ConditionalOnProperty(name = "access-log.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class AccessLogFilter extends OncePerRequestFilter {
+
+  /** Prefix of the paths of the requests which are logged. */
+  static final String LOGGED_PATH_PREFIX = "/v1/";
+
+  /** Name of the request param whose value is logged as the requested format. */
+  static final String FORMAT_PARAM = "format";
+
+  private final AccessLog accessLog;
+
+  /**
+   * @param accessLog the {@link AccessLog} in which requests are recorded.
+   */
+  public AccessLogFilter(AccessLog accessLog) {
+    this.accessLog = accessLog;
+  }
+
+  /** Name of the request attribute holding the {@link Entry} of a request, across its dispatches. */
+  static final String ENTRY_ATTRIBUTE = AccessLogFilter.class.getName() + ".ENTRY";
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !request.getServletPath().startsWith(LOGGED_PATH_PREFIX);
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+    throws ServletException, IOException {
+    Entry entry = (Entry) request.getAttribute(ENTRY_ATTRIBUTE);
+    if (entry == null) {
+      entry = new Entry(System.nanoTime());
+      request.setAttribute(ENTRY_ATTRIBUTE, entry);
+    }
+    boolean completed = false;
+    try {
+      filterChain.doFilter(request, response);
+      completed = true;
+    } finally {
+      if (!completed) {
+        entry.log(request, HttpStatus.INTERNAL_SERVER_ERROR.value());
+      } else if (request.isAsyncStarted()) {
+        entry.listen(request, response);
+      } else {
+        entry.log(request, response.getStatus());
+      }
+    }
+  }
+
+  /**
+   * The entry for a request, which may span several dispatches, and is logged at most once.
+   */
+  private final class Entry implements AsyncListener {
+
+    private final long startNanos;
+    private final AtomicBoolean logged = new AtomicBoolean();
+    private volatile boolean listening;
+    private volatile boolean failed;
+
+    Entry(long startNanos) {
+      this.startNanos = startNanos;
+    }
+
+    void listen(HttpServletRequest request, HttpServletResponse response) {
+      if (!this.listening) {
+        this.listening = true;
+        request.getAsyncContext().addListener(this, request, response);
+      }
+    }
+
+    void log(HttpServletRequest request, int status) {
+      if (this.logged.compareAndSet(false, true)) {
+        AccessLogFilter.this.accessLog.log(request.getMethod(), request.getServletPath(),
+          request.getParameter(FORMAT_PARAM), status, System.nanoTime() - this.startNanos, request.getRemoteAddr());
+      }
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      final int status = ((HttpServletResponse) event.getSuppliedResponse()).getStatus();
+      log((HttpServletRequest) event.getSuppliedRequest(),
+        this.failed && status < HttpStatus.BAD_REQUEST.value() ? HttpStatus.INTERNAL_SERVER_ERROR.value() : status);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      // Logged on completion, with the status of the response to the timeout
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      this.failed = true;
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      // Async processing has been restarted by a dispatch, which clears the listeners, so re-registers
+      event.getAsyncContext().addListener(this, event.getSuppliedRequest(), event.getSuppliedResponse());
+    }
+  }
+}
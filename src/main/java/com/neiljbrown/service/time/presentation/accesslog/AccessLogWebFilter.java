@@ -0,0 +1,85 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.accesslog;
+
+import java.net.InetSocketAddress;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Reactive {@link WebFilter} which records an entry in the {@link AccessLog} for each request to the service's
+ * (versioned) APIs. The reactive equivalent of {@link AccessLogFilter}, which it behaves the same as. The entry is
+ * recorded once the response has completed, or failed, or the request was cancelled.
+ * <p>
+ * Only created in the reactive web execution mode, if the access log is enabled.
+ * <p>
+ * Thread-safe.
+ */
+@Component
+@ConditionalOnProperty(name = "access-log.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class AccessLogWebFilter implements WebFilter {
+
+  private final AccessLog accessLog;
+
+  /**
+   * @param accessLog the {@link AccessLog} in which requests are recorded.
+   */
+  public AccessLogWebFilter(AccessLog accessLog) {
+    this.accessLog = accessLog;
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    final String path = exchange.getRequest().getPath().pathWithinApplication().value();
+    if (!path.startsWith(AccessLogFilter.LOGGED_PATH_PREFIX)) {
+      return chain.filter(exchange);
+    }
+    final long startNanos = System.nanoTime();
+    return chain.filter(exchange).doFinally(signalType -> log(exchange, path, signalType, startNanos));
+  }
+
+  private void log(ServerWebExchange exchange, String path, SignalType signalType, long startNanos) {
+    final ServerHttpRequest request = exchange.getRequest();
+    final HttpStatus status = exchange.getResponse().getStatusCode();
+    this.accessLog.log(request.getMethodValue(), path, request.getQueryParams().getFirst(AccessLogFilter.FORMAT_PARAM),
+      status != null ? status.value()
+        : (signalType == SignalType.ON_ERROR ? HttpStatus.INTERNAL_SERVER_ERROR : HttpStatus.OK).value(),
+      System.nanoTime() - startNanos, getRemoteAddress(request));
+  }
+
+  private static String getRemoteAddress(ServerHttpRequest request) {
+    final InetSocketAddress remoteAddress = request.getRemoteAddress();
+    if (remoteAddress == null) {
+      return "";
+    }
+    return remoteAddress.getAddress() != null ? remoteAddress.getAddress().getHostAddress()
+      : remoteAddress.getHostString();
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.admission;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Servlet {@link javax.servlet.Filter} which applies admission control to requests to the 'Get Platform Time' API
+ * before they reach its controller, as decided by a {@link ClientRateLimiter}.
+ * <p>
+ * A rejected request is answered with a 429 (Too Many Requests) error response, comprising a pre-built body, and a
+ * Retry-After header. The client's IP address is that of the connection, unless the web container has been configured
+ * to derive it from the headers of a proxy (e.g. using the application property 'server.use-forward-headers').
+ * <p>
+ * Only created in the servlet web execution mode, if admission control is enabled. See
+ * {@link AdmissionControlWebFilter} for the reactive web execution mode.
+ * <p>
+ * Thread-safe.
+ */
+@Component
+@ConditionalOnProperty(name = "admission-control.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+  private final ClientRateLimiter clientRateLimiter;
+
+  /**
+   * @param clientRateLimiter the {@link ClientRateLimiter} which decides whether to admit requests.
+   */
+  public AdmissionControlFilter(ClientRateLimiter clientRateLimiter) {
+    this.clientRateLimiter = clientRateLimiter;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !ClientRateLimiter.ADMITTED_PATH.equals(request.getServletPath());
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+    throws ServletException, IOException {
+    if (this.clientRateLimiter.tryAdmit(request.getRemoteAddr())) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+    response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setHeader(HttpHeaders.RETRY_AFTER, ClientRateLimiter.RETRY_AFTER_SECONDS);
+    response.setContentLength(ClientRateLimiter.RATE_LIMIT_EXCEEDED_BODY.length);
+    response.getOutputStream().write(ClientRateLimiter.RATE_LIMIT_EXCEEDED_BODY);
+  }
+}
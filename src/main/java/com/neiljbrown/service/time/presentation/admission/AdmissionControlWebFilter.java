@@ -0,0 +1,79 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.admission;
+
+import java.net.InetSocketAddress;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive {@link WebFilter} which applies admission control to requests to the 'Get Platform Time' API before they
+ * reach its controller, as decided by a {@link ClientRateLimiter}. The reactive equivalent of
+ * {@link AdmissionControlFilter}, which it behaves the same as.
+ * <p>
+ * Only created in the reactive web execution mode, if admission control is enabled.
+ * <p>
+ * Thread-safe.
+ */
+@Component
+@ConditionalOnProperty(name = "admission-control.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class AdmissionControlWebFilter implements WebFilter {
+
+  private final ClientRateLimiter clientRateLimiter;
+
+  /**
+   * @param clientRateLimiter the {@link ClientRateLimiter} which decides whether to admit requests.
+   */
+  public AdmissionControlWebFilter(ClientRateLimiter clientRateLimiter) {
+    this.clientRateLimiter = clientRateLimiter;
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    final ServerHttpRequest request = exchange.getRequest();
+    if (!ClientRateLimiter.ADMITTED_PATH.equals(request.getPath().pathWithinApplication().value())
+      || this.clientRateLimiter.tryAdmit(getRemoteAddress(request))) {
+      return chain.filter(exchange);
+    }
+    final ServerHttpResponse response = exchange.getResponse();
+    response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+    response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+    response.getHeaders().set(HttpHeaders.RETRY_AFTER, ClientRateLimiter.RETRY_AFTER_SECONDS);
+    response.getHeaders().setContentLength(ClientRateLimiter.RATE_LIMIT_EXCEEDED_BODY.length);
+    return response.writeWith(Mono.just(response.bufferFactory().wrap(ClientRateLimiter.RATE_LIMIT_EXCEEDED_BODY)));
+  }
+
+  private static String getRemoteAddress(ServerHttpRequest request) {
+    final InetSocketAddress remoteAddress = request.getRemoteAddress();
+    if (remoteAddress == null) {
+      return "";
+    }
+    return remoteAddress.getAddress() != null ? remoteAddress.getAddress().getHostAddress()
+      : remoteAddress.getHostString();
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.admission;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * Decides whether to admit requests to the 'Get Platform Time' API, by limiting the rate of requests from each client
+ * using a per-client token bucket, so that a few clients which poll excessively can't add latency for all the others.
+ * <p>
+ * A client is identified by the IP address from which it connected. Any API key supplied in a request (e.g. in an
+ * X-Api-Key header) is ignored, as the service doesn't authenticate it, so keying on it would let a client bypass its
+ * limit, and fill the map of clients, just by sending a different key with each request. Each client's bucket holds up
+ * to a configurable burst of tokens, and is refilled at a configurable rate (tokens per second). A request is admitted
+ * if it can take a token from its client's bucket, and rejected otherwise.
+ * <p>
+ * Each bucket is held in a single {@link AtomicLong}, as the 'theoretical arrival time' of the client's next request,
+ * as per the Generic Cell Rate Algorithm (GCRA), which is equivalent to a token bucket. Taking a token is a single
+ * compare-and-set, so admitting a request neither locks nor allocates (once its client is known). Rather than each
+ * bucket being refilled by a timer, a bucket's tokens are derived from the platform time when it's next used, as read
+ * from the {@link PlatformDateTimeProvider}. If the platform time steps backwards, buckets are treated as full.
+ * <p>
+ * The buckets are held in a {@link ConcurrentHashMap} keyed by client. To bound its memory, the no. of clients is
+ * limited to (approximately) a configurable max. When the max is reached, idle clients - those whose bucket has been
+ * refilled to its capacity, and so are indistinguishable from a new client - are evicted, at most once per
+ * {@link #EVICTION_INTERVAL_MILLIS}, by the thread which found the map full. If no clients are idle, requests from
+ * new clients share a single overflow bucket, until space is freed.
+ * <p>
+ * Rejected requests are counted in the platform.time.errors metric, tagged with a code of
+ * {@link ApiErrorCode#RATE_LIMIT_EXCEEDED}, and the no. of clients being tracked is published as the
+ * platform.time.admission.clients metric.
+ * <p>
+ * Only enabled if the application property 'admission-control.enabled' is set to 'true'.
+ * <p>
+ * Thread-safe.
+ */
+@Component
+@ConditionalOnProperty(name = "admission-control.enabled", havingValue = "true")
+public class ClientRateLimiter {
+
+  /** Path of the API whose requests are subject to admission control. */
+  static final String ADMITTED_PATH = "/v1/platform-time";
+
+  /** Value of the Retry-After header of a rejected request's response, in seconds. */
+  static final String RETRY_AFTER_SECONDS = "1";
+
+  /**
+   * Pre-built body of the error response to a rejected request. Shared by all such requests, so that load is shed as
+   * cheaply as possible. Must not be modified.
+   */
+  static final byte[] RATE_LIMIT_EXCEEDED_BODY = ("{\"code\":\"" + ApiErrorCode.RATE_LIMIT_EXCEEDED + "\","
+    + "\"message\":\"Rate limit exceeded. Retry after " + RETRY_AFTER_SECONDS + " second(s).\"}")
+    .getBytes(StandardCharsets.UTF_8);
+
+  /** Min interval between evictions of idle clients, in milliseconds. */
+  static final long EVICTION_INTERVAL_MILLIS = 1000;
+
+  private static final long MICROS_PER_SECOND = 1_000_000L;
+  private static final long MICROS_PER_MILLI = 1000L;
+
+  private final PlatformDateTimeProvider platformDateTimeProvider;
+  private final long emissionIntervalMicros;
+  private final long burstToleranceMicros;
+  private final int maxClients;
+  private final ConcurrentHashMap<String, AtomicLong> bucketsByClient = new ConcurrentHashMap<>();
+  private final AtomicLong overflowBucket = new AtomicLong();
+  private final AtomicLong nextEvictionEpochMilli = new AtomicLong();
+  private final LongAdder rejected = new LongAdder();
+  private final Counter rejectedCounter;
+
+  /**
+   * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to obtain the current platform
+   * date/time, from which buckets are refilled.
+   * @param requestsPerSecond the rate at which each client's bucket is refilled, in tokens (requests) per second. Must
+   * be between 1 and 1,000,000.
+   * @param burst the capacity of each client's bucket, i.e. the max no. of requests a client can make in a burst. Must
+   * be greater than zero.
+   * @param maxClients the max no. of clients whose buckets are held. Must be greater than zero.
+   * @param meterRegistry the {@link MeterRegistry} in which the limiter's metrics are registered.
+   */
+  @Autowired
+  public ClientRateLimiter(PlatformDateTimeProvider platformDateTimeProvider,
+    @Value("${admission-control.requests-per-second:50}") int requestsPerSecond,
+    @Value("${admission-control.burst:100}") int burst,
+    @Value("${admission-control.max-clients:100000}") int maxClients,
+    MeterRegistry meterRegistry) {
+    if (requestsPerSecond <= 0 || requestsPerSecond > MICROS_PER_SECOND) {
+      throw new IllegalArgumentException(
+        "Arg 'requestsPerSecond' must be between 1 and " + MICROS_PER_SECOND + ", not [" + requestsPerSecond + "].");
+    }
+    if (burst <= 0) {
+      throw new IllegalArgumentException("Arg 'burst' must be greater than zero, not [" + burst + "].");
+    }
+    if (maxClients <= 0) {
+      throw new IllegalArgumentException("Arg 'maxClients' must be greater than zero, not [" + maxClients + "].");
+    }
+    this.platformDateTimeProvider = platformDateTimeProvider;
+    this.emissionIntervalMicros = MICROS_PER_SECOND / requestsPerSecond;
+    this.burstToleranceMicros = this.emissionIntervalMicros * burst;
+    this.maxClients = maxClients;
+    this.rejectedCounter = Counter.builder("platform.time.errors")
+      .description("No. of 'Get Platform Time' API error responses.")
+      .tag("code", ApiErrorCode.RATE_LIMIT_EXCEEDED.name())
+      .register(meterRegistry);
+    Gauge.builder("platform.time.admission.clients", this.bucketsByClient, ConcurrentHashMap::size)
+      .description("No. of clients whose request rate is being tracked by admission control.")
+      .register(meterRegistry);
+  }
+
+  /**
+   * Decides whether to admit a request, taking a token from its client's bucket if so.
+   *
+   * @param remoteAddress the IP address of the client from which the request was received.
+   * @return true if the request should be admitted, false if it should be rejected as its client has exceeded its
+   * rate limit.
+   */
+  public boolean tryAdmit(String remoteAddress) {
+    final long epochMilli = this.platformDateTimeProvider.getEpochMilli();
+    AtomicLong bucket = this.bucketsByClient.get(remoteAddress);
+    if (bucket == null) {
+      bucket = getOrAddBucket(remoteAddress, epochMilli);
+    }
+    if (tryTakeToken(bucket, epochMilli * MICROS_PER_MILLI)) {
+      return true;
+    }
+    this.rejected.increment();
+    this.rejectedCounter.increment();
+    return false;
+  }
+
+  /**
+   * @return the no. of requests which have been rejected.
+   */
+  public long getRejectedCount() {
+    return this.rejected.sum();
+  }
+
+  /**
+   * @return the no. of clients whose buckets are currently held.
+   */
+  int getClientCount() {
+    return this.bucketsByClient.size();
+  }
+
+  private AtomicLong getOrAddBucket(String clientKey, long epochMilli) {
+    if (this.bucketsByClient.size() >= this.maxClients) {
+      evictIdleClients(epochMilli);
+      if (this.bucketsByClient.size() >= this.maxClients) {
+        return this.overflowBucket;
+      }
+    }
+    // A new bucket's theoretical arrival time is in the past, so it starts full
+    return this.bucketsByClient.computeIfAbsent(clientKey, key -> new AtomicLong());
+  }
+
+  /**
+   * Takes a token from a bucket, if one's available, as per the GCRA. The bucket holds the theoretical arrival time
+   * (TAT) of the next request - the time at which it would be full. Each admitted request advances the TAT by the
+   * emission interval (the time taken to refill one token), and a request is admitted only if the advanced TAT is no
+   * more than the burst tolerance (the time taken to refill the whole bucket) ahead of now.
+   */
+  private boolean tryTakeToken(AtomicLong bucket, long nowMicros) {
+    while (true) {
+      final long theoreticalArrivalMicros = bucket.get();
+      // A TAT further ahead than the bucket's capacity can only result from the platform time stepping backwards
+      final long fromMicros = theoreticalArrivalMicros - nowMicros > this.burstToleranceMicros ? nowMicros
+        : Math.max(theoreticalArrivalMicros, nowMicros);
+      final long nextTheoreticalArrivalMicros = fromMicros + this.emissionIntervalMicros;
+      if (nextTheoreticalArrivalMicros - nowMicros > this.burstToleranceMicros) {
+        return false;
+      }
+      if (bucket.compareAndSet(theoreticalArrivalMicros, nextTheoreticalArrivalMicros)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Removes the buckets of clients which are idle, i.e. whose bucket is full. Skipped if another thread has evicted
+   * clients within the last {@link #EVICTION_INTERVAL_MILLIS}. A client which takes a token concurrently with its
+   * bucket being evicted may have that token refunded, which at worst admits one extra request.
+   */
+  private void evictIdleClients(long epochMilli) {
+    final long nextEvictionEpochMilli = this.nextEvictionEpochMilli.get();
+    // Also evicts if the platform time has stepped backwards, rather than waiting for it to catch up
+    final boolean evictedRecently = epochMilli < nextEvictionEpochMilli
+      && nextEvictionEpochMilli - epochMilli <= EVICTION_INTERVAL_MILLIS;
+    if (evictedRecently
+      || !this.nextEvictionEpochMilli.compareAndSet(nextEvictionEpochMilli, epochMilli + EVICTION_INTERVAL_MILLIS)) {
+      return;
+    }
+    final long nowMicros = epochMilli * MICROS_PER_MILLI;
+    this.bucketsByClient.values().removeIf(bucket -> bucket.get() <= nowMicros);
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.util.Arrays;
+
+/**
+ * A reusable, growable buffer of ASCII encoded bytes, supporting writing numbers as digits directly into the buffer,
+ * without allocating intermediate {@link String strings}.
+ * <p>
+ * Intended to be reused, by {@link #clear() clearing} it before writing each new value. A buffer per thread is
+ * available from {@link #forCurrentThread()}.
+ * <p>
+ * Not thread-safe.
+ */
+final class AsciiBuffer {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 256;
+
+  private static final ThreadLocal<AsciiBuffer> THREAD_BUFFERS =
+    ThreadLocal.withInitial(() -> new AsciiBuffer(DEFAULT_INITIAL_CAPACITY));
+
+  private static final byte[] LONG_MIN_VALUE_DIGITS = Long.toString(Long.MIN_VALUE).getBytes();
+
+  private byte[] bytes;
+  private int length;
+
+  /**
+   * @param initialCapacity the initial capacity of the buffer, in bytes.
+   */
+  AsciiBuffer(int initialCapacity) {
+    this.bytes = new byte[initialCapacity];
+  }
+
+  /**
+   * Returns the current thread's buffer, cleared. The buffer's contents must be copied, e.g. using
+   * {@link #toByteArray()}, before the buffer is next obtained on the same thread.
+   *
+   * @return the current thread's buffer.
+   */
+  static AsciiBuffer forCurrentThread() {
+    return THREAD_BUFFERS.get().clear();
+  }
+
+  /**
+   * Empties the buffer, retaining its capacity, so that it can be reused.
+   *
+   * @return this buffer.
+   */
+  AsciiBuffer clear() {
+    this.length = 0;
+    return this;
+  }
+
+  /**
+   * @return the no. of bytes written to the buffer.
+   */
+  int length() {
+    return this.length;
+  }
+
+  /**
+   * @return a copy of the bytes written to the buffer.
+   */
+  byte[] toByteArray() {
+    return Arrays.copyOf(this.bytes, this.length);
+  }
+
+  /**
+   * Copies the bytes written to the buffer into an array.
+   *
+   * @param destination the array to copy to.
+   * @param offset the offset in the array at which to copy.
+   */
+  void copyTo(byte[] destination, int offset) {
+    System.arraycopy(this.bytes, 0, destination, offset, this.length);
+  }
+
+  /**
+   * @param c an ASCII character.
+   * @return this buffer.
+   */
+  AsciiBuffer append(char c) {
+    ensureCapacity(1);
+    this.bytes[this.length++] = (byte) c;
+    return this;
+  }
+
+  /**
+   * @param ascii a string comprising only ASCII characters.
+   * @return this buffer.
+   */
+  AsciiBuffer append(String ascii) {
+    final int stringLength = ascii.length();
+    ensureCapacity(stringLength);
+    for (int i = 0; i < stringLength; i++) {
+      this.bytes[this.length++] = (byte) ascii.charAt(i);
+    }
+    return this;
+  }
+
+  /**
+   * @param ascii an array of ASCII encoded bytes.
+   * @return this buffer.
+   */
+  AsciiBuffer append(byte[] ascii) {
+    ensureCapacity(ascii.length);
+    System.arraycopy(ascii, 0, this.bytes, this.length, ascii.length);
+    this.length += ascii.length;
+    return this;
+  }
+
+  /**
+   * Appends a non-negative value as a fixed no. of digits, zero-padded, or truncated to its least significant digits.
+   *
+   * @param value the value. Must not be negative.
+   * @param digits the no. of digits.
+   * @return this buffer.
+   */
+  AsciiBuffer appendDigits(long value, int digits) {
+    ensureCapacity(digits);
+    long remaining = value;
+    for (int i = this.length + digits - 1; i >= this.length; i--) {
+      this.bytes[i] = (byte) ('0' + remaining % 10);
+      remaining /= 10;
+    }
+    this.length += digits;
+    return this;
+  }
+
+  /**
+   * Appends a value as the minimum no. of digits, preceded by a minus sign if it's negative, as per
+   * {@link Long#toString(long)}.
+   *
+   * @param value the value.
+   * @return this buffer.
+   */
+  AsciiBuffer appendLong(long value) {
+    if (value == Long.MIN_VALUE) {
+      return append(LONG_MIN_VALUE_DIGITS);
+    }
+    if (value < 0) {
+      append('-');
+    }
+    final long absValue = Math.abs(value);
+    int digits = 1;
+    for (long threshold = 10; digits < 19 && absValue >= threshold; threshold *= 10) {
+      digits++;
+    }
+    return appendDigits(absValue, digits);
+  }
+
+  private void ensureCapacity(int additionalLength) {
+    if (this.length + additionalLength > this.bytes.length) {
+      this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.length + additionalLength));
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Objects;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.neiljbrown.service.time.business.BusinessCalendarProvider;
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * {@link RestController Controller for RESTful web API} that handles requests for business-day computations against
+ * a named business calendar - whether a date is a business day, adding business days to a date, and counting the
+ * business days between two dates.
+ * <p>
+ * Dates are ISO-8601 local dates, e.g. 2018-10-06, and where optional, default to the current date of the Platform
+ * time, in UTC.
+ * <p>
+ * Singleton. Controller handling methods must be thread-safe.
+ */
+@RestController
+public class BusinessDaysController {
+
+  /**
+   * Pre-built responses returned for a request containing an invalid request param. Immutable, so shared by all such
+   * requests.
+   */
+  static final ResponseEntity<byte[]> INVALID_CALENDAR_RESPONSE = badRequest(
+    "Invalid 'calendar' request param. Must be the name of a supported business calendar, e.g. target.");
+  static final ResponseEntity<byte[]> INVALID_DATE_RESPONSE = badRequest(
+    "Invalid date request param. Must be an ISO-8601 date between 1900-01-01 and 2099-12-31, e.g. 2018-10-06.");
+  static final ResponseEntity<byte[]> INVALID_DAYS_RESPONSE = badRequest(
+    "Invalid 'days' request param. Must be an integer no. of business days, e.g. 2 or -2, such that the resulting "
+      + "date is between 1900-01-01 and 2099-12-31.");
+
+  private static final long SECONDS_PER_DAY = DateTimeWriter.SECONDS_PER_DAY;
+
+  private final PlatformDateTimeProvider platformDateTimeProvider;
+  private final BusinessCalendarProvider businessCalendarProvider;
+
+  /**
+   * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to obtain current platform
+   * date/time.
+   * @param businessCalendarProvider instance of {@link BusinessCalendarProvider} used to perform business-day
+   * computations.
+   */
+  public BusinessDaysController(PlatformDateTimeProvider platformDateTimeProvider,
+    BusinessCalendarProvider businessCalendarProvider) {
+    this.platformDateTimeProvider = Objects.requireNonNull(platformDateTimeProvider,
+      "Arg 'platformDateTimeProvider' must not be null.");
+    this.businessCalendarProvider = Objects.requireNonNull(businessCalendarProvider,
+      "Arg 'businessCalendarProvider' must not be null.");
+  }
+
+  /**
+   * Handles a request to check whether a date is a business day, e.g.
+   * {"calendar":"target","date":"2019-04-19","businessDay":false}.
+   *
+   * @param calendar the name of the business calendar. Mandatory.
+   * @param date the date. Optional. If not specified defaults to the current Platform date.
+   * @return a {@link ResponseEntity}. If the request was successful, as indicated by a status code of 200, the body
+   * contains the result. Else the body contains an error representation detailing why the request failed.
+   */
+  @GetMapping(value = "/v1/business-days", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> isBusinessDay(
+    @RequestParam(value = "calendar", required = false) String calendar,
+    @RequestParam(value = "date", required = false) String date) {
+    if (!this.businessCalendarProvider.isSupportedCalendar(calendar)) {
+      return INVALID_CALENDAR_RESPONSE;
+    }
+    final long epochDay = parseDate(date);
+    if (!this.businessCalendarProvider.isSupportedDate(epochDay)) {
+      return INVALID_DATE_RESPONSE;
+    }
+    final boolean businessDay = this.businessCalendarProvider.isBusinessDay(calendar, epochDay);
+    final AsciiBuffer json = startJson(calendar).append(",\"date\":\"");
+    DateTimeWriter.appendDate(json, epochDay).append("\",\"businessDay\":").append(businessDay ? "true" : "false");
+    return ok(json.append('}'));
+  }
+
+  /**
+   * Handles a request to add (or subtract) a number of business days to a date, e.g.
+   * {"calendar":"target","date":"2019-04-18","days":1,"result":"2019-04-23"}.
+   *
+   * @param calendar the name of the business calendar. Mandatory.
+   * @param date the date. Optional. If not specified defaults to the current Platform date. Needn't be a business day.
+   * @param days the no. of business days to add. Mandatory. A negative value subtracts business days.
+   * @return a {@link ResponseEntity}. If the request was successful, as indicated by a status code of 200, the body
+   * contains the resulting business day. Else the body contains an error representation detailing why the request
+   * failed.
+   */
+  @GetMapping(value = "/v1/business-days/add", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> addBusinessDays(
+    @RequestParam(value = "calendar", required = false) String calendar,
+    @RequestParam(value = "date", required = false) String date,
+    @RequestParam(value = "days", required = false) String days) {
+    if (!this.businessCalendarProvider.isSupportedCalendar(calendar)) {
+      return INVALID_CALENDAR_RESPONSE;
+    }
+    final long epochDay = parseDate(date);
+    if (!this.businessCalendarProvider.isSupportedDate(epochDay)) {
+      return INVALID_DATE_RESPONSE;
+    }
+    if (days == null) {
+      return INVALID_DAYS_RESPONSE;
+    }
+    final long businessDays;
+    final long resultEpochDay;
+    try {
+      businessDays = Long.parseLong(days);
+      resultEpochDay = this.businessCalendarProvider.addBusinessDays(calendar, epochDay, businessDays);
+    } catch (IllegalArgumentException e) {
+      // Either an invalid no., or a result outside of the range of supported dates
+      return INVALID_DAYS_RESPONSE;
+    }
+    final AsciiBuffer json = startJson(calendar).append(",\"date\":\"");
+    DateTimeWriter.appendDate(json, epochDay).append("\",\"days\":").appendLong(businessDays).append(",\"result\":\"");
+    DateTimeWriter.appendDate(json, resultEpochDay).append('"');
+    return ok(json.append('}'));
+  }
+
+  /**
+   * Handles a request to count the number of business days from one date (inclusive) to another (exclusive), e.g.
+   * {"calendar":"target","from":"2019-04-01","to":"2019-05-01","count":20}. The count is negative if the end date is
+   * before the start date.
+   *
+   * @param calendar the name of the business calendar. Mandatory.
+   * @param from the start date (inclusive). Optional. If not specified defaults to the current Platform date.
+   * @param to the end date (exclusive). Mandatory.
+   * @return a {@link ResponseEntity}. If the request was successful, as indicated by a status code of 200, the body
+   * contains the count. Else the body contains an error representation detailing why the request failed.
+   */
+  @GetMapping(value = "/v1/business-days/count", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> countBusinessDays(
+    @RequestParam(value = "calendar", required = false) String calendar,
+    @RequestParam(value = "from", required = false) String from,
+    @RequestParam(value = "to", required = false) String to) {
+    if (!this.businessCalendarProvider.isSupportedCalendar(calendar)) {
+      return INVALID_CALENDAR_RESPONSE;
+    }
+    final long fromEpochDay = parseDate(from);
+    final long toEpochDay = to != null ? parseDate(to) : Long.MIN_VALUE;
+    // The end date is exclusive, so may also be the day after the last supported date
+    if (!this.businessCalendarProvider.isSupportedDate(fromEpochDay)
+      || !(this.businessCalendarProvider.isSupportedDate(toEpochDay)
+      || (toEpochDay != Long.MIN_VALUE && this.businessCalendarProvider.isSupportedDate(toEpochDay - 1)))) {
+      return INVALID_DATE_RESPONSE;
+    }
+    final long count = this.businessCalendarProvider.countBusinessDays(calendar, fromEpochDay, toEpochDay);
+    final AsciiBuffer json = startJson(calendar).append(",\"from\":\"");
+    DateTimeWriter.appendDate(json, fromEpochDay).append("\",\"to\":\"");
+    DateTimeWriter.appendDate(json, toEpochDay).append("\",\"count\":").appendLong(count);
+    return ok(json.append('}'));
+  }
+
+  /**
+   * @return the supplied date as a number of days since the epoch, the current Platform date if it's null, or
+   * {@link Long#MIN_VALUE}, which isn't a supported date, if it's invalid.
+   */
+  private long parseDate(String date) {
+    if (date == null) {
+      return Math.floorDiv(this.platformDateTimeProvider.getEpochSecond(), SECONDS_PER_DAY);
+    }
+    try {
+      return LocalDate.parse(date).toEpochDay();
+    } catch (DateTimeException e) {
+      return Long.MIN_VALUE;
+    }
+  }
+
+  /**
+   * Starts encoding a JSON response, directly rather than serialised by Jackson. Calendar names only contain
+   * characters which don't need escaping.
+   */
+  private static AsciiBuffer startJson(String calendar) {
+    return AsciiBuffer.forCurrentThread().append("{\"calendar\":\"").append(calendar).append('"');
+  }
+
+  private static ResponseEntity<byte[]> ok(AsciiBuffer json) {
+    return ResponseEntity.ok()
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(json.toByteArray());
+  }
+
+  private static ResponseEntity<byte[]> badRequest(String message) {
+    return ResponseEntity.badRequest()
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(("{\"code\":\"" + ApiErrorCode.INVALID_REQUEST_PARAM_VALUE + "\",\"message\":\"" + message + "\"}")
+        .getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Objects;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.neiljbrown.service.time.business.CallbackScheduler;
+import com.neiljbrown.service.time.business.CallbackUrlNotPermittedException;
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+import com.neiljbrown.service.time.business.ScheduledCallback;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * {@link RestController Controller for RESTful web API} that handles requests to schedule callbacks - an HTTP POST
+ * to a client's webhook URL - at a platform time, or after a delay, and to get or cancel pending callbacks. See
+ * {@link CallbackScheduler}.
+ * <p>
+ * Only enabled when the callback-scheduler.enabled property is true.
+ * <p>
+ * Singleton. Controller handling methods must be thread-safe.
+ */
+@RestController
+@ConditionalOnProperty(name = "callback-scheduler.enabled", havingValue = "true")
+public class CallbacksController {
+
+  /**
+   * Pre-built responses returned for an invalid request. Immutable, so shared by all such requests.
+   */
+  static final ResponseEntity<byte[]> INVALID_URL_RESPONSE = error(HttpStatus.BAD_REQUEST,
+    ApiErrorCode.INVALID_REQUEST_PARAM_VALUE,
+    "Invalid 'url' request param. Must be an absolute http or https URL, for a permitted host.");
+  static final ResponseEntity<byte[]> INVALID_TIME_RESPONSE = error(HttpStatus.BAD_REQUEST,
+    ApiErrorCode.INVALID_REQUEST_PARAM_VALUE,
+    "Invalid callback time request params. Specify one of 'at', an ISO-8601 instant, e.g. 2018-10-06T09:30:00Z, or "
+      + "'delayMillis', a no. of milliseconds zero or greater, within the max delay.");
+  static final ResponseEntity<byte[]> CALLBACK_LIMIT_EXCEEDED_RESPONSE = error(HttpStatus.CONFLICT,
+    ApiErrorCode.CALLBACK_LIMIT_EXCEEDED, "Max no. of pending callbacks reached. Retry later.");
+
+  private final PlatformDateTimeProvider platformDateTimeProvider;
+  private final CallbackScheduler callbackScheduler;
+
+  /**
+   * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to obtain current platform
+   * date/time.
+   * @param callbackScheduler instance of {@link CallbackScheduler} used to schedule the callbacks.
+   */
+  public CallbacksController(PlatformDateTimeProvider platformDateTimeProvider, CallbackScheduler callbackScheduler) {
+    this.platformDateTimeProvider = Objects.requireNonNull(platformDateTimeProvider,
+      "Arg 'platformDateTimeProvider' must not be null.");
+    this.callbackScheduler = Objects.requireNonNull(callbackScheduler, "Arg 'callbackScheduler' must not be null.");
+  }
+
+  /**
+   * Handles a request to schedule a callback, e.g.
+   * {"id":22541235012599808,"url":"http://localhost:9000/hook","fireTime":"2018-10-06T09:30:00.000Z"}.
+   * <p>
+   * When the callback fires, its webhook is sent a POST request, whose JSON body contains the callback's ID and its
+   * scheduled and actual fire times.
+   *
+   * @param url the URL of the webhook. Mandatory.
+   * @param at the platform time at which to make the callback, as an ISO-8601 instant. Mutually exclusive with
+   * delayMillis.
+   * @param delayMillis the delay, in milliseconds, after the current platform time, after which to make the callback.
+   * Mutually exclusive with at.
+   * @return a {@link ResponseEntity}. If the request was successful, as indicated by a status code of 201, the body
+   * contains the scheduled callback. Else the body contains an error representation detailing why the request failed.
+   */
+  @PostMapping(value = "/v1/callbacks", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> scheduleCallback(
+    @RequestParam(value = "url", required = false) String url,
+    @RequestParam(value = "at", required = false) String at,
+    @RequestParam(value = "delayMillis", required = false) String delayMillis) {
+    final URI parsedUrl;
+    try {
+      parsedUrl = new URI(url != null ? url : "");
+    } catch (URISyntaxException e) {
+      return INVALID_URL_RESPONSE;
+    }
+    if (!this.callbackScheduler.isPermittedUrl(parsedUrl)) {
+      return INVALID_URL_RESPONSE;
+    }
+    if ((at == null) == (delayMillis == null)) {
+      return INVALID_TIME_RESPONSE;
+    }
+    final long fireEpochMilli;
+    try {
+      if (at != null) {
+        fireEpochMilli = Instant.parse(at).toEpochMilli();
+      } else {
+        final long parsedDelayMillis = Long.parseLong(delayMillis);
+        if (parsedDelayMillis < 0) {
+          return INVALID_TIME_RESPONSE;
+        }
+        fireEpochMilli = Math.addExact(this.platformDateTimeProvider.getEpochMilli(), parsedDelayMillis);
+      }
+    } catch (DateTimeException | ArithmeticException | NumberFormatException e) {
+      return INVALID_TIME_RESPONSE;
+    }
+    final ScheduledCallback callback;
+    try {
+      callback = this.callbackScheduler.schedule(fireEpochMilli, parsedUrl);
+    } catch (CallbackUrlNotPermittedException e) {
+      // The URL's host now resolves to a non-public address, despite having passed the above check
+      return INVALID_URL_RESPONSE;
+    } catch (IllegalArgumentException e) {
+      // A time beyond the max delay
+      return INVALID_TIME_RESPONSE;
+    } catch (IllegalStateException e) {
+      return CALLBACK_LIMIT_EXCEEDED_RESPONSE;
+    }
+    return ResponseEntity.created(URI.create("/v1/callbacks/" + callback.getId()))
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(toJson(callback));
+  }
+
+  /**
+   * Handles a request to get a pending callback.
+   *
+   * @param id the ID of the callback.
+   * @return a {@link ResponseEntity}. If the callback is pending, as indicated by a status code of 200, the body
+   * contains it. Else, if it's been made or cancelled, or doesn't exist, a status code of 404.
+   */
+  @GetMapping(value = "/v1/callbacks/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> getCallback(@PathVariable("id") String id) {
+    final ScheduledCallback callback = this.callbackScheduler.getPendingCallback(parseId(id));
+    if (callback == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok()
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(toJson(callback));
+  }
+
+  /**
+   * Handles a request to cancel a pending callback.
+   *
+   * @param id the ID of the callback.
+   * @return a {@link ResponseEntity}. If the callback was pending, and has been cancelled, a status code of 204. Else,
+   * if it's been made or cancelled, or doesn't exist, a status code of 404.
+   */
+  @DeleteMapping(value = "/v1/callbacks/{id}")
+  public ResponseEntity<byte[]> cancelCallback(@PathVariable("id") String id) {
+    return this.callbackScheduler.cancel(parseId(id))
+      ? ResponseEntity.noContent().build()
+      : ResponseEntity.notFound().build();
+  }
+
+  /**
+   * @return the parsed ID, or -1, which is never issued, if it isn't a valid ID.
+   */
+  private static long parseId(String id) {
+    try {
+      return Long.parseLong(id);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Encodes a callback as JSON, directly rather than serialised by Jackson. The URL is encoded in its ASCII form,
+   * which doesn't contain any characters which need escaping, as they're illegal in a URI.
+   */
+  private static byte[] toJson(ScheduledCallback callback) {
+    final AsciiBuffer json = AsciiBuffer.forCurrentThread()
+      .append("{\"id\":").appendLong(callback.getId())
+      .append(",\"url\":\"").append(callback.getUrl().toASCIIString())
+      .append("\",\"fireTime\":\"");
+    DateTimeWriter.appendInstant(json, callback.getFireEpochMilli(), 3);
+    return json.append("\"}").toByteArray();
+  }
+
+  private static ResponseEntity<byte[]> error(HttpStatus status, ApiErrorCode code, String message) {
+    return ResponseEntity.status(status)
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(("{\"code\":\"" + code + "\",\"message\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.neiljbrown.service.time.business.ClockConsensusProvider;
+
+/**
+ * {@link RestController Controller for RESTful web API} that handles requests from the other nodes in a cluster for
+ * this node's local clock, which they sample to agree the platform time. See {@link ClockConsensusProvider}.
+ * <p>
+ * Only enabled for the implementation of the platform time provider which derives it from the consensus of a cluster.
+ * <p>
+ * Singleton. Controller handling methods must be thread-safe.
+ */
+@RestController
+@ConditionalOnProperty(name = "platform-date-time-provider.type", havingValue = "consensus")
+public class ClusterClockController {
+
+  /** Path of the 'Get Local Clock' API. The URL of each peer's API is configured on the other nodes. */
+  static final String LOCAL_CLOCK_PATH = "/v1/cluster/clock";
+
+  private final ClockConsensusProvider clockConsensusProvider;
+
+  /**
+   * @param clockConsensusProvider the {@link ClockConsensusProvider} from which the local clock is read.
+   */
+  public ClusterClockController(ClockConsensusProvider clockConsensusProvider) {
+    this.clockConsensusProvider = Objects.requireNonNull(clockConsensusProvider,
+      "Arg 'clockConsensusProvider' must not be null.");
+  }
+
+  /**
+   * Handles a request to retrieve the current time of this node's local (system) clock, rather than the platform
+   * time, which is derived from the local clocks of all the nodes in the cluster.
+   * <p>
+   * The response is deliberately minimal, so that the time taken to produce it, which adds to the error of the
+   * requesting node's sample, is as short as possible.
+   *
+   * @return a {@link ResponseEntity} with a status code of 200, and a plain text body containing the time as a number
+   * of milliseconds since the epoch. The response must not be cached.
+   */
+  @GetMapping(value = LOCAL_CLOCK_PATH, produces = MediaType.TEXT_PLAIN_VALUE)
+  public ResponseEntity<byte[]> getLocalClock() {
+    return ResponseEntity.ok()
+      .cacheControl(CacheControl.noStore())
+      .contentType(MediaType.TEXT_PLAIN)
+      .body(Long.toString(this.clockConsensusProvider.getLocalEpochMilli()).getBytes(StandardCharsets.US_ASCII));
+  }
+}
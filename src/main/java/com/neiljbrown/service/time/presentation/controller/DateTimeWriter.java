@@ -0,0 +1,231 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes date/times directly from their primitive (epoch second or milli, and offset) values, as ASCII digits into an
+ * {@link AsciiBuffer}, without allocating intermediate date/time objects or strings.
+ * <p>
+ * Dates are calculated in the proleptic Gregorian calendar, as per {@link java.time.LocalDate}. Date/times with a
+ * year outside the range 0000 - 9999, which need a signed and/or expanded year, are delegated to the standard
+ * formatters.
+ */
+final class DateTimeWriter {
+
+  static final int SECONDS_PER_DAY = 86_400;
+
+  /** Days from 0000-03-01 (the start of the proleptic Gregorian 400 year cycle used below) to 1970-01-01. */
+  private static final long DAYS_0000_03_01_TO_1970_01_01 = 719_468;
+
+  private static final int DAYS_PER_400_YEAR_CYCLE = 146_097;
+
+  private static final int MAX_4_DIGIT_YEAR = 9999;
+
+  private static final String[] DAY_OF_WEEK_ABBREVIATIONS = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+
+  private static final String[] MONTH_ABBREVIATIONS =
+    {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+  private DateTimeWriter() {
+  }
+
+  /**
+   * Appends a date/time in ISO-8601 extended offset date/time format, e.g. 2018-10-06T19:51:44+01:00, as per
+   * {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME}, to the second.
+   *
+   * @param out the buffer to which the date/time is appended.
+   * @param epochSecond the date/time, as a number of seconds since the epoch.
+   * @param offsetSeconds the offset from UTC, in seconds, of the local date/time to be written.
+   * @return the supplied buffer.
+   */
+  static AsciiBuffer appendOffsetDateTime(AsciiBuffer out, long epochSecond, int offsetSeconds) {
+    final long localEpochSecond = epochSecond + offsetSeconds;
+    final long date = toPackedDate(Math.floorDiv(localEpochSecond, SECONDS_PER_DAY));
+    if (!isFourDigitYear(date)) {
+      return out.append(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+        OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneOffset.ofTotalSeconds(offsetSeconds))));
+    }
+    appendIsoDateTime(out, date, (int) Math.floorMod(localEpochSecond, SECONDS_PER_DAY));
+    return appendOffset(out, offsetSeconds);
+  }
+
+  /**
+   * Appends an instant in ISO-8601 format, in UTC, with a fixed no. of fraction-of-second digits, e.g.
+   * 2018-10-06T18:51:44.123Z. With zero fraction digits this is the same as {@link Instant#toString()} for an instant
+   * with no fraction of a second.
+   *
+   * @param out the buffer to which the instant is appended.
+   * @param epochMilli the instant, as a number of milliseconds since the epoch.
+   * @param fractionDigits the no. of fraction-of-second digits - one of 0, 3, 6 or 9. As the instant has a resolution
+   * of a millisecond, digits beyond the third are always zero.
+   * @return the supplied buffer.
+   */
+  static AsciiBuffer appendInstant(AsciiBuffer out, long epochMilli, int fractionDigits) {
+    final long epochSecond = Math.floorDiv(epochMilli, 1000);
+    final long date = toPackedDate(Math.floorDiv(epochSecond, SECONDS_PER_DAY));
+    if (!isFourDigitYear(date)) {
+      final String instant = Instant.ofEpochSecond(epochSecond).toString();
+      out.append(instant.substring(0, instant.length() - 1));
+    } else {
+      appendIsoDateTime(out, date, (int) Math.floorMod(epochSecond, SECONDS_PER_DAY));
+    }
+    if (fractionDigits > 0) {
+      out.append('.').appendDigits(Math.floorMod(epochMilli, 1000), 3);
+      for (int i = 3; i < fractionDigits; i++) {
+        out.append('0');
+      }
+    }
+    return out.append('Z');
+  }
+
+  /**
+   * Appends an instant in RFC 1123 (HTTP date) format, in GMT, e.g. Sat, 6 Oct 2018 18:51:44 GMT, as per
+   * {@link DateTimeFormatter#RFC_1123_DATE_TIME}.
+   *
+   * @param out the buffer to which the instant is appended.
+   * @param epochSecond the instant, as a number of seconds since the epoch.
+   * @return the supplied buffer.
+   */
+  static AsciiBuffer appendRfc1123DateTime(AsciiBuffer out, long epochSecond) {
+    final long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+    final long date = toPackedDate(epochDay);
+    if (!isFourDigitYear(date)) {
+      return out.append(DateTimeFormatter.RFC_1123_DATE_TIME.format(
+        OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC)));
+    }
+    final int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+    out.append(dayOfWeekAbbreviation(dayOfWeek(epochDay))).append(", ").appendLong(day(date)).append(' ')
+      .append(monthAbbreviation(month(date))).append(' ').appendDigits(year(date), 4).append(' ');
+    return appendTime(out, secondOfDay).append(" GMT");
+  }
+
+  /**
+   * Appends a date in ISO-8601 extended local date format, e.g. 2018-10-06, as per
+   * {@link DateTimeFormatter#ISO_LOCAL_DATE}.
+   *
+   * @param out the buffer to which the date is appended.
+   * @param epochDay the date, as a number of days since the epoch.
+   * @return the supplied buffer.
+   */
+  static AsciiBuffer appendDate(AsciiBuffer out, long epochDay) {
+    final long date = toPackedDate(epochDay);
+    if (!isFourDigitYear(date)) {
+      return out.append(DateTimeFormatter.ISO_LOCAL_DATE.format(LocalDate.ofEpochDay(epochDay)));
+    }
+    return out.appendDigits(year(date), 4).append('-')
+      .appendDigits(month(date), 2).append('-')
+      .appendDigits(day(date), 2);
+  }
+
+  /**
+   * Converts a day since the epoch to a civil (year, month, day) date, packed into a single value, so that it can be
+   * returned without allocating. Unpack the fields using {@link #year}, {@link #month} and {@link #day}.
+   * <p>
+   * See http://howardhinnant.github.io/date_algorithms.html
+   *
+   * @param epochDay the no. of days since the epoch.
+   * @return the packed date.
+   */
+  static long toPackedDate(long epochDay) {
+    final long shiftedDay = epochDay + DAYS_0000_03_01_TO_1970_01_01;
+    final long era = Math.floorDiv(shiftedDay, DAYS_PER_400_YEAR_CYCLE);
+    final int dayOfEra = (int) (shiftedDay - era * DAYS_PER_400_YEAR_CYCLE);
+    final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    final int shiftedMonth = (5 * dayOfYear + 2) / 153;
+    final int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    final int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    final long year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+    return year << 9 | month << 5 | day;
+  }
+
+  static long year(long packedDate) {
+    return packedDate >> 9;
+  }
+
+  static int month(long packedDate) {
+    return (int) (packedDate >> 5 & 0xF);
+  }
+
+  static int day(long packedDate) {
+    return (int) (packedDate & 0x1F);
+  }
+
+  /**
+   * @param epochDay the no. of days since the epoch.
+   * @return the ISO day-of-week, from 1 (Monday) to 7 (Sunday).
+   */
+  static int dayOfWeek(long epochDay) {
+    // 1970-01-01 was a Thursday
+    return (int) Math.floorMod(epochDay + 3, 7) + 1;
+  }
+
+  /**
+   * @return the abbreviated (English) name of a day-of-week, e.g. Mon.
+   */
+  static String dayOfWeekAbbreviation(int dayOfWeek) {
+    return DAY_OF_WEEK_ABBREVIATIONS[dayOfWeek - 1];
+  }
+
+  /**
+   * @return the abbreviated (English) name of a month, e.g. Jan.
+   */
+  static String monthAbbreviation(int month) {
+    return MONTH_ABBREVIATIONS[month - 1];
+  }
+
+  private static boolean isFourDigitYear(long packedDate) {
+    final long year = year(packedDate);
+    return year >= 0 && year <= MAX_4_DIGIT_YEAR;
+  }
+
+  private static void appendIsoDateTime(AsciiBuffer out, long packedDate, int secondOfDay) {
+    out.appendDigits(year(packedDate), 4).append('-')
+      .appendDigits(month(packedDate), 2).append('-')
+      .appendDigits(day(packedDate), 2).append('T');
+    appendTime(out, secondOfDay);
+  }
+
+  private static AsciiBuffer appendTime(AsciiBuffer out, int secondOfDay) {
+    return out.appendDigits(secondOfDay / 3600, 2).append(':')
+      .appendDigits(secondOfDay / 60 % 60, 2).append(':')
+      .appendDigits(secondOfDay % 60, 2);
+  }
+
+  /**
+   * Appends an offset from UTC in ISO-8601 format - 'Z' for zero, else +HH:MM, or +HH:MM:SS if it has seconds.
+   */
+  private static AsciiBuffer appendOffset(AsciiBuffer out, int offsetSeconds) {
+    if (offsetSeconds == 0) {
+      return out.append('Z');
+    }
+    final int absOffsetSeconds = Math.abs(offsetSeconds);
+    out.append(offsetSeconds < 0 ? '-' : '+')
+      .appendDigits(absOffsetSeconds / 3600, 2).append(':')
+      .appendDigits(absOffsetSeconds / 60 % 60, 2);
+    if (absOffsetSeconds % 60 != 0) {
+      out.append(':').appendDigits(absOffsetSeconds % 60, 2);
+    }
+    return out;
+  }
+}
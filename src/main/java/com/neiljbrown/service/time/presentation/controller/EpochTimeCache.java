@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
+
+/**
+ * A single entry cache of a value that is derived from, and only changes with, the current epoch time, to a given
+ * resolution (e.g. the epoch second or milli), such as the pre-encoded body of an API response that represents the
+ * current time to a resolution of a second.
+ * <p>
+ * The cached value is created on demand, on the first request for a new (later) epoch time, using a supplied factory
+ * function, and then shared by all subsequent requests for the same time. This reduces the cost of creating the value
+ * to once per unit of time (e.g. once per second), rather than once per request.
+ * <p>
+ * Thread-safe and lock-free. The cached value is replaced using a compare-and-set, so it is only ever replaced by the
+ * value for a later time. Multiple threads which concurrently request a new time may each create a value, but only
+ * one of them is cached. A request for an earlier time than the one cached (e.g. by a thread that read the clock
+ * just before a second boundary) is served a newly created value, without replacing the cached value.
+ *
+ * @param <T> the type of the cached value. Must be immutable, as instances are shared by multiple threads.
+ */
+final class EpochTimeCache<T> {
+
+  private final LongFunction<T> valueFactory;
+  private final AtomicReference<Entry<T>> latestEntry = new AtomicReference<>(new Entry<>(Long.MIN_VALUE, null));
+
+  /**
+   * @param valueFactory the function used to create the value for a given epoch time, e.g. epoch second.
+   */
+  EpochTimeCache(LongFunction<T> valueFactory) {
+    this.valueFactory = Objects.requireNonNull(valueFactory, "Arg 'valueFactory' must not be null.");
+  }
+
+  /**
+   * @param epochTime the epoch time, e.g. the epoch second.
+   * @return the value for the supplied epoch time, served from the cache if it has already been created.
+   */
+  T get(long epochTime) {
+    Entry<T> entry = this.latestEntry.get();
+    if (entry.epochTime == epochTime) {
+      return entry.value;
+    }
+    final Entry<T> newEntry = new Entry<>(epochTime, this.valueFactory.apply(epochTime));
+    while (entry.epochTime < epochTime && !this.latestEntry.compareAndSet(entry, newEntry)) {
+      entry = this.latestEntry.get();
+    }
+    return newEntry.value;
+  }
+
+  private static final class Entry<T> {
+    private final long epochTime;
+    private final T value;
+
+    private Entry(long epochTime, T value) {
+      this.epochTime = epochTime;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.neiljbrown.service.time.business.TimeOrderedIdGenerator;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * {@link RestController Controller for RESTful web API} that handles requests to issue unique, time-ordered IDs.
+ * <p>
+ * Singleton. Controller handling methods must be thread-safe.
+ */
+@RestController
+public class IdsController {
+
+  private final TimeOrderedIdGenerator timeOrderedIdGenerator;
+  private final int maxCount;
+
+  /**
+   * Pre-built response returned for a request containing an invalid 'count' request param. Immutable, so shared by
+   * all such requests.
+   */
+  private final ResponseEntity<byte[]> invalidCountResponse;
+
+  /**
+   * @param timeOrderedIdGenerator instance of {@link TimeOrderedIdGenerator} used to issue the IDs.
+   * @param maxCount the max no. of IDs which can be issued in a single request.
+   */
+  public IdsController(TimeOrderedIdGenerator timeOrderedIdGenerator,
+    @Value("${time-ordered-id.max-count:10000}") int maxCount) {
+    this.timeOrderedIdGenerator = Objects.requireNonNull(timeOrderedIdGenerator,
+      "Arg 'timeOrderedIdGenerator' must not be null.");
+    if (maxCount <= 0) {
+      throw new IllegalArgumentException("Arg 'maxCount' must be greater than zero, not [" + maxCount + "].");
+    }
+    this.maxCount = maxCount;
+    this.invalidCountResponse = ResponseEntity.badRequest()
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(("{\"code\":\"" + ApiErrorCode.INVALID_REQUEST_PARAM_VALUE + "\","
+        + "\"message\":\"Invalid 'count' request param. Must be an integer between 1 and " + maxCount + ".\"}")
+        .getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Handles a request to issue a block of one or more new unique IDs.
+   * <p>
+   * The IDs are 64-bit integers which are strictly increasing across all requests to this node, and are ordered by
+   * the platform time at which they were issued across all nodes. Reserving a block of IDs in a single request saves
+   * clients that need many IDs from paying the cost of a round trip per ID.
+   *
+   * @param count the no. of IDs to issue. Optional. Must be an integer between 1 and the configured max count
+   * (inclusive). If not specified defaults to 1.
+   * @return a {@link ResponseEntity}. If the request was successful, as indicated by a status code of 200, the body
+   * contains the IDs, in increasing order. Else the body contains an error representation detailing why the request
+   * failed.
+   */
+  @PostMapping(value = "/v1/ids", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> issueIds(
+    @RequestParam(value = "count", required = false, defaultValue = "1") String count) {
+    final int parsedCount = parseCount(count);
+    if (parsedCount < 1 || parsedCount > this.maxCount) {
+      return this.invalidCountResponse;
+    }
+    final long[] ids = this.timeOrderedIdGenerator.nextIds(parsedCount);
+    // Encoded directly, rather than serialised by Jackson, as the representation only comprises an array of numbers
+    final StringBuilder json = new StringBuilder(10 + ids.length * 20).append("{\"ids\":[");
+    for (int i = 0; i < ids.length; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append(ids[i]);
+    }
+    json.append("]}");
+    return ResponseEntity.ok()
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(json.toString().getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * @return the parsed count, or -1 if it is not a valid integer.
+   */
+  private static int parseCount(String count) {
+    try {
+      return Integer.parseInt(count);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
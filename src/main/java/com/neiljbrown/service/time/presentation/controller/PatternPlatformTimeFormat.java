@@ -0,0 +1,277 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A user supplied {@link PlatformTimeFormat format} of the Platform time, in UTC, specified as a date/time pattern,
+ * e.g. yyyy-MM-dd HH:mm:ss.SSS. The pattern is compiled once, into a sequence of instructions which write each field
+ * directly into an {@link AsciiBuffer}.
+ * <p>
+ * A subset of the pattern letters of {@link java.time.format.DateTimeFormatter} is supported, with the same meaning -
+ * <br>
+ * - y or u - year. yy for a 2 digit year, else a no. of digits of at least the no. of letters (max 4).
+ * <br>
+ * - M - month. M or MM for a (zero-padded) number, MMM for an abbreviated name, e.g. Oct.
+ * <br>
+ * - d, H, m, s - day-of-month, hour-of-day, minute-of-hour, second-of-minute. One letter, or two for zero-padded.
+ * <br>
+ * - S - fraction-of-second, to a no. of digits equal to the no. of letters (max 9).
+ * <br>
+ * - E - day-of-week, 1 to 3 letters, as an abbreviated name, e.g. Sat.
+ * <br>
+ * - Text enclosed in single quotes is literal. Two single quotes are a literal single quote.
+ * <br>
+ * - Other printable ASCII characters are literal, excluding the characters which are reserved by DateTimeFormatter
+ * ([, ], {, }, #) or need escaping in JSON (", \).
+ * <p>
+ * Patterns are limited to {@value #MAX_PATTERN_LENGTH} characters.
+ * <p>
+ * Immutable and thread-safe.
+ */
+final class PatternPlatformTimeFormat extends PlatformTimeFormat {
+
+  /** Max length of a pattern. */
+  static final int MAX_PATTERN_LENGTH = 64;
+
+  /** Name of all pattern formats, used to identify them in metrics. */
+  static final String NAME = "pattern";
+
+  private static final int FIELD_LITERAL = 0;
+  private static final int FIELD_YEAR = 1;
+  private static final int FIELD_MONTH = 2;
+  private static final int FIELD_DAY_OF_MONTH = 3;
+  private static final int FIELD_HOUR_OF_DAY = 4;
+  private static final int FIELD_MINUTE_OF_HOUR = 5;
+  private static final int FIELD_SECOND_OF_MINUTE = 6;
+  private static final int FIELD_FRACTION_OF_SECOND = 7;
+  private static final int FIELD_DAY_OF_WEEK = 8;
+
+  private static final String RESERVED_CHARS = "[]{}#\"\\";
+
+  /**
+   * Compiled instructions. Each comprises a field (high bits), and the no. of pattern letters (low 8 bits), or for a
+   * literal, the index of its text in {@link #literals}.
+   */
+  private final int[] instructions;
+  private final String[] literals;
+
+  private PatternPlatformTimeFormat(int[] instructions, String[] literals, boolean secondResolution) {
+    super(NAME, "dateTime", false, secondResolution, NO_CBOR_TAG);
+    this.instructions = instructions;
+    this.literals = literals;
+  }
+
+  /**
+   * Compiles a date/time pattern.
+   *
+   * @param pattern the pattern.
+   * @return the compiled format, or null if the pattern is empty, too long, or contains an unsupported or reserved
+   * pattern letter, character or no. of letters.
+   */
+  static PatternPlatformTimeFormat compile(String pattern) {
+    if (pattern.isEmpty() || pattern.length() > MAX_PATTERN_LENGTH) {
+      return null;
+    }
+    final List<Integer> instructions = new ArrayList<>();
+    final List<String> literals = new ArrayList<>();
+    boolean secondResolution = true;
+    int i = 0;
+    while (i < pattern.length()) {
+      final char c = pattern.charAt(i);
+      if (c < ' ' || c > '~') {
+        return null;
+      }
+      if (c == '\'') {
+        final StringBuilder literal = new StringBuilder();
+        i = parseQuotedLiteral(pattern, i + 1, literal);
+        if (i < 0) {
+          return null;
+        }
+        addLiteral(instructions, literals, literal.toString());
+        continue;
+      }
+      int count = 1;
+      while (i + count < pattern.length() && pattern.charAt(i + count) == c) {
+        count++;
+      }
+      if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) {
+        final int field = toField(c, count);
+        if (field < 0) {
+          return null;
+        }
+        secondResolution &= field != FIELD_FRACTION_OF_SECOND;
+        instructions.add(field << 8 | count);
+      } else if (RESERVED_CHARS.indexOf(c) >= 0) {
+        return null;
+      } else {
+        addLiteral(instructions, literals, pattern.substring(i, i + count));
+      }
+      i += count;
+    }
+    return new PatternPlatformTimeFormat(instructions.stream().mapToInt(Integer::intValue).toArray(),
+      literals.toArray(new String[0]), secondResolution);
+  }
+
+  @Override
+  void appendValue(AsciiBuffer out, long epochMilli) {
+    final long epochSecond = Math.floorDiv(epochMilli, 1000);
+    final long epochDay = Math.floorDiv(epochSecond, DateTimeWriter.SECONDS_PER_DAY);
+    final int secondOfDay = (int) Math.floorMod(epochSecond, DateTimeWriter.SECONDS_PER_DAY);
+    final long date = DateTimeWriter.toPackedDate(epochDay);
+    for (int instruction : this.instructions) {
+      final int count = instruction & 0xFF;
+      switch (instruction >>> 8) {
+        case FIELD_LITERAL:
+          out.append(this.literals[count]);
+          break;
+        case FIELD_YEAR:
+          final long year = DateTimeWriter.year(date);
+          if (count == 2) {
+            out.appendDigits(Math.floorMod(year, 100), 2);
+          } else {
+            appendNumber(out, year, count);
+          }
+          break;
+        case FIELD_MONTH:
+          if (count == 3) {
+            out.append(DateTimeWriter.monthAbbreviation(DateTimeWriter.month(date)));
+          } else {
+            appendNumber(out, DateTimeWriter.month(date), count);
+          }
+          break;
+        case FIELD_DAY_OF_MONTH:
+          appendNumber(out, DateTimeWriter.day(date), count);
+          break;
+        case FIELD_HOUR_OF_DAY:
+          appendNumber(out, secondOfDay / 3600, count);
+          break;
+        case FIELD_MINUTE_OF_HOUR:
+          appendNumber(out, secondOfDay / 60 % 60, count);
+          break;
+        case FIELD_SECOND_OF_MINUTE:
+          appendNumber(out, secondOfDay % 60, count);
+          break;
+        case FIELD_FRACTION_OF_SECOND:
+          appendFraction(out, Math.floorMod(epochMilli, 1000), count);
+          break;
+        case FIELD_DAY_OF_WEEK:
+          out.append(DateTimeWriter.dayOfWeekAbbreviation(DateTimeWriter.dayOfWeek(epochDay)));
+          break;
+        default:
+          throw new IllegalStateException("Unexpected instruction [" + instruction + "].");
+      }
+    }
+  }
+
+  /**
+   * @return the field for a pattern letter, repeated a no. of times, or -1 if the letter or no. is unsupported.
+   */
+  private static int toField(char letter, int count) {
+    switch (letter) {
+      case 'y':
+      case 'u':
+        return count <= 4 ? FIELD_YEAR : -1;
+      case 'M':
+        return count <= 3 ? FIELD_MONTH : -1;
+      case 'd':
+        return count <= 2 ? FIELD_DAY_OF_MONTH : -1;
+      case 'H':
+        return count <= 2 ? FIELD_HOUR_OF_DAY : -1;
+      case 'm':
+        return count <= 2 ? FIELD_MINUTE_OF_HOUR : -1;
+      case 's':
+        return count <= 2 ? FIELD_SECOND_OF_MINUTE : -1;
+      case 'S':
+        return count <= 9 ? FIELD_FRACTION_OF_SECOND : -1;
+      case 'E':
+        return count <= 3 ? FIELD_DAY_OF_WEEK : -1;
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Parses the text of a quoted literal, up to and including its closing quote.
+   *
+   * @return the index following the closing quote, or -1 if the literal is unterminated or contains a character
+   * which needs escaping in JSON.
+   */
+  private static int parseQuotedLiteral(String pattern, int start, StringBuilder literal) {
+    int i = start;
+    while (i < pattern.length()) {
+      final char c = pattern.charAt(i);
+      if (c == '\'') {
+        if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+          literal.append('\'');
+          i += 2;
+          continue;
+        }
+        if (i == start) {
+          // Two adjacent quotes, outside a quoted literal, are a literal single quote
+          literal.append('\'');
+        }
+        return i + 1;
+      }
+      if (c < ' ' || c > '~' || c == '"' || c == '\\') {
+        return -1;
+      }
+      literal.append(c);
+      i++;
+    }
+    return -1;
+  }
+
+  private static void addLiteral(List<Integer> instructions, List<String> literals, String literal) {
+    instructions.add(FIELD_LITERAL << 8 | literals.size());
+    literals.add(literal);
+  }
+
+  /**
+   * Appends a non-negative number, zero-padded to a min no. of digits.
+   */
+  private static void appendNumber(AsciiBuffer out, long value, int minDigits) {
+    if (value < 0 || value >= pow10(minDigits)) {
+      out.appendLong(value);
+    } else {
+      out.appendDigits(value, minDigits);
+    }
+  }
+
+  /**
+   * Appends a milli-of-second as a fraction-of-second, truncated or zero-extended to a no. of digits.
+   */
+  private static void appendFraction(AsciiBuffer out, long milliOfSecond, int digits) {
+    if (digits <= 3) {
+      out.appendDigits(milliOfSecond / pow10(3 - digits), digits);
+    } else {
+      out.appendDigits(milliOfSecond, 3);
+      for (int i = 3; i < digits; i++) {
+        out.append('0');
+      }
+    }
+  }
+
+  private static long pow10(int exponent) {
+    long result = 1;
+    for (int i = 0; i < exponent; i++) {
+      result *= 10;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,266 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * A format in which the 'Get Platform Time' API can return the Platform time, e.g. an ISO-8601 date/time, or a number
+ * of seconds since the epoch. Formats are looked up by their request param value, using {@link PlatformTimeFormats}.
+ * <p>
+ * A format writes the Platform time's value directly into an {@link AsciiBuffer}, from its epoch milli, without
+ * allocating an intermediate string. Each {@link PlatformTimeRepresentation representation} then wraps the value as
+ * required, e.g. as a JSON object.
+ * <p>
+ * Each format additionally caches its success response for the current unit of its resolution - a second, or for
+ * finer resolution formats a millisecond (the resolution of the Platform time) - for each representation, so that the
+ * response is only created once per second or milli, rather than on every request. The caches are held by the format,
+ * so that a single lookup of the request param value both validates it, and selects the format and its caches.
+ * <p>
+ * Responses support HTTP caching, so that HTTP caches (e.g. a CDN or proxy) can serve repeated requests in the same
+ * second. Each response has an ETag derived from the epoch second (or milli) and the representation, and a request
+ * whose If-None-Match header matches it is answered with a (cached) 304 Not Modified response, without a body.
+ * Responses in second resolution formats mustn't be fresh beyond the end of the current second. As HTTP expresses
+ * freshness in whole seconds, and the time left in the second is less than one, this is a Cache-Control max-age of 0
+ * (the time left, rounded down), so that a cache revalidates the response (cheaply, using its ETag) rather than
+ * serving it after the second has passed, plus an Expires of the start of the next second, for HTTP/1.0 caches.
+ * Responses in finer resolution formats must be revalidated (Cache-Control no-cache).
+ * <p>
+ * Thread-safe.
+ */
+abstract class PlatformTimeFormat {
+
+  /** Value of {@link #getCborTag()} for formats which aren't tagged in CBOR. */
+  static final int NO_CBOR_TAG = -1;
+
+  /**
+   * Cache-Control of responses in second resolution formats. A max-age of 1 would allow a response served late in its
+   * second to be fresh for most of the next.
+   */
+  static final String SECOND_RESOLUTION_CACHE_CONTROL = "public, max-age=0";
+
+  /** Cache-Control of responses in finer resolution formats. */
+  static final String MILLI_RESOLUTION_CACHE_CONTROL = "no-cache";
+
+  /**
+   * Request headers by which responses vary, and which HTTP caches must therefore include in their cache key. As well
+   * as the Accept header, a tenant's requests are answered with the tenant's own time.
+   */
+  static final String[] VARY_HEADERS = {HttpHeaders.ACCEPT, TimesController.TENANT_ID_HEADER};
+
+  private final String name;
+  private final boolean numeric;
+  private final int cborTag;
+  private final byte[] jsonPrefix;
+  private final byte[] jsonSuffix;
+  private final long resolutionMillis;
+  private final Map<PlatformTimeRepresentation, EpochTimeCache<CachedResponse>> responseCaches =
+    new EnumMap<>(PlatformTimeRepresentation.class);
+
+  /**
+   * @param name the name of the format, e.g. iso-8601. Used to identify the format in metrics.
+   * @param jsonFieldName the name of the field containing the value in the JSON representation, e.g. dateTime.
+   * @param numeric true if the format's value is a (signed, integer) number, false if it's text.
+   * @param secondResolution true if the format's value only changes once per second, false otherwise.
+   * @param cborTag the CBOR (RFC 7049) semantic tag used to identify the value in the CBOR representation, or
+   * {@link #NO_CBOR_TAG}.
+   */
+  PlatformTimeFormat(String name, String jsonFieldName, boolean numeric, boolean secondResolution, int cborTag) {
+    this.name = name;
+    this.numeric = numeric;
+    this.cborTag = cborTag;
+    this.jsonPrefix = ("{\"" + jsonFieldName + "\":" + (numeric ? "" : "\"")).getBytes(StandardCharsets.US_ASCII);
+    this.jsonSuffix = ((numeric ? "" : "\"") + "}").getBytes(StandardCharsets.US_ASCII);
+    this.resolutionMillis = secondResolution ? 1000 : 1;
+    for (PlatformTimeRepresentation representation : PlatformTimeRepresentation.values()) {
+      this.responseCaches.put(representation, new EpochTimeCache<>(epochTime ->
+        new CachedResponse(representation, epochTime)));
+    }
+  }
+
+  /**
+   * @return the name of the format, e.g. iso-8601.
+   */
+  String getName() {
+    return this.name;
+  }
+
+  /**
+   * @return true if the format's value is a number, written as a string of (ASCII) digits, which can also be
+   * {@link #toNumber converted} to a long, false if the value is text.
+   */
+  boolean isNumeric() {
+    return this.numeric;
+  }
+
+  /**
+   * @return true if the format's value only changes once per second, false if it changes every millisecond.
+   */
+  boolean isSecondResolution() {
+    return this.resolutionMillis == 1000;
+  }
+
+  /**
+   * @return the CBOR semantic tag used to identify the value in the CBOR representation, or {@link #NO_CBOR_TAG}.
+   */
+  int getCborTag() {
+    return this.cborTag;
+  }
+
+  /**
+   * @return the ASCII encoded start of the JSON representation, up to the start of the value.
+   */
+  byte[] getJsonPrefix() {
+    return this.jsonPrefix;
+  }
+
+  /**
+   * @return the ASCII encoded end of the JSON representation, following the value.
+   */
+  byte[] getJsonSuffix() {
+    return this.jsonSuffix;
+  }
+
+  /**
+   * Writes the value of the Platform time in this format. Textual values only comprise printable ASCII characters
+   * which don't need escaping in JSON.
+   *
+   * @param out the buffer to which the value is written.
+   * @param epochMilli the Platform time, as a number of milliseconds since the epoch.
+   */
+  abstract void appendValue(AsciiBuffer out, long epochMilli);
+
+  /**
+   * Converts the Platform time to this format's value, for {@link #isNumeric() numeric} formats only.
+   *
+   * @param epochMilli the Platform time, as a number of milliseconds since the epoch.
+   * @return the value.
+   * @throws UnsupportedOperationException if this format isn't numeric.
+   */
+  long toNumber(long epochMilli) {
+    throw new UnsupportedOperationException("Format [" + this.name + "] isn't numeric.");
+  }
+
+  /**
+   * Returns the response for a request for the Platform time in this format, served from a cache.
+   *
+   * @param representation the negotiated representation.
+   * @param epochMilli the Platform time, as a number of milliseconds since the epoch.
+   * @param ifNoneMatch the value of the request's If-None-Match header, if any.
+   * @return the success response, or a 304 Not Modified response if the If-None-Match header matches its ETag.
+   */
+  ResponseEntity<byte[]> getResponse(PlatformTimeRepresentation representation, long epochMilli,
+    String ifNoneMatch) {
+    final CachedResponse cachedResponse =
+      this.responseCaches.get(representation).get(Math.floorDiv(epochMilli, this.resolutionMillis));
+    return ifNoneMatch != null && matchesEntityTag(ifNoneMatch, cachedResponse.entityTag)
+      ? cachedResponse.notModifiedResponse
+      : cachedResponse.okResponse;
+  }
+
+  /**
+   * Creates the response for a request for a tenant's view of the Platform time in this format, which may be shifted,
+   * frozen or pass at a different rate to the Platform time. Unlike {@link #getResponse}, the response isn't cached,
+   * as its time is specific to the tenant, and so would displace the cached response for the Platform time. For the
+   * same reason it mustn't be stored by HTTP caches, and has no ETag.
+   *
+   * @param representation the negotiated representation.
+   * @param tenantEpochMilli the tenant's time, as a number of milliseconds since the epoch.
+   * @return the success response.
+   */
+  ResponseEntity<byte[]> createTenantResponse(PlatformTimeRepresentation representation, long tenantEpochMilli) {
+    final long epochMilli = Math.floorDiv(tenantEpochMilli, this.resolutionMillis) * this.resolutionMillis;
+    return ResponseEntity.ok()
+      .contentType(representation.getMediaType())
+      .cacheControl(CacheControl.noStore())
+      .varyBy(VARY_HEADERS)
+      .body(representation.encode(this, epochMilli));
+  }
+
+  /**
+   * Evaluates an If-None-Match header as per RFC 7232 - a wildcard, or a list of one or more (possibly weak) entity
+   * tags, compared using the weak comparison function.
+   *
+   * @param ifNoneMatch the value of the If-None-Match header.
+   * @param entityTag the (strong) entity tag of the current response, including its quotes.
+   * @return true if the header matches the entity tag, false otherwise.
+   */
+  static boolean matchesEntityTag(String ifNoneMatch, String entityTag) {
+    if (ifNoneMatch.equals(entityTag)) {
+      return true;
+    }
+    int start = 0;
+    while (start < ifNoneMatch.length()) {
+      int end = ifNoneMatch.indexOf(',', start);
+      if (end < 0) {
+        end = ifNoneMatch.length();
+      }
+      int tagStart = start;
+      while (tagStart < end && ifNoneMatch.charAt(tagStart) == ' ') {
+        tagStart++;
+      }
+      if (ifNoneMatch.startsWith("W/", tagStart)) {
+        tagStart += 2;
+      }
+      int tagEnd = end;
+      while (tagEnd > tagStart && ifNoneMatch.charAt(tagEnd - 1) == ' ') {
+        tagEnd--;
+      }
+      final int tagLength = tagEnd - tagStart;
+      if ((tagLength == 1 && ifNoneMatch.charAt(tagStart) == '*')
+        || (tagLength == entityTag.length() && ifNoneMatch.startsWith(entityTag, tagStart))) {
+        return true;
+      }
+      start = end + 1;
+    }
+    return false;
+  }
+
+  /**
+   * The pre-built responses for a unit of time (second or milli), in a representation.
+   */
+  private final class CachedResponse {
+    private final String entityTag;
+    private final ResponseEntity<byte[]> okResponse;
+    private final ResponseEntity<byte[]> notModifiedResponse;
+
+    private CachedResponse(PlatformTimeRepresentation representation, long epochTime) {
+      this.entityTag = "\"" + epochTime + "-" + representation.getEntityTagSuffix() + "\"";
+      final HttpHeaders headers = new HttpHeaders();
+      headers.setETag(this.entityTag);
+      headers.setVary(Arrays.asList(VARY_HEADERS));
+      if (isSecondResolution()) {
+        headers.setCacheControl(SECOND_RESOLUTION_CACHE_CONTROL);
+        headers.setExpires((epochTime + 1) * 1000);
+      } else {
+        headers.setCacheControl(MILLI_RESOLUTION_CACHE_CONTROL);
+      }
+      this.notModifiedResponse = new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+      headers.setContentType(representation.getMediaType());
+      this.okResponse = new ResponseEntity<>(
+        representation.encode(PlatformTimeFormat.this, epochTime * PlatformTimeFormat.this.resolutionMillis), headers,
+        HttpStatus.OK);
+    }
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.neiljbrown.service.time.presentation.controller.TimesController.PlatformTimeFormatRequestParamValues;
+
+/**
+ * Registry of the {@link PlatformTimeFormat formats} in which the 'Get Platform Time' API can return the Platform
+ * time, keyed by their request param value. Comprises -
+ * <br>
+ * - The built-in formats - ISO-8601 date/times in UTC, to the second, or with a fraction-of-second of milli, micro or
+ * nano precision; RFC 1123 date/times in GMT; and the no. of seconds, millis, micros or nanos since the epoch.
+ * <br>
+ * - User supplied formats - a date/time pattern, in the format {@value #PATTERN_PREFIX}&lt;pattern&gt;, e.g.
+ * pattern:yyyy-MM-dd HH:mm:ss.SSS. See {@link PatternPlatformTimeFormat} for the supported pattern letters.
+ * <p>
+ * Looking up a request param value is a single hash table lookup, which both validates it and returns the format.
+ * Patterns are compiled on use, and once a pattern has been used a second time, its compiled format is cached (under
+ * its request param value), so that subsequent lookups of the same pattern are equally cheap. Patterns which are only
+ * used once, e.g. junk, are never cached. The cache is limited to a max no. of patterns, to bound the memory it
+ * consumes. When it's full, the least recently used pattern is evicted to make space for a newly admitted one, so
+ * that patterns in regular use stay cached. Recency is tracked by generation - the no. of patterns admitted so far -
+ * rather than per lookup, so that a lookup of a cached pattern only writes to it on its first use since the last
+ * admission. Patterns longer than {@link PatternPlatformTimeFormat#MAX_PATTERN_LENGTH} are rejected before they're
+ * compiled.
+ * <p>
+ * Thread-safe.
+ */
+final class PlatformTimeFormats {
+
+  static final String ISO_8601_MILLIS = "iso-8601-millis";
+  static final String ISO_8601_MICROS = "iso-8601-micros";
+  static final String ISO_8601_NANOS = "iso-8601-nanos";
+  static final String RFC_1123 = "rfc-1123";
+  static final String UNIX_MILLIS_TIMESTAMP = "unix-millis";
+  static final String UNIX_MICROS_TIMESTAMP = "unix-micros";
+  static final String UNIX_NANOS_TIMESTAMP = "unix-nanos";
+
+  /** Prefix of the request param value of a user supplied, date/time pattern format. */
+  static final String PATTERN_PREFIX = "pattern:";
+
+  /** Max no. of compiled, user supplied patterns which are cached. */
+  static final int MAX_CACHED_PATTERNS = 256;
+
+  /** Built-in formats, keyed by their request param value (and name), in the order in which they're documented. */
+  private final Map<String, PlatformTimeFormat> builtInFormats = new LinkedHashMap<>();
+
+  /** Built-in formats, and cached pattern formats, keyed by their request param value. */
+  private final Map<String, Entry> formats = new ConcurrentHashMap<>();
+  /** Patterns (request param values) which have been used once, and will be cached if used again. Cleared if full. */
+  private final Map<String, Boolean> candidatePatterns = new ConcurrentHashMap<>();
+  /** No. of patterns which have been admitted to the cache, used to track how recently cached patterns were used. */
+  private final AtomicLong generation = new AtomicLong();
+  /** No. of patterns currently cached. Guarded by this. */
+  private int cachedPatternCount;
+
+  PlatformTimeFormats() {
+    addBuiltInFormat(new IsoInstantFormat(PlatformTimeFormatRequestParamValues.ISO_8601, 0));
+    addBuiltInFormat(new IsoInstantFormat(ISO_8601_MILLIS, 3));
+    addBuiltInFormat(new IsoInstantFormat(ISO_8601_MICROS, 6));
+    addBuiltInFormat(new IsoInstantFormat(ISO_8601_NANOS, 9));
+    addBuiltInFormat(new Rfc1123Format());
+    addBuiltInFormat(new EpochSecondsFormat());
+    addBuiltInFormat(new EpochSubSecondsFormat(UNIX_MILLIS_TIMESTAMP, "epochMillis", 1));
+    addBuiltInFormat(new EpochSubSecondsFormat(UNIX_MICROS_TIMESTAMP, "epochMicros", 1_000));
+    addBuiltInFormat(new EpochSubSecondsFormat(UNIX_NANOS_TIMESTAMP, "epochNanos", 1_000_000));
+    this.builtInFormats.forEach((name, format) -> this.formats.put(name, new Entry(format, false, 0)));
+  }
+
+  /**
+   * @return the names (and request param values) of the built-in formats.
+   */
+  Set<String> getBuiltInFormatNames() {
+    return Collections.unmodifiableSet(this.builtInFormats.keySet());
+  }
+
+  /**
+   * Looks up the format identified by a request param value, compiling it if it's a pattern that isn't cached.
+   *
+   * @param requestParamValue the value of the request param identifying the format.
+   * @return the format, or null if the value doesn't identify a format, or contains an invalid pattern.
+   */
+  PlatformTimeFormat get(String requestParamValue) {
+    final Entry entry = this.formats.get(requestParamValue);
+    if (entry != null) {
+      if (entry.pattern) {
+        entry.markUsed(this.generation.get());
+      }
+      return entry.format;
+    }
+    if (!requestParamValue.startsWith(PATTERN_PREFIX)
+      || requestParamValue.length() > PATTERN_PREFIX.length() + PatternPlatformTimeFormat.MAX_PATTERN_LENGTH) {
+      return null;
+    }
+    final PlatformTimeFormat patternFormat =
+      PatternPlatformTimeFormat.compile(requestParamValue.substring(PATTERN_PREFIX.length()));
+    if (patternFormat == null) {
+      return null;
+    }
+    if (this.candidatePatterns.putIfAbsent(requestParamValue, Boolean.TRUE) == null) {
+      if (this.candidatePatterns.size() > MAX_CACHED_PATTERNS) {
+        this.candidatePatterns.clear();
+      }
+      return patternFormat;
+    }
+    this.candidatePatterns.remove(requestParamValue);
+    return cachePattern(requestParamValue, patternFormat);
+  }
+
+  /**
+   * @return the no. of patterns currently cached.
+   */
+  synchronized int getCachedPatternCount() {
+    return this.cachedPatternCount;
+  }
+
+  /**
+   * Admits a pattern to the cache, evicting the least recently used pattern if it's full.
+   *
+   * @return the cached format, which is that of another thread if it cached the same pattern first.
+   */
+  private synchronized PlatformTimeFormat cachePattern(String requestParamValue, PlatformTimeFormat patternFormat) {
+    final Entry existingEntry = this.formats.get(requestParamValue);
+    if (existingEntry != null) {
+      return existingEntry.format;
+    }
+    if (this.cachedPatternCount >= MAX_CACHED_PATTERNS) {
+      evictLeastRecentlyUsedPattern();
+    }
+    this.formats.put(requestParamValue, new Entry(patternFormat, true, this.generation.incrementAndGet()));
+    this.cachedPatternCount++;
+    return patternFormat;
+  }
+
+  private void evictLeastRecentlyUsedPattern() {
+    String leastRecentlyUsed = null;
+    long leastRecentGeneration = Long.MAX_VALUE;
+    for (Map.Entry<String, Entry> mapEntry : this.formats.entrySet()) {
+      final Entry entry = mapEntry.getValue();
+      if (entry.pattern && entry.lastUsedGeneration < leastRecentGeneration) {
+        leastRecentlyUsed = mapEntry.getKey();
+        leastRecentGeneration = entry.lastUsedGeneration;
+      }
+    }
+    if (leastRecentlyUsed != null) {
+      this.formats.remove(leastRecentlyUsed);
+      this.cachedPatternCount--;
+    }
+  }
+
+  private void addBuiltInFormat(PlatformTimeFormat format) {
+    this.builtInFormats.put(format.getName(), format);
+  }
+
+  /** A format in the registry, and, if it's a cached pattern, the generation in which it was last used. */
+  private static final class Entry {
+
+    private final PlatformTimeFormat format;
+    private final boolean pattern;
+    private volatile long lastUsedGeneration;
+
+    private Entry(PlatformTimeFormat format, boolean pattern, long lastUsedGeneration) {
+      this.format = format;
+      this.pattern = pattern;
+      this.lastUsedGeneration = lastUsedGeneration;
+    }
+
+    /** Records a use in the current generation. Only writes on the first use in a generation, to avoid contention. */
+    private void markUsed(long generation) {
+      if (this.lastUsedGeneration != generation) {
+        this.lastUsedGeneration = generation;
+      }
+    }
+  }
+
+  /** ISO-8601 instant, in UTC, with a fixed no. of fraction-of-second digits, e.g. 2018-10-06T18:51:44.123Z. */
+  private static final class IsoInstantFormat extends PlatformTimeFormat {
+
+    /** CBOR tag for a standard (RFC 3339) date/time string. */
+    private static final int CBOR_TAG_DATE_TIME_STRING = 0;
+
+    private final int fractionDigits;
+
+    private IsoInstantFormat(String name, int fractionDigits) {
+      super(name, "dateTime", false, fractionDigits == 0, CBOR_TAG_DATE_TIME_STRING);
+      this.fractionDigits = fractionDigits;
+    }
+
+    @Override
+    void appendValue(AsciiBuffer out, long epochMilli) {
+      DateTimeWriter.appendInstant(out, epochMilli, this.fractionDigits);
+    }
+  }
+
+  /** RFC 1123 date/time, in GMT, e.g. Sat, 6 Oct 2018 18:51:44 GMT. */
+  private static final class Rfc1123Format extends PlatformTimeFormat {
+
+    private Rfc1123Format() {
+      super(RFC_1123, "dateTime", false, true, NO_CBOR_TAG);
+    }
+
+    @Override
+    void appendValue(AsciiBuffer out, long epochMilli) {
+      DateTimeWriter.appendRfc1123DateTime(out, Math.floorDiv(epochMilli, 1000));
+    }
+  }
+
+  /** No. of seconds since the epoch, e.g. 1538851904. */
+  private static final class EpochSecondsFormat extends PlatformTimeFormat {
+
+    /** CBOR tag for an epoch-based date/time. */
+    private static final int CBOR_TAG_EPOCH_DATE_TIME = 1;
+
+    private EpochSecondsFormat() {
+      super(PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP, "epochSeconds", true, true,
+        CBOR_TAG_EPOCH_DATE_TIME);
+    }
+
+    @Override
+    void appendValue(AsciiBuffer out, long epochMilli) {
+      out.appendLong(toNumber(epochMilli));
+    }
+
+    @Override
+    long toNumber(long epochMilli) {
+      return Math.floorDiv(epochMilli, 1000);
+    }
+  }
+
+  /**
+   * No. of milli, micro or nano seconds since the epoch, e.g. 1538851904123. As the Platform time has a resolution of
+   * a millisecond, micros and nanos are multiples of a milli. (CBOR has no standard tag for them, so they're
+   * untagged).
+   */
+  private static final class EpochSubSecondsFormat extends PlatformTimeFormat {
+
+    private final long unitsPerMilli;
+
+    private EpochSubSecondsFormat(String name, String jsonFieldName, long unitsPerMilli) {
+      super(name, jsonFieldName, true, false, NO_CBOR_TAG);
+      this.unitsPerMilli = unitsPerMilli;
+    }
+
+    @Override
+    void appendValue(AsciiBuffer out, long epochMilli) {
+      out.appendLong(toNumber(epochMilli));
+    }
+
+    @Override
+    long toNumber(long epochMilli) {
+      return epochMilli * this.unitsPerMilli;
+    }
+  }
+}
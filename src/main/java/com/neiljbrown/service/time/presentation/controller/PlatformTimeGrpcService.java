@@ -0,0 +1,351 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import io.grpc.BindableService;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+import com.neiljbrown.service.time.business.TenantClock;
+import com.neiljbrown.service.time.business.TenantClockProvider;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * gRPC 'PlatformTime' service, which serves the same operations as the 'Get Platform Time' API of
+ * {@link TimesController}, for clients which communicate over gRPC (HTTP/2), plus a server-streaming RPC which
+ * publishes platform time 'ticks'. The service's contract is defined in grpc/platform_time.proto (on the classpath).
+ * It's served on its own port, by the application's GrpcServer.
+ * <p>
+ * The 'GetPlatformTime' RPC supports the same formats, and the same tenant clocks, as the 'Get Platform Time' API. An
+ * invalid format fails the call with status {@link Status#INVALID_ARGUMENT}, with the same message as the API's error
+ * response, and the API's {@link ApiErrorCode} in the {@link #ERROR_CODE_TRAILER} trailer.
+ * <p>
+ * The 'StreamPlatformTime' RPC sends the current time on subscribing, and then a tick at a configurable interval, to
+ * any number of subscribers. A single shared ticker thread reads the platform time, encodes each tick once per format,
+ * and fans it out to the subscribers. As gRPC's flow control provides back-pressure, a subscriber which isn't ready to
+ * be sent the next tick, e.g. because the client is reading slowly, skips it (the dropped tick is counted), rather than
+ * being sent a growing backlog of stale ticks.
+ * <p>
+ * Messages are encoded and decoded directly, using {@link PlatformTimeProtobuf}, rather than by classes generated by
+ * the protobuf compiler, so the RPCs' {@link MethodDescriptor method descriptors} are defined here, and marshal the
+ * messages' bytes as is.
+ * <p>
+ * Thread-safe.
+ */
+@ConditionalOnProperty(name = "grpc.enabled", havingValue = "true")
+@Component
+public class PlatformTimeGrpcService implements BindableService {
+
+  /** Fully qualified name of the service, as defined in its contract. */
+  public static final String SERVICE_NAME = "neiljbrown.time.v1.PlatformTime";
+
+  /** Key of the trailer containing the {@link ApiErrorCode} of a failed call. */
+  public static final Metadata.Key<String> ERROR_CODE_TRAILER =
+    Metadata.Key.of("error-code", Metadata.ASCII_STRING_MARSHALLER);
+
+  /** Marshaller of the encoded messages, which are passed as is. */
+  static final MethodDescriptor.Marshaller<byte[]> BYTES_MARSHALLER = new MethodDescriptor.Marshaller<byte[]>() {
+    @Override
+    public InputStream stream(byte[] value) {
+      return new ByteArrayInputStream(value);
+    }
+
+    @Override
+    public byte[] parse(InputStream stream) {
+      try {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        final byte[] buffer = new byte[256];
+        int bytesRead;
+        while ((bytesRead = stream.read(buffer)) != -1) {
+          bytes.write(buffer, 0, bytesRead);
+        }
+        return bytes.toByteArray();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  };
+
+  /** Descriptor of the unary 'GetPlatformTime' RPC. */
+  static final MethodDescriptor<byte[], byte[]> GET_PLATFORM_TIME_METHOD = MethodDescriptor.<byte[], byte[]>newBuilder()
+    .setType(MethodDescriptor.MethodType.UNARY)
+    .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, "GetPlatformTime"))
+    .setRequestMarshaller(BYTES_MARSHALLER)
+    .setResponseMarshaller(BYTES_MARSHALLER)
+    .build();
+
+  /** Descriptor of the server-streaming 'StreamPlatformTime' RPC. */
+  static final MethodDescriptor<byte[], byte[]> STREAM_PLATFORM_TIME_METHOD =
+    MethodDescriptor.<byte[], byte[]>newBuilder()
+      .setType(MethodDescriptor.MethodType.SERVER_STREAMING)
+      .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, "StreamPlatformTime"))
+      .setRequestMarshaller(BYTES_MARSHALLER)
+      .setResponseMarshaller(BYTES_MARSHALLER)
+      .build();
+
+  private static final Logger logger = LoggerFactory.getLogger(PlatformTimeGrpcService.class);
+
+  /** Status of a call which requests an invalid format. Same message as the 'Get Platform Time' API's error. */
+  private static final Status INVALID_FORMAT_STATUS = Status.INVALID_ARGUMENT.withDescription(
+    "Invalid 'format'. Must be one of " + new PlatformTimeFormats().getBuiltInFormatNames() + ", or "
+      + PlatformTimeFormats.PATTERN_PREFIX + "<pattern>, e.g. " + PlatformTimeFormats.PATTERN_PREFIX
+      + "yyyy-MM-dd HH:mm:ss.SSS.");
+
+  private final PlatformDateTimeProvider platformDateTimeProvider;
+  private final TenantClockProvider tenantClockProvider;
+  private final long tickIntervalMillis;
+  private final PlatformTimeFormats platformTimeFormats = new PlatformTimeFormats();
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService ticker;
+  private final LongAdder droppedTicks = new LongAdder();
+
+  /**
+   * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to obtain current platform
+   * date/time.
+   * @param tenantClockProvider instance of {@link TenantClockProvider} used to look up the clocks of tenants whose
+   * view of the platform time differs from the platform time.
+   * @param tickIntervalMillis the interval, in milliseconds, at which ticks are sent to subscribers of the
+   * 'StreamPlatformTime' RPC. Ticks are aligned to a multiple of the interval, e.g. to the start of each second for an
+   * interval of 1000.
+   */
+  public PlatformTimeGrpcService(PlatformDateTimeProvider platformDateTimeProvider,
+    TenantClockProvider tenantClockProvider, @Value("${grpc.tick-interval-millis:1000}") long tickIntervalMillis) {
+    if (tickIntervalMillis <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'tickIntervalMillis' must be greater than zero, not [" + tickIntervalMillis + "].");
+    }
+    this.platformDateTimeProvider = platformDateTimeProvider;
+    this.tenantClockProvider = tenantClockProvider;
+    this.tickIntervalMillis = tickIntervalMillis;
+    this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "platform-time-grpc-ticker");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts sending ticks to subscribers. Invoked by the Spring container once the bean has been created.
+   */
+  @PostConstruct
+  public void start() {
+    final long initialDelayMillis = this.tickIntervalMillis
+      - Math.floorMod(this.platformDateTimeProvider.getEpochMilli(), this.tickIntervalMillis);
+    this.ticker.scheduleAtFixedRate(this::tick, initialDelayMillis, this.tickIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops sending ticks, and completes all subscriptions. Invoked by the Spring container on shutdown.
+   */
+  @PreDestroy
+  public void stop() {
+    this.ticker.shutdownNow();
+    this.subscribers.forEach(Subscriber::complete);
+    this.subscribers.clear();
+  }
+
+  @Override
+  public ServerServiceDefinition bindService() {
+    return ServerServiceDefinition.builder(SERVICE_NAME)
+      .addMethod(GET_PLATFORM_TIME_METHOD, ServerCalls.asyncUnaryCall(this::getPlatformTime))
+      .addMethod(STREAM_PLATFORM_TIME_METHOD, ServerCalls.asyncServerStreamingCall(this::streamPlatformTime))
+      .build();
+  }
+
+  /**
+   * @return the current number of subscribers to the 'StreamPlatformTime' RPC.
+   */
+  int getSubscriberCount() {
+    return this.subscribers.size();
+  }
+
+  /**
+   * @return the number of ticks which have been dropped (not sent to a subscriber), because the subscriber wasn't
+   * ready to be sent them.
+   */
+  long getDroppedTickCount() {
+    return this.droppedTicks.sum();
+  }
+
+  /**
+   * Handles a call of the 'GetPlatformTime' RPC.
+   *
+   * @param request the encoded GetPlatformTimeRequest.
+   * @param responseObserver the observer to which the encoded PlatformTime, or an error, is sent.
+   */
+  void getPlatformTime(byte[] request, StreamObserver<byte[]> responseObserver) {
+    final PlatformTimeProtobuf.Request decodedRequest = decodeRequest(request, responseObserver);
+    if (decodedRequest == null) {
+      return;
+    }
+    final PlatformTimeFormat format = lookupFormat(decodedRequest.getFormat(), responseObserver);
+    if (format == null) {
+      return;
+    }
+    final long epochMilli = this.platformDateTimeProvider.getEpochMilli();
+    final TenantClock tenantClock = decodedRequest.getTenantId().isEmpty()
+      ? null : this.tenantClockProvider.getTenantClock(decodedRequest.getTenantId());
+    responseObserver.onNext(PlatformTimeProtobuf.encodePlatformTime(format,
+      tenantClock == null ? epochMilli : tenantClock.getEpochMilli(epochMilli)));
+    responseObserver.onCompleted();
+  }
+
+  /**
+   * Handles a call of the 'StreamPlatformTime' RPC.
+   *
+   * @param request the encoded StreamPlatformTimeRequest.
+   * @param responseObserver the observer to which the encoded PlatformTime ticks, or an error, are sent.
+   */
+  void streamPlatformTime(byte[] request, StreamObserver<byte[]> responseObserver) {
+    final PlatformTimeProtobuf.Request decodedRequest = decodeRequest(request, responseObserver);
+    if (decodedRequest == null) {
+      return;
+    }
+    final PlatformTimeFormat format = lookupFormat(decodedRequest.getFormat(), responseObserver);
+    if (format == null) {
+      return;
+    }
+    final ServerCallStreamObserver<byte[]> callObserver = (ServerCallStreamObserver<byte[]>) responseObserver;
+    final Subscriber subscriber = new Subscriber(format, callObserver);
+    callObserver.setOnCancelHandler(subscriber::cancel);
+    // The first tick is sent before subscribing, so that it can't be preceded by a (later) tick sent by the ticker
+    subscriber.offer(PlatformTimeProtobuf.encodePlatformTime(format, this.platformDateTimeProvider.getEpochMilli()));
+    this.subscribers.add(subscriber);
+    // Handle the call being cancelled (before its cancel handler unsubscribed it) while it was being subscribed
+    if (callObserver.isCancelled()) {
+      this.subscribers.remove(subscriber);
+    }
+  }
+
+  private static PlatformTimeProtobuf.Request decodeRequest(byte[] request, StreamObserver<byte[]> responseObserver) {
+    try {
+      return PlatformTimeProtobuf.decodeRequest(request);
+    } catch (IllegalArgumentException e) {
+      responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Malformed request. " + e.getMessage())
+        .asRuntimeException(errorCodeTrailers(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE)));
+      return null;
+    }
+  }
+
+  private PlatformTimeFormat lookupFormat(String requestedFormat, StreamObserver<byte[]> responseObserver) {
+    final PlatformTimeFormat format = this.platformTimeFormats.get(
+      requestedFormat.isEmpty() ? TimesController.PlatformTimeFormatRequestParamValues.ISO_8601 : requestedFormat);
+    if (format == null) {
+      responseObserver.onError(
+        INVALID_FORMAT_STATUS.asRuntimeException(errorCodeTrailers(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE)));
+    }
+    return format;
+  }
+
+  private static Metadata errorCodeTrailers(ApiErrorCode errorCode) {
+    final Metadata trailers = new Metadata();
+    trailers.put(ERROR_CODE_TRAILER, errorCode.toString());
+    return trailers;
+  }
+
+  private void tick() {
+    try {
+      if (this.subscribers.isEmpty()) {
+        return;
+      }
+      final long epochMilli = this.platformDateTimeProvider.getEpochMilli();
+      final Map<PlatformTimeFormat, byte[]> ticksByFormat = new IdentityHashMap<>();
+      this.subscribers.forEach(subscriber -> subscriber.offer(ticksByFormat.computeIfAbsent(subscriber.format,
+        format -> PlatformTimeProtobuf.encodePlatformTime(format, epochMilli))));
+    } catch (RuntimeException e) {
+      // Prevent an unexpected error from cancelling future ticks
+      logger.error("Unexpected error sending platform time tick.", e);
+    }
+  }
+
+  /**
+   * A subscriber to the stream of ticks, comprising the format in which it receives them, and the observer of its
+   * call. As a call's observer isn't thread-safe, it's only used while holding the subscriber's lock.
+   */
+  private final class Subscriber {
+    private final PlatformTimeFormat format;
+    private final ServerCallStreamObserver<byte[]> observer;
+    private boolean ended;
+
+    private Subscriber(PlatformTimeFormat format, ServerCallStreamObserver<byte[]> observer) {
+      this.format = format;
+      this.observer = observer;
+    }
+
+    private synchronized void offer(byte[] tick) {
+      if (this.ended) {
+        return;
+      }
+      if (!this.observer.isReady()) {
+        droppedTicks.increment();
+        return;
+      }
+      try {
+        this.observer.onNext(tick);
+      } catch (RuntimeException e) {
+        // Call has already been cancelled, or has otherwise ended
+        logger.debug("Error sending platform time tick, unsubscribing.", e);
+        this.ended = true;
+        subscribers.remove(this);
+      }
+    }
+
+    private synchronized void complete() {
+      if (!this.ended) {
+        this.ended = true;
+        try {
+          this.observer.onCompleted();
+        } catch (RuntimeException e) {
+          logger.debug("Error completing platform time stream.", e);
+        }
+      }
+    }
+
+    private synchronized void cancel() {
+      this.ended = true;
+      subscribers.remove(this);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.pause.NoPauseDetector;
+
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * Records metrics for the 'Get Platform Time' API, in a {@link MeterRegistry}, from which they're exposed via the
+ * Actuator 'metrics' endpoint. Comprises -
+ * <br>
+ * - platform.time.requests - Timer of the time taken to handle requests, by the controller, tagged by format. Counts
+ * requests per format, and publishes the p50, p99 and p99.9 percentiles and the max of their latency distribution.
+ * Requests for a user supplied date/time pattern are tagged with a format of 'pattern', to bound the no. of timers.
+ * Requests for an invalid format are tagged with a format of 'invalid'.
+ * <br>
+ * - platform.time.clock.reads - Timer of the time taken to read the platform time from the
+ * {@link com.neiljbrown.service.time.business.PlatformDateTimeProvider}, with the same percentiles. Sampled for ~1 in
+ * {@link #CLOCK_READ_SAMPLE_INTERVAL} requests, as timing the read costs more than the read itself.
+ * <br>
+ * - platform.time.errors - Counter of error responses, tagged by {@link ApiErrorCode}.
+ * <p>
+ * All meters are registered up-front, and looked up without allocating, so that recording a metric on the request
+ * path neither allocates nor contends on a lock. (Micrometer's timers accumulate their count and totals in
+ * {@link java.util.concurrent.atomic.LongAdder adders}, and their percentile histograms in HdrHistogram recorders).
+ * The timers' pause detection is disabled, as it synchronises on every recording, to estimate the interval between
+ * them.
+ * <p>
+ * Thread-safe.
+ */
+final class PlatformTimeMetrics {
+
+  /** Percentiles of the latency distributions of the timers. */
+  private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+  /** Approximate no. of requests per sampled clock read. A power of two. */
+  static final int CLOCK_READ_SAMPLE_INTERVAL = 64;
+
+  /** Value of the format tag used for requests with an invalid format. */
+  private static final String INVALID_FORMAT_TAG_VALUE = "invalid";
+
+  private final Map<String, Timer> requestTimersByFormat = new HashMap<>();
+  private final Timer invalidFormatRequestTimer;
+  private final Timer clockReadTimer;
+  private final Map<ApiErrorCode, Counter> errorCounters = new EnumMap<>(ApiErrorCode.class);
+
+  /**
+   * @param meterRegistry the {@link MeterRegistry} in which the metrics are registered.
+   * @param builtInFormatNames the names of the built-in {@link PlatformTimeFormat formats}.
+   */
+  PlatformTimeMetrics(MeterRegistry meterRegistry, Collection<String> builtInFormatNames) {
+    builtInFormatNames.forEach(format -> this.requestTimersByFormat.put(format, requestTimer(meterRegistry, format)));
+    this.requestTimersByFormat.put(PatternPlatformTimeFormat.NAME,
+      requestTimer(meterRegistry, PatternPlatformTimeFormat.NAME));
+    this.invalidFormatRequestTimer = requestTimer(meterRegistry, INVALID_FORMAT_TAG_VALUE);
+    this.clockReadTimer = Timer.builder("platform.time.clock.reads")
+      .description("Time taken to read the platform time.")
+      .publishPercentiles(PERCENTILES)
+      .pauseDetector(new NoPauseDetector())
+      .register(meterRegistry);
+    for (ApiErrorCode errorCode : ApiErrorCode.values()) {
+      this.errorCounters.put(errorCode, Counter.builder("platform.time.errors")
+        .description("No. of 'Get Platform Time' API error responses.")
+        .tag("code", errorCode.name())
+        .register(meterRegistry));
+    }
+  }
+
+  /**
+   * @param format the requested format, or null if the requested format was invalid.
+   * @param elapsedNanos the time taken to handle the request, in nanoseconds.
+   */
+  void recordRequest(PlatformTimeFormat format, long elapsedNanos) {
+    final Timer timer = format != null ? this.requestTimersByFormat.get(format.getName()) : null;
+    (timer != null ? timer : this.invalidFormatRequestTimer).record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Decides whether the time taken to read the platform time should be recorded for a request. Requests are sampled
+   * based on the low bits of their start time, rather than a shared counter, so that sampling doesn't contend. Where
+   * the system's high resolution timer is coarser than a nanosecond, more requests are sampled.
+   *
+   * @param requestStartNanos the value of {@link System#nanoTime()} at the start of the request.
+   * @return true if the clock read should be timed and {@link #recordClockRead recorded}, false otherwise.
+   */
+  boolean isClockReadSampled(long requestStartNanos) {
+    return (requestStartNanos & (CLOCK_READ_SAMPLE_INTERVAL - 1)) == 0;
+  }
+
+  /**
+   * @param elapsedNanos the time taken to read the platform time, in nanoseconds.
+   */
+  void recordClockRead(long elapsedNanos) {
+    this.clockReadTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param errorCode the code of the error returned in response to a request.
+   */
+  void recordError(ApiErrorCode errorCode) {
+    this.errorCounters.get(errorCode).increment();
+  }
+
+  private static Timer requestTimer(MeterRegistry meterRegistry, String format) {
+    return Timer.builder("platform.time.requests")
+      .description("Time taken to handle 'Get Platform Time' API requests.")
+      .tag("format", format)
+      .publishPercentiles(PERCENTILES)
+      .pauseDetector(new NoPauseDetector())
+      .register(meterRegistry);
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes the Protocol Buffers (protobuf) messages of the gRPC 'PlatformTime' service, served by
+ * {@link PlatformTimeGrpcService}, as defined in grpc/platform_time.proto (on the classpath).
+ * <p>
+ * The messages comprise only a few scalar fields, so they're encoded directly, in the protobuf wire format, rather
+ * than using classes generated by the protobuf compiler, avoiding a dependency on the protobuf runtime, and the cost
+ * of building a message object per call. As per the protobuf spec, fields with a default (zero or empty) value may be
+ * omitted, and unknown fields are skipped when decoding.
+ * <p>
+ * Thread-safe.
+ */
+final class PlatformTimeProtobuf {
+
+  // Field keys - the field no. shifted left three bits, ORed with the wire type
+  private static final int WIRE_TYPE_VARINT = 0;
+  private static final int WIRE_TYPE_FIXED64 = 1;
+  private static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+  private static final int WIRE_TYPE_FIXED32 = 5;
+
+  /** GetPlatformTimeRequest.format, and StreamPlatformTimeRequest.format. */
+  private static final int REQUEST_FORMAT_KEY = (1 << 3) | WIRE_TYPE_LENGTH_DELIMITED;
+  /** GetPlatformTimeRequest.tenant_id. */
+  private static final int REQUEST_TENANT_ID_KEY = (2 << 3) | WIRE_TYPE_LENGTH_DELIMITED;
+  /** PlatformTime.epoch_milli. */
+  private static final int EPOCH_MILLI_KEY = (1 << 3) | WIRE_TYPE_VARINT;
+  /** PlatformTime.text, one of the value fields. */
+  private static final int TEXT_KEY = (2 << 3) | WIRE_TYPE_LENGTH_DELIMITED;
+  /** PlatformTime.number, one of the value fields. */
+  private static final int NUMBER_KEY = (3 << 3) | WIRE_TYPE_VARINT;
+
+  private PlatformTimeProtobuf() {
+  }
+
+  /**
+   * Encodes a PlatformTime message, containing the Platform time in the supplied format.
+   *
+   * @param format the requested format.
+   * @param epochMilli the Platform time, as a number of milliseconds since the epoch.
+   * @return the encoded message.
+   */
+  static byte[] encodePlatformTime(PlatformTimeFormat format, long epochMilli) {
+    final byte[] message;
+    if (format.isNumeric()) {
+      final long number = format.toNumber(epochMilli);
+      message = new byte[1 + varintLength(epochMilli) + 1 + varintLength(number)];
+      int position = writeVarint(message, writeKey(message, 0, EPOCH_MILLI_KEY), epochMilli);
+      position = writeVarint(message, writeKey(message, position, NUMBER_KEY), number);
+    } else {
+      final AsciiBuffer text = AsciiBuffer.forCurrentThread();
+      format.appendValue(text, epochMilli);
+      message = new byte[1 + varintLength(epochMilli) + 1 + varintLength(text.length()) + text.length()];
+      int position = writeVarint(message, writeKey(message, 0, EPOCH_MILLI_KEY), epochMilli);
+      position = writeVarint(message, writeKey(message, position, TEXT_KEY), text.length());
+      text.copyTo(message, position);
+    }
+    return message;
+  }
+
+  /**
+   * Encodes a GetPlatformTimeRequest, or StreamPlatformTimeRequest (which has no tenant), message. Used by clients.
+   *
+   * @param format the requested format, or null for the default.
+   * @param tenantId the ID of the tenant on whose behalf the request is made, or null.
+   * @return the encoded message.
+   */
+  static byte[] encodeRequest(String format, String tenantId) {
+    final ByteArrayOutputStream message = new ByteArrayOutputStream(64);
+    writeString(message, REQUEST_FORMAT_KEY, format);
+    writeString(message, REQUEST_TENANT_ID_KEY, tenantId);
+    return message.toByteArray();
+  }
+
+  /**
+   * Decodes a GetPlatformTimeRequest, or StreamPlatformTimeRequest, message.
+   *
+   * @param message the encoded message.
+   * @return the decoded request.
+   * @throws IllegalArgumentException if the message is malformed.
+   */
+  static Request decodeRequest(byte[] message) {
+    String format = "";
+    String tenantId = "";
+    final Reader reader = new Reader(message);
+    while (reader.hasRemaining()) {
+      final int key = (int) reader.readVarint();
+      if (key == REQUEST_FORMAT_KEY) {
+        format = reader.readString();
+      } else if (key == REQUEST_TENANT_ID_KEY) {
+        tenantId = reader.readString();
+      } else {
+        reader.skip(key);
+      }
+    }
+    return new Request(format, tenantId);
+  }
+
+  /**
+   * Decodes a PlatformTime message. Used by clients.
+   *
+   * @param message the encoded message.
+   * @return the decoded Platform time.
+   * @throws IllegalArgumentException if the message is malformed.
+   */
+  static PlatformTime decodePlatformTime(byte[] message) {
+    long epochMilli = 0;
+    String text = null;
+    Long number = null;
+    final Reader reader = new Reader(message);
+    while (reader.hasRemaining()) {
+      final int key = (int) reader.readVarint();
+      if (key == EPOCH_MILLI_KEY) {
+        epochMilli = reader.readVarint();
+      } else if (key == TEXT_KEY) {
+        text = reader.readString();
+        number = null;
+      } else if (key == NUMBER_KEY) {
+        number = reader.readVarint();
+        text = null;
+      } else {
+        reader.skip(key);
+      }
+    }
+    return new PlatformTime(epochMilli, text, number);
+  }
+
+  private static int writeKey(byte[] message, int position, int key) {
+    message[position] = (byte) key;
+    return position + 1;
+  }
+
+  private static void writeString(ByteArrayOutputStream message, int key, String value) {
+    if (value == null || value.isEmpty()) {
+      return;
+    }
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    final byte[] head = new byte[1 + varintLength(bytes.length)];
+    writeVarint(head, writeKey(head, 0, key), bytes.length);
+    message.write(head, 0, head.length);
+    message.write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * @return the no. of bytes in the varint encoding of the value. Negative values, as a two's complement 64-bit
+   * integer, are always 10 bytes.
+   */
+  static int varintLength(long value) {
+    int length = 1;
+    while ((value & ~0x7FL) != 0) {
+      value >>>= 7;
+      length++;
+    }
+    return length;
+  }
+
+  private static int writeVarint(byte[] message, int position, long value) {
+    while ((value & ~0x7FL) != 0) {
+      message[position++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    message[position++] = (byte) value;
+    return position;
+  }
+
+  /**
+   * A reader of the fields of an encoded message.
+   */
+  private static final class Reader {
+
+    private final byte[] message;
+    private int position;
+
+    private Reader(byte[] message) {
+      this.message = message;
+    }
+
+    private boolean hasRemaining() {
+      return this.position < this.message.length;
+    }
+
+    private long readVarint() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        final byte b = readByte();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("Malformed varint at position [" + this.position + "].");
+    }
+
+    private String readString() {
+      final int length = readLength();
+      final String value = new String(this.message, this.position, length, StandardCharsets.UTF_8);
+      this.position += length;
+      return value;
+    }
+
+    private void skip(int key) {
+      switch (key & 0x7) {
+        case WIRE_TYPE_VARINT:
+          readVarint();
+          break;
+        case WIRE_TYPE_FIXED64:
+          skipBytes(8);
+          break;
+        case WIRE_TYPE_LENGTH_DELIMITED:
+          skipBytes(readLength());
+          break;
+        case WIRE_TYPE_FIXED32:
+          skipBytes(4);
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported wire type in field key [" + key + "].");
+      }
+    }
+
+    private int readLength() {
+      final long length = readVarint();
+      if (length < 0 || length > this.message.length - this.position) {
+        throw new IllegalArgumentException("Invalid length [" + length + "] at position [" + this.position + "].");
+      }
+      return (int) length;
+    }
+
+    private void skipBytes(int count) {
+      if (count > this.message.length - this.position) {
+        throw new IllegalArgumentException("Truncated message at position [" + this.position + "].");
+      }
+      this.position += count;
+    }
+
+    private byte readByte() {
+      if (this.position >= this.message.length) {
+        throw new IllegalArgumentException("Truncated message at position [" + this.position + "].");
+      }
+      return this.message[this.position++];
+    }
+  }
+
+  /**
+   * A decoded GetPlatformTimeRequest, or StreamPlatformTimeRequest. Immutable.
+   */
+  static final class Request {
+
+    private final String format;
+    private final String tenantId;
+
+    Request(String format, String tenantId) {
+      this.format = format;
+      this.tenantId = tenantId;
+    }
+
+    /**
+     * @return the requested format, or an empty string for the default.
+     */
+    String getFormat() {
+      return this.format;
+    }
+
+    /**
+     * @return the ID of the tenant on whose behalf the request is made, or an empty string if there's none.
+     */
+    String getTenantId() {
+      return this.tenantId;
+    }
+  }
+
+  /**
+   * A decoded PlatformTime. Immutable.
+   */
+  static final class PlatformTime {
+
+    private final long epochMilli;
+    private final String text;
+    private final Long number;
+
+    PlatformTime(long epochMilli, String text, Long number) {
+      this.epochMilli = epochMilli;
+      this.text = text;
+      this.number = number;
+    }
+
+    /**
+     * @return the Platform time, as a number of milliseconds since the epoch.
+     */
+    long getEpochMilli() {
+      return this.epochMilli;
+    }
+
+    /**
+     * @return the value of the Platform time, in a textual format, or null if the format is numeric.
+     */
+    String getText() {
+      return this.text;
+    }
+
+    /**
+     * @return the value of the Platform time, in a numeric format, or null if the format is textual.
+     */
+    Long getNumber() {
+      return this.number;
+    }
+
+    @Override
+    public String toString() {
+      return "PlatformTime{epochMilli=" + this.epochMilli + ", text=" + this.text + ", number=" + this.number + "}";
+    }
+  }
+}
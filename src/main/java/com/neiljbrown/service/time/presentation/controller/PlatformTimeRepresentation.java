@@ -0,0 +1,234 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ * The representations (media types) in which the 'Get Platform Time' API can return the Platform time, selected by
+ * content negotiation on the request's Accept header.
+ * <p>
+ * Each representation is encoded directly from the Platform time's epoch milli, in a given
+ * {@link PlatformTimeFormat format}, rather than being serialised by the web stack. The format's value is written into
+ * the current thread's reusable {@link AsciiBuffer}, so the only allocation is the encoded bytes, which can be cached
+ * and shared by all requests in the same second (or millisecond).
+ */
+enum PlatformTimeRepresentation {
+
+  /** JSON object comprising a single field, e.g. {"dateTime":"2018-10-06T18:51:44Z"} or {"epochSeconds":1538851904}. */
+  JSON(MediaType.APPLICATION_JSON) {
+    @Override
+    byte[] encode(PlatformTimeFormat format, long epochMilli) {
+      final AsciiBuffer out = AsciiBuffer.forCurrentThread().append(format.getJsonPrefix());
+      format.appendValue(out, epochMilli);
+      return out.append(format.getJsonSuffix()).toByteArray();
+    }
+  },
+
+  /** The bare value, as text, e.g. 2018-10-06T18:51:44Z or 1538851904. */
+  TEXT(MediaType.TEXT_PLAIN) {
+    @Override
+    byte[] encode(PlatformTimeFormat format, long epochMilli) {
+      final AsciiBuffer out = AsciiBuffer.forCurrentThread();
+      format.appendValue(out, epochMilli);
+      return out.toByteArray();
+    }
+  },
+
+  /**
+   * A single CBOR (RFC 7049) data item, comprising the value as a text string or integer, depending on the format, and
+   * tagged where the format has a standard tag - a date/time string (tag 0) for ISO-8601, or an epoch-based date/time
+   * (tag 1) for epoch seconds.
+   */
+  CBOR(MediaType.valueOf(PlatformTimeRepresentation.APPLICATION_CBOR_VALUE)) {
+    @Override
+    byte[] encode(PlatformTimeFormat format, long epochMilli) {
+      final int tagLength = format.getCborTag() == PlatformTimeFormat.NO_CBOR_TAG ? 0 : 1;
+      if (format.isNumeric()) {
+        final ByteBuffer item = ByteBuffer.allocate(tagLength + 9);
+        putCborTag(item, format.getCborTag());
+        final long value = format.toNumber(epochMilli);
+        if (value >= 0) {
+          putCborHead(item, CBOR_MAJOR_TYPE_UNSIGNED_INT, value);
+        } else {
+          putCborHead(item, CBOR_MAJOR_TYPE_NEGATIVE_INT, -1 - value);
+        }
+        return toArray(item);
+      }
+      final AsciiBuffer text = AsciiBuffer.forCurrentThread();
+      format.appendValue(text, epochMilli);
+      final byte[] bytes = new byte[tagLength + cborHeadLength(text.length()) + text.length()];
+      final ByteBuffer item = ByteBuffer.wrap(bytes);
+      putCborTag(item, format.getCborTag());
+      putCborHead(item, CBOR_MAJOR_TYPE_TEXT_STRING, text.length());
+      text.copyTo(bytes, item.position());
+      return bytes;
+    }
+  },
+
+  /**
+   * Fixed-width binary - an 8 byte, big-endian (network byte order), signed integer. For numeric formats this is the
+   * format's value, e.g. the epoch milli. As the representation has no textual form, it's the epoch second for all
+   * other formats.
+   */
+  BINARY(MediaType.APPLICATION_OCTET_STREAM) {
+    @Override
+    byte[] encode(PlatformTimeFormat format, long epochMilli) {
+      final long value = format.isNumeric() ? format.toNumber(epochMilli) : Math.floorDiv(epochMilli, 1000);
+      return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+  };
+
+  static final String APPLICATION_CBOR_VALUE = "application/cbor";
+
+  private static final int CBOR_MAJOR_TYPE_UNSIGNED_INT = 0;
+  private static final int CBOR_MAJOR_TYPE_NEGATIVE_INT = 1;
+  private static final int CBOR_MAJOR_TYPE_TEXT_STRING = 3;
+  private static final int CBOR_MAJOR_TYPE_TAG = 6;
+
+  private final MediaType mediaType;
+
+  PlatformTimeRepresentation(MediaType mediaType) {
+    this.mediaType = mediaType;
+  }
+
+  /**
+   * @return the media type of this representation, used as the Content-Type of the response.
+   */
+  MediaType getMediaType() {
+    return this.mediaType;
+  }
+
+  /**
+   * @return the suffix of the ETag of responses containing this representation, which distinguishes them from other
+   * representations of the Platform time at the same instant, e.g. json.
+   */
+  String getEntityTagSuffix() {
+    return name().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * @param format the format of the Platform time.
+   * @param epochMilli the Platform time, as a number of milliseconds since the epoch.
+   * @return the encoded representation of the Platform time.
+   */
+  abstract byte[] encode(PlatformTimeFormat format, long epochMilli);
+
+  /**
+   * Selects the representation which best matches a request's Accept header.
+   * <p>
+   * The common case of an absent, wildcard or single media type Accept header is resolved without parsing it.
+   * Otherwise, the most specific, highest quality acceptable media type which is compatible with one of the
+   * representations selects it. Where several representations are equally acceptable, e.g. for a wildcard, the
+   * earliest declared (JSON) is preferred.
+   *
+   * @param accept the value of the request's Accept header. May be null.
+   * @return the selected representation. Defaults to {@link #JSON} if none are acceptable.
+   */
+  static PlatformTimeRepresentation negotiate(String accept) {
+    if (accept == null) {
+      return JSON;
+    }
+    switch (accept) {
+      case MediaType.APPLICATION_JSON_VALUE:
+      case MediaType.ALL_VALUE:
+        return JSON;
+      case MediaType.TEXT_PLAIN_VALUE:
+        return TEXT;
+      case APPLICATION_CBOR_VALUE:
+        return CBOR;
+      case MediaType.APPLICATION_OCTET_STREAM_VALUE:
+        return BINARY;
+      default:
+        return negotiateParsed(accept);
+    }
+  }
+
+  private static PlatformTimeRepresentation negotiateParsed(String accept) {
+    final List<MediaType> acceptableMediaTypes;
+    try {
+      acceptableMediaTypes = MediaType.parseMediaTypes(accept);
+    } catch (InvalidMediaTypeException e) {
+      return JSON;
+    }
+    MediaType.sortBySpecificityAndQuality(acceptableMediaTypes);
+    for (MediaType acceptableMediaType : acceptableMediaTypes) {
+      if (acceptableMediaType.getQualityValue() <= 0) {
+        continue;
+      }
+      for (PlatformTimeRepresentation representation : values()) {
+        if (acceptableMediaType.isCompatibleWith(representation.mediaType)) {
+          return representation;
+        }
+      }
+    }
+    return JSON;
+  }
+
+  private static void putCborTag(ByteBuffer item, int tag) {
+    if (tag != PlatformTimeFormat.NO_CBOR_TAG) {
+      // Tags used are less than 24, so are encoded in the initial byte
+      item.put((byte) (CBOR_MAJOR_TYPE_TAG << 5 | tag));
+    }
+  }
+
+  /**
+   * @return the length of the head of a CBOR data item with a given argument.
+   */
+  private static int cborHeadLength(long argument) {
+    if (argument < 24) {
+      return 1;
+    } else if (argument <= 0xFF) {
+      return 2;
+    } else if (argument <= 0xFFFF) {
+      return 3;
+    } else if (argument <= 0xFFFFFFFFL) {
+      return 5;
+    }
+    return 9;
+  }
+
+  /**
+   * Writes the head of a CBOR data item - its major type and argument - using the shortest encoding of the argument.
+   */
+  private static void putCborHead(ByteBuffer item, int majorType, long argument) {
+    final int initialByte = majorType << 5;
+    if (argument < 24) {
+      item.put((byte) (initialByte | argument));
+    } else if (argument <= 0xFF) {
+      item.put((byte) (initialByte | 24)).put((byte) argument);
+    } else if (argument <= 0xFFFF) {
+      item.put((byte) (initialByte | 25)).putShort((short) argument);
+    } else if (argument <= 0xFFFFFFFFL) {
+      item.put((byte) (initialByte | 26)).putInt((int) argument);
+    } else {
+      item.put((byte) (initialByte | 27)).putLong(argument);
+    }
+  }
+
+  private static byte[] toArray(ByteBuffer item) {
+    final byte[] bytes = new byte[item.position()];
+    item.flip();
+    item.get(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.io.IOException;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.neiljbrown.service.time.presentation.controller.TimesController.PlatformTimeFormatRequestParamValues;
+
+/**
+ * {@link RestController Controller for RESTful web API} that handles requests to stream the Platform time to clients,
+ * as an alternative to them repeatedly polling the 'Get Platform Time' API in order to detect when the time changes.
+ * <p>
+ * Only available in the servlet web execution mode, as the stream is written using Spring MVC's
+ * {@link ResponseBodyEmitter}.
+ * <p>
+ * Singleton. Controller handling methods must be thread-safe.
+ */
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RestController
+public class PlatformTimeStreamController {
+
+  private final PlatformTimeTickPublisher platformTimeTickPublisher;
+
+  /**
+   * @param platformTimeTickPublisher the {@link PlatformTimeTickPublisher} which publishes the stream of Platform
+   * time ticks.
+   */
+  public PlatformTimeStreamController(PlatformTimeTickPublisher platformTimeTickPublisher) {
+    this.platformTimeTickPublisher = platformTimeTickPublisher;
+  }
+
+  /**
+   * Handles a request to subscribe to a stream of the Platform date time, published as Server-Sent Events (SSE), at a
+   * configured interval (by default, once per second, at the start of each second). The data of each event contains
+   * the same representation of the Platform time as is returned by the 'Get Platform Time' API.
+   *
+   * @param format the format in which the Platform time should be returned. Optional. Supports the same values as the
+   * equivalent request param of the 'Get Platform Time' API. If not specified defaults to {@link
+   * PlatformTimeFormatRequestParamValues#ISO_8601}.
+   * @return a {@link ResponseEntity}. If the request was successful, as indicated by a status code of 200, the body
+   * is a stream of events, of media type {@link MediaType#TEXT_EVENT_STREAM}. Else the body contains a JSON error
+   * representation detailing why the request failed.
+   * @throws IOException if an error occurs writing the error representation for a failed request.
+   */
+  @GetMapping(value = "/v1/platform-time/stream",
+    produces = {MediaType.TEXT_EVENT_STREAM_VALUE, MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity<ResponseBodyEmitter> streamPlatformTime(
+    @RequestParam(value = "format", required = false,
+      defaultValue = PlatformTimeFormatRequestParamValues.ISO_8601) String format) throws IOException {
+    final PlatformTimeFormat platformTimeFormat = this.platformTimeTickPublisher.getFormat(format);
+    if (platformTimeFormat == null) {
+      // Use a pre-completed emitter to return the error, as Spring MVC only supports streaming return types which
+      // declare the emitter as the type of the response body
+      final ResponseBodyEmitter errorEmitter = new ResponseBodyEmitter();
+      errorEmitter.send(TimesController.INVALID_FORMAT_RESPONSE.getBody(), MediaType.APPLICATION_JSON);
+      errorEmitter.complete();
+      return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(errorEmitter);
+    }
+    return ResponseEntity.ok()
+      .contentType(MediaType.TEXT_EVENT_STREAM)
+      .header("Cache-Control", "no-cache")
+      .body(this.platformTimeTickPublisher.subscribe(platformTimeFormat));
+  }
+}
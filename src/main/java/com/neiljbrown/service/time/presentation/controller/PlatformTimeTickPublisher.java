@@ -0,0 +1,376 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+
+/**
+ * Publishes a stream of platform time 'ticks', at a configurable interval, as Server-Sent Events (SSE), to any number
+ * of subscribers, each of which receives the ticks in one of the formats supported by the 'Get Platform Time' API.
+ * <p>
+ * A single shared ticker thread reads the platform time, encodes each tick once per format in use, as a complete SSE
+ * event, using the same {@link PlatformTimeFormats registry of formats} as the 'Get Platform Time' API, and then fans
+ * it out to the subscribers. Events are written to subscribers by a bounded pool of sender threads.
+ * <p>
+ * Slow consumers are prevented from holding up other subscribers, and from causing an unbounded backlog of events,
+ * by giving each subscriber a pending event 'slot' of size one. If a subscriber hasn't finished being sent its
+ * previous event when the next tick occurs, then the pending event is replaced (conflated) by the latest one, and the
+ * replaced event is dropped (and counted). A subscriber therefore always receives the latest tick, but may skip ticks.
+ * <p>
+ * As writing an event to a subscriber blocks, a subscriber which stops reading (stalls) would hold a sender thread
+ * until the web container times out the write, and enough such subscribers would hold all of them. A subscriber which
+ * has been being sent an event for longer than a configurable send timeout is therefore evicted (unsubscribed, and
+ * counted), and, up to a limit, an extra sender thread is added to the pool in place of the one which is blocked,
+ * until the blocked write returns, at which point the subscription is ended.
+ * <p>
+ * Only created in the servlet web execution mode, as it publishes to Spring MVC's {@link ResponseBodyEmitter}.
+ * <p>
+ * Thread-safe.
+ */
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Component
+public class PlatformTimeTickPublisher {
+
+  private static final Logger logger = LoggerFactory.getLogger(PlatformTimeTickPublisher.class);
+
+  private final PlatformDateTimeProvider platformDateTimeProvider;
+  private final long intervalMillis;
+  private final long subscriberTimeoutMillis;
+  private final long sendTimeoutNanos;
+  private final int maxExtraSenderThreads;
+  private final PlatformTimeFormats platformTimeFormats = new PlatformTimeFormats();
+  private final Set<Subscriber> subscribers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+  private final ScheduledExecutorService ticker;
+  private final ThreadPoolExecutor senders;
+  private final LongAdder droppedEvents = new LongAdder();
+  private final LongAdder evictedSubscribers = new LongAdder();
+
+  /** No. of sender threads added in place of those blocked sending to an evicted subscriber. Guarded by senders. */
+  private int extraSenderThreads;
+
+  /**
+   * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to obtain current platform
+   * date/time.
+   * @param intervalMillis the interval, in milliseconds, at which ticks are published. Ticks are aligned to a multiple
+   * of the interval, e.g. to the start of each second for an interval of 1000.
+   * @param senderThreads the number of threads used to send events to subscribers.
+   * @param subscriberTimeoutMillis the time, in milliseconds, after which a subscription is timed out (completed) by
+   * the web container, at which point an SSE client will typically reconnect. A value of 0 or less disables the
+   * timeout.
+   * @param sendTimeoutMillis the max time, in milliseconds, for which an event can be being sent to a subscriber,
+   * before the subscriber is evicted. Must be greater than zero.
+   */
+  public PlatformTimeTickPublisher(PlatformDateTimeProvider platformDateTimeProvider,
+    @Value("${platform-time-stream.interval-millis:1000}") long intervalMillis,
+    @Value("${platform-time-stream.sender-threads:8}") int senderThreads,
+    @Value("${platform-time-stream.subscriber-timeout-millis:3600000}") long subscriberTimeoutMillis,
+    @Value("${platform-time-stream.send-timeout-millis:5000}") long sendTimeoutMillis) {
+    if (intervalMillis <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'intervalMillis' must be greater than zero, not [" + intervalMillis + "].");
+    }
+    if (sendTimeoutMillis <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'sendTimeoutMillis' must be greater than zero, not [" + sendTimeoutMillis + "].");
+    }
+    this.platformDateTimeProvider = platformDateTimeProvider;
+    this.intervalMillis = intervalMillis;
+    this.subscriberTimeoutMillis = subscriberTimeoutMillis > 0 ? subscriberTimeoutMillis : 0;
+    this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+    this.maxExtraSenderThreads = senderThreads;
+    this.ticker = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("platform-time-ticker"));
+    this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+      new LinkedBlockingQueue<>(), daemonThreadFactory("platform-time-sender"));
+  }
+
+  /**
+   * Starts publishing ticks. Invoked by the Spring container once the bean has been created.
+   */
+  @PostConstruct
+  public void start() {
+    final long initialDelayMillis = this.intervalMillis
+      - Math.floorMod(this.platformDateTimeProvider.getEpochMilli(), this.intervalMillis);
+    this.ticker.scheduleAtFixedRate(this::tick, initialDelayMillis, this.intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops publishing ticks, and completes all subscriptions. Invoked by the Spring container on shutdown.
+   */
+  @PreDestroy
+  public void stop() {
+    this.ticker.shutdownNow();
+    this.senders.shutdownNow();
+    this.subscribers.forEach(Subscriber::complete);
+  }
+
+  /**
+   * Looks up the format in which ticks should be published, for a value of the 'format' request param of the 'Get
+   * Platform Time' API.
+   *
+   * @param requestParamValue the value of the 'format' request param.
+   * @return the format, or null if the value doesn't identify a format.
+   */
+  PlatformTimeFormat getFormat(String requestParamValue) {
+    return this.platformTimeFormats.get(requestParamValue);
+  }
+
+  /**
+   * Creates a new subscription to the stream of ticks.
+   *
+   * @param format the format in which the ticks should be published, as returned by {@link #getFormat}.
+   * @return the {@link ResponseBodyEmitter} to which the events for the new subscription are written. The
+   * subscription ends when the emitter is completed, times out, or an error occurs writing to it.
+   */
+  ResponseBodyEmitter subscribe(PlatformTimeFormat format) {
+    final ResponseBodyEmitter emitter = new ResponseBodyEmitter(this.subscriberTimeoutMillis);
+    subscribe(format, emitter);
+    return emitter;
+  }
+
+  /**
+   * Creates a new subscription to the stream of ticks, whose events are written to the supplied emitter.
+   * <p>
+   * Only provided to aid testing.
+   *
+   * @param format the format in which the ticks should be published, as returned by {@link #getFormat}.
+   * @param emitter the {@link ResponseBodyEmitter} to which the events are written.
+   */
+  void subscribe(PlatformTimeFormat format, ResponseBodyEmitter emitter) {
+    final Subscriber subscriber = new Subscriber(format, emitter);
+    emitter.onCompletion(subscriber::unsubscribe);
+    emitter.onTimeout(subscriber::unsubscribe);
+    this.subscribers.add(subscriber);
+  }
+
+  /**
+   * @return the current number of subscribers, across all formats.
+   */
+  int getSubscriberCount() {
+    return this.subscribers.size();
+  }
+
+  /**
+   * @return the number of events which have been dropped (not sent to a subscriber), because they were replaced by a
+   * later event before the subscriber was ready to be sent them.
+   */
+  long getDroppedEventCount() {
+    return this.droppedEvents.sum();
+  }
+
+  /**
+   * @return the number of subscribers which have been evicted, because an event took longer than the send timeout to
+   * be sent to them.
+   */
+  long getEvictedSubscriberCount() {
+    return this.evictedSubscribers.sum();
+  }
+
+  private void tick() {
+    try {
+      final long epochMilli = this.platformDateTimeProvider.getEpochMilli();
+      final long nowNanos = System.nanoTime();
+      // Subscribers mostly share a few formats, so each tick is only encoded once per format
+      final Map<PlatformTimeFormat, byte[]> eventsByFormat = new IdentityHashMap<>();
+      this.subscribers.forEach(subscriber -> {
+        if (subscriber.isStalled(nowNanos)) {
+          subscriber.evict();
+        } else {
+          subscriber.offer(eventsByFormat.computeIfAbsent(subscriber.format,
+            format -> encodeEvent(format, epochMilli)));
+        }
+      });
+    } catch (RuntimeException e) {
+      // Prevent an unexpected error from cancelling future ticks
+      logger.error("Unexpected error publishing platform time tick.", e);
+    }
+  }
+
+  /**
+   * Encodes a tick as a complete SSE event, whose data is the JSON representation of the Platform time returned by the
+   * 'Get Platform Time' API.
+   */
+  private static byte[] encodeEvent(PlatformTimeFormat format, long epochMilli) {
+    final AsciiBuffer out = AsciiBuffer.forCurrentThread().append("data:").append(format.getJsonPrefix());
+    format.appendValue(out, epochMilli);
+    return out.append(format.getJsonSuffix()).append("\n\n").toByteArray();
+  }
+
+  /**
+   * Adds a sender thread to the pool, in place of one which is blocked sending to an evicted subscriber, unless the
+   * max no. of such extra threads has been reached.
+   *
+   * @return true if a thread was added, false otherwise.
+   */
+  private boolean addSenderThread() {
+    synchronized (this.senders) {
+      if (this.extraSenderThreads >= this.maxExtraSenderThreads) {
+        return false;
+      }
+      this.extraSenderThreads++;
+      // The max must be increased before the core size, which mustn't exceed it
+      this.senders.setMaximumPoolSize(this.senders.getMaximumPoolSize() + 1);
+      this.senders.setCorePoolSize(this.senders.getCorePoolSize() + 1);
+      return true;
+    }
+  }
+
+  /**
+   * Removes a sender thread added by {@link #addSenderThread}, once the thread it replaced is no longer blocked. The
+   * pool's surplus thread then terminates once it's idle.
+   */
+  private void removeSenderThread() {
+    synchronized (this.senders) {
+      this.extraSenderThreads--;
+      this.senders.setCorePoolSize(this.senders.getCorePoolSize() - 1);
+      this.senders.setMaximumPoolSize(this.senders.getMaximumPoolSize() - 1);
+    }
+  }
+
+  private static ThreadFactory daemonThreadFactory(String threadNamePrefix) {
+    final AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable, threadNamePrefix + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * A subscriber to the stream of ticks, comprising the format in which it receives them, the emitter to which its
+   * events are written, its pending event slot, a flag which ensures at most one sender thread is writing its events
+   * at any one time, and the time at which the write in progress, if any, started.
+   */
+  private final class Subscriber {
+
+    /** Value of {@link #sendStartNanos} when no event is being written. */
+    private static final long NOT_SENDING = Long.MIN_VALUE;
+
+    private final PlatformTimeFormat format;
+    private final ResponseBodyEmitter emitter;
+    private final AtomicReference<byte[]> pendingEvent = new AtomicReference<>();
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private final AtomicLong sendStartNanos = new AtomicLong(NOT_SENDING);
+    private volatile boolean evicted;
+    private volatile boolean senderThreadReplaced;
+
+    private Subscriber(PlatformTimeFormat format, ResponseBodyEmitter emitter) {
+      this.format = format;
+      this.emitter = emitter;
+    }
+
+    private void offer(byte[] event) {
+      if (this.pendingEvent.getAndSet(event) != null) {
+        droppedEvents.increment();
+      }
+      if (this.sending.compareAndSet(false, true)) {
+        senders.execute(this::send);
+      }
+    }
+
+    private void send() {
+      byte[] event;
+      while (!this.evicted && (event = this.pendingEvent.getAndSet(null)) != null) {
+        this.sendStartNanos.set(System.nanoTime());
+        try {
+          this.emitter.send(event, MediaType.TEXT_EVENT_STREAM);
+        } catch (IOException | IllegalStateException e) {
+          // Subscriber has disconnected, or the subscription has otherwise already ended
+          unsubscribe();
+          this.emitter.completeWithError(e);
+          return;
+        } finally {
+          // Whichever of this and evict() is second to reset the send start removes the thread evict() added
+          if (this.sendStartNanos.getAndSet(NOT_SENDING) == NOT_SENDING && this.senderThreadReplaced) {
+            removeSenderThread();
+          }
+        }
+      }
+      if (this.evicted) {
+        this.emitter.completeWithError(new IOException("Send to platform time stream subscriber timed out."));
+        return;
+      }
+      this.sending.set(false);
+      // Resume sending if an event was offered after the pending slot was last found to be empty, but before sending
+      // was reset, as offer() won't have scheduled a send
+      if (this.pendingEvent.get() != null && this.sending.compareAndSet(false, true)) {
+        senders.execute(this::send);
+      }
+    }
+
+    /**
+     * @return true if an event has been being sent to the subscriber for longer than the send timeout.
+     */
+    private boolean isStalled(long nowNanos) {
+      final long startNanos = this.sendStartNanos.get();
+      return startNanos != NOT_SENDING && nowNanos - startNanos > sendTimeoutNanos;
+    }
+
+    /**
+     * Evicts the subscriber, as it's stalled. The emitter can't be completed whilst it's blocked in a send, as its
+     * methods are synchronised, so it's completed by the sender thread, once the send returns.
+     */
+    private void evict() {
+      unsubscribe();
+      this.evicted = true;
+      evictedSubscribers.increment();
+      logger.warn("Evicted platform time stream subscriber, as sending to it took longer than [{}] ms.",
+        TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+      this.senderThreadReplaced = addSenderThread();
+      // Whichever of this and send() is second to reset the send start removes the added thread
+      if (this.senderThreadReplaced && this.sendStartNanos.getAndSet(NOT_SENDING) == NOT_SENDING) {
+        removeSenderThread();
+      }
+    }
+
+    private void complete() {
+      this.emitter.complete();
+    }
+
+    private void unsubscribe() {
+      subscribers.remove(this);
+    }
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * Converts a stream of timestamps from one {@link TimestampFormat} to another, reading the timestamps incrementally
+ * from an input stream, and writing the converted timestamps, as newline-delimited JSON (NDJSON), to an output stream,
+ * in the same order.
+ * <p>
+ * The input is either a JSON array of timestamps, or a sequence of newline (or other whitespace) delimited timestamps
+ * (NDJSON). It's read using Jackson's streaming parser, in fixed size chunks, so the memory used is bounded by the
+ * chunk size, rather than the size of the input. Large chunks are converted in parallel, using a supplied
+ * {@link ForkJoinPool}, before being written. The output is flushed after each chunk.
+ * <p>
+ * An invalid timestamp doesn't fail the conversion. It results in a JSON error representation being written in place
+ * of the converted timestamp. Malformed input, which can't be parsed, ends the conversion, and results in an error
+ * representation being written after the timestamps converted up to that point.
+ * <p>
+ * Thread-safe.
+ */
+final class StreamingTimestampConverter {
+
+  /** Max no. of timestamps read and converted in one chunk. */
+  static final int CHUNK_SIZE = 4096;
+
+  /** Min no. of timestamps in a chunk for it to be worth converting the chunk in parallel. */
+  private static final int PARALLEL_CONVERSION_THRESHOLD = 512;
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final ForkJoinPool conversionPool;
+
+  /**
+   * @param conversionPool the {@link ForkJoinPool} used to convert large chunks of timestamps in parallel.
+   */
+  StreamingTimestampConverter(ForkJoinPool conversionPool) {
+    this.conversionPool = conversionPool;
+  }
+
+  /**
+   * @param input the stream from which to read the timestamps.
+   * @param isJsonArray true if the input is a JSON array of timestamps, false if it's NDJSON.
+   * @param fromFormat the format of the input timestamps.
+   * @param toFormat the format to which the timestamps should be converted.
+   * @param output the stream to which to write the converted timestamps.
+   * @throws IOException if an error occurs reading the input or writing the output.
+   */
+  void convert(InputStream input, boolean isJsonArray, TimestampFormat fromFormat, TimestampFormat toFormat,
+    OutputStream output) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+      if (isJsonArray && parser.nextToken() != JsonToken.START_ARRAY) {
+        output.write(errorLine("Request body must be a JSON array of timestamps."));
+        return;
+      }
+      final Chunk chunk = new Chunk(fromFormat, toFormat);
+      long index = 0;
+      boolean endOfInput = false;
+      while (!endOfInput) {
+        String malformedInputMessage = null;
+        try {
+          endOfInput = chunk.read(parser, isJsonArray);
+        } catch (JsonProcessingException e) {
+          malformedInputMessage = "Malformed request body at timestamp index [" + (index + chunk.size) + "].";
+          endOfInput = true;
+        }
+        convert(chunk, index);
+        for (int i = 0; i < chunk.size; i++) {
+          output.write(chunk.convertedTimestamps[i]);
+        }
+        if (malformedInputMessage != null) {
+          output.write(errorLine(malformedInputMessage));
+        }
+        output.flush();
+        index += chunk.size;
+      }
+    }
+  }
+
+  private void convert(Chunk chunk, long firstIndex) {
+    if (chunk.size < PARALLEL_CONVERSION_THRESHOLD) {
+      for (int i = 0; i < chunk.size; i++) {
+        chunk.convert(i, firstIndex);
+      }
+    } else {
+      // Parallel stream tasks are forked in the pool from which they're invoked, rather than the common pool
+      this.conversionPool.submit(() -> IntStream.range(0, chunk.size).parallel().forEach(i ->
+        chunk.convert(i, firstIndex))).join();
+    }
+  }
+
+  private static byte[] errorLine(String message) {
+    return ("{\"code\":\"" + ApiErrorCode.INVALID_REQUEST_BODY_VALUE + "\",\"message\":\"" + message + "\"}\n")
+      .getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * A reusable chunk of timestamps, comprising the (unconverted) timestamps read from the input, and once converted,
+   * the JSON lines to be written to the output.
+   */
+  private static final class Chunk {
+    private final TimestampFormat fromFormat;
+    private final TimestampFormat toFormat;
+    private final String[] textualTimestamps = new String[CHUNK_SIZE];
+    private final long[] numericTimestamps = new long[CHUNK_SIZE];
+    private final boolean[] validTokens = new boolean[CHUNK_SIZE];
+    private final byte[][] convertedTimestamps = new byte[CHUNK_SIZE][];
+    private int size;
+
+    private Chunk(TimestampFormat fromFormat, TimestampFormat toFormat) {
+      this.fromFormat = fromFormat;
+      this.toFormat = toFormat;
+    }
+
+    /**
+     * Reads the next chunk of timestamps from the input.
+     *
+     * @return true if the end of the input was reached, false otherwise.
+     */
+    private boolean read(JsonParser parser, boolean isJsonArray) throws IOException {
+      this.size = 0;
+      while (this.size < CHUNK_SIZE) {
+        final JsonToken token = parser.nextToken();
+        if (token == null || (isJsonArray && token == JsonToken.END_ARRAY)) {
+          return true;
+        }
+        final int i = this.size++;
+        this.textualTimestamps[i] = null;
+        if (this.fromFormat.isTextual()) {
+          this.validTokens[i] = token == JsonToken.VALUE_STRING;
+          if (this.validTokens[i]) {
+            this.textualTimestamps[i] = parser.getText();
+          }
+        } else {
+          this.validTokens[i] = token == JsonToken.VALUE_NUMBER_INT
+            && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER;
+          if (this.validTokens[i]) {
+            this.numericTimestamps[i] = parser.getLongValue();
+          }
+        }
+        parser.skipChildren();
+      }
+      return false;
+    }
+
+    private void convert(int i, long firstIndex) {
+      if (this.validTokens[i]) {
+        try {
+          final long epochMilli = this.fromFormat.toEpochMilli(this.textualTimestamps[i], this.numericTimestamps[i]);
+          this.convertedTimestamps[i] = this.toFormat.toJsonLine(epochMilli);
+          return;
+        } catch (DateTimeException | ArithmeticException e) {
+          // Fall through to report invalid timestamp
+        }
+      }
+      this.convertedTimestamps[i] = errorLine("Invalid '" + this.fromFormat.getRequestParamValue()
+        + "' timestamp, or timestamp outside of supported range, at index [" + (firstIndex + i) + "].");
+    }
+  }
+}
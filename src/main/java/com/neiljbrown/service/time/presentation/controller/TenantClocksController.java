@@ -0,0 +1,257 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+import com.neiljbrown.service.time.business.TenantClock;
+import com.neiljbrown.service.time.business.TenantClockProvider;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * {@link RestController Controller for administrative web API} that handles requests to manage the {@link TenantClock
+ * clocks} of tenants whose view of the platform time differs from the platform time, e.g. test environments which
+ * need a shifted or frozen time. A tenant's time is returned by the 'Get Platform Time' API for requests which include
+ * the tenant's ID in the {@link TimesController#TENANT_ID_HEADER} header.
+ * <p>
+ * A tenant's clock is limited to start no more than {@link #MAX_OFFSET_MILLIS} from the platform time, and to pass no
+ * faster than {@link #MAX_RATE} times the platform time, so that the tenant's time can't overflow.
+ * <p>
+ * Only enabled when the tenant-clock.enabled property is true, as it allows the time seen by clients to be changed.
+ * <p>
+ * Singleton. Controller handling methods must be thread-safe.
+ */
+@RestController
+@ConditionalOnProperty(name = "tenant-clock.enabled", havingValue = "true")
+public class TenantClocksController {
+
+  /** Max rate at which a tenant's time can pass relative to the platform time - a day per second. */
+  static final double MAX_RATE = 86_400;
+
+  /** Max offset of a tenant clock's start time from the platform time, in either direction - 100 years. */
+  static final long MAX_OFFSET_MILLIS = 36_525L * 24 * 60 * 60 * 1000;
+
+  /**
+   * Pre-built responses returned for an invalid request. Immutable, so shared by all such requests.
+   */
+  static final ResponseEntity<byte[]> INVALID_TENANT_ID_RESPONSE = error(HttpStatus.BAD_REQUEST,
+    ApiErrorCode.INVALID_REQUEST_PARAM_VALUE,
+    "Invalid tenant ID. Must be 1 to 64 letters, digits, '_', '.' or '-' characters.");
+  static final ResponseEntity<byte[]> INVALID_CLOCK_RESPONSE = error(HttpStatus.BAD_REQUEST,
+    ApiErrorCode.INVALID_REQUEST_PARAM_VALUE,
+    "Invalid clock request params. Specify at most one of 'dateTime', an ISO-8601 instant, e.g. "
+      + "2018-10-06T09:30:00Z, or 'offsetMillis', an integer no. of milliseconds, at most " + MAX_OFFSET_MILLIS
+      + " (100 years) from the platform time, and optionally 'rate', a number from zero (frozen) to " + (long) MAX_RATE
+      + ", e.g. 60 for a minute per second. Defaults to 1.");
+  static final ResponseEntity<byte[]> TENANT_LIMIT_EXCEEDED_RESPONSE = error(HttpStatus.CONFLICT,
+    ApiErrorCode.TENANT_LIMIT_EXCEEDED, "Max no. of tenant clocks reached. Remove an unused tenant clock first.");
+
+  private static final Pattern TENANT_ID_PATTERN = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+
+  private final PlatformDateTimeProvider platformDateTimeProvider;
+  private final TenantClockProvider tenantClockProvider;
+
+  /**
+   * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to obtain current platform
+   * date/time.
+   * @param tenantClockProvider instance of {@link TenantClockProvider} used to manage the tenants' clocks.
+   */
+  public TenantClocksController(PlatformDateTimeProvider platformDateTimeProvider,
+    TenantClockProvider tenantClockProvider) {
+    this.platformDateTimeProvider = Objects.requireNonNull(platformDateTimeProvider,
+      "Arg 'platformDateTimeProvider' must not be null.");
+    this.tenantClockProvider = Objects.requireNonNull(tenantClockProvider,
+      "Arg 'tenantClockProvider' must not be null.");
+  }
+
+  /**
+   * Handles a request to list the clocks of all tenants which have one, ordered by tenant ID, e.g.
+   * {"tenantClocks":[{"tenantId":"qa-1","dateTime":"2018-10-06T09:30:00.000Z","offsetMillis":-3600000,"rate":1.0}]}.
+   *
+   * @return a {@link ResponseEntity} whose body contains the tenants' clocks.
+   */
+  @GetMapping(value = "/admin/v1/tenant-clocks", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> getTenantClocks() {
+    final long platformEpochMilli = this.platformDateTimeProvider.getEpochMilli();
+    final AsciiBuffer json = AsciiBuffer.forCurrentThread().append("{\"tenantClocks\":[");
+    String separator = "";
+    for (Map.Entry<String, TenantClock> entry : new TreeMap<>(this.tenantClockProvider.getTenantClocks()).entrySet()) {
+      appendTenantClock(json.append(separator), entry.getKey(), entry.getValue(), platformEpochMilli);
+      separator = ",";
+    }
+    return ok(json.append("]}"));
+  }
+
+  /**
+   * Handles a request to get a tenant's clock, e.g.
+   * {"tenantId":"qa-1","dateTime":"2018-10-06T09:30:00.000Z","offsetMillis":-3600000,"rate":1.0}.
+   *
+   * @param tenantId the ID of the tenant.
+   * @return a {@link ResponseEntity}. If the tenant has a clock, as indicated by a status code of 200, the body
+   * contains it, including the tenant's current time. If it doesn't, a status code of 404. Else the body contains an
+   * error representation detailing why the request failed.
+   */
+  @GetMapping(value = "/admin/v1/tenant-clocks/{tenantId}", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> getTenantClock(@PathVariable("tenantId") String tenantId) {
+    if (!isValidTenantId(tenantId)) {
+      return INVALID_TENANT_ID_RESPONSE;
+    }
+    final TenantClock tenantClock = this.tenantClockProvider.getTenantClock(tenantId);
+    if (tenantClock == null) {
+      return ResponseEntity.notFound().build();
+    }
+    final long platformEpochMilli = this.platformDateTimeProvider.getEpochMilli();
+    return ok(appendTenantClock(AsciiBuffer.forCurrentThread(), tenantId, tenantClock, platformEpochMilli));
+  }
+
+  /**
+   * Handles a request to set (or replace) a tenant's clock. The clock starts from the specified time, or the platform
+   * time shifted by the specified offset, and then passes at the specified rate relative to the platform time.
+   *
+   * @param tenantId the ID of the tenant.
+   * @param dateTime the time from which the tenant's clock starts, as an ISO-8601 instant, e.g. 2018-10-06T09:30:00Z.
+   * Optional. Mutually exclusive with offsetMillis. Must be no more than {@link #MAX_OFFSET_MILLIS} from the platform
+   * time.
+   * @param offsetMillis the offset from the platform time from which the tenant's clock starts, in milliseconds.
+   * Optional. Negative for a time in the past. If neither it nor dateTime is specified, the clock starts from the
+   * platform time. Must be no more than {@link #MAX_OFFSET_MILLIS} in either direction.
+   * @param rate the rate at which the tenant's time passes relative to the platform time, e.g. 1 for real time, 0 for
+   * a frozen time, or 60 for a minute per second. Optional. Defaults to 1. Must be no more than {@link #MAX_RATE}.
+   * @return a {@link ResponseEntity}. If the request was successful, as indicated by a status code of 200, the body
+   * contains the tenant's clock. Else the body contains an error representation detailing why the request failed,
+   * e.g. a status code of 400 if the start time or rate are outside their limits.
+   */
+  @PutMapping(value = "/admin/v1/tenant-clocks/{tenantId}", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> setTenantClock(@PathVariable("tenantId") String tenantId,
+    @RequestParam(value = "dateTime", required = false) String dateTime,
+    @RequestParam(value = "offsetMillis", required = false) String offsetMillis,
+    @RequestParam(value = "rate", required = false, defaultValue = "1") String rate) {
+    if (!isValidTenantId(tenantId)) {
+      return INVALID_TENANT_ID_RESPONSE;
+    }
+    if (dateTime != null && offsetMillis != null) {
+      return INVALID_CLOCK_RESPONSE;
+    }
+    final long platformEpochMilli = this.platformDateTimeProvider.getEpochMilli();
+    final TenantClock tenantClock;
+    try {
+      final long startEpochMilli;
+      if (dateTime != null) {
+        startEpochMilli = Instant.parse(dateTime).toEpochMilli();
+      } else if (offsetMillis != null) {
+        startEpochMilli = Math.addExact(platformEpochMilli, Long.parseLong(offsetMillis));
+      } else {
+        startEpochMilli = platformEpochMilli;
+      }
+      final long startOffsetMillis = Math.subtractExact(startEpochMilli, platformEpochMilli);
+      final double parsedRate = Double.parseDouble(rate);
+      // Also rejects a rate which is NaN
+      if (startOffsetMillis < -MAX_OFFSET_MILLIS || startOffsetMillis > MAX_OFFSET_MILLIS
+        || !(parsedRate <= MAX_RATE)) {
+        return INVALID_CLOCK_RESPONSE;
+      }
+      tenantClock = createTenantClock(platformEpochMilli, startEpochMilli, parsedRate);
+    } catch (DateTimeException | ArithmeticException | IllegalArgumentException e) {
+      // An invalid time, offset or rate. (NumberFormatException is an IllegalArgumentException).
+      return INVALID_CLOCK_RESPONSE;
+    }
+    try {
+      this.tenantClockProvider.setTenantClock(tenantId, tenantClock);
+    } catch (IllegalStateException e) {
+      return TENANT_LIMIT_EXCEEDED_RESPONSE;
+    }
+    return ok(appendTenantClock(AsciiBuffer.forCurrentThread(), tenantId, tenantClock, platformEpochMilli));
+  }
+
+  /**
+   * Handles a request to remove a tenant's clock, after which the tenant sees the platform time.
+   *
+   * @param tenantId the ID of the tenant.
+   * @return a {@link ResponseEntity}. If the tenant had a clock, a status code of 204. If it didn't, a status code of
+   * 404. Else the body contains an error representation detailing why the request failed.
+   */
+  @DeleteMapping(value = "/admin/v1/tenant-clocks/{tenantId}")
+  public ResponseEntity<byte[]> removeTenantClock(@PathVariable("tenantId") String tenantId) {
+    if (!isValidTenantId(tenantId)) {
+      return INVALID_TENANT_ID_RESPONSE;
+    }
+    return this.tenantClockProvider.removeTenantClock(tenantId)
+      ? ResponseEntity.noContent().build()
+      : ResponseEntity.notFound().build();
+  }
+
+  private static boolean isValidTenantId(String tenantId) {
+    return tenantId != null && TENANT_ID_PATTERN.matcher(tenantId).matches();
+  }
+
+  /**
+   * Creates the simplest clock which starts from the supplied time, and passes at the supplied rate.
+   */
+  private static TenantClock createTenantClock(long platformEpochMilli, long startEpochMilli, double rate) {
+    if (rate == 1) {
+      return TenantClock.offset(startEpochMilli - platformEpochMilli);
+    }
+    if (rate == 0) {
+      return TenantClock.frozen(startEpochMilli);
+    }
+    return TenantClock.scaled(platformEpochMilli, startEpochMilli, rate);
+  }
+
+  /**
+   * Encodes a tenant's clock as JSON, directly rather than serialised by Jackson. Tenant IDs are validated to only
+   * contain characters which don't need escaping.
+   */
+  private static AsciiBuffer appendTenantClock(AsciiBuffer json, String tenantId, TenantClock tenantClock,
+    long platformEpochMilli) {
+    final long tenantEpochMilli = tenantClock.getEpochMilli(platformEpochMilli);
+    json.append("{\"tenantId\":\"").append(tenantId).append("\",\"dateTime\":\"");
+    DateTimeWriter.appendInstant(json, tenantEpochMilli, 3).append("\",\"offsetMillis\":")
+      .appendLong(tenantEpochMilli - platformEpochMilli)
+      .append(",\"rate\":").append(Double.toString(tenantClock.getRate()));
+    return json.append('}');
+  }
+
+  private static ResponseEntity<byte[]> ok(AsciiBuffer json) {
+    return ResponseEntity.ok()
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(json.toByteArray());
+  }
+
+  private static ResponseEntity<byte[]> error(HttpStatus status, ApiErrorCode code, String message) {
+    return ResponseEntity.status(status)
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(("{\"code\":\"" + code + "\",\"message\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -16,21 +16,22 @@
 
 package com.neiljbrown.service.time.presentation.controller;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
-import org.springframework.http.HttpStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+import com.neiljbrown.service.time.business.TenantClock;
+import com.neiljbrown.service.time.business.TenantClockProvider;
 import com.neiljbrown.service.time.presentation.ApiErrorCode;
 
 /**
@@ -42,15 +43,43 @@ import com.neiljbrown.service.time.presentation.ApiErrorCode;
 @RestController
 public class TimesController {
 
+  /**
+   * Name of the request header identifying the tenant (e.g. a test environment) on whose behalf a request is made, if
+   * any. See {@link TenantClockProvider}.
+   */
+  public static final String TENANT_ID_HEADER = "X-Tenant-Id";
+
+  /**
+   * Pre-built response returned for a request containing an invalid 'format' request param. Immutable, so shared by
+   * all such requests.
+   */
+  static final ResponseEntity<byte[]> INVALID_FORMAT_RESPONSE = ResponseEntity.badRequest()
+    .contentType(MediaType.APPLICATION_JSON)
+    .body(("{\"code\":\"" + ApiErrorCode.INVALID_REQUEST_PARAM_VALUE + "\","
+      + "\"message\":\"Invalid 'format' request param. Must be one of "
+      + new PlatformTimeFormats().getBuiltInFormatNames() + ", or " + PlatformTimeFormats.PATTERN_PREFIX
+      + "<pattern>, e.g. " + PlatformTimeFormats.PATTERN_PREFIX + "yyyy-MM-dd HH:mm:ss.SSS.\"}")
+      .getBytes(StandardCharsets.UTF_8));
+
   private PlatformDateTimeProvider platformDateTimeProvider;
 
-  /** Set of valid values for the requested format in which the Platform time can be returned. */
+  private final TenantClockProvider tenantClockProvider;
+
+  private final PlatformTimeMetrics platformTimeMetrics;
+
+  /** Registry of the supported formats, which also hold their cached responses. */
+  private final PlatformTimeFormats platformTimeFormats = new PlatformTimeFormats();
+
+  /**
+   * Set of the values of the requested format in which the Platform time can be returned, which are supported by all
+   * the Platform time APIs. The 'Get Platform Time' API supports additional formats, see {@link PlatformTimeFormats}.
+   */
   // Implemented as set of string constants rather than enum type as latter is incompatible with @RequestParam
   // defaultValue, which has to be a string constant.
   static class PlatformTimeFormatRequestParamValues {
     static final String ISO_8601 = "iso-8601";
     static final String UNIX_TIMESTAMP = "unix";
-    static final Set<String> ALL_FORMATS = new HashSet<>();
+    static final Set<String> ALL_FORMATS = new LinkedHashSet<>();
     static {
       ALL_FORMATS.add(ISO_8601);
       ALL_FORMATS.add(UNIX_TIMESTAMP);
@@ -60,45 +89,79 @@ public class TimesController {
   /**
    * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to obtain current platform
    * date/time.
+   * @param tenantClockProvider instance of {@link TenantClockProvider} used to look up the clocks of tenants whose
+   * view of the platform time differs from the platform time.
+   * @param meterRegistry the {@link MeterRegistry} in which metrics for this controller's APIs are recorded.
    */
-  public TimesController(PlatformDateTimeProvider platformDateTimeProvider) {
+  public TimesController(PlatformDateTimeProvider platformDateTimeProvider, TenantClockProvider tenantClockProvider,
+    MeterRegistry meterRegistry) {
     this.platformDateTimeProvider = platformDateTimeProvider;
+    this.tenantClockProvider = tenantClockProvider;
+    this.platformTimeMetrics = new PlatformTimeMetrics(meterRegistry, this.platformTimeFormats.getBuiltInFormatNames());
   }
 
   /**
    * Handles a request to retrieve a representation of the Platform date time - the official, current time for the
    * whole platform (system), always expressed in the UTC time-zone.
+   * <p>
+   * The representation is selected by content negotiation on the request's Accept header, from JSON (the default),
+   * plain text, CBOR, or a fixed-width binary encoding of the epoch second. See {@link PlatformTimeRepresentation} for
+   * details. The response body is returned already encoded, rather than being serialised by the web stack, and for a
+   * successful request is served from a cache which is refreshed at most once per second, or for formats with a
+   * finer resolution, once per millisecond. Error responses are always returned as JSON. The time taken to handle the
+   * request is recorded in metrics, see {@link PlatformTimeMetrics}.
+   * <p>
+   * Success responses support HTTP caching and conditional requests. They include an ETag, and for second resolution
+   * formats, a Cache-Control (and Expires) header which allows HTTP caches to serve them until the end of the current
+   * second. A request whose If-None-Match header matches the ETag of the current response is answered with a 304 Not
+   * Modified response, with no body. See {@link PlatformTimeFormat} for details.
+   * <p>
+   * A request made on behalf of a tenant which has its own {@link TenantClock clock}, e.g. a test environment whose
+   * time is shifted or frozen, is answered with the tenant's time, derived from the platform time. Such responses
+   * aren't cached, and don't support conditional requests. Requests without a tenant are unaffected.
    *
-   * @param format the format in which the Platform time should be returned. Optional. One of {@link
-   * PlatformTimeFormatRequestParamValues#ISO_8601} or {@link PlatformTimeFormatRequestParamValues#UNIX_TIMESTAMP}. If
-   * not specified defaults to {@link PlatformTimeFormatRequestParamValues#ISO_8601}.
+   * @param format the format in which the Platform time should be returned. Optional. One of the built-in formats, e.g.
+   * {@link PlatformTimeFormatRequestParamValues#ISO_8601}, {@link PlatformTimeFormatRequestParamValues#UNIX_TIMESTAMP},
+   * {@link PlatformTimeFormats#UNIX_MILLIS_TIMESTAMP} or {@link PlatformTimeFormats#RFC_1123}, or a date/time pattern,
+   * e.g. pattern:yyyy-MM-dd HH:mm:ss. See {@link PlatformTimeFormats} for the full list. If not specified defaults to
+   * {@link PlatformTimeFormatRequestParamValues#ISO_8601}.
+   * @param accept the value of the request's Accept header, if any.
+   * @param ifNoneMatch the value of the request's If-None-Match header, if any.
+   * @param tenantId the value of the request's {@link #TENANT_ID_HEADER} header, if any.
    *
    * @return a {@link ResponseEntity}. If the request was successful, as indicated by a status code of 200, the body
-   * contains the Platform time. Else the body contains an error representation detailing why the request failed.
+   * contains the Platform time. If the current response wasn't modified, as indicated by a status code of 304, there's
+   * no body. Else the body contains an error representation detailing why the request failed.
    */
-  @GetMapping(value = "/v1/platform-time", produces = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Map> getPlatformTime(
-    @RequestParam(value = "format", required = false, defaultValue = PlatformTimeFormatRequestParamValues.ISO_8601) String format) {
-    Map<String, Object> apiResource = new HashMap<>();
-    if (isValidTimeFormat(format)) {
-      Instant currentDateTime = this.platformDateTimeProvider.getDateTime();
-      if (format.equalsIgnoreCase(PlatformTimeFormatRequestParamValues.ISO_8601)) {
-        currentDateTime = currentDateTime.truncatedTo(ChronoUnit.SECONDS);
-        apiResource.put("dateTime", currentDateTime.toString());
-      } else if (format.equalsIgnoreCase(PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP)) {
-        apiResource.put("epochSeconds", currentDateTime.getEpochSecond());
-      } else {
-        throw new AssertionError("Logic error. Don't know how to handle 'format' request param value [" + format + "].");
-      }
-      return ResponseEntity.ok(apiResource);
+  @GetMapping(value = "/v1/platform-time", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE,
+    PlatformTimeRepresentation.APPLICATION_CBOR_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+  public ResponseEntity<byte[]> getPlatformTime(
+    @RequestParam(value = "format", required = false, defaultValue = PlatformTimeFormatRequestParamValues.ISO_8601) String format,
+    @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+    @RequestHeader(value = TENANT_ID_HEADER, required = false) String tenantId) {
+    final long startNanos = System.nanoTime();
+    // A single lookup both validates the format and selects it, and its caches of responses
+    final PlatformTimeFormat platformTimeFormat = this.platformTimeFormats.get(format);
+    if (platformTimeFormat == null) {
+      this.platformTimeMetrics.recordError(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE);
+      this.platformTimeMetrics.recordRequest(null, System.nanoTime() - startNanos);
+      return INVALID_FORMAT_RESPONSE;
+    }
+    final PlatformTimeRepresentation representation = PlatformTimeRepresentation.negotiate(accept);
+    final long epochMilli;
+    if (this.platformTimeMetrics.isClockReadSampled(startNanos)) {
+      final long clockReadStartNanos = System.nanoTime();
+      epochMilli = this.platformDateTimeProvider.getEpochMilli();
+      this.platformTimeMetrics.recordClockRead(System.nanoTime() - clockReadStartNanos);
     } else {
-      apiResource.put("code", ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString());
-      apiResource.put("message", "Invalid 'format' request param [" + format + "].");
-      return new ResponseEntity<>(apiResource, HttpStatus.BAD_REQUEST);
+      epochMilli = this.platformDateTimeProvider.getEpochMilli();
     }
+    final TenantClock tenantClock = tenantId != null ? this.tenantClockProvider.getTenantClock(tenantId) : null;
+    final ResponseEntity<byte[]> response = tenantClock == null
+      ? platformTimeFormat.getResponse(representation, epochMilli, ifNoneMatch)
+      : platformTimeFormat.createTenantResponse(representation, tenantClock.getEpochMilli(epochMilli));
+    this.platformTimeMetrics.recordRequest(platformTimeFormat, System.nanoTime() - startNanos);
+    return response;
   }
-
-  private static boolean isValidTimeFormat(String format) {
-    return PlatformTimeFormatRequestParamValues.ALL_FORMATS.contains(format);
-  }
-}
\ No newline at end of file
+}
@@ -0,0 +1,137 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * {@link RestController Controller for RESTful web API} that handles requests to convert timestamps in bulk, from one
+ * of the formats supported by the 'Get Platform Time' API to another, as an alternative to clients converting them
+ * one at a time.
+ * <p>
+ * Only available in the servlet web execution mode, as the response is streamed to the {@link HttpServletResponse}.
+ * <p>
+ * Singleton. Controller handling methods must be thread-safe.
+ */
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RestController
+public class TimestampConversionController {
+
+  /** Media type of newline-delimited JSON (NDJSON), see http://ndjson.org/. */
+  static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+  private static final byte[] INVALID_FROM_FORMAT_ERROR_BODY = invalidFormatErrorBody("from");
+  private static final byte[] INVALID_TO_FORMAT_ERROR_BODY = invalidFormatErrorBody("to");
+
+  private final ForkJoinPool conversionPool;
+  private final StreamingTimestampConverter timestampConverter;
+
+  /**
+   * @param parallelism the max no. of threads used to convert (large batches of) timestamps in parallel, across all
+   * requests. A value of 0 or less defaults to the no. of available processors.
+   */
+  public TimestampConversionController(@Value("${timestamp-conversion.parallelism:0}") int parallelism) {
+    this.conversionPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    this.timestampConverter = new StreamingTimestampConverter(this.conversionPool);
+  }
+
+  /**
+   * Stops the threads used to convert timestamps in parallel. Invoked by the Spring container on shutdown.
+   */
+  @PreDestroy
+  public void shutdown() {
+    this.conversionPool.shutdownNow();
+  }
+
+  /**
+   * Handles a request to convert a batch of timestamps from one format to another.
+   * <p>
+   * The request body contains the timestamps, either as a JSON array, or as newline-delimited JSON (NDJSON), one
+   * timestamp per line. Timestamps in ISO-8601 format are JSON strings, and others are JSON integers. The body is
+   * processed incrementally, and the converted timestamps are streamed back in the response body as they become
+   * available, so batches of any size can be converted without either the client or service holding them in memory.
+   *
+   * @param from the format of the supplied timestamps. One of 'iso-8601', 'unix' (epoch seconds) or 'unix-millis'
+   * (epoch milliseconds).
+   * @param to the format to which the timestamps should be converted. Supports the same values as 'from'.
+   * @param contentType the media type of the request body, either {@link MediaType#APPLICATION_JSON_VALUE} or
+   * {@link #APPLICATION_NDJSON_VALUE}.
+   * @param requestBody the stream from which to read the request body.
+   * @param response the {@link HttpServletResponse} to which the response is written. If the request params are valid,
+   * as indicated by a status code of 200, the body contains the converted timestamps, as NDJSON, in the same order as
+   * they were supplied, using the same JSON representations as the 'Get Platform Time' API. Any timestamp which
+   * can't be converted is replaced by an error representation. Else the body contains an error representation
+   * detailing why the request failed.
+   * @throws IOException if an error occurs reading the request body or writing the response.
+   */
+  @PostMapping(value = "/v1/timestamps/conversions",
+    consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+  public void convertTimestamps(@RequestParam(value = "from", required = false) String from,
+    @RequestParam(value = "to", required = false) String to,
+    @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream requestBody,
+    HttpServletResponse response) throws IOException {
+    final TimestampFormat fromFormat = TimestampFormat.fromRequestParamValue(from);
+    if (fromFormat == null) {
+      writeErrorResponse(response, INVALID_FROM_FORMAT_ERROR_BODY);
+      return;
+    }
+    final TimestampFormat toFormat = TimestampFormat.fromRequestParamValue(to);
+    if (toFormat == null) {
+      writeErrorResponse(response, INVALID_TO_FORMAT_ERROR_BODY);
+      return;
+    }
+    response.setStatus(HttpStatus.OK.value());
+    response.setContentType(APPLICATION_NDJSON_VALUE);
+    final boolean isJsonArray = MediaType.APPLICATION_JSON.includes(MediaType.parseMediaType(contentType));
+    final OutputStream responseBody = new BufferedOutputStream(response.getOutputStream(), 64 * 1024);
+    this.timestampConverter.convert(requestBody, isJsonArray, fromFormat, toFormat, responseBody);
+    responseBody.flush();
+  }
+
+  private static void writeErrorResponse(HttpServletResponse response, byte[] errorBody) throws IOException {
+    response.setStatus(HttpStatus.BAD_REQUEST.value());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setContentLength(errorBody.length);
+    response.getOutputStream().write(errorBody);
+  }
+
+  private static byte[] invalidFormatErrorBody(String requestParamName) {
+    return ("{\"code\":\"" + ApiErrorCode.INVALID_REQUEST_PARAM_VALUE + "\",\"message\":\"Invalid '" + requestParamName
+      + "' request param. Must be one of " + TimestampFormat.requestParamValues() + ".\"}")
+      .getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.neiljbrown.service.time.presentation.controller.TimesController.PlatformTimeFormatRequestParamValues;
+
+/**
+ * The formats in which a timestamp (an instant in time, always in the UTC time-zone) can be supplied to, and returned
+ * by, the 'Convert Timestamps' API.
+ * <p>
+ * Supports the same formats, and JSON representations, as the 'Get Platform Time' API, plus epoch milliseconds.
+ * Timestamps are converted via an intermediate number of epoch milliseconds. As per the 'Get Platform Time' API,
+ * timestamps returned in ISO-8601 format are truncated to the second.
+ */
+enum TimestampFormat {
+
+  /** ISO-8601 formatted date time, supplied as a JSON string, e.g. "2018-10-06T18:51:44Z". */
+  ISO_8601(PlatformTimeFormatRequestParamValues.ISO_8601, "dateTime") {
+    @Override
+    long toEpochMilli(String text, long number) {
+      return Instant.parse(text).toEpochMilli();
+    }
+
+    @Override
+    String formatValue(long epochMilli) {
+      return "\"" + Instant.ofEpochSecond(Math.floorDiv(epochMilli, 1000L)) + "\"";
+    }
+
+    @Override
+    boolean isTextual() {
+      return true;
+    }
+  },
+
+  /** Unix timestamp - number of whole seconds since the epoch, supplied as a JSON integer. */
+  UNIX_TIMESTAMP(PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP, "epochSeconds") {
+    @Override
+    long toEpochMilli(String text, long number) {
+      return Math.multiplyExact(number, 1000L);
+    }
+
+    @Override
+    String formatValue(long epochMilli) {
+      return Long.toString(Math.floorDiv(epochMilli, 1000L));
+    }
+  },
+
+  /** Number of milliseconds since the epoch, supplied as a JSON integer. */
+  UNIX_MILLIS_TIMESTAMP("unix-millis", "epochMillis") {
+    @Override
+    long toEpochMilli(String text, long number) {
+      return number;
+    }
+
+    @Override
+    String formatValue(long epochMilli) {
+      return Long.toString(epochMilli);
+    }
+  };
+
+  private static final Map<String, TimestampFormat> FORMATS_BY_REQUEST_PARAM_VALUE;
+  static {
+    final Map<String, TimestampFormat> formats = new LinkedHashMap<>();
+    Arrays.stream(values()).forEach(format -> formats.put(format.requestParamValue, format));
+    FORMATS_BY_REQUEST_PARAM_VALUE = Collections.unmodifiableMap(formats);
+  }
+
+  private final String requestParamValue;
+  private final byte[] jsonPrefix;
+
+  TimestampFormat(String requestParamValue, String jsonFieldName) {
+    this.requestParamValue = requestParamValue;
+    this.jsonPrefix = ("{\"" + jsonFieldName + "\":").getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param requestParamValue the value of a request param which identifies a format.
+   * @return the identified format, or null if the value doesn't identify a supported format.
+   */
+  static TimestampFormat fromRequestParamValue(String requestParamValue) {
+    return FORMATS_BY_REQUEST_PARAM_VALUE.get(requestParamValue);
+  }
+
+  /**
+   * @return the value of a request param which identifies this format.
+   */
+  String getRequestParamValue() {
+    return this.requestParamValue;
+  }
+
+  /**
+   * @return the set of values of a request param which identify a supported format.
+   */
+  static Set<String> requestParamValues() {
+    return FORMATS_BY_REQUEST_PARAM_VALUE.keySet();
+  }
+
+  /**
+   * @return true if timestamps in this format are supplied as JSON strings, false if they are JSON integers.
+   */
+  boolean isTextual() {
+    return false;
+  }
+
+  /**
+   * @param epochMilli a timestamp, as the number of milliseconds since the epoch.
+   * @return the JSON representation of the timestamp in this format, terminated by a new-line, encoded in UTF-8.
+   * @throws java.time.DateTimeException if the timestamp is outside of the range supported by this format.
+   */
+  byte[] toJsonLine(long epochMilli) {
+    final byte[] value = formatValue(epochMilli).getBytes(StandardCharsets.UTF_8);
+    final byte[] line = Arrays.copyOf(this.jsonPrefix, this.jsonPrefix.length + value.length + 2);
+    System.arraycopy(value, 0, line, this.jsonPrefix.length, value.length);
+    line[line.length - 2] = '}';
+    line[line.length - 1] = '\n';
+    return line;
+  }
+
+  /**
+   * @param text the timestamp, if the format {@link #isTextual() is textual}.
+   * @param number the timestamp, if the format is not textual.
+   * @return the timestamp as a number of milliseconds since the epoch.
+   * @throws java.time.DateTimeException if the timestamp is not valid for this format.
+   * @throws ArithmeticException if the timestamp is outside of the range of supported values.
+   */
+  abstract long toEpochMilli(String text, long number);
+
+  abstract String formatValue(long epochMilli);
+}
@@ -0,0 +1,157 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+import com.neiljbrown.service.time.business.TimeZoneOffsetProvider;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * {@link RestController Controller for RESTful web API} that handles requests for the local date/time in one or more
+ * IANA time-zones, of either the Platform time or a supplied instant.
+ * <p>
+ * Singleton. Controller handling methods must be thread-safe.
+ */
+@RestController
+public class ZonedDateTimesController {
+
+  /**
+   * Pre-built response returned for a request containing an invalid 'instant' request param. Immutable, so shared by
+   * all such requests.
+   */
+  static final ResponseEntity<byte[]> INVALID_INSTANT_RESPONSE = badRequest(
+    "Invalid 'instant' request param. Must be an ISO-8601 instant, e.g. 2018-10-06T18:51:44Z.");
+
+  private final PlatformDateTimeProvider platformDateTimeProvider;
+  private final TimeZoneOffsetProvider timeZoneOffsetProvider;
+  private final int maxZones;
+
+  /**
+   * Pre-built response returned for a request containing an invalid 'zone' request param. Immutable, so shared by
+   * all such requests.
+   */
+  private final ResponseEntity<byte[]> invalidZoneResponse;
+
+  /**
+   * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to obtain current platform
+   * date/time.
+   * @param timeZoneOffsetProvider instance of {@link TimeZoneOffsetProvider} used to obtain the offset of each
+   * time-zone.
+   * @param maxZones the max no. of time-zones which can be requested in a single request.
+   */
+  public ZonedDateTimesController(PlatformDateTimeProvider platformDateTimeProvider,
+    TimeZoneOffsetProvider timeZoneOffsetProvider,
+    @Value("${time-zone.max-zones-per-request:100}") int maxZones) {
+    this.platformDateTimeProvider = Objects.requireNonNull(platformDateTimeProvider,
+      "Arg 'platformDateTimeProvider' must not be null.");
+    this.timeZoneOffsetProvider = Objects.requireNonNull(timeZoneOffsetProvider,
+      "Arg 'timeZoneOffsetProvider' must not be null.");
+    if (maxZones <= 0) {
+      throw new IllegalArgumentException("Arg 'maxZones' must be greater than zero, not [" + maxZones + "].");
+    }
+    this.maxZones = maxZones;
+    this.invalidZoneResponse = badRequest("Invalid 'zone' request param. Must be between 1 and " + maxZones
+      + " IANA time-zone IDs, e.g. Europe/London.");
+  }
+
+  /**
+   * Handles a request to retrieve the local date/time in one or more time-zones, at the same instant.
+   * <p>
+   * The instant is either the Platform time, which is read once for all the requested time-zones, or a supplied
+   * instant. The response lists the local date/time, and offset from UTC, in each time-zone, in the order requested.
+   * Date/times are returned to the second, e.g. {"zonedDateTimes":[{"zone":"Europe/London",
+   * "dateTime":"2018-10-06T19:51:44+01:00","offsetSeconds":3600}]}.
+   *
+   * @param zoneParams the IDs of the IANA time-zones, e.g. Europe/London. Mandatory. Specified as a comma separated
+   * list, and/or by repeating the request param.
+   * @param instant the instant for which the local date/times should be returned, in ISO-8601 format. Optional. If
+   * not specified defaults to the Platform time.
+   * @return a {@link ResponseEntity}. If the request was successful, as indicated by a status code of 200, the body
+   * contains the local date/times. Else the body contains an error representation detailing why the request failed.
+   */
+  @GetMapping(value = "/v1/zoned-date-times", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> getZonedDateTimes(
+    @RequestParam(value = "zone", required = false) String[] zoneParams,
+    @RequestParam(value = "instant", required = false) String instant) {
+    final String[] zones = splitCommaSeparated(zoneParams);
+    if (zones.length == 0 || zones.length > this.maxZones) {
+      return this.invalidZoneResponse;
+    }
+    for (String zone : zones) {
+      if (!this.timeZoneOffsetProvider.isSupportedZone(zone)) {
+        return this.invalidZoneResponse;
+      }
+    }
+    final long epochSecond;
+    if (instant == null) {
+      epochSecond = this.platformDateTimeProvider.getEpochSecond();
+    } else {
+      try {
+        epochSecond = Instant.parse(instant).getEpochSecond();
+      } catch (DateTimeException e) {
+        return INVALID_INSTANT_RESPONSE;
+      }
+    }
+
+    // Encoded directly, rather than serialised by Jackson. Zone IDs only contain characters which don't need escaping
+    final AsciiBuffer json = AsciiBuffer.forCurrentThread().append("{\"zonedDateTimes\":[");
+    for (int i = 0; i < zones.length; i++) {
+      final int offsetSeconds = this.timeZoneOffsetProvider.getOffsetSeconds(zones[i], epochSecond);
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"zone\":\"").append(zones[i]).append("\",\"dateTime\":\"");
+      DateTimeWriter.appendOffsetDateTime(json, epochSecond, offsetSeconds)
+        .append("\",\"offsetSeconds\":").appendLong(offsetSeconds).append('}');
+    }
+    json.append("]}");
+    return ResponseEntity.ok()
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(json.toByteArray());
+  }
+
+  /**
+   * Splits the values of a request param, which may be repeated, and each of which may be a comma separated list.
+   * (Spring only splits a single value).
+   */
+  private static String[] splitCommaSeparated(String[] values) {
+    if (values == null) {
+      return new String[0];
+    }
+    return Arrays.stream(values).flatMap(value -> Arrays.stream(value.split(","))).toArray(String[]::new);
+  }
+
+  private static ResponseEntity<byte[]> badRequest(String message) {
+    return ResponseEntity.badRequest()
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(("{\"code\":\"" + ApiErrorCode.INVALID_REQUEST_PARAM_VALUE + "\",\"message\":\"" + message + "\"}")
+        .getBytes(StandardCharsets.UTF_8));
+  }
+}
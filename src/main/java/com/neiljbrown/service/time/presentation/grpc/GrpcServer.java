@@ -0,0 +1,114 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.grpc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import io.grpc.BindableService;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * A gRPC server, listening on its own port, separate from that of the web APIs, which serves all the application's
+ * gRPC services, e.g. the 'PlatformTime' service. Supports clients, such as the platform's internal services, which
+ * communicate over gRPC (HTTP/2) rather than using the web APIs.
+ * <p>
+ * The server runs on its own (shaded) Netty event loops, regardless of the web execution mode. As the services'
+ * RPCs don't block, calls are handled directly on the event loop threads, rather than being handed off to an executor.
+ * <p>
+ * Only enabled (started) if the application property 'grpc.enabled' is set to 'true'.
+ * <p>
+ * Thread-safe.
+ */
+@Component
+@ConditionalOnProperty(name = "grpc.enabled", havingValue = "true")
+public class GrpcServer {
+
+  /** Max time to wait, on shutdown, for calls in progress to complete, before they're cancelled. */
+  private static final long SHUTDOWN_GRACE_PERIOD_MILLIS = 1000;
+
+  private static final Logger logger = LoggerFactory.getLogger(GrpcServer.class);
+
+  private final Server server;
+
+  /**
+   * @param services the gRPC services served by the server.
+   * @param bindAddress the local address (host name or IP) on which the server listens.
+   * @param port the local TCP port on which the server listens. A value of 0 selects an ephemeral port.
+   */
+  public GrpcServer(List<BindableService> services,
+    @Value("${grpc.bind-address:0.0.0.0}") String bindAddress,
+    @Value("${grpc.port:9090}") int port) {
+    final NettyServerBuilder builder = NettyServerBuilder.forAddress(new InetSocketAddress(bindAddress, port))
+      .directExecutor();
+    services.forEach(builder::addService);
+    this.server = builder.build();
+  }
+
+  /**
+   * Binds the server to its configured address and starts serving calls. Invoked by the Spring container once the
+   * bean has been created.
+   */
+  @PostConstruct
+  public void start() {
+    try {
+      this.server.start();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to start gRPC server.", e);
+    }
+    logger.info("gRPC server listening on port [{}], serving {}.", getPort(),
+      this.server.getServices().stream().map(service -> service.getServiceDescriptor().getName())
+        .collect(Collectors.toList()));
+  }
+
+  /**
+   * Stops the server, waiting a short grace period for calls in progress to complete, before cancelling them. Invoked
+   * by the Spring container on shutdown.
+   */
+  @PreDestroy
+  public void stop() {
+    this.server.shutdown();
+    try {
+      if (!this.server.awaitTermination(SHUTDOWN_GRACE_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) {
+        this.server.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      this.server.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return the local TCP port on which the server is listening, i.e. the port actually bound.
+   */
+  public int getPort() {
+    return this.server.getPort();
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.health;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.neiljbrown.service.time.business.ClockConsensus;
+import com.neiljbrown.service.time.business.ClockConsensusProvider;
+
+/**
+ * Exposes the {@link ClockConsensus agreement between the clocks of the nodes in the cluster}, from which the platform
+ * time is derived, as the 'clockConsensus' component of the Actuator 'health' endpoint, and as metrics. The node is
+ * reported as down whilst a majority of the cluster's clocks don't agree, so that it can be taken out of service. The
+ * metrics comprise -
+ * <br>
+ * - platform.time.consensus.offset - Gauge of the offset of the platform time from the local clock, in seconds.
+ * <br>
+ * - platform.time.consensus.error - Gauge of the max error of the offset, in seconds.
+ * <br>
+ * - platform.time.consensus.sources - Gauge of the no. of clocks, including the local clock, tagged by state (agreeing,
+ * responding or configured).
+ * <p>
+ * Only enabled for the implementation of the platform time provider which derives it from the consensus of a cluster.
+ * <p>
+ * Thread-safe.
+ */
+@Component
+@ConditionalOnProperty(name = "platform-date-time-provider.type", havingValue = "consensus")
+public class ClockConsensusHealthIndicator implements HealthIndicator, MeterBinder {
+
+  private final ClockConsensusProvider clockConsensusProvider;
+
+  /**
+   * @param clockConsensusProvider the {@link ClockConsensusProvider} from which the consensus is retrieved.
+   */
+  public ClockConsensusHealthIndicator(ClockConsensusProvider clockConsensusProvider) {
+    this.clockConsensusProvider = Objects.requireNonNull(clockConsensusProvider,
+      "Arg 'clockConsensusProvider' must not be null.");
+  }
+
+  @Override
+  public Health health() {
+    final ClockConsensus clockConsensus = this.clockConsensusProvider.getClockConsensus();
+    return (clockConsensus.isQuorate() ? Health.up() : Health.down())
+      .withDetail("offsetMillis", clockConsensus.getOffsetNanos() / 1_000_000d)
+      .withDetail("errorMillis", clockConsensus.getErrorNanos() / 1_000_000d)
+      .withDetail("agreeingSources", clockConsensus.getAgreeingSources())
+      .withDetail("respondingSources", clockConsensus.getRespondingSources())
+      .withDetail("configuredSources", clockConsensus.getConfiguredSources())
+      .withDetail("sampledEpochMilli", clockConsensus.getSampledEpochMilli())
+      .build();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry meterRegistry) {
+    TimeGauge.builder("platform.time.consensus.offset", this.clockConsensusProvider, TimeUnit.NANOSECONDS,
+      provider -> provider.getClockConsensus().getOffsetNanos())
+      .description("Offset of the platform time from the local clock.")
+      .register(meterRegistry);
+    TimeGauge.builder("platform.time.consensus.error", this.clockConsensusProvider, TimeUnit.NANOSECONDS,
+      provider -> provider.getClockConsensus().getErrorNanos())
+      .description("Max error of the offset of the platform time from the local clock.")
+      .register(meterRegistry);
+    Gauge.builder("platform.time.consensus.sources", this.clockConsensusProvider,
+      provider -> provider.getClockConsensus().getAgreeingSources())
+      .description("No. of clocks in the cluster, including the local clock.")
+      .tag("state", "agreeing")
+      .register(meterRegistry);
+    Gauge.builder("platform.time.consensus.sources", this.clockConsensusProvider,
+      provider -> provider.getClockConsensus().getRespondingSources())
+      .description("No. of clocks in the cluster, including the local clock.")
+      .tag("state", "responding")
+      .register(meterRegistry);
+    Gauge.builder("platform.time.consensus.sources", this.clockConsensusProvider,
+      provider -> provider.getClockConsensus().getConfiguredSources())
+      .description("No. of clocks in the cluster, including the local clock.")
+      .tag("state", "configured")
+      .register(meterRegistry);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.health;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.neiljbrown.service.time.business.ClockHealth;
+import com.neiljbrown.service.time.business.ClockHealthProvider;
+
+/**
+ * Exposes the {@link ClockHealth health of the clock} from which the platform time is derived, as the 'clock'
+ * component of the Actuator 'health' endpoint, and as metrics. The node is reported as down whilst the platform time
+ * is offset from the system clock by more than the max healthy offset, e.g. whilst the correction of a large clock
+ * step is being slewed, so that it can be taken out of service. The metrics comprise -
+ * <br>
+ * - platform.time.clock.offset - Gauge of the offset of the system clock from the platform time, in seconds.
+ * <br>
+ * - platform.time.clock.steps - Counter of the steps of the system clock detected, tagged by direction (forward or
+ * backward).
+ * <br>
+ * - platform.time.clock.slewing - Gauge which is 1 whilst a correction of the platform time is being slewed, else 0.
+ * <br>
+ * - platform.time.clock.drift - Gauge of the drift of the system clock from the monotonic clock, in parts per million.
+ * <p>
+ * The details of the 'clock' component, e.g. its offset, are only shown to authorised users of the 'health'
+ * endpoint. Others see its status alone, and should monitor the clock via the metrics.
+ * <p>
+ * Only enabled for the implementation of the platform time provider which monitors the clock.
+ * <p>
+ * Thread-safe.
+ */
+@Component
+@ConditionalOnProperty(name = "platform-date-time-provider.type", havingValue = "monotonic")
+public class ClockHealthIndicator implements HealthIndicator, MeterBinder {
+
+  private final ClockHealthProvider clockHealthProvider;
+
+  /**
+   * @param clockHealthProvider the {@link ClockHealthProvider} from which the clock's health is retrieved.
+   */
+  public ClockHealthIndicator(ClockHealthProvider clockHealthProvider) {
+    this.clockHealthProvider = Objects.requireNonNull(clockHealthProvider,
+      "Arg 'clockHealthProvider' must not be null.");
+  }
+
+  @Override
+  public Health health() {
+    final ClockHealth clockHealth = this.clockHealthProvider.getClockHealth();
+    return (clockHealth.isHealthy() ? Health.up() : Health.down())
+      .withDetail("offsetMillis", clockHealth.getOffsetNanos() / 1_000_000d)
+      .withDetail("slewing", clockHealth.isSlewing())
+      .withDetail("forwardSteps", clockHealth.getForwardSteps())
+      .withDetail("backwardSteps", clockHealth.getBackwardSteps())
+      .withDetail("lastStepMillis", clockHealth.getLastStepNanos() / 1_000_000d)
+      .withDetail("lastStepEpochMilli", clockHealth.getLastStepEpochMilli())
+      .withDetail("driftPpm", clockHealth.getDriftPpm())
+      .withDetail("checkedEpochMilli", clockHealth.getCheckedEpochMilli())
+      .build();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry meterRegistry) {
+    TimeGauge.builder("platform.time.clock.offset", this.clockHealthProvider, TimeUnit.NANOSECONDS,
+      provider -> provider.getClockHealth().getOffsetNanos())
+      .description("Offset of the system clock from the platform time.")
+      .register(meterRegistry);
+    FunctionCounter.builder("platform.time.clock.steps", this.clockHealthProvider,
+      provider -> provider.getClockHealth().getForwardSteps())
+      .description("No. of steps of the system clock detected.")
+      .tag("direction", "forward")
+      .register(meterRegistry);
+    FunctionCounter.builder("platform.time.clock.steps", this.clockHealthProvider,
+      provider -> provider.getClockHealth().getBackwardSteps())
+      .description("No. of steps of the system clock detected.")
+      .tag("direction", "backward")
+      .register(meterRegistry);
+    Gauge.builder("platform.time.clock.slewing", this.clockHealthProvider,
+      provider -> provider.getClockHealth().isSlewing() ? 1 : 0)
+      .description("Whether a correction of the platform time is being slewed.")
+      .register(meterRegistry);
+    Gauge.builder("platform.time.clock.drift", this.clockHealthProvider,
+      provider -> provider.getClockHealth().getDriftPpm())
+      .description("Drift of the system clock from the monotonic clock.")
+      .baseUnit("ppm")
+      .register(meterRegistry);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.shm;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * The layout of the (memory-mapped) file to which the platform time is published by
+ * {@link SharedMemoryPlatformTimePublisher}, and from which it's read by {@link SharedMemoryPlatformTimeReader}.
+ * <p>
+ * The file is a fixed size record, of a single cache line, encoded in little-endian byte order -
+ * <pre>
+ * Offset Size Field
+ * 0      4    Magic no. ('PTIM')
+ * 4      4    Version of the layout
+ * 8      8    Sequence no. Odd whilst the record is being written, and incremented by two for each published time.
+ * 16     8    Platform time, in milliseconds since the Unix epoch
+ * 24     4    Flags, see FLAG_*
+ * 28     4    Interval (in microseconds) at which the time is published
+ * 32     8    Offset (in nanoseconds) of the platform time from the system clock, if the clock's health is monitored
+ * 40     24   Reserved
+ * </pre>
+ * The record is written by a single writer, and read using a sequence lock (seqlock) - a reader reads the sequence no.,
+ * then the fields, then the sequence no. again, and retries if it was odd or has changed. Readers therefore never
+ * block the writer, or each other, and a read involves no system call.
+ * <p>
+ * Defined separately to the publisher and reader so that the latter can be used by other processes without a
+ * dependency on the rest of the service.
+ */
+public final class SharedMemoryLayout {
+
+  /** The magic no. which identifies a file containing a published platform time - 'PTIM' in ASCII. */
+  public static final int MAGIC = 0x5054494D;
+  public static final int VERSION = 1;
+  public static final int FILE_SIZE = 64;
+
+  static final int MAGIC_OFFSET = 0;
+  static final int VERSION_OFFSET = 4;
+  static final int SEQUENCE_OFFSET = 8;
+  static final int EPOCH_MILLI_OFFSET = 16;
+  static final int FLAGS_OFFSET = 24;
+  static final int PUBLISH_INTERVAL_MICROS_OFFSET = 28;
+  static final int CLOCK_OFFSET_NANOS_OFFSET = 32;
+
+  /** Flag set if the platform clock is healthy, or its health isn't monitored. */
+  public static final int FLAG_HEALTHY = 1;
+  /** Flag set if the platform clock is currently being slewed (smeared) towards the system clock. */
+  public static final int FLAG_SLEWING = 1 << 1;
+  /** Flag set if the health of the platform clock is monitored, and the clock offset field is therefore populated. */
+  public static final int FLAG_HEALTH_MONITORED = 1 << 2;
+  /** Flag set once the publisher has stopped, after which the published time is no longer updated. */
+  public static final int FLAG_STOPPED = 1 << 3;
+
+  private SharedMemoryLayout() {
+  }
+
+  /**
+   * Prevents the reordering of stores before the fence with stores after it. Used by the writer to order its writes to
+   * the sequence no. and the other fields.
+   */
+  static void storeFence() {
+    Fences.invoke(Fences.STORE_FENCE);
+  }
+
+  /**
+   * Prevents the reordering of loads before the fence with loads and stores after it. Used by readers to order their
+   * reads of the sequence no. and the other fields.
+   */
+  static void loadFence() {
+    Fences.invoke(Fences.LOAD_FENCE);
+  }
+
+  /**
+   * Holds method handles for the fences of sun.misc.Unsafe, as the JDK 8 target has no public API (such as VarHandle)
+   * for fences on a mapped buffer. Unsafe is only referenced reflectively, so compiling against it doesn't produce
+   * (unsuppressible) proprietary API warnings. The handles are constants, so their invocations are inlined by the JIT.
+   */
+  private static final class Fences {
+
+    private static final MethodHandle STORE_FENCE;
+    private static final MethodHandle LOAD_FENCE;
+
+    static {
+      try {
+        final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        final Field field = unsafeClass.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        final Object unsafe = field.get(null);
+        final MethodType fenceType = MethodType.methodType(void.class);
+        STORE_FENCE = MethodHandles.publicLookup().findVirtual(unsafeClass, "storeFence", fenceType).bindTo(unsafe);
+        LOAD_FENCE = MethodHandles.publicLookup().findVirtual(unsafeClass, "loadFence", fenceType).bindTo(unsafe);
+      } catch (ReflectiveOperationException e) {
+        throw new ExceptionInInitializerError(e);
+      }
+    }
+
+    private static void invoke(MethodHandle fence) {
+      try {
+        fence.invokeExact();
+      } catch (Throwable t) {
+        // The fences don't throw
+        throw new IllegalStateException("Unexpected error invoking memory fence.", t);
+      }
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.shm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.neiljbrown.service.time.business.ClockHealth;
+import com.neiljbrown.service.time.business.ClockHealthProvider;
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+
+/**
+ * Continuously publishes the platform time, and the health of the platform clock, to a memory-mapped file, from which
+ * it can be read by other processes on the same host, e.g. sidecars, using {@link SharedMemoryPlatformTimeReader}.
+ * <p>
+ * Supports co-located clients reading the platform time far more cheaply than is possible using the 'Get Platform Time'
+ * HTTP API, or the SNTP server - a read of the file involves no system call, or network round trip, only a few loads
+ * from memory shared with this process. The cost is the resolution of the time, which is only as fresh as the last
+ * publication. See {@link SharedMemoryLayout} for the format of the file, and the protocol used to read it.
+ * <p>
+ * The time is published by a single background thread, at a configurable interval. If a {@link ClockHealthProvider} is
+ * available, e.g. the 'monotonic' platform date/time provider, the health of the clock is also published. On shutdown
+ * the file is marked as stopped, but not deleted, so readers can tell that the time is no longer being published.
+ * <p>
+ * Only enabled (started) if the application property 'shared-memory.enabled' is set to 'true'.
+ * <p>
+ * Thread-safe.
+ */
+@Component
+@ConditionalOnProperty(name = "shared-memory.enabled", havingValue = "true")
+public class SharedMemoryPlatformTimePublisher {
+
+  private static final Logger logger = LoggerFactory.getLogger(SharedMemoryPlatformTimePublisher.class);
+
+  private final PlatformDateTimeProvider platformDateTimeProvider;
+  private final ClockHealthProvider clockHealthProvider;
+  private final Path path;
+  private final long publishIntervalMicros;
+  private final ScheduledExecutorService publisher;
+
+  // State of the publication. Only accessed whilst holding the lock on this object.
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private long sequence;
+  private boolean stopped;
+
+  /**
+   * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to obtain current platform
+   * date/time.
+   * @param clockHealthProvider provides the {@link ClockHealthProvider} whose health is published, if one is available.
+   * @param path the path of the file to which the time is published. Created, along with any missing parent
+   * directories, if it doesn't exist. A file system backed by memory, e.g. /dev/shm on Linux, avoids the file's pages
+   * being written back to disk.
+   * @param publishIntervalMicros the interval, in microseconds, at which the time is published. Must be greater than
+   * zero.
+   */
+  public SharedMemoryPlatformTimePublisher(PlatformDateTimeProvider platformDateTimeProvider,
+    ObjectProvider<ClockHealthProvider> clockHealthProvider,
+    @Value("${shared-memory.path:data/platform-time.shm}") String path,
+    @Value("${shared-memory.publish-interval-micros:1000}") long publishIntervalMicros) {
+    this(platformDateTimeProvider, clockHealthProvider.getIfAvailable(), Paths.get(path), publishIntervalMicros);
+  }
+
+  SharedMemoryPlatformTimePublisher(PlatformDateTimeProvider platformDateTimeProvider,
+    ClockHealthProvider clockHealthProvider, Path path, long publishIntervalMicros) {
+    if (publishIntervalMicros <= 0 || publishIntervalMicros > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+        "Arg 'publishIntervalMicros' must be greater than zero, not [" + publishIntervalMicros + "].");
+    }
+    this.platformDateTimeProvider = platformDateTimeProvider;
+    this.clockHealthProvider = clockHealthProvider;
+    this.path = path;
+    this.publishIntervalMicros = publishIntervalMicros;
+    this.publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "platform-time-publisher");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Maps the file, publishes the current time, and starts publishing it at the configured interval. Invoked by the
+   * Spring container once the bean has been created.
+   */
+  @PostConstruct
+  public void start() {
+    try {
+      if (this.path.getParent() != null) {
+        Files.createDirectories(this.path.getParent());
+      }
+      this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+      this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, SharedMemoryLayout.FILE_SIZE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to map shared memory file [" + this.path + "].", e);
+    }
+    this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+    initHeader();
+    publish();
+    this.publisher.scheduleAtFixedRate(this::publishSafely, this.publishIntervalMicros, this.publishIntervalMicros,
+      TimeUnit.MICROSECONDS);
+    logger.info("Publishing platform time to shared memory file [{}], every [{}] microseconds.", this.path,
+      this.publishIntervalMicros);
+  }
+
+  /**
+   * Stops publishing the time, marks the file as stopped, and closes it. Invoked by the Spring container on shutdown.
+   */
+  @PreDestroy
+  public void stop() {
+    this.publisher.shutdownNow();
+    synchronized (this) {
+      if (this.stopped) {
+        return;
+      }
+      this.stopped = true;
+      write(this.platformDateTimeProvider.getEpochMilli(), SharedMemoryLayout.FLAG_STOPPED);
+      this.buffer.force();
+      try {
+        this.channel.close();
+      } catch (IOException e) {
+        logger.warn("Error closing shared memory file [{}].", this.path, e);
+      }
+    }
+  }
+
+  /**
+   * @return the path of the file to which the time is published.
+   */
+  public Path getPath() {
+    return this.path;
+  }
+
+  /**
+   * Publishes the current platform time, and health of the platform clock.
+   */
+  synchronized void publish() {
+    if (!this.stopped) {
+      write(this.platformDateTimeProvider.getEpochMilli(), 0);
+    }
+  }
+
+  /**
+   * Initialises the fields of the file's header. Any existing sequence no., e.g. from a previous run of the service,
+   * is continued, so it never goes backwards for a reader which has the file open across a restart.
+   */
+  private synchronized void initHeader() {
+    if (this.buffer.getInt(SharedMemoryLayout.MAGIC_OFFSET) == SharedMemoryLayout.MAGIC) {
+      // Round up to the next even no., in case the previous writer stopped part way through a write
+      this.sequence = (this.buffer.getLong(SharedMemoryLayout.SEQUENCE_OFFSET) + 1) & ~1L;
+    }
+    this.buffer.putLong(SharedMemoryLayout.SEQUENCE_OFFSET, this.sequence);
+    this.buffer.putInt(SharedMemoryLayout.VERSION_OFFSET, SharedMemoryLayout.VERSION);
+    this.buffer.putInt(SharedMemoryLayout.PUBLISH_INTERVAL_MICROS_OFFSET, (int) this.publishIntervalMicros);
+    SharedMemoryLayout.storeFence();
+    // Written last, so a reader never sees a valid magic no. in a partially initialised file
+    this.buffer.putInt(SharedMemoryLayout.MAGIC_OFFSET, SharedMemoryLayout.MAGIC);
+  }
+
+  /**
+   * Writes a record under the sequence lock. The sequence no. is made odd before, and even again after, the fields are
+   * written, with store fences ensuring a reader can't see the new fields without also seeing the change in sequence.
+   */
+  private void write(long epochMilli, int additionalFlags) {
+    int flags = additionalFlags;
+    long clockOffsetNanos = 0;
+    if (this.clockHealthProvider == null) {
+      flags |= SharedMemoryLayout.FLAG_HEALTHY;
+    } else {
+      final ClockHealth clockHealth = this.clockHealthProvider.getClockHealth();
+      flags |= SharedMemoryLayout.FLAG_HEALTH_MONITORED
+        | (clockHealth.isHealthy() ? SharedMemoryLayout.FLAG_HEALTHY : 0)
+        | (clockHealth.isSlewing() ? SharedMemoryLayout.FLAG_SLEWING : 0);
+      clockOffsetNanos = clockHealth.getOffsetNanos();
+    }
+    this.buffer.putLong(SharedMemoryLayout.SEQUENCE_OFFSET, ++this.sequence);
+    SharedMemoryLayout.storeFence();
+    this.buffer.putLong(SharedMemoryLayout.EPOCH_MILLI_OFFSET, epochMilli);
+    this.buffer.putInt(SharedMemoryLayout.FLAGS_OFFSET, flags);
+    this.buffer.putLong(SharedMemoryLayout.CLOCK_OFFSET_NANOS_OFFSET, clockOffsetNanos);
+    SharedMemoryLayout.storeFence();
+    this.buffer.putLong(SharedMemoryLayout.SEQUENCE_OFFSET, ++this.sequence);
+  }
+
+  private void publishSafely() {
+    try {
+      publish();
+    } catch (RuntimeException e) {
+      // Don't let an exception cancel future publications
+      logger.error("Error publishing platform time to shared memory file [" + this.path + "].", e);
+    }
+  }
+}
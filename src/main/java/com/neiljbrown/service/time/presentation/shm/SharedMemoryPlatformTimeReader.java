@@ -0,0 +1,268 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.shm;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the platform time published by a {@link SharedMemoryPlatformTimePublisher} to a memory-mapped file, in this or
+ * another process on the same host.
+ * <p>
+ * The file is mapped read-only once, on construction, after which a read of the time involves no system call or
+ * allocation, only a few loads from memory shared with the publisher, using the sequence lock protocol described by
+ * {@link SharedMemoryLayout}. A read retries until it sees a consistent record, which, as the publisher only holds the
+ * lock for the duration of a few stores, is rare.
+ * <p>
+ * A publisher which dies part way through writing a record leaves the lock held (the sequence no. odd), in which case
+ * no consistent record can be read until a new publisher is started. Rather than retry indefinitely, a read fails with
+ * an {@link IllegalStateException} once the same write has been seen in progress for longer than a max write time.
+ * <p>
+ * The time read is only as fresh as the last publication, i.e. up to the publish interval old. Readers which require a
+ * guarantee of freshness should check that the publisher hasn't {@link Snapshot#isStopped() stopped}, and that the
+ * {@link Snapshot#getSequence() sequence no.} advances.
+ * <p>
+ * Has no dependencies other than {@link SharedMemoryLayout}, so can be used by clients without the rest of the service.
+ * <p>
+ * Thread-safe.
+ */
+public class SharedMemoryPlatformTimeReader implements AutoCloseable {
+
+  /** Default max time, in milliseconds, for which a write can be seen in progress, before a read fails. */
+  public static final long DEFAULT_MAX_WRITE_MILLIS = 1000;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final long maxWriteNanos;
+
+  /**
+   * Creates a reader whose reads fail if a write is seen in progress for longer than
+   * {@link #DEFAULT_MAX_WRITE_MILLIS}.
+   *
+   * @param path the path of the file to which the platform time is published.
+   * @throws IOException if the file can't be opened or mapped, or doesn't contain a platform time published in a
+   * supported version of the {@link SharedMemoryLayout layout}.
+   */
+  public SharedMemoryPlatformTimeReader(Path path) throws IOException {
+    this(path, DEFAULT_MAX_WRITE_MILLIS);
+  }
+
+  /**
+   * @param path the path of the file to which the platform time is published.
+   * @param maxWriteMillis the max time, in milliseconds, for which the same write can be seen in progress, before a
+   * read fails, as the publisher is assumed to have died whilst writing. Must be greater than zero.
+   * @throws IOException if the file can't be opened or mapped, or doesn't contain a platform time published in a
+   * supported version of the {@link SharedMemoryLayout layout}.
+   */
+  public SharedMemoryPlatformTimeReader(Path path, long maxWriteMillis) throws IOException {
+    if (maxWriteMillis <= 0) {
+      throw new IllegalArgumentException(
+        "Arg 'maxWriteMillis' must be greater than zero, not [" + maxWriteMillis + "].");
+    }
+    this.maxWriteNanos = TimeUnit.MILLISECONDS.toNanos(maxWriteMillis);
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      if (this.channel.size() < SharedMemoryLayout.FILE_SIZE) {
+        throw new IOException("File [" + path + "] is too small to contain a published platform time.");
+      }
+      this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, SharedMemoryLayout.FILE_SIZE);
+      this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (this.buffer.getInt(SharedMemoryLayout.MAGIC_OFFSET) != SharedMemoryLayout.MAGIC) {
+        throw new IOException("File [" + path + "] doesn't contain a published platform time.");
+      }
+      SharedMemoryLayout.loadFence();
+      final int version = this.buffer.getInt(SharedMemoryLayout.VERSION_OFFSET);
+      if (version != SharedMemoryLayout.VERSION) {
+        throw new IOException("File [" + path + "] has unsupported version [" + version + "].");
+      }
+    } catch (IOException | RuntimeException e) {
+      this.channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the last published platform time, in milliseconds since the Unix epoch.
+   * @throws IllegalStateException if the same write has been seen in progress for longer than the max write time, as
+   * the publisher has presumably died whilst writing.
+   */
+  public long getEpochMilli() {
+    long retriedSequence = -1;
+    long retriedSinceNanos = 0;
+    while (true) {
+      final long sequence = this.buffer.getLong(SharedMemoryLayout.SEQUENCE_OFFSET);
+      SharedMemoryLayout.loadFence();
+      final long epochMilli = this.buffer.getLong(SharedMemoryLayout.EPOCH_MILLI_OFFSET);
+      SharedMemoryLayout.loadFence();
+      if ((sequence & 1) == 0 && sequence == this.buffer.getLong(SharedMemoryLayout.SEQUENCE_OFFSET)) {
+        return epochMilli;
+      }
+      if (sequence != retriedSequence) {
+        retriedSequence = sequence;
+        retriedSinceNanos = System.nanoTime();
+      } else {
+        requireWriteNotStalled(sequence, retriedSinceNanos);
+      }
+    }
+  }
+
+  /**
+   * @return a consistent {@link Snapshot} of the last published record, including the health of the platform clock.
+   * @throws IllegalStateException if the same write has been seen in progress for longer than the max write time, as
+   * the publisher has presumably died whilst writing.
+   */
+  public Snapshot read() {
+    long retriedSequence = -1;
+    long retriedSinceNanos = 0;
+    while (true) {
+      final long sequence = this.buffer.getLong(SharedMemoryLayout.SEQUENCE_OFFSET);
+      SharedMemoryLayout.loadFence();
+      final long epochMilli = this.buffer.getLong(SharedMemoryLayout.EPOCH_MILLI_OFFSET);
+      final int flags = this.buffer.getInt(SharedMemoryLayout.FLAGS_OFFSET);
+      final long clockOffsetNanos = this.buffer.getLong(SharedMemoryLayout.CLOCK_OFFSET_NANOS_OFFSET);
+      SharedMemoryLayout.loadFence();
+      if ((sequence & 1) == 0 && sequence == this.buffer.getLong(SharedMemoryLayout.SEQUENCE_OFFSET)) {
+        return new Snapshot(sequence, epochMilli, flags, clockOffsetNanos,
+          this.buffer.getInt(SharedMemoryLayout.PUBLISH_INTERVAL_MICROS_OFFSET));
+      }
+      if (sequence != retriedSequence) {
+        retriedSequence = sequence;
+        retriedSinceNanos = System.nanoTime();
+      } else {
+        requireWriteNotStalled(sequence, retriedSinceNanos);
+      }
+    }
+  }
+
+  /**
+   * Fails a read which has been retrying since the supplied time, if the write it's been waiting for - that of the
+   * (odd) sequence no. - has been in progress for longer than the max write time.
+   */
+  private void requireWriteNotStalled(long sequence, long retriedSinceNanos) {
+    if (System.nanoTime() - retriedSinceNanos > this.maxWriteNanos) {
+      throw new IllegalStateException("Platform time publisher has been writing record [" + sequence + "] for more "
+        + "than [" + TimeUnit.NANOSECONDS.toMillis(this.maxWriteNanos) + "] ms. It has presumably died whilst "
+        + "writing, and must be restarted.");
+    }
+  }
+
+  /**
+   * Closes the file. The mapping of the file remains valid until this reader is garbage collected, so a (pointless)
+   * read after closing doesn't fail.
+   *
+   * @throws IOException if an error occurs closing the file.
+   */
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  /**
+   * An immutable, consistent snapshot of a record published by a {@link SharedMemoryPlatformTimePublisher}.
+   */
+  public static final class Snapshot {
+
+    private final long sequence;
+    private final long epochMilli;
+    private final int flags;
+    private final long clockOffsetNanos;
+    private final int publishIntervalMicros;
+
+    Snapshot(long sequence, long epochMilli, int flags, long clockOffsetNanos, int publishIntervalMicros) {
+      this.sequence = sequence;
+      this.epochMilli = epochMilli;
+      this.flags = flags;
+      this.clockOffsetNanos = clockOffsetNanos;
+      this.publishIntervalMicros = publishIntervalMicros;
+    }
+
+    /**
+     * @return the sequence no. of the record. Increases with each publication.
+     */
+    public long getSequence() {
+      return this.sequence;
+    }
+
+    /**
+     * @return the published platform time, in milliseconds since the Unix epoch.
+     */
+    public long getEpochMilli() {
+      return this.epochMilli;
+    }
+
+    /**
+     * @return the record's flags. See the FLAG_* constants in {@link SharedMemoryLayout}.
+     */
+    public int getFlags() {
+      return this.flags;
+    }
+
+    /**
+     * @return true if the platform clock is healthy, or its health isn't monitored.
+     */
+    public boolean isHealthy() {
+      return (this.flags & SharedMemoryLayout.FLAG_HEALTHY) != 0;
+    }
+
+    /**
+     * @return true if the platform clock is being slewed (smeared) towards the system clock.
+     */
+    public boolean isSlewing() {
+      return (this.flags & SharedMemoryLayout.FLAG_SLEWING) != 0;
+    }
+
+    /**
+     * @return true if the health of the platform clock is monitored, in which case its offset is also published.
+     */
+    public boolean isHealthMonitored() {
+      return (this.flags & SharedMemoryLayout.FLAG_HEALTH_MONITORED) != 0;
+    }
+
+    /**
+     * @return true if the publisher has stopped, in which case the time is no longer being updated.
+     */
+    public boolean isStopped() {
+      return (this.flags & SharedMemoryLayout.FLAG_STOPPED) != 0;
+    }
+
+    /**
+     * @return the offset (in nanoseconds) of the platform time from the system clock, if the clock's health is
+     * monitored, else 0.
+     */
+    public long getClockOffsetNanos() {
+      return this.clockOffsetNanos;
+    }
+
+    /**
+     * @return the interval (in microseconds) at which the publisher publishes the time.
+     */
+    public int getPublishIntervalMicros() {
+      return this.publishIntervalMicros;
+    }
+
+    @Override
+    public String toString() {
+      return "Snapshot{sequence=" + this.sequence + ", epochMilli=" + this.epochMilli + ", flags=" + this.flags
+        + ", clockOffsetNanos=" + this.clockOffsetNanos + ", publishIntervalMicros=" + this.publishIntervalMicros + "}";
+    }
+  }
+}
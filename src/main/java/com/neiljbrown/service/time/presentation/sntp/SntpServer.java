@@ -0,0 +1,280 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.sntp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+
+/**
+ * A UDP server which answers time requests in the format of the Simple Network Time Protocol (SNTP) (RFC 4330), from
+ * the same {@link PlatformDateTimeProvider} used by the service's HTTP APIs.
+ * <p>
+ * Supports clients, such as other nodes in the platform, synchronising their clock with the platform time more cheaply,
+ * and with less latency jitter, than is possible using the 'Get Platform Time' HTTP API, via a single 48 byte UDP
+ * request and response.
+ * <p>
+ * Requests are received and answered by a configurable no. of worker threads, sharing a single NIO
+ * {@link DatagramChannel}. Each worker owns a (direct) packet buffer which it reuses for every request, and the
+ * response is written over the request in the same buffer, so the server doesn't allocate per packet. Requests which
+ * aren't valid SNTP client requests are dropped without a response. The no. of packets received, answered and dropped
+ * are recorded as metrics.
+ * <p>
+ * Only enabled (started) if the application property 'sntp.enabled' is set to 'true'.
+ * <p>
+ * Thread-safe.
+ */
+@Component
+@ConditionalOnProperty(name = "sntp.enabled", havingValue = "true")
+public class SntpServer {
+
+  /** Size of an SNTP packet, excluding any optional extension fields and authenticator, which are ignored. */
+  static final int PACKET_SIZE = 48;
+
+  static final int MODE_CLIENT = 3;
+  static final int MODE_SERVER = 4;
+
+  /** No. of seconds between the NTP epoch (1900-01-01T00:00:00Z) and the Unix epoch (1970-01-01T00:00:00Z). */
+  static final long NTP_EPOCH_OFFSET_SECONDS = 2_208_988_800L;
+
+  /** Stratum advertised in responses. The platform time is the primary reference for clients of this server. */
+  private static final int STRATUM = 1;
+
+  /** Precision of the platform time advertised in responses, as a power of two of seconds, i.e. ~1 millisecond. */
+  private static final int PRECISION = -10;
+
+  /** Reference ID advertised in responses, identifying the (uncalibrated) local clock as the source. */
+  private static final int REFERENCE_ID = ('L' << 24) | ('O' << 16) | ('C' << 8) | 'L';
+
+  /**
+   * Size of each worker's packet buffer. Larger than an SNTP packet, so that requests containing optional extension
+   * fields aren't truncated and rejected.
+   */
+  private static final int PACKET_BUFFER_SIZE = 512;
+
+  private static final Logger logger = LoggerFactory.getLogger(SntpServer.class);
+
+  private final PlatformDateTimeProvider platformDateTimeProvider;
+  private final InetSocketAddress bindAddress;
+  private final int workerThreads;
+  private final ExecutorService workers;
+  private final LongAdder packetsReceived = new LongAdder();
+  private final LongAdder packetsAnswered = new LongAdder();
+  private final LongAdder packetsDropped = new LongAdder();
+  private DatagramChannel channel;
+
+  /**
+   * @param platformDateTimeProvider instance of {@link PlatformDateTimeProvider} used to obtain current platform
+   * date/time.
+   * @param bindAddress the local address (host name or IP) on which the server listens.
+   * @param port the local UDP port on which the server listens. A value of 0 selects an ephemeral port.
+   * @param workerThreads the no. of threads which receive and answer requests. Must be greater than zero.
+   * @param meterRegistry the {@link MeterRegistry} in which the server's packet counts are recorded.
+   */
+  public SntpServer(PlatformDateTimeProvider platformDateTimeProvider,
+    @Value("${sntp.bind-address:0.0.0.0}") String bindAddress,
+    @Value("${sntp.port:1123}") int port,
+    @Value("${sntp.worker-threads:2}") int workerThreads,
+    MeterRegistry meterRegistry) {
+    if (workerThreads <= 0) {
+      throw new IllegalArgumentException("Arg 'workerThreads' must be greater than zero, not [" + workerThreads + "].");
+    }
+    this.platformDateTimeProvider = platformDateTimeProvider;
+    this.bindAddress = new InetSocketAddress(bindAddress, port);
+    this.workerThreads = workerThreads;
+    final AtomicInteger threadCount = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+      final Thread thread = new Thread(runnable, "sntp-worker-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    FunctionCounter.builder("sntp.packets.received", this.packetsReceived, LongAdder::doubleValue)
+      .description("No. of packets received by the SNTP server, including those which were subsequently dropped.")
+      .register(meterRegistry);
+    FunctionCounter.builder("sntp.packets", this.packetsAnswered, LongAdder::doubleValue)
+      .description("No. of packets handled by the SNTP server, by outcome - answered, or dropped without a response.")
+      .tag("outcome", "answered")
+      .register(meterRegistry);
+    FunctionCounter.builder("sntp.packets", this.packetsDropped, LongAdder::doubleValue)
+      .description("No. of packets handled by the SNTP server, by outcome - answered, or dropped without a response.")
+      .tag("outcome", "dropped")
+      .register(meterRegistry);
+  }
+
+  /**
+   * Binds the server to its configured address and starts answering requests. Invoked by the Spring container once
+   * the bean has been created.
+   */
+  @PostConstruct
+  public void start() {
+    try {
+      this.channel = DatagramChannel.open().bind(this.bindAddress);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to bind SNTP server to [" + this.bindAddress + "].", e);
+    }
+    for (int i = 0; i < this.workerThreads; i++) {
+      this.workers.execute(this::receiveAndAnswer);
+    }
+    logger.info("SNTP server listening on [{}].", getLocalAddress());
+  }
+
+  /**
+   * Stops answering requests and closes the server's channel. Invoked by the Spring container on shutdown.
+   */
+  @PreDestroy
+  public void stop() {
+    try {
+      // Closing the channel also unblocks any workers waiting to receive a request
+      this.channel.close();
+    } catch (IOException e) {
+      logger.warn("Error closing SNTP server channel.", e);
+    }
+    this.workers.shutdownNow();
+  }
+
+  /**
+   * @return the local address on which the server is listening, including the port actually bound.
+   */
+  public InetSocketAddress getLocalAddress() {
+    try {
+      return (InetSocketAddress) this.channel.getLocalAddress();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @return the no. of packets received, including those which were subsequently dropped.
+   */
+  public long getPacketsReceived() {
+    return this.packetsReceived.sum();
+  }
+
+  /**
+   * @return the no. of packets which were answered with a response.
+   */
+  public long getPacketsAnswered() {
+    return this.packetsAnswered.sum();
+  }
+
+  /**
+   * @return the no. of packets which were dropped without a response, because they weren't a valid SNTP client
+   * request, or the response couldn't be sent.
+   */
+  public long getPacketsDropped() {
+    return this.packetsDropped.sum();
+  }
+
+  private void receiveAndAnswer() {
+    final ByteBuffer packet = ByteBuffer.allocateDirect(PACKET_BUFFER_SIZE);
+    while (this.channel.isOpen()) {
+      try {
+        packet.clear();
+        final SocketAddress client = this.channel.receive(packet);
+        final long receiveEpochMilli = this.platformDateTimeProvider.getEpochMilli();
+        this.packetsReceived.increment();
+        packet.flip();
+        if (!writeResponse(packet, receiveEpochMilli, this.platformDateTimeProvider.getEpochMilli())) {
+          this.packetsDropped.increment();
+          continue;
+        }
+        if (this.channel.send(packet, client) > 0) {
+          this.packetsAnswered.increment();
+        } else {
+          this.packetsDropped.increment();
+        }
+      } catch (ClosedChannelException e) {
+        // Server has been stopped
+        return;
+      } catch (IOException | RuntimeException e) {
+        this.packetsDropped.increment();
+        logger.warn("Error answering SNTP request.", e);
+      }
+    }
+  }
+
+  /**
+   * Validates a received request, and if it's a valid SNTP client request, overwrites it in place with the response.
+   *
+   * @param packet a buffer containing the received request, between its position and limit. On return, if the
+   * request was valid, contains the response between its position and limit.
+   * @param receiveEpochMilli the platform time, in millis since the Unix epoch, at which the request was received.
+   * @param transmitEpochMilli the platform time, in millis since the Unix epoch, at which the response is sent.
+   * @return true if the request was valid and the response has been written, false otherwise.
+   */
+  static boolean writeResponse(ByteBuffer packet, long receiveEpochMilli, long transmitEpochMilli) {
+    if (packet.remaining() < PACKET_SIZE) {
+      return false;
+    }
+    final int start = packet.position();
+    final int leapIndicatorVersionAndMode = packet.get(start);
+    final int version = (leapIndicatorVersionAndMode >> 3) & 0x07;
+    final int mode = leapIndicatorVersionAndMode & 0x07;
+    if (mode != MODE_CLIENT || version < 1 || version > 4) {
+      return false;
+    }
+    final byte poll = packet.get(start + 2);
+    final long clientTransmitTimestamp = packet.getLong(start + 40);
+
+    // Leap indicator (0 - no warning), version (as per request) and mode (server)
+    packet.put(start, (byte) ((version << 3) | MODE_SERVER));
+    packet.put(start + 1, (byte) STRATUM);
+    packet.put(start + 2, poll);
+    packet.put(start + 3, (byte) PRECISION);
+    packet.putInt(start + 4, 0); // Root delay
+    packet.putInt(start + 8, 0); // Root dispersion
+    packet.putInt(start + 12, REFERENCE_ID);
+    packet.putLong(start + 16, toNtpTimestamp(receiveEpochMilli)); // Reference timestamp
+    packet.putLong(start + 24, clientTransmitTimestamp); // Originate timestamp
+    packet.putLong(start + 32, toNtpTimestamp(receiveEpochMilli)); // Receive timestamp
+    packet.putLong(start + 40, toNtpTimestamp(transmitEpochMilli)); // Transmit timestamp
+    packet.limit(start + PACKET_SIZE);
+    return true;
+  }
+
+  /**
+   * @param epochMilli a time in millis since the Unix epoch.
+   * @return the time as a 64-bit NTP timestamp - an unsigned 32-bit count of seconds since the NTP epoch (which wraps
+   * in 2036, as per the protocol), followed by a 32-bit binary fraction of a second.
+   */
+  static long toNtpTimestamp(long epochMilli) {
+    final long seconds = Math.floorDiv(epochMilli, 1000L) + NTP_EPOCH_OFFSET_SECONDS;
+    final long fraction = (Math.floorMod(epochMilli, 1000L) << 32) / 1000L;
+    return (seconds << 32) | fraction;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Unit tests for {@link BusinessCalendarProviderImpl}.
+ */
+class BusinessCalendarProviderImplTest {
+
+  /**
+   * Tests loading the calendars supplied with the service, and querying them.
+   */
+  @Test
+  void loadSuppliedCalendars() {
+    final BusinessCalendarProviderImpl provider = new BusinessCalendarProviderImpl(new Resource[] {
+      new ClassPathResource("calendars/target.calendar"), new ClassPathResource("calendars/weekdays.calendar")});
+
+    assertThat(provider.isSupportedCalendar("target")).isTrue();
+    assertThat(provider.isSupportedCalendar("weekdays")).isTrue();
+    assertThat(provider.isSupportedCalendar("foo")).isFalse();
+    // Good Friday
+    assertThat(provider.isBusinessDay("target", epochDay("2019-04-19"))).isFalse();
+    assertThat(provider.isBusinessDay("weekdays", epochDay("2019-04-19"))).isTrue();
+    // Easter Monday
+    assertThat(provider.addBusinessDays("target", epochDay("2019-04-18"), 1)).isEqualTo(epochDay("2019-04-23"));
+    // Christmas Day and 26 December
+    assertThat(provider.countBusinessDays("target", epochDay("2019-12-23"), epochDay("2019-12-30"))).isEqualTo(3);
+    assertThat(provider.countBusinessDays("weekdays", epochDay("2019-12-23"), epochDay("2019-12-30"))).isEqualTo(5);
+  }
+
+  /**
+   * Tests that the moveable Easter holidays of the supplied target calendar apply across the whole range of supported
+   * dates, not just recent years.
+   */
+  @Test
+  void loadSuppliedCalendarEasterHolidaysInEveryYear() {
+    final BusinessCalendarProviderImpl provider = new BusinessCalendarProviderImpl(new Resource[] {
+      new ClassPathResource("calendars/target.calendar")});
+
+    // Good Friday and Easter Monday
+    assertThat(provider.isBusinessDay("target", epochDay("1900-04-13"))).isFalse();
+    assertThat(provider.isBusinessDay("target", epochDay("1900-04-16"))).isFalse();
+    assertThat(provider.isBusinessDay("target", epochDay("2036-04-11"))).isFalse();
+    assertThat(provider.isBusinessDay("target", epochDay("2036-04-14"))).isFalse();
+    assertThat(provider.isBusinessDay("target", epochDay("2099-04-10"))).isFalse();
+    assertThat(provider.isBusinessDay("target", epochDay("2099-04-13"))).isFalse();
+    assertThat(provider.isBusinessDay("target", epochDay("2099-04-14"))).isTrue();
+  }
+
+  /**
+   * Tests computing the date of Easter Sunday, including its earliest and latest possible dates.
+   */
+  @Test
+  void easterSunday() {
+    assertThat(BusinessCalendarProviderImpl.easterSunday(1900)).isEqualTo("1900-04-15");
+    assertThat(BusinessCalendarProviderImpl.easterSunday(1943)).isEqualTo("1943-04-25");
+    assertThat(BusinessCalendarProviderImpl.easterSunday(2000)).isEqualTo("2000-04-23");
+    assertThat(BusinessCalendarProviderImpl.easterSunday(2008)).isEqualTo("2008-03-23");
+    assertThat(BusinessCalendarProviderImpl.easterSunday(2019)).isEqualTo("2019-04-21");
+    assertThat(BusinessCalendarProviderImpl.easterSunday(2038)).isEqualTo("2038-04-25");
+    assertThat(BusinessCalendarProviderImpl.easterSunday(2099)).isEqualTo("2099-04-12");
+  }
+
+  /**
+   * Tests that the days of a configured weekend are parsed independently of the default locale, e.g. one in which the
+   * upper case of 'i' isn't 'I'.
+   */
+  @Test
+  void loadCalendarWithWeekendInOtherLocale() {
+    final Locale defaultLocale = Locale.getDefault();
+    Locale.setDefault(new Locale("tr", "TR"));
+    try {
+      final BusinessCalendarProviderImpl provider = new BusinessCalendarProviderImpl(new Resource[] {
+        calendarResource("gulf.calendar", "weekend: friday, saturday\n")});
+
+      assertThat(provider.isBusinessDay("gulf", epochDay("2019-04-19"))).isFalse();
+      assertThat(provider.isBusinessDay("gulf", epochDay("2019-04-21"))).isTrue();
+    } finally {
+      Locale.setDefault(defaultLocale);
+    }
+  }
+
+  /**
+   * Tests loading a calendar with a configured weekend.
+   */
+  @Test
+  void loadCalendarWithWeekend() {
+    final BusinessCalendarProviderImpl provider = new BusinessCalendarProviderImpl(new Resource[] {
+      calendarResource("gulf.calendar", "# Comment\n\nweekend: FRIDAY, SATURDAY\n2019-04-21 # Holiday\n")});
+
+    assertThat(provider.isBusinessDay("gulf", epochDay("2019-04-19"))).isFalse();
+    assertThat(provider.isBusinessDay("gulf", epochDay("2019-04-20"))).isFalse();
+    assertThat(provider.isBusinessDay("gulf", epochDay("2019-04-21"))).isFalse();
+    assertThat(provider.isBusinessDay("gulf", epochDay("2019-04-22"))).isTrue();
+  }
+
+  /**
+   * Tests loading calendars which are invalid.
+   */
+  @Test
+  void loadInvalidCalendar() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new BusinessCalendarProviderImpl(new Resource[] {
+        calendarResource("test.calendar", "2019-04-19\n2019-13-01\n")}))
+      .withMessageContaining("line [2]");
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new BusinessCalendarProviderImpl(new Resource[] {
+        calendarResource("test.calendar", "weekend: SATURDAY, FUNDAY\n")}))
+      .withMessageContaining("line [1]");
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new BusinessCalendarProviderImpl(new Resource[] {calendarResource("a b.calendar", "")}))
+      .withMessageContaining("name");
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new BusinessCalendarProviderImpl(new Resource[] {
+        calendarResource("test.calendar", ""), calendarResource("test.calendar", "")}))
+      .withMessageContaining("Duplicate");
+  }
+
+  /**
+   * Tests querying an unsupported calendar.
+   */
+  @Test
+  void isBusinessDayWhenUnsupportedCalendar() {
+    final BusinessCalendarProviderImpl provider = new BusinessCalendarProviderImpl(new Resource[0]);
+
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> provider.isBusinessDay("foo", epochDay("2019-04-19")))
+      .withMessageContaining("foo");
+  }
+
+  private static Resource calendarResource(String filename, String content) {
+    return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8)) {
+      @Override
+      public String getFilename() {
+        return filename;
+      }
+    };
+  }
+
+  private static long epochDay(String date) {
+    return LocalDate.parse(date).toEpochDay();
+  }
+}
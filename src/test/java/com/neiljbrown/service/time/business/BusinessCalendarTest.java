@@ -0,0 +1,170 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Unit tests for {@link BusinessCalendar}.
+ */
+class BusinessCalendarTest {
+
+  private static final Set<DayOfWeek> WEEKEND = EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY);
+
+  private final BusinessCalendar calendar = BusinessCalendar.compile("test", WEEKEND,
+    Arrays.asList(LocalDate.parse("2019-04-19"), LocalDate.parse("2019-04-22")),
+    Arrays.asList(MonthDay.parse("--12-25"), MonthDay.parse("--02-29")));
+
+  /**
+   * Tests checking whether dates are business days, including weekends, holidays and annual holidays.
+   */
+  @Test
+  void isBusinessDay() {
+    assertThat(this.calendar.isBusinessDay(epochDay("2019-04-18"))).isTrue();
+    assertThat(this.calendar.isBusinessDay(epochDay("2019-04-19"))).isFalse();
+    assertThat(this.calendar.isBusinessDay(epochDay("2019-04-20"))).isFalse();
+    assertThat(this.calendar.isBusinessDay(epochDay("2019-04-22"))).isFalse();
+    assertThat(this.calendar.isBusinessDay(epochDay("2019-04-23"))).isTrue();
+    assertThat(this.calendar.isBusinessDay(epochDay("1900-12-25"))).isFalse();
+    assertThat(this.calendar.isBusinessDay(epochDay("2099-12-25"))).isFalse();
+    assertThat(this.calendar.isBusinessDay(epochDay("2024-02-29"))).isFalse();
+    assertThat(this.calendar.isBusinessDay(epochDay("2023-02-28"))).isTrue();
+    assertThat(this.calendar.isBusinessDay(epochDay("2023-03-01"))).isTrue();
+  }
+
+  /**
+   * Tests adding and subtracting business days across weekends and holidays, and from a date which isn't a business
+   * day.
+   */
+  @Test
+  void addBusinessDays() {
+    assertThat(this.calendar.addBusinessDays(epochDay("2019-04-18"), 0)).isEqualTo(epochDay("2019-04-18"));
+    assertThat(this.calendar.addBusinessDays(epochDay("2019-04-18"), 1)).isEqualTo(epochDay("2019-04-23"));
+    assertThat(this.calendar.addBusinessDays(epochDay("2019-04-20"), 1)).isEqualTo(epochDay("2019-04-23"));
+    assertThat(this.calendar.addBusinessDays(epochDay("2019-04-23"), -1)).isEqualTo(epochDay("2019-04-18"));
+    assertThat(this.calendar.addBusinessDays(epochDay("2019-04-20"), -1)).isEqualTo(epochDay("2019-04-18"));
+    assertThat(this.calendar.addBusinessDays(epochDay("2019-12-24"), 1)).isEqualTo(epochDay("2019-12-26"));
+  }
+
+  /**
+   * Tests that business-day computations give the same results as a day-by-day loop over dates, for random dates
+   * across the whole indexed range, including across year boundaries.
+   */
+  @Test
+  void computationsMatchDayByDayLoop() {
+    final Random random = new Random(42);
+    final int range = (int) (BusinessCalendar.END_EPOCH_DAY - BusinessCalendar.FIRST_EPOCH_DAY);
+    for (int i = 0; i < 2_000; i++) {
+      final long from = BusinessCalendar.FIRST_EPOCH_DAY + random.nextInt(range);
+      final long to = Math.min(from + random.nextInt(1000), BusinessCalendar.END_EPOCH_DAY - 1);
+      long expectedCount = 0;
+      long expectedLastBusinessDay = from;
+      for (long day = from; day < to; day++) {
+        if (isBusinessDay(day)) {
+          expectedCount++;
+          expectedLastBusinessDay = day;
+        }
+      }
+      assertThat(this.calendar.isBusinessDay(from)).isEqualTo(isBusinessDay(from));
+      assertThat(this.calendar.countBusinessDays(from, to)).isEqualTo(expectedCount);
+      assertThat(this.calendar.countBusinessDays(to, from)).isEqualTo(-expectedCount);
+      // Adding the no. of business days after the start date lands on the last business day in the range
+      final long businessDaysAfterFrom = expectedCount - (isBusinessDay(from) ? 1 : 0);
+      if (businessDaysAfterFrom > 0) {
+        assertThat(this.calendar.addBusinessDays(from, businessDaysAfterFrom)).isEqualTo(expectedLastBusinessDay);
+        assertThat(this.calendar.addBusinessDays(expectedLastBusinessDay, 1 - businessDaysAfterFrom))
+          .isEqualTo(this.calendar.addBusinessDays(from, 1));
+      }
+    }
+  }
+
+  /**
+   * Tests counting the business days up to the (exclusive) end of the indexed range.
+   */
+  @Test
+  void countBusinessDaysToEndOfIndexedRange() {
+    final long lastDay = BusinessCalendar.END_EPOCH_DAY - 1;
+    final long from = epochDay("2099-12-01");
+
+    assertThat(this.calendar.countBusinessDays(from, BusinessCalendar.END_EPOCH_DAY))
+      .isEqualTo(this.calendar.countBusinessDays(from, lastDay) + (isBusinessDay(lastDay) ? 1 : 0));
+    assertThat(this.calendar.countBusinessDays(BusinessCalendar.END_EPOCH_DAY, from))
+      .isEqualTo(-this.calendar.countBusinessDays(from, BusinessCalendar.END_EPOCH_DAY));
+  }
+
+  /**
+   * Tests using dates outside of the indexed range, or adding business days which results in such a date.
+   */
+  @Test
+  void computationsWhenOutsideIndexedRange() {
+    final long lastDay = BusinessCalendar.END_EPOCH_DAY - 1;
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> this.calendar.isBusinessDay(BusinessCalendar.FIRST_EPOCH_DAY - 1))
+      .withMessageContaining("epochDay");
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> this.calendar.countBusinessDays(BusinessCalendar.FIRST_EPOCH_DAY, lastDay + 2))
+      .withMessageContaining("toEpochDay");
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> this.calendar.countBusinessDays(BusinessCalendar.FIRST_EPOCH_DAY - 1, lastDay))
+      .withMessageContaining("fromEpochDay");
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> this.calendar.addBusinessDays(lastDay, 1))
+      .withMessageContaining("outside of the range");
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> this.calendar.addBusinessDays(BusinessCalendar.FIRST_EPOCH_DAY, -1))
+      .withMessageContaining("outside of the range");
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> this.calendar.addBusinessDays(BusinessCalendar.FIRST_EPOCH_DAY, Long.MAX_VALUE))
+      .withMessageContaining("outside of the range");
+  }
+
+  /**
+   * Tests a calendar with no business days.
+   */
+  @Test
+  void addBusinessDaysWhenNoBusinessDays() {
+    final BusinessCalendar closed = BusinessCalendar.compile("closed", EnumSet.allOf(DayOfWeek.class),
+      Collections.emptyList(), Collections.emptyList());
+
+    assertThat(closed.countBusinessDays(BusinessCalendar.FIRST_EPOCH_DAY, BusinessCalendar.END_EPOCH_DAY)).isZero();
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> closed.addBusinessDays(epochDay("2019-04-18"), 1));
+  }
+
+  private static boolean isBusinessDay(long epochDay) {
+    final LocalDate date = LocalDate.ofEpochDay(epochDay);
+    final MonthDay monthDay = MonthDay.from(date);
+    return !WEEKEND.contains(date.getDayOfWeek()) && !date.equals(LocalDate.parse("2019-04-19"))
+      && !date.equals(LocalDate.parse("2019-04-22")) && !monthDay.equals(MonthDay.parse("--12-25"))
+      && !monthDay.equals(MonthDay.parse("--02-29"));
+  }
+
+  private static long epochDay(String date) {
+    return LocalDate.parse(date).toEpochDay();
+  }
+}
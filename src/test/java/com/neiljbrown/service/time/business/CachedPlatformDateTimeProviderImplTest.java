@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Unit tests for {@link CachedPlatformDateTimeProviderImpl}.
+ */
+class CachedPlatformDateTimeProviderImplTest {
+
+  private static final ZoneId ZONE_ID_UTC = ZoneId.of("Z");
+
+  private CachedPlatformDateTimeProviderImpl dateTimeProvider;
+
+  @AfterEach
+  void tearDown() {
+    if (this.dateTimeProvider != null) {
+      this.dateTimeProvider.shutdown();
+    }
+  }
+
+  /**
+   * Tests creating an instance from a supplied Clock in the case where the Clock uses a time zone which is NOT UTC.
+   */
+  @Test
+  void createFromNonUtcClock() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new CachedPlatformDateTimeProviderImpl(
+        Clock.fixed(Instant.now(), ZoneId.of("Europe/Paris")), 1))
+      .withMessageContaining("UTC");
+  }
+
+  /**
+   * Tests creating an instance with a resolution which is not greater than zero.
+   */
+  @Test
+  void createWithInvalidResolution() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new CachedPlatformDateTimeProviderImpl(Clock.systemUTC(), 0))
+      .withMessageContaining("resolutionMillis");
+  }
+
+  /**
+   * Tests that the methods for retrieving the platform time return the time of the supplied Clock, as it was read on
+   * the last tick, without truncating it to the configured resolution.
+   */
+  @Test
+  void getDateTimeWhenUsingNonDefaultClock() {
+    final Instant fixedInstant = Instant.parse("2018-10-06T18:51:44.789Z");
+    this.dateTimeProvider = new CachedPlatformDateTimeProviderImpl(Clock.fixed(fixedInstant, ZONE_ID_UTC), 1000);
+
+    assertThat(this.dateTimeProvider.getDateTime()).isEqualTo(fixedInstant);
+    assertThat(this.dateTimeProvider.getEpochMilli()).isEqualTo(fixedInstant.toEpochMilli());
+    assertThat(this.dateTimeProvider.getEpochSecond()).isEqualTo(fixedInstant.getEpochSecond());
+  }
+
+  /**
+   * Tests that the platform time lags the clock by no more than the resolution (plus a tolerance for delays in
+   * scheduling the ticker thread), as ticks are aligned to the start of each period of the resolution.
+   *
+   * @throws Exception if an unexpected error occurs.
+   */
+  @Test
+  void getDateTimeLagsClockByAtMostResolution() throws Exception {
+    final long resolutionMillis = 100;
+    this.dateTimeProvider = new CachedPlatformDateTimeProviderImpl(resolutionMillis);
+
+    long maxLagMillis = 0;
+    for (int i = 0; i < 100; i++) {
+      final long lagMillis = System.currentTimeMillis() - this.dateTimeProvider.getEpochMilli();
+      maxLagMillis = Math.max(maxLagMillis, lagMillis);
+      Thread.sleep(7);
+    }
+    assertThat(maxLagMillis).isLessThanOrEqualTo(resolutionMillis + 20);
+  }
+
+  /**
+   * Tests that the platform time is updated in the background when using the node's system clock.
+   *
+   * @throws Exception if an unexpected error occurs.
+   */
+  @Test
+  void getDateTimeWhenUsingDefaultClock() throws Exception {
+    this.dateTimeProvider = new CachedPlatformDateTimeProviderImpl(1);
+    final Instant dateTime = this.dateTimeProvider.getDateTime();
+
+    assertThat(dateTime).isNotNull();
+    Thread.sleep(50);
+    final Instant newDateTime = this.dateTimeProvider.getDateTime();
+    assertThat(newDateTime).isAfter(dateTime);
+    assertThat(newDateTime).isBeforeOrEqualTo(Instant.now());
+  }
+}
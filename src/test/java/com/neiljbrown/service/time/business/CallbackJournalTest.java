@@ -0,0 +1,153 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link CallbackJournal}.
+ */
+class CallbackJournalTest {
+
+  private static final ScheduledCallback CALLBACK_1 =
+    new ScheduledCallback(1, 1_538_818_200_000L, URI.create("http://localhost:9000/hook?a=1"));
+  private static final ScheduledCallback CALLBACK_2 =
+    new ScheduledCallback(2, 1_538_818_201_000L, URI.create("https://example.com/hook"));
+
+  private Path directory;
+  private Path journalPath;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("callback-journal-test");
+    this.journalPath = this.directory.resolve("journal/callbacks.journal");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(this.directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  /**
+   * Tests replaying a journal which doesn't exist yet.
+   *
+   * @throws IOException if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void replayWhenJournalDoesNotExist() throws IOException {
+    try (CallbackJournal journal = new CallbackJournal(this.journalPath)) {
+      assertThat(journal.replay()).isEmpty();
+    }
+  }
+
+  /**
+   * Tests that replaying a journal yields the callbacks which were scheduled, and aren't done.
+   *
+   * @throws IOException if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void replayYieldsPendingCallbacks() throws IOException {
+    try (CallbackJournal journal = new CallbackJournal(this.journalPath)) {
+      journal.rewrite(Collections.emptyList());
+      journal.appendScheduled(CALLBACK_1);
+      journal.appendScheduled(CALLBACK_2);
+      journal.appendDone(1);
+      assertThat(journal.getDoneRecordCount()).isEqualTo(1);
+    }
+    try (CallbackJournal journal = new CallbackJournal(this.journalPath)) {
+      assertThat(journal.replay()).containsOnlyKeys(2L).containsValue(CALLBACK_2);
+    }
+  }
+
+  /**
+   * Tests that a torn (partially written) record is ignored on replay.
+   *
+   * @throws IOException if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void replayIgnoresTornRecord() throws IOException {
+    try (CallbackJournal journal = new CallbackJournal(this.journalPath)) {
+      journal.rewrite(Collections.singletonList(CALLBACK_1));
+    }
+    Files.write(this.journalPath, "S 2 15388".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+
+    try (CallbackJournal journal = new CallbackJournal(this.journalPath)) {
+      assertThat(journal.replay()).containsOnlyKeys(1L);
+    }
+  }
+
+  /**
+   * Tests that rewriting the journal compacts it to just the pending callbacks.
+   *
+   * @throws IOException if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void rewriteCompactsJournal() throws IOException {
+    try (CallbackJournal journal = new CallbackJournal(this.journalPath)) {
+      journal.rewrite(Arrays.asList(CALLBACK_1, CALLBACK_2));
+      journal.appendDone(1);
+      journal.rewrite(journal.replay().values());
+      assertThat(journal.getDoneRecordCount()).isZero();
+    }
+    assertThat(Files.readAllLines(this.journalPath, StandardCharsets.US_ASCII))
+      .containsExactly("S 2 1538818201000 https://example.com/hook");
+  }
+
+  /**
+   * Tests that compacting the journal to a snapshot of the pending callbacks retains the records appended after the
+   * snapshot was marked, whilst it was being compacted.
+   *
+   * @throws IOException if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void compactRetainsRecordsAppendedSinceSnapshot() throws IOException {
+    final ScheduledCallback callback3 =
+      new ScheduledCallback(3, 1_538_818_202_000L, URI.create("https://example.com/hook3"));
+    try (CallbackJournal journal = new CallbackJournal(this.journalPath)) {
+      journal.rewrite(Collections.emptyList());
+      journal.appendScheduled(CALLBACK_1);
+      journal.appendScheduled(CALLBACK_2);
+      journal.appendDone(1);
+      final long snapshotLength = journal.markSnapshot();
+      journal.appendScheduled(callback3);
+      journal.appendDone(2);
+
+      journal.compact(Collections.singletonList(CALLBACK_2), snapshotLength);
+      assertThat(journal.getDoneRecordCount()).isEqualTo(1);
+      journal.appendDone(3);
+    }
+    assertThat(Files.readAllLines(this.journalPath, StandardCharsets.US_ASCII)).containsExactly(
+      "S 2 1538818201000 https://example.com/hook", "S 3 1538818202000 https://example.com/hook3", "D 2", "D 3");
+  }
+}
@@ -0,0 +1,363 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Unit tests for {@link CallbackSchedulerImpl}, which make callbacks to a local webhook stub, using the node's system
+ * clock as the source of the platform time.
+ * <p>
+ * Hosts are resolved using a stub {@link CallbackSchedulerImpl.HostResolver}, which resolves the webhook stub's
+ * loopback address to a public address, so that callbacks can be made to it.
+ */
+class CallbackSchedulerImplTest {
+
+  private final PlatformDateTimeProvider platformDateTimeProvider = new PlatformDateTimeProviderImpl();
+  private final TimeOrderedIdGenerator timeOrderedIdGenerator =
+    new TimeOrderedIdGeneratorImpl(this.platformDateTimeProvider, 0);
+
+  private Path directory;
+  private HttpServer webhookStub;
+  private URI webhookUrl;
+  private final BlockingQueue<String> webhookRequests = new LinkedBlockingQueue<>();
+  private final Map<String, InetAddress[]> addressesByHost = new ConcurrentHashMap<>();
+  private CallbackSchedulerImpl callbackScheduler;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("callback-scheduler-test");
+    this.webhookStub = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.webhookStub.createContext("/hook", exchange -> {
+      try (InputStream in = exchange.getRequestBody()) {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[512];
+        for (int read; (read = in.read(buffer)) >= 0; ) {
+          body.write(buffer, 0, read);
+        }
+        this.webhookRequests.add(exchange.getRequestMethod() + " "
+          + exchange.getRequestHeaders().getFirst(WebhookCallbackDispatcher.CALLBACK_ID_HEADER) + " "
+          + new String(body.toByteArray(), StandardCharsets.US_ASCII));
+      }
+      exchange.sendResponseHeaders(204, -1);
+      exchange.close();
+    });
+    this.webhookStub.start();
+    this.webhookUrl = URI.create("http://" + this.webhookStub.getAddress().getHostString() + ":"
+      + this.webhookStub.getAddress().getPort() + "/hook");
+    this.addressesByHost.put(this.webhookUrl.getHost(), addresses(this.webhookUrl.getHost(), "203.0.113.10"));
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    if (this.callbackScheduler != null) {
+      this.callbackScheduler.shutdown();
+    }
+    this.webhookStub.stop(0);
+    try (Stream<Path> paths = Files.walk(this.directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  /**
+   * Tests that a scheduled callback is made to its webhook, no earlier than its scheduled time, and is then no longer
+   * pending.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void scheduleMakesCallbackAtTime() throws Exception {
+    this.callbackScheduler = createCallbackScheduler(this.webhookUrl.getHost());
+    final long fireEpochMilli = this.platformDateTimeProvider.getEpochMilli() + 200;
+    final ScheduledCallback callback = this.callbackScheduler.schedule(fireEpochMilli, this.webhookUrl);
+    assertThat(this.callbackScheduler.getPendingCallback(callback.getId())).isEqualTo(callback);
+    assertThat(this.callbackScheduler.getPendingCount()).isEqualTo(1);
+
+    final String request = this.webhookRequests.poll(5, TimeUnit.SECONDS);
+    assertThat(this.platformDateTimeProvider.getEpochMilli()).isGreaterThanOrEqualTo(fireEpochMilli);
+    assertThat(request).startsWith("POST " + callback.getId() + " {\"id\":" + callback.getId() + ",");
+    assertThat(this.callbackScheduler.getPendingCallback(callback.getId())).isNull();
+    assertThat(this.callbackScheduler.getPendingCount()).isZero();
+  }
+
+  /**
+   * Tests that a cancelled callback isn't made.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void cancelledCallbackIsNotMade() throws Exception {
+    this.callbackScheduler = createCallbackScheduler(this.webhookUrl.getHost());
+    final long fireEpochMilli = this.platformDateTimeProvider.getEpochMilli() + 200;
+    final ScheduledCallback cancelled = this.callbackScheduler.schedule(fireEpochMilli, this.webhookUrl);
+    final ScheduledCallback made = this.callbackScheduler.schedule(fireEpochMilli + 100, this.webhookUrl);
+
+    assertThat(this.callbackScheduler.cancel(cancelled.getId())).isTrue();
+    assertThat(this.callbackScheduler.cancel(cancelled.getId())).isFalse();
+
+    assertThat(this.webhookRequests.poll(5, TimeUnit.SECONDS)).startsWith("POST " + made.getId() + " ");
+    assertThat(this.webhookRequests.poll(200, TimeUnit.MILLISECONDS)).isNull();
+  }
+
+  /**
+   * Tests that pending callbacks survive a restart, by being recovered from the journal, and that callbacks which
+   * were done before the restart aren't recovered.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void pendingCallbacksSurviveRestart() throws Exception {
+    this.callbackScheduler = createCallbackScheduler(this.webhookUrl.getHost());
+    final long now = this.platformDateTimeProvider.getEpochMilli();
+    final ScheduledCallback pending = this.callbackScheduler.schedule(now + TimeUnit.HOURS.toMillis(1),
+      this.webhookUrl);
+    final ScheduledCallback cancelled = this.callbackScheduler.schedule(now + TimeUnit.HOURS.toMillis(1),
+      this.webhookUrl);
+    this.callbackScheduler.cancel(cancelled.getId());
+    this.callbackScheduler.shutdown();
+
+    this.callbackScheduler = createCallbackScheduler(this.webhookUrl.getHost());
+    assertThat(this.callbackScheduler.getPendingCount()).isEqualTo(1);
+    assertThat(this.callbackScheduler.getPendingCallback(pending.getId())).isEqualTo(pending);
+  }
+
+  /**
+   * Tests that a callback which has expired, but is yet to be journaled as done, e.g. as its dispatch is blocked, isn't
+   * compacted out of the journal, so that it's still made if the service stops before it's done.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void inFlightCallbackSurvivesCompaction() throws Exception {
+    final CountDownLatch dispatching = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    this.callbackScheduler = createCallbackScheduler((callback, firedEpochMilli) -> {
+      dispatching.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, this.webhookUrl.getHost());
+    try {
+      final ScheduledCallback callback =
+        this.callbackScheduler.schedule(this.platformDateTimeProvider.getEpochMilli() + 50, this.webhookUrl);
+      assertThat(dispatching.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(this.callbackScheduler.getPendingCount()).isZero();
+
+      this.callbackScheduler.compactJournalNow();
+
+      // Replays the journal as it would be on restart, were the service to stop now
+      final Map<Long, ScheduledCallback> recovered =
+        new CallbackJournal(this.directory.resolve("callbacks.journal")).replay();
+      assertThat(recovered).containsOnlyKeys(callback.getId());
+      assertThat(recovered.get(callback.getId())).isEqualTo(callback);
+    } finally {
+      release.countDown();
+    }
+  }
+
+  /**
+   * Tests that callbacks can only be scheduled for permitted URLs, and within the max delay.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void scheduleInvalidCallback() throws Exception {
+    this.callbackScheduler = createCallbackScheduler(this.webhookUrl.getHost());
+    final long now = this.platformDateTimeProvider.getEpochMilli();
+
+    assertThat(this.callbackScheduler.isPermittedUrl(this.webhookUrl)).isTrue();
+    assertThat(this.callbackScheduler.isPermittedUrl(URI.create("http://example.com/hook"))).isFalse();
+    assertThat(this.callbackScheduler.isPermittedUrl(URI.create("file:///etc/passwd"))).isFalse();
+    assertThat(this.callbackScheduler.isPermittedUrl(URI.create("/hook"))).isFalse();
+    assertThatExceptionOfType(CallbackUrlNotPermittedException.class)
+      .isThrownBy(() -> this.callbackScheduler.schedule(now, URI.create("http://example.com/hook")));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> this.callbackScheduler.schedule(now + TimeUnit.DAYS.toMillis(2), this.webhookUrl))
+      .withMessageContaining("fireEpochMilli");
+  }
+
+  /**
+   * Tests that callbacks can't be made to a host which isn't allowed, even if it resolves to a public address.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void isPermittedUrlRejectsHostNotAllowed() throws Exception {
+    this.addressesByHost.put("public.test", addresses("public.test", "203.0.113.11"));
+    this.callbackScheduler = createCallbackScheduler(this.webhookUrl.getHost());
+
+    assertThat(this.callbackScheduler.isPermittedUrl(URI.create("http://public.test/hook"))).isFalse();
+  }
+
+  /**
+   * Tests that an empty list of allowed hosts is rejected, rather than allowing callbacks to any host.
+   */
+  @Test
+  void createWithNoAllowedHostsIsRejected() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(this::createCallbackScheduler)
+      .withMessageContaining("allowedHosts");
+  }
+
+  /**
+   * Tests that callbacks can't be made to an allowed host which resolves to a loopback address.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void isPermittedUrlRejectsLoopbackAddress() throws Exception {
+    assertNotPermitted("loopback.test", "127.0.0.1");
+    assertNotPermitted("loopback6.test", "::1");
+  }
+
+  /**
+   * Tests that callbacks can't be made to an allowed host which resolves to a link-local address, e.g. that of a
+   * cloud provider's instance metadata service.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void isPermittedUrlRejectsLinkLocalAddress() throws Exception {
+    assertNotPermitted("link-local.test", "169.254.169.254");
+    assertNotPermitted("link-local6.test", "fe80::1");
+  }
+
+  /**
+   * Tests that callbacks can't be made to an allowed host which resolves to a site-local (private) address.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void isPermittedUrlRejectsSiteLocalAddress() throws Exception {
+    assertNotPermitted("site-local-10.test", "10.1.2.3");
+    assertNotPermitted("site-local-172.test", "172.16.0.1");
+    assertNotPermitted("site-local-192.test", "192.168.1.1");
+    assertNotPermitted("unique-local6.test", "fd00::1");
+  }
+
+  /**
+   * Tests that callbacks can't be made to an allowed host which resolves to the wildcard (any-local) address.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void isPermittedUrlRejectsAnyLocalAddress() throws Exception {
+    assertNotPermitted("any-local.test", "0.0.0.0");
+    assertNotPermitted("any-local6.test", "::");
+  }
+
+  /**
+   * Tests that callbacks can't be made to an allowed host which resolves to a public address, and also a private one,
+   * or which doesn't resolve.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void isPermittedUrlRejectsHostWithAnyPrivateAddressOrUnresolved() throws Exception {
+    assertNotPermitted("mixed.test", "203.0.113.12", "10.0.0.1");
+    assertNotPermitted("unresolved.test");
+  }
+
+  /**
+   * Tests that a callback isn't made if, by the time it's due, its host has been changed to resolve to a private
+   * address (DNS rebinding).
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void callbackNotMadeWhenHostRebindsToPrivateAddress() throws Exception {
+    this.callbackScheduler = createCallbackScheduler(this.webhookUrl.getHost());
+    final ScheduledCallback callback =
+      this.callbackScheduler.schedule(this.platformDateTimeProvider.getEpochMilli() + 200, this.webhookUrl);
+    this.addressesByHost.put(this.webhookUrl.getHost(), addresses(this.webhookUrl.getHost(), "127.0.0.1"));
+
+    assertThat(this.webhookRequests.poll(1, TimeUnit.SECONDS)).isNull();
+    assertThat(this.callbackScheduler.getPendingCallback(callback.getId())).isNull();
+  }
+
+  private void assertNotPermitted(String host, String... addresses) throws Exception {
+    if (addresses.length > 0) {
+      this.addressesByHost.put(host, addresses(host, addresses));
+    }
+    if (this.callbackScheduler == null) {
+      this.callbackScheduler = createCallbackScheduler(this.webhookUrl.getHost(), "loopback.test", "loopback6.test",
+        "link-local.test", "link-local6.test", "site-local-10.test", "site-local-172.test", "site-local-192.test",
+        "unique-local6.test", "any-local.test", "any-local6.test", "mixed.test", "unresolved.test");
+    }
+    final URI url = URI.create("http://" + host + "/hook");
+    assertThat(this.callbackScheduler.isPermittedUrl(url)).isFalse();
+    assertThatExceptionOfType(CallbackUrlNotPermittedException.class)
+      .isThrownBy(() -> this.callbackScheduler.schedule(this.platformDateTimeProvider.getEpochMilli(), url))
+      .withMessageContaining("url");
+  }
+
+  private CallbackSchedulerImpl createCallbackScheduler(String... allowedHosts) throws IOException {
+    return createCallbackScheduler(new WebhookCallbackDispatcher(1000, 1000), allowedHosts);
+  }
+
+  private CallbackSchedulerImpl createCallbackScheduler(CallbackDispatcher callbackDispatcher, String... allowedHosts)
+    throws IOException {
+    return new CallbackSchedulerImpl(this.platformDateTimeProvider, this.timeOrderedIdGenerator,
+      callbackDispatcher, this.directory.resolve("callbacks.journal"), 10, 1000,
+      TimeUnit.DAYS.toMillis(1), new HashSet<>(Arrays.asList(allowedHosts)), this::resolve, 2, 10, 100);
+  }
+
+  private InetAddress[] resolve(String host) throws UnknownHostException {
+    final InetAddress[] addresses = this.addressesByHost.get(host);
+    if (addresses == null) {
+      throw new UnknownHostException(host);
+    }
+    return addresses;
+  }
+
+  private static InetAddress[] addresses(String host, String... literals) throws UnknownHostException {
+    final InetAddress[] addresses = new InetAddress[literals.length];
+    for (int i = 0; i < literals.length; i++) {
+      addresses[i] = InetAddress.getByAddress(host, InetAddress.getByName(literals[i]).getAddress());
+    }
+    return addresses;
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link ConsensusPlatformDateTimeProviderImpl}, which sample the clocks of several peer node stubs,
+ * each listening on a loopback port, and each serving a fixed time at a known offset from the local clock.
+ */
+class ConsensusPlatformDateTimeProviderImplTest {
+
+  private static final Instant LOCAL_TIME = Instant.parse("2018-10-06T18:51:44.500Z");
+  private static final long SAMPLE_INTERVAL_MILLIS = 60_000;
+
+  private final Clock localClock = Clock.fixed(LOCAL_TIME, ZoneOffset.UTC);
+  private final List<HttpServer> peerStubs = new ArrayList<>();
+  private ConsensusPlatformDateTimeProviderImpl provider;
+
+  @AfterEach
+  void tearDown() {
+    if (this.provider != null) {
+      this.provider.shutdown();
+    }
+    this.peerStubs.forEach(peerStub -> peerStub.stop(0));
+  }
+
+  /**
+   * Tests that a node without peers serves the time of its local clock, and is always in consensus with itself.
+   */
+  @Test
+  void sampleWithoutPeers() {
+    this.provider = newProvider(Collections.emptyList());
+    this.provider.sample();
+
+    assertThat(this.provider.getDateTime()).isEqualTo(LOCAL_TIME);
+    final ClockConsensus clockConsensus = this.provider.getClockConsensus();
+    assertThat(clockConsensus.isQuorate()).isTrue();
+    assertThat(clockConsensus.getOffsetNanos()).isZero();
+    assertThat(clockConsensus.getAgreeingSources()).isEqualTo(1);
+    assertThat(clockConsensus.getConfiguredSources()).isEqualTo(1);
+  }
+
+  /**
+   * Tests that the platform time is the time agreed by a majority of the cluster's clocks, excluding the local clock
+   * and a peer's clock which don't agree with the majority.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void sampleMajorityAgreeing() throws Exception {
+    this.provider = newProvider(Arrays.asList(startPeerStub(100), startPeerStub(100), startPeerStub(100),
+      startPeerStub(5000)));
+    this.provider.sample();
+
+    final ClockConsensus clockConsensus = this.provider.getClockConsensus();
+    assertThat(clockConsensus.isQuorate()).isTrue();
+    assertThat(clockConsensus.getAgreeingSources()).isEqualTo(3);
+    assertThat(clockConsensus.getRespondingSources()).isEqualTo(5);
+    assertThat(clockConsensus.getConfiguredSources()).isEqualTo(5);
+    // The offset's error is bounded by half the round-trip to the peers, plus the resolution of the clocks
+    assertThat(clockConsensus.getOffsetNanos()).isBetween(90_000_000L, 110_000_000L);
+    assertThat(clockConsensus.getErrorNanos()).isBetween(0L, 10_000_000L);
+    assertThat(100_000_000L).isBetween(clockConsensus.getOffsetNanos() - clockConsensus.getErrorNanos(),
+      clockConsensus.getOffsetNanos() + clockConsensus.getErrorNanos());
+    assertThat(this.provider.getEpochMilli() - LOCAL_TIME.toEpochMilli()).isBetween(90L, 110L);
+    // Peers sample the local clock, not the platform time
+    assertThat(this.provider.getLocalEpochMilli()).isEqualTo(LOCAL_TIME.toEpochMilli());
+  }
+
+  /**
+   * Tests that if a majority of the cluster's clocks can't be sampled, e.g. because the peers are down, the node loses
+   * consensus, and continues to serve the last agreed time.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void sampleWithoutQuorum() throws Exception {
+    final HttpServer peerStub = createPeerStub(-200);
+    peerStub.start();
+    final URI peerStubUrl = clockUrl(peerStub);
+    this.provider = newProvider(Arrays.asList(peerStubUrl, unusedPortUrl()));
+    this.provider.sample();
+
+    // Only two of the three clocks respond - the local clock and a peer - and they disagree, so there's no majority
+    ClockConsensus clockConsensus = this.provider.getClockConsensus();
+    assertThat(clockConsensus.isQuorate()).isFalse();
+    assertThat(clockConsensus.getAgreeingSources()).isEqualTo(1);
+    assertThat(clockConsensus.getRespondingSources()).isEqualTo(2);
+    assertThat(clockConsensus.getOffsetNanos()).isZero();
+    assertThat(this.provider.getDateTime()).isEqualTo(LOCAL_TIME);
+
+    peerStub.stop(0);
+    this.provider.sample();
+
+    clockConsensus = this.provider.getClockConsensus();
+    assertThat(clockConsensus.isQuorate()).isFalse();
+    assertThat(clockConsensus.getRespondingSources()).isEqualTo(1);
+    assertThat(this.provider.getDateTime()).isEqualTo(LOCAL_TIME);
+  }
+
+  private ConsensusPlatformDateTimeProviderImpl newProvider(List<URI> peerClockUrls) {
+    return new ConsensusPlatformDateTimeProviderImpl(this.localClock, peerClockUrls, SAMPLE_INTERVAL_MILLIS,
+      new PeerClockSampler(this.localClock, System::nanoTime, 1000, 1000, 3), 2, 10_000);
+  }
+
+  private URI startPeerStub(long offsetMillis) throws IOException {
+    final HttpServer peerStub = createPeerStub(offsetMillis);
+    peerStub.start();
+    return clockUrl(peerStub);
+  }
+
+  private HttpServer createPeerStub(long offsetMillis) throws IOException {
+    final HttpServer peerStub = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    final byte[] body = Long.toString(LOCAL_TIME.toEpochMilli() + offsetMillis).getBytes(StandardCharsets.US_ASCII);
+    peerStub.createContext("/v1/cluster/clock", exchange -> {
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    this.peerStubs.add(peerStub);
+    return peerStub;
+  }
+
+  private static URI clockUrl(HttpServer peerStub) {
+    return URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+      + peerStub.getAddress().getPort() + "/v1/cluster/clock");
+  }
+
+  private static URI unusedPortUrl() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      return URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + socket.getLocalPort()
+        + "/v1/cluster/clock");
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link MarzulloIntersection}.
+ */
+class MarzulloIntersectionTest {
+
+  /**
+   * Tests intersecting the intervals of the example in the description of Marzullo's algorithm - [8,12], [11,13] and
+   * [10,12] - which all agree on [11,12].
+   */
+  @Test
+  void intersectAllAgreeing() {
+    final MarzulloIntersection intersection =
+      MarzulloIntersection.of(new long[] {8, 11, 10}, new long[] {12, 13, 12}, 3);
+
+    assertThat(intersection.getLow()).isEqualTo(11);
+    assertThat(intersection.getHigh()).isEqualTo(12);
+    assertThat(intersection.getSources()).isEqualTo(3);
+    assertThat(intersection.getMidpoint()).isEqualTo(11);
+  }
+
+  /**
+   * Tests that an interval which doesn't agree with the majority, however far it is from them, is excluded from the
+   * intersection.
+   */
+  @Test
+  void intersectExcludingFalseTicker() {
+    final MarzulloIntersection intersection = MarzulloIntersection.of(
+      new long[] {8, 11, 14, 10}, new long[] {12, 13, 15, 12}, 4);
+
+    assertThat(intersection.getLow()).isEqualTo(11);
+    assertThat(intersection.getHigh()).isEqualTo(12);
+    assertThat(intersection.getSources()).isEqualTo(3);
+
+    final MarzulloIntersection farIntersection = MarzulloIntersection.of(
+      new long[] {-1000, -1, 0, Long.MAX_VALUE - 10}, new long[] {-900, 1, 2, Long.MAX_VALUE}, 4);
+
+    assertThat(farIntersection.getLow()).isEqualTo(0);
+    assertThat(farIntersection.getHigh()).isEqualTo(1);
+    assertThat(farIntersection.getSources()).isEqualTo(2);
+  }
+
+  /**
+   * Tests that intervals which only touch at their ends are considered to overlap, in a single point.
+   */
+  @Test
+  void intersectTouching() {
+    final MarzulloIntersection intersection = MarzulloIntersection.of(new long[] {0, 5}, new long[] {5, 10}, 2);
+
+    assertThat(intersection.getLow()).isEqualTo(5);
+    assertThat(intersection.getHigh()).isEqualTo(5);
+    assertThat(intersection.getSources()).isEqualTo(2);
+  }
+
+  /**
+   * Tests that if no intervals overlap, the intersection is the first (lowest) interval, agreed by a single source.
+   */
+  @Test
+  void intersectDisjoint() {
+    final MarzulloIntersection intersection = MarzulloIntersection.of(new long[] {20, 0}, new long[] {30, 10}, 2);
+
+    assertThat(intersection.getLow()).isEqualTo(0);
+    assertThat(intersection.getHigh()).isEqualTo(10);
+    assertThat(intersection.getSources()).isEqualTo(1);
+  }
+
+  /**
+   * Tests that only the first 'count' intervals are intersected.
+   */
+  @Test
+  void intersectCount() {
+    final MarzulloIntersection intersection = MarzulloIntersection.of(new long[] {0, 0, 0}, new long[] {1, 0, 0}, 1);
+
+    assertThat(intersection.getLow()).isEqualTo(0);
+    assertThat(intersection.getHigh()).isEqualTo(1);
+    assertThat(intersection.getSources()).isEqualTo(1);
+  }
+
+  /**
+   * Tests that invalid intervals, or counts, are rejected.
+   */
+  @Test
+  void intersectInvalid() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> MarzulloIntersection.of(new long[0], new long[0], 0));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> MarzulloIntersection.of(new long[] {2}, new long[] {1}, 1));
+  }
+}
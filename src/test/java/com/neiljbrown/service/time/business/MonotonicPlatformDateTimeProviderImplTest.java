@@ -0,0 +1,245 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Unit tests for {@link MonotonicPlatformDateTimeProviderImpl}.
+ * <p>
+ * Uses a system clock and a monotonic clock which are only advanced, stepped, or made to drift by the tests, and
+ * performs the checks of the platform time against the system clock directly, rather than on the background thread,
+ * which is scheduled with an interval longer than the tests.
+ */
+class MonotonicPlatformDateTimeProviderImplTest {
+
+  private static final long START_EPOCH_MILLI = Instant.parse("2018-10-06T09:30:00Z").toEpochMilli();
+  private static final long CHECK_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final long DRIFT_THRESHOLD_MILLIS = 2;
+  private static final long STEP_THRESHOLD_MILLIS = 50;
+  private static final long SLEW_RATE_PPM = 500;
+  private static final long MAX_HEALTHY_OFFSET_MILLIS = 100;
+
+  private TestClock clock;
+  private long nanoTime;
+  private MonotonicPlatformDateTimeProviderImpl dateTimeProvider;
+
+  @BeforeEach
+  void setUp() {
+    this.clock = new TestClock(START_EPOCH_MILLI);
+    this.nanoTime = 123_456_789L;
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (this.dateTimeProvider != null) {
+      this.dateTimeProvider.shutdown();
+    }
+  }
+
+  /**
+   * Tests creating an instance from a supplied Clock in the case where the Clock uses a time zone which is NOT UTC.
+   */
+  @Test
+  void createFromNonUtcClock() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new MonotonicPlatformDateTimeProviderImpl(Clock.system(ZoneId.of("Europe/Paris")),
+        System::nanoTime, CHECK_INTERVAL_MILLIS, DRIFT_THRESHOLD_MILLIS, STEP_THRESHOLD_MILLIS, SLEW_RATE_PPM,
+        MAX_HEALTHY_OFFSET_MILLIS))
+      .withMessageContaining("UTC");
+  }
+
+  /**
+   * Tests creating an instance with an invalid slew rate.
+   */
+  @Test
+  void createWithInvalidSlewRate() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new MonotonicPlatformDateTimeProviderImpl(1000, 2, 50, true, 1_000_000, 100))
+      .withMessageContaining("slewRatePpm");
+  }
+
+  /**
+   * Tests that the platform time follows the monotonic clock, and is unaffected by the system clock between checks.
+   */
+  @Test
+  void getEpochMilliFollowsMonotonicClock() {
+    this.dateTimeProvider = createDateTimeProvider(SLEW_RATE_PPM);
+    assertThat(this.dateTimeProvider.getEpochMilli()).isEqualTo(START_EPOCH_MILLI);
+
+    advance(1500, 1500);
+    this.clock.epochMilli -= 60_000;
+    assertThat(this.dateTimeProvider.getEpochMilli()).isEqualTo(START_EPOCH_MILLI + 1500);
+    assertThat(this.dateTimeProvider.getDateTime()).isEqualTo(Instant.ofEpochMilli(START_EPOCH_MILLI + 1500));
+    assertThat(this.dateTimeProvider.getEpochSecond()).isEqualTo((START_EPOCH_MILLI + 1500) / 1000);
+  }
+
+  /**
+   * Tests that when the system clock and monotonic clock agree, no step is detected, and no correction is made.
+   */
+  @Test
+  void checkWhenClocksAgree() {
+    this.dateTimeProvider = createDateTimeProvider(SLEW_RATE_PPM);
+    advance(1000, 1000);
+    this.dateTimeProvider.check();
+
+    final ClockHealth clockHealth = this.dateTimeProvider.getClockHealth();
+    assertThat(clockHealth.isHealthy()).isTrue();
+    assertThat(clockHealth.isSlewing()).isFalse();
+    assertThat(clockHealth.getOffsetNanos()).isZero();
+    assertThat(clockHealth.getForwardSteps()).isZero();
+    assertThat(clockHealth.getBackwardSteps()).isZero();
+    assertThat(clockHealth.getCheckedEpochMilli()).isEqualTo(START_EPOCH_MILLI + 1000);
+  }
+
+  /**
+   * Tests that a backward step of the system clock is detected, and when slewing is enabled, corrected gradually,
+   * without the platform time ever going backwards, and that the clock is reported unhealthy until the platform time
+   * is back within the max healthy offset.
+   */
+  @Test
+  void checkWhenSystemClockStepsBackwardsAndSlewing() {
+    this.dateTimeProvider = createDateTimeProvider(SLEW_RATE_PPM);
+    advance(1000, 1000);
+    this.clock.epochMilli -= 1000;
+    this.dateTimeProvider.check();
+
+    ClockHealth clockHealth = this.dateTimeProvider.getClockHealth();
+    assertThat(clockHealth.getBackwardSteps()).isEqualTo(1);
+    assertThat(clockHealth.getLastStepNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(-1000));
+    assertThat(clockHealth.getLastStepEpochMilli()).isEqualTo(START_EPOCH_MILLI + 1000);
+    assertThat(clockHealth.isSlewing()).isTrue();
+    assertThat(clockHealth.isHealthy()).isFalse();
+    assertThat(clockHealth.getOffsetNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(-1000));
+
+    // At 500 ppm, a correction of 1 second takes 2000 seconds to slew
+    long previousEpochMilli = this.dateTimeProvider.getEpochMilli();
+    for (int second = 0; second < 2000; second++) {
+      advance(1000, 1000);
+      final long epochMilli = this.dateTimeProvider.getEpochMilli();
+      assertThat(epochMilli).isGreaterThan(previousEpochMilli);
+      previousEpochMilli = epochMilli;
+      this.dateTimeProvider.check();
+    }
+
+    clockHealth = this.dateTimeProvider.getClockHealth();
+    assertThat(clockHealth.isSlewing()).isFalse();
+    assertThat(clockHealth.isHealthy()).isTrue();
+    assertThat(clockHealth.getOffsetNanos()).isZero();
+    assertThat(this.dateTimeProvider.getEpochMilli()).isEqualTo(this.clock.epochMilli);
+  }
+
+  /**
+   * Tests that a forward step of the system clock is detected, and when slewing is disabled, the platform time is
+   * stepped to the system clock.
+   */
+  @Test
+  void checkWhenSystemClockStepsForwardsAndNotSlewing() {
+    this.dateTimeProvider = createDateTimeProvider(0);
+    advance(1000, 1000);
+    this.clock.epochMilli += 5000;
+    this.dateTimeProvider.check();
+
+    final ClockHealth clockHealth = this.dateTimeProvider.getClockHealth();
+    assertThat(clockHealth.getForwardSteps()).isEqualTo(1);
+    assertThat(clockHealth.getLastStepNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(5000));
+    assertThat(clockHealth.isSlewing()).isFalse();
+    assertThat(clockHealth.isHealthy()).isTrue();
+    assertThat(clockHealth.getOffsetNanos()).isZero();
+    assertThat(this.dateTimeProvider.getEpochMilli()).isEqualTo(START_EPOCH_MILLI + 6000);
+  }
+
+  /**
+   * Tests that the drift of the system clock is measured, without being mistaken for steps, and that the platform
+   * time is only corrected once the offset exceeds the drift threshold.
+   */
+  @Test
+  void checkWhenSystemClockDrifts() {
+    this.dateTimeProvider = createDateTimeProvider(SLEW_RATE_PPM);
+    // The system clock runs fast by 100 ppm, i.e. 1 millisecond every 10 seconds
+    advance(10_000, 10_001);
+    this.dateTimeProvider.check();
+
+    ClockHealth clockHealth = this.dateTimeProvider.getClockHealth();
+    assertThat(clockHealth.getDriftPpm()).isCloseTo(100, within(0.001));
+    assertThat(clockHealth.isSlewing()).isFalse();
+    assertThat(clockHealth.getOffsetNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+
+    advance(20_000, 20_002);
+    this.dateTimeProvider.check();
+
+    clockHealth = this.dateTimeProvider.getClockHealth();
+    assertThat(clockHealth.getDriftPpm()).isCloseTo(100, within(0.001));
+    assertThat(clockHealth.getForwardSteps()).isZero();
+    assertThat(clockHealth.isSlewing()).isTrue();
+    assertThat(clockHealth.isHealthy()).isTrue();
+  }
+
+  private MonotonicPlatformDateTimeProviderImpl createDateTimeProvider(long slewRatePpm) {
+    return new MonotonicPlatformDateTimeProviderImpl(this.clock, () -> this.nanoTime, CHECK_INTERVAL_MILLIS,
+      DRIFT_THRESHOLD_MILLIS, STEP_THRESHOLD_MILLIS, slewRatePpm, MAX_HEALTHY_OFFSET_MILLIS);
+  }
+
+  private void advance(long monotonicMillis, long systemClockMillis) {
+    this.nanoTime += TimeUnit.MILLISECONDS.toNanos(monotonicMillis);
+    this.clock.epochMilli += systemClockMillis;
+  }
+
+  /**
+   * A UTC {@link Clock} whose time is only changed by the tests.
+   */
+  private static final class TestClock extends Clock {
+
+    private volatile long epochMilli;
+
+    TestClock(long epochMilli) {
+      this.epochMilli = epochMilli;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(this.epochMilli);
+    }
+
+    @Override
+    public long millis() {
+      return this.epochMilli;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Unit tests for {@link TenantClockProviderImpl}, and the {@link TenantClock clocks} it holds.
+ */
+class TenantClockProviderImplTest {
+
+  private static final long PLATFORM_EPOCH_MILLI = 1_538_818_200_000L;
+
+  /**
+   * Tests the time of each kind of clock, relative to the platform time.
+   */
+  @Test
+  void tenantClockGetEpochMilli() {
+    final TenantClock offset = TenantClock.offset(-3_600_000);
+    assertThat(offset.getEpochMilli(PLATFORM_EPOCH_MILLI)).isEqualTo(PLATFORM_EPOCH_MILLI - 3_600_000);
+    assertThat(offset.getEpochMilli(PLATFORM_EPOCH_MILLI + 1500)).isEqualTo(PLATFORM_EPOCH_MILLI - 3_600_000 + 1500);
+
+    final TenantClock frozen = TenantClock.frozen(42_000);
+    assertThat(frozen.getEpochMilli(PLATFORM_EPOCH_MILLI)).isEqualTo(42_000);
+    assertThat(frozen.getEpochMilli(PLATFORM_EPOCH_MILLI + 1500)).isEqualTo(42_000);
+    assertThat(frozen.getRate()).isZero();
+
+    final TenantClock scaled = TenantClock.scaled(PLATFORM_EPOCH_MILLI, 0, 60);
+    assertThat(scaled.getEpochMilli(PLATFORM_EPOCH_MILLI)).isZero();
+    assertThat(scaled.getEpochMilli(PLATFORM_EPOCH_MILLI + 1000)).isEqualTo(60_000);
+    assertThat(scaled.getRate()).isEqualTo(60);
+  }
+
+  /**
+   * Tests that a clock can't be created with an invalid rate.
+   */
+  @Test
+  void tenantClockInvalidRate() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> TenantClock.scaled(PLATFORM_EPOCH_MILLI, 0, -1));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> TenantClock.scaled(PLATFORM_EPOCH_MILLI, 0, Double.NaN));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> TenantClock.scaled(PLATFORM_EPOCH_MILLI, 0, Double.POSITIVE_INFINITY));
+  }
+
+  /**
+   * Tests setting, replacing, looking up and removing tenants' clocks.
+   */
+  @Test
+  void setAndRemoveTenantClock() {
+    final TenantClockProviderImpl provider = new TenantClockProviderImpl(10);
+    assertThat(provider.getTenantClock("qa-1")).isNull();
+
+    final TenantClock clock1 = TenantClock.offset(1000);
+    provider.setTenantClock("qa-1", clock1);
+    assertThat(provider.getTenantClock("qa-1")).isSameAs(clock1);
+
+    final TenantClock clock2 = TenantClock.frozen(0);
+    provider.setTenantClock("qa-1", clock2);
+    provider.setTenantClock("qa-2", clock1);
+    assertThat(provider.getTenantClock("qa-1")).isSameAs(clock2);
+    assertThat(provider.getTenantClocks()).containsOnlyKeys("qa-1", "qa-2");
+
+    assertThat(provider.removeTenantClock("qa-1")).isTrue();
+    assertThat(provider.removeTenantClock("qa-1")).isFalse();
+    assertThat(provider.getTenantClock("qa-1")).isNull();
+    assertThat(provider.getTenantClocks()).containsOnlyKeys("qa-2");
+  }
+
+  /**
+   * Tests that the max no. of tenants which can have a clock is enforced, whilst still allowing existing tenants'
+   * clocks to be replaced.
+   */
+  @Test
+  void setTenantClockMaxTenantsReached() {
+    final TenantClockProviderImpl provider = new TenantClockProviderImpl(1);
+    provider.setTenantClock("qa-1", TenantClock.offset(1000));
+    provider.setTenantClock("qa-1", TenantClock.offset(2000));
+
+    assertThatExceptionOfType(IllegalStateException.class)
+      .isThrownBy(() -> provider.setTenantClock("qa-2", TenantClock.offset(1000)));
+    assertThat(provider.getTenantClock("qa-2")).isNull();
+  }
+
+  /**
+   * Tests that the snapshot of all tenants' clocks is unaffected by later changes.
+   */
+  @Test
+  void getTenantClocksIsSnapshot() {
+    final TenantClockProviderImpl provider = new TenantClockProviderImpl(10);
+    provider.setTenantClock("qa-1", TenantClock.offset(1000));
+    final Map<String, TenantClock> snapshot = provider.getTenantClocks();
+    provider.setTenantClock("qa-2", TenantClock.offset(1000));
+
+    assertThat(snapshot).containsOnlyKeys("qa-1");
+    assertThatExceptionOfType(UnsupportedOperationException.class).isThrownBy(() -> snapshot.remove("qa-1"));
+  }
+}
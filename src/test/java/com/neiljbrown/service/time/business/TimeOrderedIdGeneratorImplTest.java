@@ -0,0 +1,150 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Unit tests for {@link TimeOrderedIdGeneratorImpl}.
+ */
+class TimeOrderedIdGeneratorImplTest {
+
+  private static final long EPOCH_MILLI = Instant.parse("2018-10-06T18:51:44.789Z").toEpochMilli();
+
+  /** Platform time in epoch millis, which can be changed by tests, e.g. to simulate the clock going backwards. */
+  private final AtomicLong platformEpochMilli = new AtomicLong(EPOCH_MILLI);
+
+  private final PlatformDateTimeProvider platformDateTimeProvider =
+    () -> Instant.ofEpochMilli(this.platformEpochMilli.get());
+
+  /**
+   * Tests creating an instance with a node ID which is out of range.
+   */
+  @Test
+  void createWithInvalidNodeId() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new TimeOrderedIdGeneratorImpl(this.platformDateTimeProvider, 1024))
+      .withMessageContaining("nodeId");
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new TimeOrderedIdGeneratorImpl(this.platformDateTimeProvider, -1))
+      .withMessageContaining("nodeId");
+  }
+
+  /**
+   * Tests that issued IDs embed the platform time and the node ID, and are strictly increasing, including when
+   * issued within the same millisecond.
+   */
+  @Test
+  void nextId() {
+    final long nodeId = 5;
+    final TimeOrderedIdGeneratorImpl idGenerator =
+      new TimeOrderedIdGeneratorImpl(this.platformDateTimeProvider, nodeId);
+
+    final long id1 = idGenerator.nextId();
+    final long id2 = idGenerator.nextId();
+    this.platformEpochMilli.incrementAndGet();
+    final long id3 = idGenerator.nextId();
+
+    assertThat(id1).isPositive();
+    assertThat(id2).isEqualTo(id1 + 1);
+    assertThat(id3).isGreaterThan(id2);
+    assertThat(idGenerator.getEpochMilli(id1)).isEqualTo(EPOCH_MILLI);
+    assertThat(idGenerator.getEpochMilli(id3)).isEqualTo(EPOCH_MILLI + 1);
+    assertThat((id1 >>> TimeOrderedIdGeneratorImpl.SEQUENCE_BITS) & TimeOrderedIdGeneratorImpl.MAX_NODE_ID)
+      .isEqualTo(nodeId);
+  }
+
+  /**
+   * Tests that IDs continue to increase, rather than being repeated, when the platform (wall) clock goes backwards.
+   */
+  @Test
+  void nextIdWhenClockGoesBackwards() {
+    final TimeOrderedIdGeneratorImpl idGenerator = new TimeOrderedIdGeneratorImpl(this.platformDateTimeProvider, 0);
+    final long id1 = idGenerator.nextId();
+
+    this.platformEpochMilli.addAndGet(-1000);
+    final long id2 = idGenerator.nextId();
+
+    assertThat(id2).isEqualTo(id1 + 1);
+    assertThat(idGenerator.getEpochMilli(id2)).isEqualTo(EPOCH_MILLI);
+  }
+
+  /**
+   * Tests reserving a block of IDs which exceeds the no. that can be issued in a millisecond, in which case the
+   * sequence overflows into the embedded timestamp.
+   */
+  @Test
+  void nextIdsWhenSequenceOverflows() {
+    final TimeOrderedIdGeneratorImpl idGenerator = new TimeOrderedIdGeneratorImpl(this.platformDateTimeProvider, 1);
+
+    final long[] ids = idGenerator.nextIds(5000);
+
+    assertThat(ids).hasSize(5000);
+    assertThat(LongStream.range(1, ids.length).allMatch(i -> ids[(int) i] > ids[(int) i - 1])).isTrue();
+    assertThat(idGenerator.getEpochMilli(ids[0])).isEqualTo(EPOCH_MILLI);
+    assertThat(idGenerator.getEpochMilli(ids[ids.length - 1])).isEqualTo(EPOCH_MILLI + 1);
+    assertThat(idGenerator.nextId()).isGreaterThan(ids[ids.length - 1]);
+  }
+
+  /**
+   * Tests reserving an invalid no. of IDs.
+   */
+  @Test
+  void nextIdsWhenInvalidCount() {
+    final TimeOrderedIdGeneratorImpl idGenerator = new TimeOrderedIdGeneratorImpl(this.platformDateTimeProvider, 0);
+
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> idGenerator.nextIds(0))
+      .withMessageContaining("count");
+  }
+
+  /**
+   * Tests that IDs issued concurrently by multiple threads are unique.
+   */
+  @Test
+  void nextIdsWhenConcurrent() {
+    final TimeOrderedIdGeneratorImpl idGenerator =
+      new TimeOrderedIdGeneratorImpl(new PlatformDateTimeProviderImpl(), 0);
+    final int threads = 4;
+    final int idsPerThread = 50_000;
+
+    final long[] ids = IntStream.range(0, threads)
+      .mapToObj(i -> CompletableFuture.supplyAsync(() -> {
+        final long[] threadIds = new long[idsPerThread];
+        for (int j = 0; j < idsPerThread; j += 10) {
+          // Mix of single IDs and blocks
+          threadIds[j] = idGenerator.nextId();
+          System.arraycopy(idGenerator.nextIds(9), 0, threadIds, j + 1, 9);
+        }
+        return threadIds;
+      }))
+      .map(CompletableFuture::join)
+      .flatMapToLong(Arrays::stream)
+      .toArray();
+
+    assertThat(LongStream.of(ids).distinct().count()).isEqualTo((long) threads * idsPerThread);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.business;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Unit tests for {@link TimeZoneOffsetProviderImpl}, and its {@link ZoneTransitionIndex}.
+ */
+class TimeZoneOffsetProviderImplTest {
+
+  private final TimeZoneOffsetProviderImpl timeZoneOffsetProvider =
+    new TimeZoneOffsetProviderImpl(new String[] {"UTC", " Europe/London"});
+
+  /**
+   * Tests creating an instance with a time-zone to warm which is not supported.
+   */
+  @Test
+  void createWithUnsupportedWarmZone() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new TimeZoneOffsetProviderImpl(new String[] {"Europe/Nowhere"}))
+      .withMessageContaining("Europe/Nowhere");
+  }
+
+  /**
+   * Tests that only IANA time-zone (region) IDs are supported.
+   */
+  @Test
+  void isSupportedZone() {
+    assertThat(this.timeZoneOffsetProvider.isSupportedZone("Europe/London")).isTrue();
+    assertThat(this.timeZoneOffsetProvider.isSupportedZone("Asia/Kathmandu")).isTrue();
+    assertThat(this.timeZoneOffsetProvider.isSupportedZone("Europe/Nowhere")).isFalse();
+    assertThat(this.timeZoneOffsetProvider.isSupportedZone("+01:00")).isFalse();
+  }
+
+  /**
+   * Tests that the offset returned for every supported time-zone matches that of the zone's rules, at random instants
+   * both inside and outside of the indexed range, and at, and immediately before, each of the zone's transitions.
+   */
+  @Test
+  void getOffsetSecondsMatchesZoneRules() {
+    final Random random = new Random(42);
+    final long rangeStart = Instant.parse("1850-01-01T00:00:00Z").getEpochSecond();
+    final long rangeEnd = Instant.parse("2150-01-01T00:00:00Z").getEpochSecond();
+    for (String zoneId : ZoneId.getAvailableZoneIds()) {
+      final ZoneRules zoneRules = ZoneId.of(zoneId).getRules();
+      for (int i = 0; i < 100; i++) {
+        final long epochSecond = rangeStart + (long) (random.nextDouble() * (rangeEnd - rangeStart));
+        assertOffsetMatches(zoneId, zoneRules, epochSecond);
+      }
+      for (ZoneOffsetTransition transition : zoneRules.getTransitions()) {
+        assertOffsetMatches(zoneId, zoneRules, transition.toEpochSecond());
+        assertOffsetMatches(zoneId, zoneRules, transition.toEpochSecond() - 1);
+      }
+    }
+  }
+
+  /**
+   * Tests that the index of a zone with recurring (daylight saving) rules includes the transitions computed from them.
+   */
+  @Test
+  void indexIncludesTransitionsFromRecurringRules() {
+    final ZoneTransitionIndex index = ZoneTransitionIndex.of(ZoneId.of("Europe/London"));
+    final ZoneTransitionIndex fixedIndex = ZoneTransitionIndex.of(ZoneId.of("UTC"));
+
+    // Two transitions a year, until the end of the indexed range
+    assertThat(index.getTransitionCount()).isGreaterThan(2 * (2100 - 2018));
+    assertThat(index.getOffsetSeconds(Instant.parse("2099-07-01T00:00:00Z").getEpochSecond())).isEqualTo(3600);
+    assertThat(fixedIndex.getTransitionCount()).isZero();
+  }
+
+  /**
+   * Tests getting the offset for a time-zone which is not supported.
+   */
+  @Test
+  void getOffsetSecondsWhenUnsupportedZone() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> this.timeZoneOffsetProvider.getOffsetSeconds("Europe/Nowhere", 0))
+      .withMessageContaining("Europe/Nowhere");
+  }
+
+  private void assertOffsetMatches(String zoneId, ZoneRules zoneRules, long epochSecond) {
+    assertThat(this.timeZoneOffsetProvider.getOffsetSeconds(zoneId, epochSecond))
+      .as("Offset of zone [%s] at [%s]", zoneId, Instant.ofEpochSecond(epochSecond))
+      .isEqualTo(zoneRules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds());
+  }
+}
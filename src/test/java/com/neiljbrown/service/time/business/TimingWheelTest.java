@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.business;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Unit tests for {@link TimingWheel}.
+ */
+class TimingWheelTest {
+
+  /**
+   * Tests that timers expire on their deadline, in order, whether they're held by the lowest wheel, a higher wheel, or
+   * the overflow list, and that a deadline which isn't after the current tick expires on the next tick.
+   */
+  @Test
+  void advanceExpiresTimersInOrderOfDeadline() {
+    final long startTick = (1L << (TimingWheel.WHEEL_BITS * TimingWheel.LEVELS)) - 100;
+    final TimingWheel<String> wheel = new TimingWheel<>(startTick);
+    wheel.add(startTick + (1L << 40), "overflow");
+    wheel.add(startTick + 300_000, "level2");
+    wheel.add(startTick + 1000, "level1");
+    wheel.add(startTick + 10, "level0");
+    wheel.add(startTick - 5, "past");
+    assertThat(wheel.size()).isEqualTo(5);
+
+    final List<String> expired = new ArrayList<>();
+    wheel.advance(startTick + 1, expired::add);
+    assertThat(expired).containsExactly("past");
+
+    wheel.advance(startTick + 999, expired::add);
+    assertThat(expired).containsExactly("past", "level0");
+
+    wheel.advance(startTick + 1000, expired::add);
+    wheel.advance(startTick + 300_000, expired::add);
+    assertThat(expired).containsExactly("past", "level0", "level1", "level2");
+    assertThat(wheel.size()).isEqualTo(1);
+    assertThat(wheel.getCurrentTick()).isEqualTo(startTick + 300_000);
+  }
+
+  /**
+   * Tests that advancing the wheel over a large jump in time, of many billions of ticks, skips the ticks on which
+   * nothing expires, rather than stepping through each of them.
+   */
+  @Test
+  void advanceSkipsTicksOnWhichNothingExpires() {
+    final long startTick = 1_000_000_000L;
+    final TimingWheel<String> wheel = new TimingWheel<>(startTick);
+    wheel.add(startTick + 5, "level0");
+    wheel.add(startTick + 100_000_000, "level3");
+    wheel.add(startTick + (1L << 40), "overflow");
+    wheel.add(startTick + (1L << 45), "later");
+
+    final List<String> expired = new ArrayList<>();
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> wheel.advance(startTick + (1L << 42), expired::add));
+    assertThat(expired).containsExactly("level0", "level3", "overflow");
+    assertThat(wheel.size()).isEqualTo(1);
+    assertThat(wheel.getCurrentTick()).isEqualTo(startTick + (1L << 42));
+  }
+
+  /**
+   * Tests that a removed timer doesn't expire, and can't be removed again.
+   */
+  @Test
+  void removeTimer() {
+    final TimingWheel<String> wheel = new TimingWheel<>(0);
+    final TimingWheel.Timer<String> removed = wheel.add(100, "removed");
+    wheel.add(100, "kept");
+
+    assertThat(wheel.remove(removed)).isTrue();
+    assertThat(wheel.remove(removed)).isFalse();
+
+    final List<String> expired = new ArrayList<>();
+    wheel.advance(100, expired::add);
+    assertThat(expired).containsExactly("kept");
+    assertThat(wheel.size()).isZero();
+  }
+
+  /**
+   * Tests a random sequence of adding and removing timers, and advancing the wheel by varying no. of ticks, against a
+   * naive list of timers.
+   */
+  @Test
+  void advanceMatchesNaiveImplementation() {
+    final Random random = new Random(42);
+    final long[] spans = {10, 600, 300_000, 1L << 30, 1L << 40};
+    final long[] advances = {1, 7, 513, 262_145, 1L << 32};
+    long currentTick = Math.abs(random.nextLong() % (1L << 40));
+    final TimingWheel<long[]> wheel = new TimingWheel<>(currentTick);
+    final List<TimingWheel.Timer<long[]>> timers = new ArrayList<>();
+    final List<long[]> naivePending = new ArrayList<>();
+    long nextId = 0;
+    for (int step = 0; step < 500; step++) {
+      for (int i = random.nextInt(20); i > 0; i--) {
+        final long deadlineTick = currentTick - 3 + (long) (random.nextDouble() * spans[random.nextInt(spans.length)]);
+        final long[] timer = {nextId++, Math.max(deadlineTick, currentTick + 1)};
+        timers.add(wheel.add(deadlineTick, timer));
+        naivePending.add(timer);
+      }
+      if (random.nextBoolean()) {
+        final TimingWheel.Timer<long[]> timer = timers.get(random.nextInt(timers.size()));
+        if (wheel.remove(timer)) {
+          naivePending.remove(timer.getValue());
+        }
+      }
+      final long toTick = currentTick + advances[random.nextInt(advances.length)];
+      final List<long[]> expired = new ArrayList<>();
+      wheel.advance(toTick, expired::add);
+
+      final List<long[]> naiveExpired = new ArrayList<>();
+      naivePending.removeIf(timer -> timer[1] <= toTick && naiveExpired.add(timer));
+      assertThat(expired).containsExactlyInAnyOrder(naiveExpired.toArray(new long[0][]));
+      assertThat(expired).isSortedAccordingTo((timer1, timer2) -> Long.compare(timer1[1], timer2[1]));
+      assertThat(wheel.size()).isEqualTo(naivePending.size());
+      currentTick = toTick;
+    }
+  }
+}
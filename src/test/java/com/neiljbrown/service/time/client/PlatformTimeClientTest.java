@@ -0,0 +1,161 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Unit tests for {@link PlatformTimeClient}, which make requests to a local stub of the time service, serving a
+ * platform time which is offset from the local system clock by a known amount.
+ */
+class PlatformTimeClientTest {
+
+  private static final long PLATFORM_TIME_OFFSET_MILLIS = 3_600_000L;
+
+  /** Tolerance of the platform time calculated by the client, allowing for a slow round-trip on a busy build host. */
+  private static final long TOLERANCE_MILLIS = 100L;
+
+  private HttpServer serviceStub;
+  private URI serviceUrl;
+  private final BlockingQueue<String> requests = new LinkedBlockingQueue<>();
+  private final AtomicInteger responseStatus = new AtomicInteger(200);
+  private PlatformTimeClient client;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.serviceStub = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.serviceStub.createContext(PlatformTimeClient.PLATFORM_TIME_PATH, exchange -> {
+      this.requests.add(exchange.getRequestURI() + " " + exchange.getRequestHeaders().getFirst("Accept"));
+      final byte[] body = Long.toString(System.currentTimeMillis() + PLATFORM_TIME_OFFSET_MILLIS)
+        .getBytes(StandardCharsets.US_ASCII);
+      exchange.sendResponseHeaders(this.responseStatus.get(), body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    this.serviceStub.start();
+    this.serviceUrl = URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+      + this.serviceStub.getAddress().getPort());
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (this.client != null) {
+      this.client.close();
+    }
+    this.serviceStub.stop(0);
+  }
+
+  /**
+   * Tests that the client estimates the platform time from the configured no. of requests, and then calculates it
+   * locally, without making further requests.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void currentTimeMillis() throws Exception {
+    this.client = new PlatformTimeClient(this.serviceUrl, 3, 60_000L, 1000, 1000);
+
+    assertThat(this.requests).hasSize(3).containsOnly(
+      PlatformTimeClient.PLATFORM_TIME_PATH + "?format=unix-millis text/plain");
+    for (int i = 0; i < 3; i++) {
+      final long expectedEpochMilli = System.currentTimeMillis() + PLATFORM_TIME_OFFSET_MILLIS;
+      assertThat(this.client.currentTimeMillis())
+        .isBetween(expectedEpochMilli - TOLERANCE_MILLIS, expectedEpochMilli + TOLERANCE_MILLIS);
+      Thread.sleep(20);
+    }
+    assertThat(this.client.now().toEpochMilli() - System.currentTimeMillis())
+      .isBetween(PLATFORM_TIME_OFFSET_MILLIS - TOLERANCE_MILLIS, PLATFORM_TIME_OFFSET_MILLIS + TOLERANCE_MILLIS);
+    assertThat(this.requests).hasSize(3);
+
+    final PlatformTimeEstimate estimate = this.client.getEstimate();
+    assertThat(estimate.getLocalClockOffsetMillis())
+      .isBetween(PLATFORM_TIME_OFFSET_MILLIS - TOLERANCE_MILLIS, PLATFORM_TIME_OFFSET_MILLIS + TOLERANCE_MILLIS);
+    assertThat(estimate.getErrorNanos()).isEqualTo(estimate.getRoundTripNanos() / 2 + 500_000L);
+  }
+
+  /**
+   * Tests that a refresh replaces the estimate, and that if it fails, the previous estimate continues to be used.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void refresh() throws Exception {
+    this.client = new PlatformTimeClient(this.serviceUrl, 2, 60_000L, 1000, 1000);
+    final PlatformTimeEstimate initialEstimate = this.client.getEstimate();
+
+    this.client.refresh();
+
+    assertThat(this.client.getEstimate()).isNotSameAs(initialEstimate);
+    assertThat(this.requests).hasSize(4);
+
+    final PlatformTimeEstimate refreshedEstimate = this.client.getEstimate();
+    this.responseStatus.set(503);
+
+    assertThatExceptionOfType(IOException.class).isThrownBy(() -> this.client.refresh());
+    assertThat(this.client.getEstimate()).isSameAs(refreshedEstimate);
+    final long expectedEpochMilli = System.currentTimeMillis() + PLATFORM_TIME_OFFSET_MILLIS;
+    assertThat(this.client.currentTimeMillis())
+      .isBetween(expectedEpochMilli - TOLERANCE_MILLIS, expectedEpochMilli + TOLERANCE_MILLIS);
+  }
+
+  /**
+   * Tests that the background refresh of the estimate counts failures.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void backgroundRefreshFailure() throws Exception {
+    this.client = new PlatformTimeClient(this.serviceUrl, 1, 10L, 1000, 1000);
+    this.responseStatus.set(500);
+
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (this.client.getRefreshFailures() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertThat(this.client.getRefreshFailures()).isGreaterThan(0);
+  }
+
+  /**
+   * Tests that a client can't be created if the platform time can't be estimated.
+   */
+  @Test
+  void createWhenServiceUnavailable() {
+    this.responseStatus.set(503);
+
+    assertThatExceptionOfType(IOException.class)
+      .isThrownBy(() -> new PlatformTimeClient(this.serviceUrl, 2, 60_000L, 1000, 1000))
+      .withMessageContaining("failed with status [503]");
+  }
+}
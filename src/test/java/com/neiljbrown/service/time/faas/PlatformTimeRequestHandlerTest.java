@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.faas;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link PlatformTimeRequestHandler}, which pass it API Gateway proxy request events, and check the
+ * proxy response events it writes, without deploying it to the Lambda runtime.
+ */
+class PlatformTimeRequestHandlerTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private static PlatformTimeRequestHandler handler;
+
+  @BeforeAll
+  static void setUpHandler() {
+    handler = new PlatformTimeRequestHandler();
+  }
+
+  @AfterAll
+  static void tearDownHandler() {
+    handler.getApplicationContext().close();
+  }
+
+  /**
+   * Tests that the names of the Accept and If-None-Match headers are matched ignoring case, as API Gateway passes
+   * headers as sent by the client, which may be in any case.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void parseMatchesHeaderNamesIgnoringCase() throws Exception {
+    final PlatformTimeRequestHandler.ApiGatewayRequest request = parse(
+      "{\"headers\":{\"accept\":\"text/plain\",\"IF-NONE-MATCH\":\"\\\"1\\\"\",\"Host\":\"example.com\"},"
+        + "\"queryStringParameters\":{\"format\":\"unix\"}}");
+
+    assertThat(request.getAccept()).isEqualTo("text/plain");
+    assertThat(request.getIfNoneMatch()).isEqualTo("\"1\"");
+    assertThat(request.getFormat()).isEqualTo("unix");
+  }
+
+  /**
+   * Tests that an event whose queryStringParameters are null, as sent by API Gateway for a request without a query
+   * string, or missing, is parsed as having no format.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void parseWhenQueryStringParametersNullOrMissing() throws Exception {
+    assertThat(parse("{\"queryStringParameters\":null,\"headers\":null}").getFormat()).isNull();
+    assertThat(parse("{\"path\":\"/v1/platform-time\"}").getFormat()).isNull();
+    assertThat(parse("{}").getAccept()).isNull();
+  }
+
+  /**
+   * Tests that a request without a format is handled using the default (ISO-8601) format, and that the JSON body is
+   * returned as is, rather than Base64 encoded.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void handleRequestWhenNoFormatUsesDefaultFormat() throws Exception {
+    final JsonNode response = handleRequest("{\"queryStringParameters\":null}");
+
+    assertThat(response.get("statusCode").asInt()).isEqualTo(200);
+    assertThat(response.get("isBase64Encoded").asBoolean()).isFalse();
+    assertThat(response.get("headers").get("Content-Type").asText()).isEqualTo(MediaType.APPLICATION_JSON_VALUE);
+    assertThat(response.get("body").asText())
+      .matches("\\{\"dateTime\":\"\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z\"}");
+  }
+
+  /**
+   * Tests that a CBOR body, requested using a lower-case Accept header, is returned Base64 encoded.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void handleRequestWhenCborBase64EncodesBody() throws Exception {
+    final JsonNode response = handleRequest("{\"headers\":{\"accept\":\"application/cbor\"}}");
+
+    assertThat(response.get("statusCode").asInt()).isEqualTo(200);
+    assertThat(response.get("isBase64Encoded").asBoolean()).isTrue();
+    assertThat(response.get("headers").get("Content-Type").asText()).isEqualTo("application/cbor");
+    assertThat(Base64.getDecoder().decode(response.get("body").asText())).isNotEmpty();
+  }
+
+  /**
+   * Tests that a binary body is written Base64 encoded.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void writeResponseWhenBinaryBase64EncodesBody() throws Exception {
+    final JsonNode response = writeResponse(
+      ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(new byte[] {1, 2, 3}));
+
+    assertThat(response.get("isBase64Encoded").asBoolean()).isTrue();
+    assertThat(response.get("body").asText()).isEqualTo("AQID");
+  }
+
+  /**
+   * Tests that a request with an invalid format results in a 400 Bad Request response, with a JSON error body.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void handleRequestWhenInvalidFormat() throws Exception {
+    final JsonNode response = handleRequest("{\"queryStringParameters\":{\"format\":\"invalid\"}}");
+
+    assertThat(response.get("statusCode").asInt()).isEqualTo(400);
+    assertThat(response.get("isBase64Encoded").asBoolean()).isFalse();
+    final JsonNode body = OBJECT_MAPPER.readTree(response.get("body").asText());
+    assertThat(body.get("code").asText()).isEqualTo(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString());
+  }
+
+  /**
+   * Tests that a conditional request, whose lower-case If-None-Match header matches the current representation,
+   * results in a 304 Not Modified response, which has no body, and so isn't flagged as Base64 encoded, even though the
+   * representation is binary.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void handleRequestWhenNotModified() throws Exception {
+    final JsonNode response =
+      handleRequest("{\"headers\":{\"accept\":\"application/cbor\",\"if-none-match\":\"*\"}}");
+
+    assertThat(response.get("statusCode").asInt()).isEqualTo(304);
+    assertThat(response.has("body")).isFalse();
+    assertThat(response.get("isBase64Encoded").asBoolean()).isFalse();
+  }
+
+  private static PlatformTimeRequestHandler.ApiGatewayRequest parse(String event) throws IOException {
+    return PlatformTimeRequestHandler.ApiGatewayRequest.parse(
+      new ByteArrayInputStream(event.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static JsonNode handleRequest(String event) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    handler.handleRequest(new ByteArrayInputStream(event.getBytes(StandardCharsets.UTF_8)), output, null);
+    return OBJECT_MAPPER.readTree(output.toByteArray());
+  }
+
+  private static JsonNode writeResponse(ResponseEntity<byte[]> response) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PlatformTimeRequestHandler.writeResponse(response, output);
+    return OBJECT_MAPPER.readTree(output.toByteArray());
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.accesslog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Unit tests for {@link AccessLogFilter}.
+ */
+class AccessLogFilterTest {
+
+  private Path path;
+  private AccessLog accessLog;
+  private AccessLogFilter filter;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.path = Files.createTempFile(getClass().getSimpleName(), ".log");
+    this.accessLog = new AccessLog(() -> Instant.parse("2018-10-06T18:51:44.500Z"), this.path.toString(), 16,
+      1_000_000, 0, 1, new SimpleMeterRegistry());
+    this.accessLog.start();
+    this.filter = new AccessLogFilter(this.accessLog);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    this.accessLog.stop();
+    Files.deleteIfExists(this.path);
+  }
+
+  /**
+   * Tests that a request to an API is logged, with its method, path, format, response status and client.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void doFilter() throws Exception {
+    final MockHttpServletRequest request = newRequest("/v1/platform-time");
+    request.setParameter(AccessLogFilter.FORMAT_PARAM, "unix");
+
+    this.filter.doFilter(request, new MockHttpServletResponse(), (servletRequest, servletResponse) ->
+      ((HttpServletResponse) servletResponse).setStatus(HttpServletResponse.SC_BAD_REQUEST));
+    this.accessLog.stop();
+
+    final List<String> entries = Files.readAllLines(this.path);
+    assertThat(entries).hasSize(1);
+    assertThat(entries.get(0))
+      .startsWith("{\"timestamp\":\"2018-10-06T18:51:44.500Z\",\"method\":\"GET\",\"path\":\"/v1/platform-time\","
+        + "\"format\":\"unix\",\"status\":400,\"latencyMicros\":")
+      .endsWith(",\"client\":\"10.0.0.1\"}");
+  }
+
+  /**
+   * Tests that a request which fails with an exception is logged with a status of 500.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void doFilterWhenRequestFails() throws Exception {
+    assertThatThrownBy(() -> this.filter.doFilter(newRequest("/v1/ids"), new MockHttpServletResponse(),
+      (servletRequest, servletResponse) -> {
+        throw new IllegalStateException("Test failure.");
+      })).isInstanceOf(IllegalStateException.class);
+    this.accessLog.stop();
+
+    final List<String> entries = Files.readAllLines(this.path);
+    assertThat(entries).hasSize(1);
+    assertThat(entries.get(0)).contains("\"path\":\"/v1/ids\",\"format\":\"\",\"status\":500,");
+  }
+
+  /**
+   * Tests that a request which is processed asynchronously isn't logged when its initial dispatch returns, but once it
+   * completes, with its final status.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void doFilterWhenAsync() throws Exception {
+    final MockHttpServletRequest request = newRequest("/v1/platform-time/stream");
+    request.setAsyncSupported(true);
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    this.filter.doFilter(request, response, (servletRequest, servletResponse) ->
+      servletRequest.startAsync(servletRequest, servletResponse));
+    assertThat(request.isAsyncStarted()).isTrue();
+    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    request.getAsyncContext().complete();
+    this.accessLog.stop();
+
+    final List<String> entries = Files.readAllLines(this.path);
+    assertThat(entries).hasSize(1);
+    assertThat(entries.get(0)).contains("\"path\":\"/v1/platform-time/stream\",\"format\":\"\",\"status\":503,");
+  }
+
+  /**
+   * Tests that a request which is processed asynchronously is logged once only, on its final (async) dispatch, rather
+   * than again when it completes.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void doFilterWhenAsyncDispatched() throws Exception {
+    final MockHttpServletRequest request = newRequest("/v1/platform-time/stream");
+    request.setAsyncSupported(true);
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+    this.filter.doFilter(request, response, (servletRequest, servletResponse) ->
+      servletRequest.startAsync(servletRequest, servletResponse));
+
+    request.setDispatcherType(DispatcherType.ASYNC);
+    request.setAsyncStarted(false);
+    this.filter.doFilter(request, response, (servletRequest, servletResponse) ->
+      ((HttpServletResponse) servletResponse).setStatus(HttpServletResponse.SC_ACCEPTED));
+    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    request.getAsyncContext().complete();
+    this.accessLog.stop();
+
+    final List<String> entries = Files.readAllLines(this.path);
+    assertThat(entries).hasSize(1);
+    assertThat(entries.get(0)).contains("\"status\":202,");
+  }
+
+  /**
+   * Tests that requests other than those to the APIs, e.g. to the operational endpoints, aren't logged.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void doFilterWhenOtherPath() throws Exception {
+    this.filter.doFilter(newRequest("/actuator/health"), new MockHttpServletResponse(), new MockFilterChain());
+    this.accessLog.stop();
+
+    assertThat(Files.readAllLines(this.path)).isEmpty();
+    assertThat(this.accessLog.getWrittenCount()).isZero();
+  }
+
+  private static MockHttpServletRequest newRequest(String path) {
+    final MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+    request.setServletPath(path);
+    request.setRemoteAddr("10.0.0.1");
+    return request;
+  }
+}
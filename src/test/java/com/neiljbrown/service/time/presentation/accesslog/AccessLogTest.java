@@ -0,0 +1,203 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.accesslog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+
+/**
+ * Unit tests for {@link AccessLog}, which writes to files in a temporary directory.
+ */
+class AccessLogTest {
+
+  private static final String EXPECTED_ENTRY = "{\"timestamp\":\"2018-10-06T18:51:44.500Z\",\"method\":\"GET\","
+    + "\"path\":\"/v1/platform-time\",\"format\":\"unix\",\"status\":200,\"latencyMicros\":1500,"
+    + "\"client\":\"10.0.0.1\"}";
+
+  private final PlatformDateTimeProvider platformDateTimeProvider =
+    () -> Instant.parse("2018-10-06T18:51:44.500Z");
+  private Path directory;
+  private Path path;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.directory = Files.createTempDirectory(getClass().getSimpleName());
+    this.path = this.directory.resolve("access.log");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> files = Files.list(this.directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(this.directory);
+  }
+
+  /**
+   * Tests that logged entries are written to the file as JSON, one per line, once the log is stopped.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void log() throws Exception {
+    final AccessLog accessLog = newAccessLog(16, 1_000_000, 1);
+    accessLog.start();
+
+    assertThat(accessLog.log("GET", "/v1/platform-time", "unix", 200, 1_500_000, "10.0.0.1")).isTrue();
+    assertThat(accessLog.log("POST", "/v1/callbacks", null, 201, 2_000, "::1")).isTrue();
+    accessLog.stop();
+
+    assertThat(Files.readAllLines(this.path)).containsExactly(EXPECTED_ENTRY,
+      "{\"timestamp\":\"2018-10-06T18:51:44.500Z\",\"method\":\"POST\",\"path\":\"/v1/callbacks\",\"format\":\"\","
+        + "\"status\":201,\"latencyMicros\":2,\"client\":\"::1\"}");
+    assertThat(accessLog.getWrittenCount()).isEqualTo(2);
+    assertThat(accessLog.getDroppedCount()).isZero();
+  }
+
+  /**
+   * Tests that characters which must be escaped in a JSON string are escaped, non ASCII characters are replaced, and
+   * values longer than the space reserved for them in a record are truncated.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void logWhenFieldsNeedEscapingOrTruncating() throws Exception {
+    final AccessLog accessLog = newAccessLog(16, 1_000_000, 1);
+    accessLog.start();
+    final StringBuilder longFormat = new StringBuilder("pattern:");
+    while (longFormat.length() < 100) {
+      longFormat.append('y');
+    }
+
+    accessLog.log("GET", "/v1/\"a\\b\n\u00e9", longFormat.toString(), 400, 0, "10.0.0.1");
+    accessLog.stop();
+
+    assertThat(Files.readAllLines(this.path)).containsExactly(
+      "{\"timestamp\":\"2018-10-06T18:51:44.500Z\",\"method\":\"GET\",\"path\":\"/v1/\\u0022a\\u005cb\\u000a?\","
+        + "\"format\":\"" + longFormat.substring(0, AccessLog.MAX_FORMAT_LENGTH) + "\",\"status\":400,"
+        + "\"latencyMicros\":0,\"client\":\"10.0.0.1\"}");
+  }
+
+  /**
+   * Tests that entries are dropped, and counted, rather than the caller waiting, when the buffer is full, and that the
+   * entries which were buffered are still written.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void logWhenBufferFull() throws Exception {
+    final AccessLog accessLog = newAccessLog(3, 1_000_000, 1);
+    assertThat(accessLog.getCapacity()).isEqualTo(4);
+
+    // The writer isn't started, so the buffer isn't drained
+    for (int i = 0; i < 4; i++) {
+      assertThat(accessLog.log("GET", "/v1/platform-time", "unix", 200, 1_500_000, "10.0.0.1")).isTrue();
+    }
+    assertThat(accessLog.log("GET", "/v1/platform-time", "unix", 200, 1_500_000, "10.0.0.1")).isFalse();
+    assertThat(accessLog.getDroppedCount()).isEqualTo(1);
+
+    accessLog.start();
+    accessLog.stop();
+
+    assertThat(Files.readAllLines(this.path)).hasSize(4).containsOnly(EXPECTED_ENTRY);
+    assertThat(accessLog.getWrittenCount()).isEqualTo(4);
+  }
+
+  /**
+   * Tests that the file is rotated once it reaches its max size, keeping up to the configured no. of rotated files.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void logWhenMaxFileSizeReached() throws Exception {
+    // Every batch of one or more entries fills the file
+    final AccessLog accessLog = newAccessLog(16, 1, 2);
+    accessLog.start();
+
+    for (int i = 0; i < 4; i++) {
+      accessLog.log("GET", "/v1/platform-time", "unix", 200, 1_500_000, "10.0.0.1");
+      // Wait for the entry to be written, in its own batch
+      while (accessLog.getWrittenCount() <= i) {
+        Thread.sleep(1);
+      }
+    }
+    accessLog.stop();
+
+    final List<Path> files = new ArrayList<>();
+    try (Stream<Path> directoryFiles = Files.list(this.directory)) {
+      directoryFiles.map(Path::getFileName).forEach(files::add);
+    }
+    assertThat(files).containsExactlyInAnyOrder(this.path.getFileName(),
+      this.path.resolveSibling("access.log.1").getFileName(), this.path.resolveSibling("access.log.2").getFileName());
+    assertThat(Files.readAllLines(this.path)).isEmpty();
+    assertThat(Files.readAllLines(this.path.resolveSibling("access.log.1"))).containsExactly(EXPECTED_ENTRY);
+    assertThat(Files.readAllLines(this.path.resolveSibling("access.log.2"))).containsExactly(EXPECTED_ENTRY);
+  }
+
+  /**
+   * Tests that a failure to write (here, to rotate) the file is counted, and doesn't stop the writer, which reopens
+   * the file, and writes subsequent entries, once the cause of the failure has been resolved.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void logWhenWriteFails() throws Exception {
+    // A non-empty directory in place of the rotated file can't be deleted, so rotating the file fails
+    final Path blockingDirectory = Files.createDirectory(this.path.resolveSibling("access.log.1"));
+    final Path blockingFile = Files.createFile(blockingDirectory.resolve("blocking"));
+    final AccessLog accessLog = newAccessLog(16, 1, 1);
+    accessLog.start();
+
+    accessLog.log("GET", "/v1/platform-time", "unix", 200, 1_500_000, "10.0.0.1");
+    while (accessLog.getWriteFailureCount() == 0) {
+      Thread.sleep(1);
+    }
+    Files.delete(blockingFile);
+    Files.delete(blockingDirectory);
+    accessLog.log("GET", "/v1/platform-time", "unix", 200, 1_500_000, "10.0.0.1");
+    while (accessLog.getWrittenCount() < 2) {
+      Thread.sleep(1);
+    }
+    accessLog.stop();
+
+    assertThat(accessLog.getWriteFailureCount()).isEqualTo(1);
+    assertThat(Files.readAllLines(this.path)).isEmpty();
+    assertThat(Files.readAllLines(this.path.resolveSibling("access.log.1"))).containsExactly(EXPECTED_ENTRY,
+      EXPECTED_ENTRY);
+  }
+
+  private AccessLog newAccessLog(int bufferCapacity, long maxFileSizeBytes, int maxFiles) {
+    return new AccessLog(this.platformDateTimeProvider, this.path.toString(), bufferCapacity, maxFileSizeBytes,
+      maxFiles, 1, new SimpleMeterRegistry());
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.admission;
+
+import java.time.Instant;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link AdmissionControlFilter}.
+ */
+class AdmissionControlFilterTest {
+
+  private final ClientRateLimiter clientRateLimiter =
+    new ClientRateLimiter(() -> Instant.parse("2018-10-06T18:51:44.789Z"), 1, 1, 10, new SimpleMeterRegistry());
+  private final AdmissionControlFilter filter = new AdmissionControlFilter(this.clientRateLimiter);
+
+  /**
+   * Tests that a request within its client's rate limit is passed on, and one which exceeds it is rejected with a 429
+   * error response.
+   */
+  @Test
+  void doFilterWhenRateLimitExceeded() throws Exception {
+    final MockHttpServletResponse admittedResponse = doFilter(ClientRateLimiter.ADMITTED_PATH);
+    final MockHttpServletResponse rejectedResponse = doFilter(ClientRateLimiter.ADMITTED_PATH);
+
+    assertThat(admittedResponse.getStatus()).isEqualTo(HttpStatus.OK.value());
+    assertThat(rejectedResponse.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    assertThat(rejectedResponse.getContentType()).isEqualTo(MediaType.APPLICATION_JSON_VALUE);
+    assertThat(rejectedResponse.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo(ClientRateLimiter.RETRY_AFTER_SECONDS);
+    assertThat(rejectedResponse.getContentAsString())
+      .startsWith("{\"code\":\"" + ApiErrorCode.RATE_LIMIT_EXCEEDED + "\"");
+  }
+
+  /**
+   * Tests that a client can't evade its rate limit, or add to the no. of clients tracked, by rotating the API key it
+   * sends, as it's identified by its IP address alone.
+   */
+  @Test
+  void doFilterWhenApiKeyRotated() throws Exception {
+    assertThat(doFilter(ClientRateLimiter.ADMITTED_PATH, "api-key-1").getStatus()).isEqualTo(HttpStatus.OK.value());
+    for (int i = 2; i <= 5; i++) {
+      assertThat(doFilter(ClientRateLimiter.ADMITTED_PATH, "api-key-" + i).getStatus())
+        .isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+    assertThat(this.clientRateLimiter.getClientCount()).isEqualTo(1);
+  }
+
+  /**
+   * Tests that requests to other APIs aren't subject to admission control.
+   */
+  @Test
+  void doFilterWhenOtherPath() throws Exception {
+    doFilter("/v1/ids");
+
+    assertThat(doFilter("/v1/ids").getStatus()).isEqualTo(HttpStatus.OK.value());
+  }
+
+  private MockHttpServletResponse doFilter(String path) throws Exception {
+    return doFilter(path, null);
+  }
+
+  private MockHttpServletResponse doFilter(String path, String apiKey) throws Exception {
+    final MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+    request.setServletPath(path);
+    request.setRemoteAddr("10.0.0.1");
+    if (apiKey != null) {
+      request.addHeader("X-Api-Key", apiKey);
+    }
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+    this.filter.doFilter(request, response, new MockFilterChain());
+    return response;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.admission;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Unit tests for {@link ClientRateLimiter}.
+ */
+class ClientRateLimiterTest {
+
+  private static final long EPOCH_MILLI = Instant.parse("2018-10-06T18:51:44.789Z").toEpochMilli();
+  private static final String CLIENT_IP = "10.0.0.1";
+  private static final String OTHER_CLIENT_IP = "10.0.0.2";
+
+  /** Platform time in epoch millis, which can be changed by tests to simulate the passing of time. */
+  private final AtomicLong platformEpochMilli = new AtomicLong(EPOCH_MILLI);
+
+  private final PlatformDateTimeProvider platformDateTimeProvider =
+    () -> Instant.ofEpochMilli(this.platformEpochMilli.get());
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  /**
+   * Tests creating an instance with invalid limits.
+   */
+  @Test
+  void createWithInvalidLimits() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new ClientRateLimiter(this.platformDateTimeProvider, 0, 1, 1, this.meterRegistry))
+      .withMessageContaining("requestsPerSecond");
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new ClientRateLimiter(this.platformDateTimeProvider, 1, 0, 1, this.meterRegistry))
+      .withMessageContaining("burst");
+    assertThatExceptionOfType(IllegalArgumentException.class)
+      .isThrownBy(() -> new ClientRateLimiter(this.platformDateTimeProvider, 1, 1, 0, this.meterRegistry))
+      .withMessageContaining("maxClients");
+  }
+
+  /**
+   * Tests that a client can make a burst of requests up to its bucket's capacity, after which its requests are
+   * rejected, and counted, until the platform time advances enough for its bucket to be refilled.
+   */
+  @Test
+  void tryAdmitWhenBurstExceeded() {
+    final ClientRateLimiter limiter = new ClientRateLimiter(this.platformDateTimeProvider, 10, 3, 10,
+      this.meterRegistry);
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(limiter.tryAdmit(CLIENT_IP)).isTrue();
+    }
+    assertThat(limiter.tryAdmit(CLIENT_IP)).isFalse();
+    assertThat(limiter.getRejectedCount()).isEqualTo(1);
+    assertThat(this.meterRegistry.get("platform.time.errors").tag("code", ApiErrorCode.RATE_LIMIT_EXCEEDED.name())
+      .counter().count()).isEqualTo(1);
+
+    // One token is refilled every 100 millis, at 10 per second
+    this.platformEpochMilli.addAndGet(99);
+    assertThat(limiter.tryAdmit(CLIENT_IP)).isFalse();
+    this.platformEpochMilli.incrementAndGet();
+    assertThat(limiter.tryAdmit(CLIENT_IP)).isTrue();
+    assertThat(limiter.tryAdmit(CLIENT_IP)).isFalse();
+  }
+
+  /**
+   * Tests that each client, identified by its IP address, is limited independently of the others.
+   */
+  @Test
+  void tryAdmitWhenMultipleClients() {
+    final ClientRateLimiter limiter = new ClientRateLimiter(this.platformDateTimeProvider, 1, 1, 10,
+      this.meterRegistry);
+
+    assertThat(limiter.tryAdmit(CLIENT_IP)).isTrue();
+    assertThat(limiter.tryAdmit(CLIENT_IP)).isFalse();
+    assertThat(limiter.tryAdmit(OTHER_CLIENT_IP)).isTrue();
+    assertThat(limiter.tryAdmit(OTHER_CLIENT_IP)).isFalse();
+    assertThat(limiter.getClientCount()).isEqualTo(2);
+  }
+
+  /**
+   * Tests that when the max no. of clients is reached, idle clients are evicted to make space for new ones, and that
+   * if none are idle, new clients share an overflow bucket.
+   */
+  @Test
+  void tryAdmitWhenMaxClientsReached() {
+    final ClientRateLimiter limiter = new ClientRateLimiter(this.platformDateTimeProvider, 1, 1, 2,
+      this.meterRegistry);
+    assertThat(limiter.tryAdmit("10.0.0.1")).isTrue();
+    assertThat(limiter.tryAdmit("10.0.0.2")).isTrue();
+
+    // No clients are idle, so new clients share the overflow bucket
+    assertThat(limiter.tryAdmit("10.0.0.3")).isTrue();
+    assertThat(limiter.tryAdmit("10.0.0.4")).isFalse();
+    assertThat(limiter.getClientCount()).isEqualTo(2);
+
+    // Once the existing clients' buckets are refilled they're idle, and are evicted to make space
+    this.platformEpochMilli.addAndGet(ClientRateLimiter.EVICTION_INTERVAL_MILLIS);
+    assertThat(limiter.tryAdmit("10.0.0.4")).isTrue();
+    assertThat(limiter.tryAdmit("10.0.0.4")).isFalse();
+    assertThat(limiter.getClientCount()).isEqualTo(1);
+  }
+
+  /**
+   * Tests that if the platform time steps backwards, clients aren't rejected until it catches up.
+   */
+  @Test
+  void tryAdmitWhenClockStepsBackwards() {
+    final ClientRateLimiter limiter = new ClientRateLimiter(this.platformDateTimeProvider, 1, 1, 10,
+      this.meterRegistry);
+    assertThat(limiter.tryAdmit(CLIENT_IP)).isTrue();
+
+    this.platformEpochMilli.addAndGet(-60_000);
+
+    assertThat(limiter.tryAdmit(CLIENT_IP)).isTrue();
+    assertThat(limiter.tryAdmit(CLIENT_IP)).isFalse();
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * A narrow set of integration tests of the {@link BusinessDaysController} REST API controller in conjunction with its
+ * supporting web stack (Spring MVC framework), using a mocked Servlet web container, and the business calendars
+ * supplied with the service.
+ * <p>
+ * See {@link TimesControllerIntegrationTest} for more details of the scope and implementation of these tests.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+class BusinessDaysControllerIntegrationTest {
+
+  private final WebApplicationContext wac;
+  private MockMvc mockMvc;
+
+  /**
+   * @param wac this application's Spring {@link WebApplicationContext}.
+   */
+  BusinessDaysControllerIntegrationTest(WebApplicationContext wac) {
+    this.wac = wac;
+  }
+
+  @BeforeEach
+  void setUp() {
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(this.wac).build();
+  }
+
+  /**
+   * Tests checking whether a supplied date, and the current platform date, are business days.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void isBusinessDay() throws Exception {
+    this.mockMvc.perform(
+      get("/v1/business-days")
+        .accept(MediaType.APPLICATION_JSON)
+        .param("calendar", "target")
+        .param("date", "2019-04-19")
+    ).andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+      .andExpect(content().json("{\"calendar\":\"target\",\"date\":\"2019-04-19\",\"businessDay\":false}", true));
+
+    final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    final String responseBody = this.mockMvc.perform(get("/v1/business-days").param("calendar", "weekdays"))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+    assertThat(LocalDate.parse(responseBody.replaceAll(".*\"date\":\"([^\"]+)\".*", "$1")))
+      .isBetween(today, today.plusDays(1));
+  }
+
+  /**
+   * Tests adding business days to a date, across a weekend and holidays.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void addBusinessDays() throws Exception {
+    this.mockMvc.perform(
+      get("/v1/business-days/add")
+        .accept(MediaType.APPLICATION_JSON)
+        .param("calendar", "target")
+        .param("date", "2019-04-18")
+        .param("days", "1")
+    ).andExpect(status().isOk())
+      .andExpect(content().json(
+        "{\"calendar\":\"target\",\"date\":\"2019-04-18\",\"days\":1,\"result\":\"2019-04-23\"}", true));
+  }
+
+  /**
+   * Tests counting the business days between two dates.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void countBusinessDays() throws Exception {
+    this.mockMvc.perform(
+      get("/v1/business-days/count")
+        .accept(MediaType.APPLICATION_JSON)
+        .param("calendar", "target")
+        .param("from", "2019-04-01")
+        .param("to", "2019-05-01")
+    ).andExpect(status().isOk())
+      .andExpect(content().json(
+        "{\"calendar\":\"target\",\"from\":\"2019-04-01\",\"to\":\"2019-05-01\",\"count\":20}", true));
+    // The end date is exclusive, so may be the day after the last supported date
+    this.mockMvc.perform(
+      get("/v1/business-days/count")
+        .accept(MediaType.APPLICATION_JSON)
+        .param("calendar", "target")
+        .param("from", "2099-12-28")
+        .param("to", "2100-01-01")
+    ).andExpect(status().isOk())
+      .andExpect(jsonPath("$.to").value("2100-01-01"))
+      .andExpect(jsonPath("$.count").value(4));
+    this.mockMvc.perform(get("/v1/business-days/count").param("calendar", "target").param("from", "2099-12-28")
+      .param("to", "2100-01-02"))
+      .andExpect(status().isBadRequest());
+  }
+
+  /**
+   * Tests making requests with invalid request params.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void businessDaysWhenInvalidRequestParams() throws Exception {
+    this.mockMvc.perform(get("/v1/business-days").param("calendar", "foo"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.code").value(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString()))
+      .andExpect(jsonPath("$.message", containsString("'calendar'")));
+    this.mockMvc.perform(get("/v1/business-days").param("calendar", "target").param("date", "2200-01-01"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.message", containsString("date")));
+    this.mockMvc.perform(get("/v1/business-days/add").param("calendar", "target").param("days", "many"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.message", containsString("'days'")));
+    this.mockMvc.perform(get("/v1/business-days/add").param("calendar", "target").param("days", "1000000"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.message", containsString("'days'")));
+    this.mockMvc.perform(get("/v1/business-days/count").param("calendar", "target").param("from", "2019-04-01"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.message", containsString("date")));
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.Instant;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * A narrow set of integration tests of the {@link CallbacksController} REST API controller in conjunction with its
+ * supporting web stack (Spring MVC framework), using a mocked Servlet web container. Callbacks are scheduled far
+ * enough ahead that they aren't made, to a (public) documentation address. See CallbackSchedulerImplTest for tests of
+ * making callbacks to a webhook.
+ * <p>
+ * See {@link TimesControllerIntegrationTest} for more details of the scope and implementation of these tests.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.MOCK, properties = {
+  "callback-scheduler.enabled=true", "callback-scheduler.journal-path=build/tmp/callbacks-integration-test.journal",
+  "callback-scheduler.allowed-hosts=203.0.113.10,127.0.0.1"})
+class CallbacksControllerIntegrationTest {
+
+  private static final String WEBHOOK_URL = "http://203.0.113.10:9/hook";
+
+  private final WebApplicationContext wac;
+  private MockMvc mockMvc;
+
+  /**
+   * @param wac this application's Spring {@link WebApplicationContext}.
+   */
+  CallbacksControllerIntegrationTest(WebApplicationContext wac) {
+    this.wac = wac;
+  }
+
+  @BeforeEach
+  void setUp() {
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(this.wac).build();
+  }
+
+  /**
+   * Tests scheduling a callback, getting it whilst it's pending, and cancelling it.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void scheduleGetAndCancelCallback() throws Exception {
+    final String json = this.mockMvc.perform(
+      post("/v1/callbacks")
+        .accept(MediaType.APPLICATION_JSON)
+        .param("url", WEBHOOK_URL)
+        .param("delayMillis", "3600000")
+    ).andExpect(status().isCreated())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+      .andExpect(header().string(HttpHeaders.LOCATION, startsWith("/v1/callbacks/")))
+      .andExpect(jsonPath("$.url").value(WEBHOOK_URL))
+      .andExpect(jsonPath("$.fireTime").isString())
+      .andReturn().getResponse().getContentAsString();
+    final String id = JsonPath.parse(json).read("$.id").toString();
+
+    this.mockMvc.perform(get("/v1/callbacks/" + id).accept(MediaType.APPLICATION_JSON))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.url").value(WEBHOOK_URL));
+
+    this.mockMvc.perform(delete("/v1/callbacks/" + id)).andExpect(status().isNoContent());
+    this.mockMvc.perform(delete("/v1/callbacks/" + id)).andExpect(status().isNotFound());
+    this.mockMvc.perform(get("/v1/callbacks/" + id)).andExpect(status().isNotFound());
+  }
+
+  /**
+   * Tests scheduling a callback at a supplied platform time.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void scheduleCallbackAtTime() throws Exception {
+    final String at = Instant.now().plusSeconds(3600).toString();
+    this.mockMvc.perform(post("/v1/callbacks").param("url", WEBHOOK_URL).param("at", at))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.fireTime").isString());
+  }
+
+  /**
+   * Tests requests to schedule a callback which are invalid.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void scheduleCallbackInvalid() throws Exception {
+    this.mockMvc.perform(post("/v1/callbacks").param("url", "file:///etc/passwd").param("delayMillis", "1000"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.code").value(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString()));
+    this.mockMvc.perform(post("/v1/callbacks").param("url", "http://127.0.0.1:9/hook").param("delayMillis", "1000"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.code").value(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString()));
+    this.mockMvc.perform(post("/v1/callbacks").param("delayMillis", "1000"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(post("/v1/callbacks").param("url", WEBHOOK_URL))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(post("/v1/callbacks")
+      .param("url", WEBHOOK_URL)
+      .param("delayMillis", "1000")
+      .param("at", "2018-10-06T09:30:00Z"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(post("/v1/callbacks").param("url", WEBHOOK_URL).param("delayMillis", "-1"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(post("/v1/callbacks").param("url", WEBHOOK_URL).param("delayMillis", "99999999999999"))
+      .andExpect(status().isBadRequest());
+  }
+}
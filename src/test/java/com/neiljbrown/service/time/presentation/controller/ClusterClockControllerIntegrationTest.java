@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+import com.neiljbrown.service.time.business.ClockConsensusProvider;
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+
+/**
+ * A narrow set of integration tests of the {@link ClusterClockController} API controller in conjunction with its
+ * supporting web stack (Spring MVC framework), using a mocked Servlet web container, for a node which derives the
+ * platform time from the consensus of a cluster, which has no peers.
+ * <p>
+ * See {@link TimesControllerIntegrationTest} for more details of the scope and implementation of these tests.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+  properties = "platform-date-time-provider.type=consensus")
+class ClusterClockControllerIntegrationTest {
+
+  private final WebApplicationContext wac;
+  private MockMvc mockMvc;
+
+  /**
+   * @param wac this application's Spring {@link WebApplicationContext}.
+   */
+  ClusterClockControllerIntegrationTest(WebApplicationContext wac) {
+    this.wac = wac;
+  }
+
+  @BeforeEach
+  void setUp() {
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(this.wac).build();
+  }
+
+  /**
+   * Tests that the node's local clock is returned as plain text, uncached, and that without peers the platform time
+   * is the time of the local clock.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void getLocalClock() throws Exception {
+    final long beforeEpochMilli = System.currentTimeMillis();
+
+    final MvcResult result = this.mockMvc.perform(get(ClusterClockController.LOCAL_CLOCK_PATH)
+      .accept(MediaType.TEXT_PLAIN)
+    ).andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN))
+      .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"))
+      .andReturn();
+
+    final long localEpochMilli = Long.parseLong(
+      new String(result.getResponse().getContentAsByteArray(), StandardCharsets.US_ASCII));
+    assertThat(localEpochMilli).isBetween(beforeEpochMilli, System.currentTimeMillis());
+    assertThat(this.wac.getBean(ClockConsensusProvider.class).getClockConsensus().isQuorate()).isTrue();
+    assertThat(this.wac.getBean(PlatformDateTimeProvider.class).getEpochMilli())
+      .isBetween(beforeEpochMilli, System.currentTimeMillis());
+  }
+}
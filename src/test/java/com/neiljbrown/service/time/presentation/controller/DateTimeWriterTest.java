@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link DateTimeWriter}.
+ */
+class DateTimeWriterTest {
+
+  private static final long MAX_EPOCH_SECOND = Instant.parse("3000-01-01T00:00:00Z").getEpochSecond();
+
+  /**
+   * Tests that local date/times are written in the same format as the standard ISO-8601 offset date/time formatter,
+   * for random instants and time-zones.
+   */
+  @Test
+  void appendOffsetDateTimeMatchesStandardFormatter() {
+    final Random random = new Random(42);
+    final String[] zoneIds = ZoneId.getAvailableZoneIds().toArray(new String[0]);
+    for (int i = 0; i < 10_000; i++) {
+      final long epochSecond = random.nextLong() % MAX_EPOCH_SECOND;
+      final ZoneId zoneId = ZoneId.of(zoneIds[random.nextInt(zoneIds.length)]);
+      final OffsetDateTime expected = OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), zoneId);
+      assertThat(toString(DateTimeWriter.appendOffsetDateTime(new AsciiBuffer(8), epochSecond,
+        expected.getOffset().getTotalSeconds())))
+        .isEqualTo(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(expected));
+    }
+  }
+
+  /**
+   * Tests that instants are written in the same format as {@link Instant#toString()}, to the second, and with a fixed
+   * no. of fraction-of-second digits, for random instants.
+   */
+  @Test
+  void appendInstantMatchesStandardFormat() {
+    final Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      final long epochMilli = random.nextLong() % (MAX_EPOCH_SECOND * 1000);
+      final Instant instant = Instant.ofEpochMilli(epochMilli);
+      assertThat(toString(DateTimeWriter.appendInstant(new AsciiBuffer(8), epochMilli, 0)))
+        .isEqualTo(Instant.ofEpochSecond(instant.getEpochSecond()).toString());
+      assertThat(toString(DateTimeWriter.appendInstant(new AsciiBuffer(8), epochMilli, 9)))
+        .isEqualTo(DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSSSSS'Z'").withZone(ZoneOffset.UTC)
+          .format(instant));
+    }
+    assertThat(toString(DateTimeWriter.appendInstant(new AsciiBuffer(8), 1538851904123L, 3)))
+      .isEqualTo("2018-10-06T18:51:44.123Z");
+    assertThat(toString(DateTimeWriter.appendInstant(new AsciiBuffer(8), 1538851904123L, 6)))
+      .isEqualTo("2018-10-06T18:51:44.123000Z");
+  }
+
+  /**
+   * Tests that instants are written in the same format as the standard RFC 1123 date/time formatter, for random
+   * instants.
+   */
+  @Test
+  void appendRfc1123DateTimeMatchesStandardFormatter() {
+    final Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      final long epochSecond = Math.abs(random.nextLong() % MAX_EPOCH_SECOND);
+      assertThat(toString(DateTimeWriter.appendRfc1123DateTime(new AsciiBuffer(8), epochSecond)))
+        .isEqualTo(DateTimeFormatter.RFC_1123_DATE_TIME.format(
+          OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC)));
+    }
+  }
+
+  /**
+   * Tests that dates are written in the same format as the standard ISO-8601 local date formatter.
+   */
+  @Test
+  void appendDateMatchesStandardFormatter() {
+    for (long epochDay = -800_000; epochDay < 800_000; epochDay += 7) {
+      assertThat(toString(DateTimeWriter.appendDate(new AsciiBuffer(8), epochDay)))
+        .isEqualTo(DateTimeFormatter.ISO_LOCAL_DATE.format(LocalDate.ofEpochDay(epochDay)));
+    }
+  }
+
+  /**
+   * Tests converting days since the epoch to a packed civil date, and day-of-week.
+   */
+  @Test
+  void toPackedDate() {
+    for (long epochDay = -800_000; epochDay < 800_000; epochDay += 7) {
+      final LocalDate expected = LocalDate.ofEpochDay(epochDay);
+      final long date = DateTimeWriter.toPackedDate(epochDay);
+      assertThat(DateTimeWriter.year(date)).isEqualTo(expected.getYear());
+      assertThat(DateTimeWriter.month(date)).isEqualTo(expected.getMonthValue());
+      assertThat(DateTimeWriter.day(date)).isEqualTo(expected.getDayOfMonth());
+      assertThat(DateTimeWriter.dayOfWeek(epochDay)).isEqualTo(expected.getDayOfWeek().getValue());
+    }
+  }
+
+  private static String toString(AsciiBuffer buffer) {
+    return new String(buffer.toByteArray(), StandardCharsets.US_ASCII);
+  }
+}
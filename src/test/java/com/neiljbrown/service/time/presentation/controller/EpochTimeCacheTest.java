@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.controller;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link EpochTimeCache}.
+ */
+class EpochTimeCacheTest {
+
+  private AtomicInteger valueFactoryInvocations;
+  private EpochTimeCache<String> cache;
+
+  @BeforeEach
+  void setUp() {
+    this.valueFactoryInvocations = new AtomicInteger();
+    this.cache = new EpochTimeCache<>(epochSecond -> {
+      this.valueFactoryInvocations.incrementAndGet();
+      return "value-" + epochSecond;
+    });
+  }
+
+  /**
+   * Tests that repeated requests for the same second are served the same (cached) value, which is only created once.
+   */
+  @Test
+  void getWhenSameSecond() {
+    final String value = this.cache.get(1000L);
+
+    assertThat(value).isEqualTo("value-1000");
+    assertThat(this.cache.get(1000L)).isSameAs(value);
+    assertThat(this.valueFactoryInvocations.get()).isEqualTo(1);
+  }
+
+  /**
+   * Tests that a request for a later second replaces the cached value.
+   */
+  @Test
+  void getWhenLaterSecond() {
+    this.cache.get(1000L);
+
+    final String value = this.cache.get(1001L);
+
+    assertThat(value).isEqualTo("value-1001");
+    assertThat(this.cache.get(1001L)).isSameAs(value);
+    assertThat(this.valueFactoryInvocations.get()).isEqualTo(2);
+  }
+
+  /**
+   * Tests that a request for an earlier second than the one cached is served a correct value, without replacing the
+   * cached value.
+   */
+  @Test
+  void getWhenEarlierSecond() {
+    final String cachedValue = this.cache.get(1001L);
+
+    assertThat(this.cache.get(1000L)).isEqualTo("value-1000");
+    assertThat(this.cache.get(1001L)).isSameAs(cachedValue);
+  }
+}
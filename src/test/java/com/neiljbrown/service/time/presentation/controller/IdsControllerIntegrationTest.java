@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * A narrow set of integration tests of the {@link IdsController} REST API controller in conjunction with its
+ * supporting web stack (Spring MVC framework), using a mocked Servlet web container.
+ * <p>
+ * See {@link TimesControllerIntegrationTest} for more details of the scope and implementation of these tests.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+class IdsControllerIntegrationTest {
+
+  private final WebApplicationContext wac;
+  private MockMvc mockMvc;
+
+  /**
+   * @param wac this application's Spring {@link WebApplicationContext}.
+   */
+  IdsControllerIntegrationTest(WebApplicationContext wac) {
+    this.wac = wac;
+  }
+
+  @BeforeEach
+  void setUp() {
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(this.wac).build();
+  }
+
+  /**
+   * Tests making a valid request to the 'Issue IDs' API for a block of IDs.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void issueIdsWhenValidRequest() throws Exception {
+    this.mockMvc.perform(
+      post("/v1/ids")
+        .accept(MediaType.APPLICATION_JSON)
+        .param("count", "3")
+    ).andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+      .andExpect(jsonPath("$.ids", hasSize(3)))
+      .andExpect(jsonPath("$.ids[1]", greaterThan(0L)));
+  }
+
+  /**
+   * Tests making a request to the 'Issue IDs' API with an invalid 'count' request param.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void issueIdsWhenInvalidCountRequestParam() throws Exception {
+    for (String count : new String[] {"0", "10001", "invalid"}) {
+      this.mockMvc.perform(
+        post("/v1/ids")
+          .accept(MediaType.APPLICATION_JSON)
+          .param("count", count)
+      ).andExpect(status().isBadRequest())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+        .andExpect(jsonPath("$.code").value(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString()))
+        .andExpect(jsonPath("$.message", containsString("count")));
+    }
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.neiljbrown.service.time.presentation.controller.TimesController.PlatformTimeFormatRequestParamValues;
+
+/**
+ * Unit tests for {@link PlatformTimeFormats}, and the formats it contains.
+ */
+class PlatformTimeFormatsTest {
+
+  /** 2018-10-06T18:51:44.123Z */
+  private static final long EPOCH_MILLI = 1538851904123L;
+
+  private final PlatformTimeFormats formats = new PlatformTimeFormats();
+
+  /**
+   * Tests the values of the Platform time written by each of the built-in formats.
+   */
+  @Test
+  void builtInFormats() {
+    assertThat(formatValue(PlatformTimeFormatRequestParamValues.ISO_8601)).isEqualTo("2018-10-06T18:51:44Z");
+    assertThat(formatValue(PlatformTimeFormats.ISO_8601_MILLIS)).isEqualTo("2018-10-06T18:51:44.123Z");
+    assertThat(formatValue(PlatformTimeFormats.ISO_8601_MICROS)).isEqualTo("2018-10-06T18:51:44.123000Z");
+    assertThat(formatValue(PlatformTimeFormats.ISO_8601_NANOS)).isEqualTo("2018-10-06T18:51:44.123000000Z");
+    assertThat(formatValue(PlatformTimeFormats.RFC_1123)).isEqualTo("Sat, 6 Oct 2018 18:51:44 GMT");
+    assertThat(formatValue(PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP)).isEqualTo("1538851904");
+    assertThat(formatValue(PlatformTimeFormats.UNIX_MILLIS_TIMESTAMP)).isEqualTo("1538851904123");
+    assertThat(formatValue(PlatformTimeFormats.UNIX_MICROS_TIMESTAMP)).isEqualTo("1538851904123000");
+    assertThat(formatValue(PlatformTimeFormats.UNIX_NANOS_TIMESTAMP)).isEqualTo("1538851904123000000");
+    assertThat(this.formats.get(PlatformTimeFormats.UNIX_MILLIS_TIMESTAMP).toNumber(EPOCH_MILLI))
+      .isEqualTo(EPOCH_MILLI);
+    assertThat(this.formats.get(PlatformTimeFormatRequestParamValues.ISO_8601).isSecondResolution()).isTrue();
+    assertThat(this.formats.get(PlatformTimeFormats.ISO_8601_MILLIS).isSecondResolution()).isFalse();
+  }
+
+  /**
+   * Tests that date/time patterns are written in the same format as the equivalent standard formatter, for random
+   * instants.
+   */
+  @Test
+  void patternFormatsMatchStandardFormatter() {
+    final String[] patterns = {"yyyy-MM-dd HH:mm:ss.SSS", "yy/M/d H:m:s", "EEE, d MMM uuuu", "dd.MM.y 'at' HH'h'mm",
+      "yyyyMMddHHmmssSSSSSS", "HH:mm:ss.S", "'It''s' HH 'o''clock'"};
+    final Random random = new Random(42);
+    for (String pattern : patterns) {
+      final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern).withZone(ZoneOffset.UTC);
+      for (int i = 0; i < 1_000; i++) {
+        final long epochMilli = Math.abs(random.nextLong() % Instant.parse("3000-01-01T00:00:00Z").toEpochMilli());
+        assertThat(formatValue(PlatformTimeFormats.PATTERN_PREFIX + pattern, epochMilli))
+          .isEqualTo(formatter.format(Instant.ofEpochMilli(epochMilli)));
+      }
+    }
+  }
+
+  /**
+   * Tests that a pattern is cached once it's been used twice, and its format is then served from the registry, and
+   * that a pattern only has a second resolution if it doesn't contain a fraction-of-second.
+   */
+  @Test
+  void patternFormatsAreCached() {
+    final String format = PlatformTimeFormats.PATTERN_PREFIX + "yyyy-MM-dd";
+    assertThat(this.formats.get(format)).isNotNull();
+    assertThat(this.formats.getCachedPatternCount()).isZero();
+    final PlatformTimeFormat patternFormat = this.formats.get(format);
+    assertThat(this.formats.getCachedPatternCount()).isEqualTo(1);
+    assertThat(this.formats.get(format)).isSameAs(patternFormat);
+    assertThat(patternFormat.getName()).isEqualTo(PatternPlatformTimeFormat.NAME);
+    assertThat(patternFormat.isSecondResolution()).isTrue();
+    assertThat(this.formats.get(PlatformTimeFormats.PATTERN_PREFIX + "ss.SSS").isSecondResolution()).isFalse();
+  }
+
+  /**
+   * Tests that patterns which are only used once, e.g. junk, aren't cached, and so can't fill the cache.
+   */
+  @Test
+  void patternFormatsUsedOnceAreNotCached() {
+    for (int i = 0; i < PlatformTimeFormats.MAX_CACHED_PATTERNS * 2; i++) {
+      assertThat(this.formats.get(PlatformTimeFormats.PATTERN_PREFIX + "'" + i + "' yyyy")).isNotNull();
+    }
+    assertThat(this.formats.getCachedPatternCount()).isZero();
+
+    final String format = PlatformTimeFormats.PATTERN_PREFIX + "yyyy-MM-dd";
+    this.formats.get(format);
+    final PlatformTimeFormat patternFormat = this.formats.get(format);
+    assertThat(this.formats.get(format)).isSameAs(patternFormat);
+  }
+
+  /**
+   * Tests that once the cache of patterns is full, admitting another pattern evicts the least recently used, so that
+   * patterns in regular use stay cached.
+   */
+  @Test
+  void patternFormatsAreEvictedLeastRecentlyUsedFirst() {
+    final String[] patterns = new String[PlatformTimeFormats.MAX_CACHED_PATTERNS + 1];
+    for (int i = 0; i < patterns.length; i++) {
+      patterns[i] = PlatformTimeFormats.PATTERN_PREFIX + "'" + i + "' yyyy";
+    }
+    final PlatformTimeFormat[] cachedFormats = new PlatformTimeFormat[PlatformTimeFormats.MAX_CACHED_PATTERNS];
+    for (int i = 0; i < cachedFormats.length; i++) {
+      this.formats.get(patterns[i]);
+      cachedFormats[i] = this.formats.get(patterns[i]);
+    }
+    assertThat(this.formats.getCachedPatternCount()).isEqualTo(PlatformTimeFormats.MAX_CACHED_PATTERNS);
+    // The first pattern is used again, leaving the second as the least recently used
+    assertThat(this.formats.get(patterns[0])).isSameAs(cachedFormats[0]);
+
+    final String newPattern = patterns[PlatformTimeFormats.MAX_CACHED_PATTERNS];
+    this.formats.get(newPattern);
+    final PlatformTimeFormat newFormat = this.formats.get(newPattern);
+
+    assertThat(this.formats.getCachedPatternCount()).isEqualTo(PlatformTimeFormats.MAX_CACHED_PATTERNS);
+    assertThat(this.formats.get(newPattern)).isSameAs(newFormat);
+    assertThat(this.formats.get(patterns[0])).isSameAs(cachedFormats[0]);
+    assertThat(this.formats.get(patterns[2])).isSameAs(cachedFormats[2]);
+    assertThat(this.formats.get(patterns[1])).isNotSameAs(cachedFormats[1]);
+  }
+
+  /**
+   * Tests that unsupported formats, and invalid or unsupported patterns, aren't found.
+   */
+  @Test
+  void getWhenInvalidFormat() {
+    final String[] invalidFormats = {"", "iso", "ISO-8601", "pattern", PlatformTimeFormats.PATTERN_PREFIX,
+      "pattern:yyyy-MM-dd'T", "pattern:yyyy-MM-dd VV", "pattern:yyyyy", "pattern:ddd", "pattern:[yyyy]",
+      "pattern:HH\\\"mm", "pattern:yyyy\u00e9",
+      "pattern:" + String.join("", Collections.nCopies(13, "yyyy-"))};
+    for (String invalidFormat : invalidFormats) {
+      assertThat(this.formats.get(invalidFormat)).as(invalidFormat).isNull();
+    }
+  }
+
+  /**
+   * Tests that responses for the same second are cached, and support conditional requests, and that responses have
+   * caching headers which depend on the format's resolution.
+   */
+  @Test
+  void getResponseSupportsHttpCaching() {
+    final PlatformTimeFormat format = this.formats.get(PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP);
+    final ResponseEntity<byte[]> response = format.getResponse(PlatformTimeRepresentation.JSON, EPOCH_MILLI, null);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(format.getResponse(PlatformTimeRepresentation.JSON, EPOCH_MILLI + 1, null)).isSameAs(response);
+    final HttpHeaders headers = response.getHeaders();
+    assertThat(headers.getETag()).isEqualTo("\"1538851904-json\"");
+    assertThat(headers.getCacheControl()).isEqualTo(PlatformTimeFormat.SECOND_RESOLUTION_CACHE_CONTROL);
+    assertThat(headers.getExpires()).isEqualTo(1538851905000L);
+    assertThat(headers.getVary()).containsExactly(HttpHeaders.ACCEPT, TimesController.TENANT_ID_HEADER);
+
+    final ResponseEntity<byte[]> notModifiedResponse =
+      format.getResponse(PlatformTimeRepresentation.JSON, EPOCH_MILLI, "W/\"1538851903-json\", \"1538851904-json\"");
+    assertThat(notModifiedResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    assertThat(notModifiedResponse.getBody()).isNull();
+    assertThat(notModifiedResponse.getHeaders().getETag()).isEqualTo(headers.getETag());
+    assertThat(format.getResponse(PlatformTimeRepresentation.TEXT, EPOCH_MILLI, headers.getETag()).getStatusCode())
+      .isEqualTo(HttpStatus.OK);
+
+    final HttpHeaders millisHeaders = this.formats.get(PlatformTimeFormats.UNIX_MILLIS_TIMESTAMP)
+      .getResponse(PlatformTimeRepresentation.JSON, EPOCH_MILLI, null).getHeaders();
+    assertThat(millisHeaders.getETag()).isEqualTo("\"1538851904123-json\"");
+    assertThat(millisHeaders.getCacheControl()).isEqualTo(PlatformTimeFormat.MILLI_RESOLUTION_CACHE_CONTROL);
+  }
+
+  /**
+   * Tests that a response in a second resolution format, served at any offset within its second, including just
+   * before the end of it, isn't fresh beyond the end of the second.
+   */
+  @Test
+  void getResponseIsNotFreshBeyondItsSecond() {
+    final PlatformTimeFormat format = this.formats.get(PlatformTimeFormatRequestParamValues.ISO_8601);
+    final long secondStartEpochMilli = EPOCH_MILLI - EPOCH_MILLI % 1000;
+    for (long offsetMillis : new long[] {0, 123, 500, 999}) {
+      final long servedEpochMilli = secondStartEpochMilli + offsetMillis;
+      final HttpHeaders headers =
+        format.getResponse(PlatformTimeRepresentation.JSON, servedEpochMilli, null).getHeaders();
+      // As per RFC 7234, max-age takes precedence over Expires in determining a response's freshness lifetime
+      final String cacheControl = headers.getCacheControl();
+      assertThat(cacheControl).contains("max-age=");
+      final long maxAgeSeconds = Long.parseLong(cacheControl.replaceAll(".*max-age=(\\d+).*", "$1"));
+      assertThat(servedEpochMilli + maxAgeSeconds * 1000).as("offset " + offsetMillis)
+        .isLessThanOrEqualTo(secondStartEpochMilli + 1000);
+      assertThat(headers.getExpires()).isEqualTo(secondStartEpochMilli + 1000);
+    }
+  }
+
+  /**
+   * Tests evaluating If-None-Match headers against an entity tag.
+   */
+  @Test
+  void matchesEntityTag() {
+    final String entityTag = "\"1538851904-json\"";
+    assertThat(PlatformTimeFormat.matchesEntityTag(entityTag, entityTag)).isTrue();
+    assertThat(PlatformTimeFormat.matchesEntityTag("*", entityTag)).isTrue();
+    assertThat(PlatformTimeFormat.matchesEntityTag("W/" + entityTag, entityTag)).isTrue();
+    assertThat(PlatformTimeFormat.matchesEntityTag("\"a\",  " + entityTag + " ", entityTag)).isTrue();
+    assertThat(PlatformTimeFormat.matchesEntityTag("\"1538851904-text\"", entityTag)).isFalse();
+    assertThat(PlatformTimeFormat.matchesEntityTag("\"1538851904-json\"x", entityTag)).isFalse();
+    assertThat(PlatformTimeFormat.matchesEntityTag("", entityTag)).isFalse();
+  }
+
+  private String formatValue(String format) {
+    return formatValue(format, EPOCH_MILLI);
+  }
+
+  private String formatValue(String format, long epochMilli) {
+    final AsciiBuffer out = new AsciiBuffer(8);
+    this.formats.get(format).appendValue(out, epochMilli);
+    return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+  }
+}
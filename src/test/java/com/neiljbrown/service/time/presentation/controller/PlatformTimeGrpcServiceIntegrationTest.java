@@ -0,0 +1,199 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.ClientCalls;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.neiljbrown.service.time.Application;
+import com.neiljbrown.service.time.business.TenantClock;
+import com.neiljbrown.service.time.business.TenantClockProvider;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+import com.neiljbrown.service.time.presentation.grpc.GrpcServer;
+
+/**
+ * Integration tests of the gRPC {@link PlatformTimeGrpcService}, served by the application's {@link GrpcServer},
+ * listening on an ephemeral port. Calls are made over a real (plaintext HTTP/2) gRPC channel on the loopback
+ * interface, and the messages are encoded and decoded using {@link PlatformTimeProtobuf}.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+  properties = {"grpc.enabled=true", "grpc.bind-address=127.0.0.1", "grpc.port=0", "grpc.tick-interval-millis=100"})
+class PlatformTimeGrpcServiceIntegrationTest {
+
+  private final ApplicationContext applicationContext;
+  private ManagedChannel channel;
+
+  /**
+   * @param applicationContext this application's Spring {@link ApplicationContext}.
+   */
+  PlatformTimeGrpcServiceIntegrationTest(ApplicationContext applicationContext) {
+    this.applicationContext = applicationContext;
+  }
+
+  @BeforeEach
+  void setUp() {
+    final int port = this.applicationContext.getBean(GrpcServer.class).getPort();
+    this.channel = NettyChannelBuilder.forAddress("127.0.0.1", port)
+      .usePlaintext()
+      .build();
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    this.channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    final TenantClockProvider tenantClockProvider = this.applicationContext.getBean(TenantClockProvider.class);
+    tenantClockProvider.getTenantClocks().keySet().forEach(tenantClockProvider::removeTenantClock);
+  }
+
+  /**
+   * Tests the 'GetPlatformTime' RPC when no format is requested, which defaults to ISO-8601.
+   */
+  @Test
+  void getPlatformTimeWhenDefaultFormat() {
+    final long startEpochMilli = System.currentTimeMillis();
+
+    final PlatformTimeProtobuf.PlatformTime platformTime = getPlatformTime(null, null);
+
+    assertThat(platformTime.getEpochMilli()).isBetween(startEpochMilli - 1000, System.currentTimeMillis() + 1000);
+    assertThat(platformTime.getNumber()).isNull();
+    assertThat(Instant.parse(platformTime.getText()).getEpochSecond())
+      .isEqualTo(Math.floorDiv(platformTime.getEpochMilli(), 1000));
+  }
+
+  /**
+   * Tests the 'GetPlatformTime' RPC for a numeric format, whose value is returned as a number.
+   */
+  @Test
+  void getPlatformTimeWhenNumericFormat() {
+    final PlatformTimeProtobuf.PlatformTime platformTime =
+      getPlatformTime(PlatformTimeFormats.UNIX_MILLIS_TIMESTAMP, null);
+
+    assertThat(platformTime.getText()).isNull();
+    assertThat(platformTime.getNumber()).isEqualTo(platformTime.getEpochMilli());
+  }
+
+  /**
+   * Tests the 'GetPlatformTime' RPC for a format specified as a date/time pattern.
+   */
+  @Test
+  void getPlatformTimeWhenPatternFormat() {
+    final PlatformTimeProtobuf.PlatformTime platformTime =
+      getPlatformTime(PlatformTimeFormats.PATTERN_PREFIX + "yyyy-MM-dd", null);
+
+    assertThat(platformTime.getText()).isEqualTo(Instant.ofEpochMilli(platformTime.getEpochMilli()).toString()
+      .substring(0, 10));
+  }
+
+  /**
+   * Tests that the 'GetPlatformTime' RPC answers a request made on behalf of a tenant with its own clock with the
+   * tenant's time.
+   */
+  @Test
+  void getPlatformTimeWhenTenantClock() {
+    final Instant frozenTime = Instant.parse("2018-10-06T09:30:00Z");
+    this.applicationContext.getBean(TenantClockProvider.class)
+      .setTenantClock("qa-1", TenantClock.frozen(frozenTime.toEpochMilli()));
+
+    final PlatformTimeProtobuf.PlatformTime platformTime =
+      getPlatformTime(TimesController.PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP, "qa-1");
+
+    assertThat(platformTime.getEpochMilli()).isEqualTo(frozenTime.toEpochMilli());
+    assertThat(platformTime.getNumber()).isEqualTo(frozenTime.getEpochSecond());
+  }
+
+  /**
+   * Tests that the 'GetPlatformTime' RPC fails with status INVALID_ARGUMENT, and the API error code in the call's
+   * trailers, when an invalid format is requested.
+   */
+  @Test
+  void getPlatformTimeWhenInvalidFormat() {
+    final StatusRuntimeException exception =
+      catchThrowableOfType(() -> getPlatformTime("invalid", null), StatusRuntimeException.class);
+
+    assertThat(exception).isNotNull();
+    assertThat(exception.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+    assertThat(exception.getStatus().getDescription()).startsWith("Invalid 'format'.");
+    assertThat(exception.getTrailers().get(PlatformTimeGrpcService.ERROR_CODE_TRAILER))
+      .isEqualTo(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString());
+  }
+
+  /**
+   * Tests the 'StreamPlatformTime' RPC, which sends the current time on subscribing, and then a tick at each interval.
+   */
+  @Test
+  void streamPlatformTime() {
+    final ClientCall<byte[], byte[]> call =
+      this.channel.newCall(PlatformTimeGrpcService.STREAM_PLATFORM_TIME_METHOD, CallOptions.DEFAULT);
+    final Iterator<byte[]> ticks = ClientCalls.blockingServerStreamingCall(call,
+      PlatformTimeProtobuf.encodeRequest(PlatformTimeFormats.UNIX_MILLIS_TIMESTAMP, null));
+
+    try {
+      final long firstEpochMilli = PlatformTimeProtobuf.decodePlatformTime(ticks.next()).getEpochMilli();
+      long previousEpochMilli = firstEpochMilli;
+      for (int i = 0; i < 3; i++) {
+        final PlatformTimeProtobuf.PlatformTime tick = PlatformTimeProtobuf.decodePlatformTime(ticks.next());
+        assertThat(tick.getNumber()).isEqualTo(tick.getEpochMilli());
+        assertThat(tick.getEpochMilli()).isGreaterThan(previousEpochMilli);
+        previousEpochMilli = tick.getEpochMilli();
+      }
+      assertThat(previousEpochMilli - firstEpochMilli).isBetween(200L, 1000L);
+    } finally {
+      call.cancel("Test complete.", null);
+    }
+  }
+
+  /**
+   * Tests that the 'StreamPlatformTime' RPC fails with status INVALID_ARGUMENT when an invalid format is requested.
+   */
+  @Test
+  void streamPlatformTimeWhenInvalidFormat() {
+    final Iterator<byte[]> ticks = ClientCalls.blockingServerStreamingCall(this.channel,
+      PlatformTimeGrpcService.STREAM_PLATFORM_TIME_METHOD, CallOptions.DEFAULT,
+      PlatformTimeProtobuf.encodeRequest("invalid", null));
+
+    final StatusRuntimeException exception = catchThrowableOfType(ticks::hasNext, StatusRuntimeException.class);
+
+    assertThat(exception).isNotNull();
+    assertThat(exception.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+  }
+
+  private PlatformTimeProtobuf.PlatformTime getPlatformTime(String format, String tenantId) {
+    return PlatformTimeProtobuf.decodePlatformTime(ClientCalls.blockingUnaryCall(this.channel,
+      PlatformTimeGrpcService.GET_PLATFORM_TIME_METHOD, CallOptions.DEFAULT,
+      PlatformTimeProtobuf.encodeRequest(format, tenantId)));
+  }
+}
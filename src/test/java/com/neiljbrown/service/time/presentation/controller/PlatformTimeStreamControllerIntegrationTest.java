@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 - present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * A narrow set of integration tests of the {@link PlatformTimeStreamController} REST API controller in conjunction
+ * with its supporting web stack (Spring MVC framework), using a mocked Servlet web container.
+ * <p>
+ * See {@link TimesControllerIntegrationTest} for more details of the scope and implementation of these tests. The
+ * interval at which ticks are published is reduced to keep the tests quick to run.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+  properties = "platform-time-stream.interval-millis=100")
+class PlatformTimeStreamControllerIntegrationTest {
+
+  private final WebApplicationContext wac;
+  private MockMvc mockMvc;
+
+  /**
+   * @param wac this application's Spring {@link WebApplicationContext}.
+   */
+  PlatformTimeStreamControllerIntegrationTest(WebApplicationContext wac) {
+    this.wac = wac;
+  }
+
+  @BeforeEach
+  void setUp() {
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(this.wac).build();
+  }
+
+  /**
+   * Tests making a valid request to the 'Stream Platform Time' API, which results in a stream of events containing
+   * the Platform time in the requested format.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void streamPlatformTimeWhenValidRequest() throws Exception {
+    final MvcResult mvcResult = this.mockMvc.perform(
+      get("/v1/platform-time/stream")
+        .accept(MediaType.TEXT_EVENT_STREAM)
+        .param("format", TimesController.PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP)
+    ).andExpect(request().asyncStarted())
+      .andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+      .andReturn();
+
+    final MockHttpServletResponse response = mvcResult.getResponse();
+    final long timeoutMillis = System.currentTimeMillis() + 5000;
+    while (countEvents(response.getContentAsString()) < 2 && System.currentTimeMillis() < timeoutMillis) {
+      Thread.sleep(50);
+    }
+
+    final String responseBody = response.getContentAsString();
+    assertThat(countEvents(responseBody)).isGreaterThanOrEqualTo(2);
+    assertThat(responseBody).startsWith("data:{\"epochSeconds\":");
+    assertThat(responseBody).matches("(?s)(data:\\{\"epochSeconds\":\\d+}\n\n)+");
+  }
+
+  /**
+   * Tests making a request to the 'Stream Platform Time' API, with a 'format' request param containing a pattern,
+   * which results in a stream of events containing the Platform time formatted using the pattern.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void streamPlatformTimeWhenPatternFormatRequestParam() throws Exception {
+    final MvcResult mvcResult = this.mockMvc.perform(
+      get("/v1/platform-time/stream")
+        .accept(MediaType.TEXT_EVENT_STREAM)
+        .param("format", PlatformTimeFormats.PATTERN_PREFIX + "yyyy-MM-dd HH:mm:ss")
+    ).andExpect(request().asyncStarted())
+      .andExpect(status().isOk())
+      .andReturn();
+
+    final MockHttpServletResponse response = mvcResult.getResponse();
+    final long timeoutMillis = System.currentTimeMillis() + 5000;
+    while (countEvents(response.getContentAsString()) < 1 && System.currentTimeMillis() < timeoutMillis) {
+      Thread.sleep(50);
+    }
+
+    final String responseBody = response.getContentAsString();
+    assertThat(countEvents(responseBody)).isGreaterThanOrEqualTo(1);
+    assertThat(responseBody).matches("(?s)(data:\\{\"dateTime\":\"\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}\"}\n\n)+");
+  }
+
+  /**
+   * Tests making a request to the 'Stream Platform Time' API, with an invalid 'format' request param.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void streamPlatformTimeWhenInvalidFormatRequestParam() throws Exception {
+    this.mockMvc.perform(
+      get("/v1/platform-time/stream")
+        .accept(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_JSON)
+        .param("format", "invalid")
+    ).andExpect(status().isBadRequest())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+      .andExpect(jsonPath("$.code").value(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString()));
+  }
+
+  private static int countEvents(String responseBody) {
+    return responseBody.split("\n\n", -1).length - 1;
+  }
+}
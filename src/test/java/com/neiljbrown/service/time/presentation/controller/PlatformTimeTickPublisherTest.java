@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProviderImpl;
+import com.neiljbrown.service.time.presentation.controller.TimesController.PlatformTimeFormatRequestParamValues;
+
+/**
+ * Unit tests for {@link PlatformTimeTickPublisher}, which publish ticks to stub emitters, using the node's system
+ * clock as the source of the platform time.
+ */
+class PlatformTimeTickPublisherTest {
+
+  private static final PlatformTimeFormat FORMAT =
+    new PlatformTimeFormats().get(PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP);
+
+  private final PlatformTimeTickPublisher publisher =
+    new PlatformTimeTickPublisher(new PlatformDateTimeProviderImpl(), 20, 1, 0, 100);
+  private final CountDownLatch unblock = new CountDownLatch(1);
+
+  @AfterEach
+  void tearDown() {
+    this.unblock.countDown();
+    this.publisher.stop();
+  }
+
+  /**
+   * Tests that a subscriber which stalls, blocking the only sender thread, is evicted once the send timeout elapses,
+   * and that other subscribers continue to be sent ticks whilst its send remains blocked.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void stalledSubscriberIsEvictedWithoutHoldingUpOthers() throws Exception {
+    final BlockingEmitter blocked = new BlockingEmitter();
+    final CountingEmitter active = new CountingEmitter();
+    this.publisher.subscribe(FORMAT, blocked);
+    this.publisher.start();
+    assertThat(blocked.sendStarted.await(5, TimeUnit.SECONDS)).isTrue();
+    this.publisher.subscribe(FORMAT, active);
+    assertThat(this.publisher.getSubscriberCount()).isEqualTo(2);
+
+    awaitTrue(() -> this.publisher.getEvictedSubscriberCount() == 1);
+    assertThat(this.publisher.getSubscriberCount()).isEqualTo(1);
+    final int sentOnEviction = active.sent.get();
+    awaitTrue(() -> active.sent.get() >= sentOnEviction + 3);
+
+    // The evicted subscription is ended once its blocked send returns
+    assertThat(blocked.completedWithError).isFalse();
+    this.unblock.countDown();
+    awaitTrue(() -> blocked.completedWithError);
+    assertThat(blocked.sends.get()).isEqualTo(1);
+    assertThat(active.completedWithError).isFalse();
+  }
+
+  private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+    final long timeoutMillis = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < timeoutMillis) {
+      Thread.sleep(10);
+    }
+    assertThat(condition.getAsBoolean()).isTrue();
+  }
+
+  /**
+   * An emitter whose subscriber has stopped reading, so its first send blocks until the test ends.
+   */
+  private final class BlockingEmitter extends ResponseBodyEmitter {
+    private final CountDownLatch sendStarted = new CountDownLatch(1);
+    private final AtomicInteger sends = new AtomicInteger();
+    private volatile boolean completedWithError;
+
+    @Override
+    public synchronized void send(Object object, MediaType mediaType) throws IOException {
+      this.sends.incrementAndGet();
+      this.sendStarted.countDown();
+      try {
+        PlatformTimeTickPublisherTest.this.unblock.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+    }
+
+    @Override
+    public synchronized void completeWithError(Throwable ex) {
+      this.completedWithError = true;
+    }
+  }
+
+  /**
+   * An emitter which counts the events sent to it.
+   */
+  private static final class CountingEmitter extends ResponseBodyEmitter {
+    private final AtomicInteger sent = new AtomicInteger();
+    private volatile boolean completedWithError;
+
+    @Override
+    public synchronized void send(Object object, MediaType mediaType) {
+      this.sent.incrementAndGet();
+    }
+
+    @Override
+    public synchronized void completeWithError(Throwable ex) {
+      this.completedWithError = true;
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+import com.neiljbrown.service.time.business.TenantClockProvider;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * A narrow set of integration tests of the {@link TenantClocksController} admin API controller in conjunction with its
+ * supporting web stack (Spring MVC framework), using a mocked Servlet web container, including the effect of a
+ * tenant's clock on the 'Get Platform Time' API.
+ * <p>
+ * See {@link TimesControllerIntegrationTest} for more details of the scope and implementation of these tests.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+  properties = "tenant-clock.enabled=true")
+class TenantClocksControllerIntegrationTest {
+
+  private final WebApplicationContext wac;
+  private MockMvc mockMvc;
+
+  /**
+   * @param wac this application's Spring {@link WebApplicationContext}.
+   */
+  TenantClocksControllerIntegrationTest(WebApplicationContext wac) {
+    this.wac = wac;
+  }
+
+  @BeforeEach
+  void setUp() {
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(this.wac).build();
+  }
+
+  @AfterEach
+  void tearDown() {
+    final TenantClockProvider tenantClockProvider = this.wac.getBean(TenantClockProvider.class);
+    tenantClockProvider.getTenantClocks().keySet().forEach(tenantClockProvider::removeTenantClock);
+  }
+
+  /**
+   * Tests setting a frozen clock for a tenant, and that it's then used to answer the tenant's requests for the platform
+   * time, uncached, whilst requests without a tenant continue to see the platform time.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void setFrozenTenantClock() throws Exception {
+    this.mockMvc.perform(
+      put("/admin/v1/tenant-clocks/qa-1")
+        .param("dateTime", "2018-10-06T09:30:00Z")
+        .param("rate", "0")
+    ).andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+      .andExpect(jsonPath("$.tenantId").value("qa-1"))
+      .andExpect(jsonPath("$.dateTime").value("2018-10-06T09:30:00.000Z"))
+      .andExpect(jsonPath("$.rate").value(0.0));
+
+    this.mockMvc.perform(
+      get("/v1/platform-time")
+        .accept(MediaType.APPLICATION_JSON)
+        .header(TimesController.TENANT_ID_HEADER, "qa-1")
+        .param("format", "unix")
+    ).andExpect(status().isOk())
+      .andExpect(jsonPath("$.epochSeconds").value(1538818200))
+      .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"))
+      .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+
+    this.mockMvc.perform(
+      get("/v1/platform-time")
+        .accept(MediaType.APPLICATION_JSON)
+        .header(TimesController.TENANT_ID_HEADER, "unknown-tenant")
+        .param("format", "unix")
+    ).andExpect(status().isOk())
+      .andExpect(header().exists(HttpHeaders.ETAG));
+  }
+
+  /**
+   * Tests setting a clock offset from the platform time, listing it, and then removing it.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void setListAndRemoveOffsetTenantClock() throws Exception {
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-2").param("offsetMillis", "-3600000"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.offsetMillis").value(-3600000))
+      .andExpect(jsonPath("$.rate").value(1.0));
+
+    this.mockMvc.perform(get("/admin/v1/tenant-clocks").accept(MediaType.APPLICATION_JSON))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.tenantClocks.length()").value(1))
+      .andExpect(jsonPath("$.tenantClocks[0].tenantId").value("qa-2"));
+
+    this.mockMvc.perform(get("/admin/v1/tenant-clocks/qa-2").accept(MediaType.APPLICATION_JSON))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.offsetMillis").value(-3600000));
+
+    this.mockMvc.perform(delete("/admin/v1/tenant-clocks/qa-2")).andExpect(status().isNoContent());
+    this.mockMvc.perform(delete("/admin/v1/tenant-clocks/qa-2")).andExpect(status().isNotFound());
+    this.mockMvc.perform(get("/admin/v1/tenant-clocks/qa-2")).andExpect(status().isNotFound());
+  }
+
+  /**
+   * Tests requests to set a tenant's clock which are invalid.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void setTenantClockInvalid() throws Exception {
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa 1"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.code").value(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString()));
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1").param("dateTime", "2018-10-06"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.code").value(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString()));
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1")
+      .param("dateTime", "2018-10-06T09:30:00Z")
+      .param("offsetMillis", "1000"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1").param("rate", "-1"))
+      .andExpect(status().isBadRequest());
+  }
+
+  /**
+   * Tests that a tenant's clock can be set at the limits of its offset from the platform time, and its rate, but not
+   * beyond them, e.g. with a rate large enough to overflow the tenant's time.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void setTenantClockAtLimits() throws Exception {
+    final String maxOffsetMillis = Long.toString(TenantClocksController.MAX_OFFSET_MILLIS);
+    final String maxRate = Double.toString(TenantClocksController.MAX_RATE);
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1").param("offsetMillis", maxOffsetMillis))
+      .andExpect(status().isOk());
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1").param("offsetMillis", "-" + maxOffsetMillis))
+      .andExpect(status().isOk());
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1").param("rate", maxRate))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.rate").value(TenantClocksController.MAX_RATE));
+
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1")
+      .param("offsetMillis", Long.toString(TenantClocksController.MAX_OFFSET_MILLIS + 1)))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.code").value(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString()));
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1")
+      .param("offsetMillis", Long.toString(-TenantClocksController.MAX_OFFSET_MILLIS - 1)))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1").param("offsetMillis", Long.toString(Long.MIN_VALUE)))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1").param("dateTime", "3000-01-01T00:00:00Z"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1")
+      .param("rate", Double.toString(Math.nextUp(TenantClocksController.MAX_RATE))))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1").param("rate", "1e300"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(put("/admin/v1/tenant-clocks/qa-1").param("rate", "NaN"))
+      .andExpect(status().isBadRequest());
+  }
+}
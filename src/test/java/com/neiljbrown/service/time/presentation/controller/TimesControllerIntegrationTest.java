@@ -20,6 +20,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 
@@ -27,8 +28,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
@@ -36,6 +39,9 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
 import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import com.neiljbrown.service.time.Application;
 import com.neiljbrown.service.time.presentation.ApiErrorCode;
 
@@ -186,11 +192,189 @@ class TimesControllerIntegrationTest {
     final ResultActions resultActions = this.mockMvc.perform(
       get("/v1/platform-time")
         .accept(acceptableMediaType)
-        .param("format","invalid")
+        .param("format",format)
     );
 
+    // The (pre-built) error message identifies the invalid param and its supported values, rather than echoing the
+    // supplied value
     assertGetPlatformTimeFailureResponse(resultActions, acceptableMediaType, HttpStatus.BAD_REQUEST,
-      ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString(), ".*format.*"+format+".*");
+      ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString(),
+      ".*format.*" + TimesController.PlatformTimeFormatRequestParamValues.ISO_8601 + ".*" +
+        TimesController.PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP + ".*");
+  }
+
+  /**
+   * Tests making a request to the 'Get Platform Time' API which accepts a representation other than JSON, in each of
+   * the supported formats.
+   * <p>
+   * Serves to test the following additional integration points -
+   * <br/>
+   * - Mapping / routing of requests to the handler based on each of the media types it produces.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void getPlatformTimeWhenNonJsonRepresentationAccepted() throws Exception {
+    final Instant now = Instant.now();
+
+    final byte[] binaryBody = this.mockMvc.perform(
+      get("/v1/platform-time")
+        .accept(MediaType.APPLICATION_OCTET_STREAM)
+        .param("format", TimesController.PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP)
+    ).andExpect(status().isOk())
+      .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+      .andReturn().getResponse().getContentAsByteArray();
+    assertThat(binaryBody).hasSize(Long.BYTES);
+    assertThat(ByteBuffer.wrap(binaryBody).getLong()).isBetween(now.getEpochSecond(), now.getEpochSecond() + 1);
+
+    final String textBody = this.mockMvc.perform(
+      get("/v1/platform-time")
+        .accept(MediaType.valueOf("application/cbor;q=0.5"), MediaType.TEXT_PLAIN)
+    ).andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN))
+      .andReturn().getResponse().getContentAsString();
+    assertThat(Instant.parse(textBody)).isAfterOrEqualTo(now.truncatedTo(ChronoUnit.SECONDS));
+
+    final byte[] cborBody = this.mockMvc.perform(
+      get("/v1/platform-time")
+        .accept(MediaType.valueOf(PlatformTimeRepresentation.APPLICATION_CBOR_VALUE))
+        .param("format", TimesController.PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP)
+    ).andExpect(status().isOk())
+      .andExpect(content().contentType(PlatformTimeRepresentation.APPLICATION_CBOR_VALUE))
+      .andReturn().getResponse().getContentAsByteArray();
+    // Tag 1 (epoch-based date/time), followed by a 4 byte unsigned int
+    assertThat(cborBody).hasSize(6);
+    assertThat(cborBody[0]).isEqualTo((byte) 0xC1);
+    assertThat(cborBody[1]).isEqualTo((byte) 0x1A);
+    assertThat(ByteBuffer.wrap(cborBody, 2, 4).getInt() & 0xFFFFFFFFL)
+      .isBetween(now.getEpochSecond(), now.getEpochSecond() + 1);
+  }
+
+  /**
+   * Tests making requests to the 'Get Platform Time' API for the Platform time in formats with a resolution finer than
+   * a second, and in a user supplied date/time pattern.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void getPlatformTimeWhenSubSecondOrPatternFormatRequested() throws Exception {
+    final Instant now = Instant.now();
+
+    final String millisBody = this.mockMvc.perform(
+      get("/v1/platform-time")
+        .accept(MediaType.APPLICATION_JSON)
+        .param("format", PlatformTimeFormats.UNIX_MILLIS_TIMESTAMP)
+    ).andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+      .andReturn().getResponse().getContentAsString();
+    assertThat(JsonPath.parse(millisBody).read("$.epochMillis", Long.class))
+      .isBetween(now.toEpochMilli(), now.toEpochMilli() + 1000);
+
+    final String isoMillisBody = this.mockMvc.perform(
+      get("/v1/platform-time")
+        .accept(MediaType.TEXT_PLAIN)
+        .param("format", PlatformTimeFormats.ISO_8601_MILLIS)
+    ).andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+    assertThat(isoMillisBody).matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}Z");
+    assertThat(Instant.parse(isoMillisBody)).isAfterOrEqualTo(now);
+
+    final String patternBody = this.mockMvc.perform(
+      get("/v1/platform-time")
+        .accept(MediaType.APPLICATION_JSON)
+        .param("format", PlatformTimeFormats.PATTERN_PREFIX + "yyyy-MM-dd")
+    ).andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+    assertThat(JsonPath.parse(patternBody).read("$.dateTime", String.class))
+      .isIn(now.toString().substring(0, 10), now.plusSeconds(1).toString().substring(0, 10));
+
+    this.mockMvc.perform(
+      get("/v1/platform-time")
+        .param("format", PlatformTimeFormats.PATTERN_PREFIX + "yyyy-MM-dd VV")
+    ).andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.code").value(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString()));
+  }
+
+  /**
+   * Tests that responses from the 'Get Platform Time' API include HTTP caching headers, and that conditional requests
+   * whose If-None-Match header matches the current response's ETag are answered with a 304 Not Modified response.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void getPlatformTimeWhenConditionalRequest() throws Exception {
+    final String format = TimesController.PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP;
+    final MockHttpServletResponse response = this.mockMvc.perform(get("/v1/platform-time").param("format", format))
+      .andExpect(status().isOk())
+      .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=0"))
+      .andExpect(header().exists(HttpHeaders.EXPIRES))
+      .andExpect(header().string(HttpHeaders.VARY, "Accept, X-Tenant-Id"))
+      .andReturn().getResponse();
+    final String entityTag = response.getHeader(HttpHeaders.ETAG);
+    assertThat(entityTag).matches("\"\\d+-json\"");
+
+    final MockHttpServletResponse conditionalResponse = this.mockMvc.perform(
+      get("/v1/platform-time")
+        .param("format", format)
+        .header(HttpHeaders.IF_NONE_MATCH, entityTag)
+    ).andReturn().getResponse();
+    // The response is only unmodified if the Platform time is still in the same second
+    if (conditionalResponse.getStatus() == HttpStatus.OK.value()) {
+      assertThat(conditionalResponse.getHeader(HttpHeaders.ETAG)).isNotEqualTo(entityTag);
+    } else {
+      assertThat(conditionalResponse.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+      assertThat(conditionalResponse.getContentAsByteArray()).isEmpty();
+      assertThat(conditionalResponse.getHeader(HttpHeaders.ETAG)).isEqualTo(entityTag);
+    }
+
+    this.mockMvc.perform(
+      get("/v1/platform-time")
+        .param("format", format)
+        .header(HttpHeaders.IF_NONE_MATCH, "*")
+    ).andExpect(status().isNotModified())
+      .andExpect(content().bytes(new byte[0]));
+  }
+
+  /**
+   * Tests making a request to the 'Get Platform Time' API which only accepts an unsupported representation.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void getPlatformTimeWhenUnsupportedRepresentationAccepted() throws Exception {
+    this.mockMvc.perform(
+      get("/v1/platform-time")
+        .accept(MediaType.APPLICATION_XML)
+    ).andExpect(status().isNotAcceptable());
+  }
+
+  /**
+   * Tests that requests to the 'Get Platform Time' API are recorded in metrics, which are exposed via the Actuator
+   * metrics endpoint.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void getPlatformTimeRecordsMetrics() throws Exception {
+    final MeterRegistry meterRegistry = this.wac.getBean(MeterRegistry.class);
+    final String format = TimesController.PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP;
+    final Timer requestTimer = meterRegistry.get("platform.time.requests").tag("format", format).timer();
+    final Counter errorCounter = meterRegistry.get("platform.time.errors")
+      .tag("code", ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.name()).counter();
+    final long requestCount = requestTimer.count();
+    final double errorCount = errorCounter.count();
+
+    this.mockMvc.perform(get("/v1/platform-time").param("format", format)).andExpect(status().isOk());
+    this.mockMvc.perform(get("/v1/platform-time").param("format", "invalid")).andExpect(status().isBadRequest());
+
+    assertThat(requestTimer.count()).isEqualTo(requestCount + 1);
+    assertThat(errorCounter.count()).isEqualTo(errorCount + 1);
+    assertThat(meterRegistry.get("platform.time.clock.reads").timer()).isNotNull();
+    this.mockMvc.perform(
+      get("/actuator/metrics/platform.time.requests")
+        .param("tag", "format:" + format)
+    ).andExpect(status().isOk())
+      .andExpect(jsonPath("$.measurements[?(@.statistic == 'COUNT')].value").exists());
   }
 
   private void assertGetPlatformTimeSuccessResponse(String requestedFormat, ResultActions resultActions,
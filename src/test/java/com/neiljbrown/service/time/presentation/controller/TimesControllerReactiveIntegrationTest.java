@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.neiljbrown.service.time.Application;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * A narrow set of integration tests of the {@link TimesController} REST API controller when the application is run in
+ * the reactive web execution mode, in conjunction with the Spring WebFlux framework, without a web server.
+ * <p>
+ * These tests check that the 'Get Platform Time' API behaves the same as in the (default) servlet web execution mode.
+ * See {@link TimesControllerIntegrationTest} for more thorough tests of the API itself.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+  properties = "spring.main.web-application-type=reactive")
+class TimesControllerReactiveIntegrationTest {
+
+  private final ApplicationContext applicationContext;
+  private WebTestClient webTestClient;
+
+  /**
+   * @param applicationContext this application's Spring {@link ApplicationContext}.
+   */
+  TimesControllerReactiveIntegrationTest(ApplicationContext applicationContext) {
+    this.applicationContext = applicationContext;
+  }
+
+  @BeforeEach
+  void setUp() {
+    this.webTestClient = WebTestClient.bindToApplicationContext(this.applicationContext).build();
+  }
+
+  /**
+   * Tests getting the platform time in the default (ISO-8601) format, as JSON.
+   */
+  @Test
+  void getPlatformTime() {
+    Instant before = Instant.now().minusSeconds(1);
+
+    EntityExchangeResult<byte[]> result = this.webTestClient.get().uri("/v1/platform-time")
+      .accept(MediaType.APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+      .expectHeader().valueEquals(HttpHeaders.VARY, "Accept, X-Tenant-Id")
+      .expectBody().jsonPath("$.dateTime").isNotEmpty()
+      .returnResult();
+
+    String body = new String(result.getResponseBody());
+    String dateTime = body.substring(body.indexOf(":\"") + 2, body.lastIndexOf('"'));
+    assertThat(Instant.parse(dateTime)).isAfterOrEqualTo(before).isBeforeOrEqualTo(Instant.now());
+  }
+
+  /**
+   * Tests getting the platform time in a numeric format, as plain text.
+   */
+  @Test
+  void getPlatformTimeWhenUnixFormatRequestedAsText() {
+    long before = Instant.now().getEpochSecond();
+
+    EntityExchangeResult<String> result = this.webTestClient.get().uri("/v1/platform-time?format=unix")
+      .accept(MediaType.TEXT_PLAIN)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_PLAIN)
+      .expectBody(String.class)
+      .returnResult();
+
+    assertThat(Long.parseLong(result.getResponseBody())).isBetween(before, Instant.now().getEpochSecond());
+  }
+
+  /**
+   * Tests that a conditional request for a platform time whose entity tag matches that of the current time results in
+   * a 304 (Not Modified) response, without a body.
+   */
+  @Test
+  void getPlatformTimeWhenConditionalRequest() {
+    this.webTestClient.get().uri("/v1/platform-time?format=unix")
+      .accept(MediaType.APPLICATION_JSON)
+      .header(HttpHeaders.IF_NONE_MATCH, "*")
+      .exchange()
+      .expectStatus().isNotModified()
+      .expectHeader().exists(HttpHeaders.ETAG)
+      .expectBody().isEmpty();
+  }
+
+  /**
+   * Tests that a request for an unsupported format results in a 400 (Bad Request) error response, with the same error
+   * body as in the servlet web execution mode.
+   */
+  @Test
+  void getPlatformTimeWhenInvalidFormat() {
+    this.webTestClient.get().uri("/v1/platform-time?format=foo")
+      .accept(MediaType.APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isBadRequest()
+      .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+      .expectBody()
+      .jsonPath("$.code").isEqualTo(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString());
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018 - present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.Instant;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * A narrow set of integration tests of the {@link TimestampConversionController} REST API controller in conjunction
+ * with its supporting web stack (Spring MVC framework), using a mocked Servlet web container.
+ * <p>
+ * See {@link TimesControllerIntegrationTest} for more details of the scope and implementation of these tests.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+class TimestampConversionControllerIntegrationTest {
+
+  private static final MediaType APPLICATION_NDJSON =
+    MediaType.parseMediaType(TimestampConversionController.APPLICATION_NDJSON_VALUE);
+
+  private final WebApplicationContext wac;
+  private MockMvc mockMvc;
+
+  /**
+   * @param wac this application's Spring {@link WebApplicationContext}.
+   */
+  TimestampConversionControllerIntegrationTest(WebApplicationContext wac) {
+    this.wac = wac;
+  }
+
+  @BeforeEach
+  void setUp() {
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(this.wac).build();
+  }
+
+  /**
+   * Tests converting NDJSON timestamps from ISO-8601 format to unix (epoch seconds), including an invalid timestamp.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void convertTimestampsWhenNdjsonRequestBody() throws Exception {
+    final String requestBody =
+      "\"2018-10-06T18:51:44Z\"\n\"2018-10-06T18:51:45.999Z\"\n\"invalid\"\n\"1970-01-01T00:00:00Z\"\n";
+
+    final String responseBody = this.mockMvc.perform(
+      post("/v1/timestamps/conversions")
+        .param("from", TimesController.PlatformTimeFormatRequestParamValues.ISO_8601)
+        .param("to", TimesController.PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP)
+        .contentType(APPLICATION_NDJSON)
+        .content(requestBody)
+    ).andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(APPLICATION_NDJSON))
+      .andReturn().getResponse().getContentAsString();
+
+    assertThat(responseBody.split("\n")).containsExactly(
+      "{\"epochSeconds\":1538851904}",
+      "{\"epochSeconds\":1538851905}",
+      "{\"code\":\"" + ApiErrorCode.INVALID_REQUEST_BODY_VALUE + "\",\"message\":\"Invalid 'iso-8601' timestamp, or "
+        + "timestamp outside of supported range, at index [2].\"}",
+      "{\"epochSeconds\":0}");
+  }
+
+  /**
+   * Tests converting a JSON array of timestamps, large enough to be converted in multiple chunks, in parallel, from
+   * epoch millis to ISO-8601 format, checking the order of the timestamps is preserved.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void convertTimestampsWhenLargeJsonArrayRequestBody() throws Exception {
+    final long firstEpochMilli = Instant.parse("2018-10-06T18:51:44Z").toEpochMilli();
+    final int timestampCount = StreamingTimestampConverter.CHUNK_SIZE * 3 + 1;
+    final String requestBody = LongStream.range(0, timestampCount)
+      .mapToObj(i -> Long.toString(firstEpochMilli + i * 1000))
+      .collect(Collectors.joining(",", "[", "]"));
+
+    final String responseBody = this.mockMvc.perform(
+      post("/v1/timestamps/conversions")
+        .param("from", "unix-millis")
+        .param("to", TimesController.PlatformTimeFormatRequestParamValues.ISO_8601)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(requestBody)
+    ).andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+
+    final String[] lines = responseBody.split("\n");
+    assertThat(lines).hasSize(timestampCount);
+    for (int i = 0; i < timestampCount; i++) {
+      assertThat(lines[i]).isEqualTo("{\"dateTime\":\"" + Instant.ofEpochMilli(firstEpochMilli + i * 1000L) + "\"}");
+    }
+  }
+
+  /**
+   * Tests converting timestamps when the request body is malformed part way through.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void convertTimestampsWhenMalformedRequestBody() throws Exception {
+    final String responseBody = this.mockMvc.perform(
+      post("/v1/timestamps/conversions")
+        .param("from", TimesController.PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP)
+        .param("to", "unix-millis")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("[1538851904, 1538851905, }")
+    ).andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+
+    assertThat(responseBody.split("\n")).containsExactly(
+      "{\"epochMillis\":1538851904000}",
+      "{\"epochMillis\":1538851905000}",
+      "{\"code\":\"" + ApiErrorCode.INVALID_REQUEST_BODY_VALUE + "\",\"message\":\"Malformed request body at timestamp "
+        + "index [2].\"}");
+  }
+
+  /**
+   * Tests making a request with an invalid 'to' request param.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void convertTimestampsWhenInvalidToRequestParam() throws Exception {
+    this.mockMvc.perform(
+      post("/v1/timestamps/conversions")
+        .param("from", TimesController.PlatformTimeFormatRequestParamValues.UNIX_TIMESTAMP)
+        .param("to", "invalid")
+        .contentType(APPLICATION_NDJSON)
+        .content("1538851904\n")
+    ).andExpect(status().isBadRequest())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+      .andExpect(jsonPath("$.code").value(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString()))
+      .andExpect(jsonPath("$.message").value(containsString("'to'")));
+  }
+}
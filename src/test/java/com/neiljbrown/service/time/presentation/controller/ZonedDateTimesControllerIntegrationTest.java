@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.neiljbrown.service.time.Application;
+import com.neiljbrown.service.time.presentation.ApiErrorCode;
+
+/**
+ * A narrow set of integration tests of the {@link ZonedDateTimesController} REST API controller in conjunction with
+ * its supporting web stack (Spring MVC framework), using a mocked Servlet web container.
+ * <p>
+ * See {@link TimesControllerIntegrationTest} for more details of the scope and implementation of these tests.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+class ZonedDateTimesControllerIntegrationTest {
+
+  private final WebApplicationContext wac;
+  private MockMvc mockMvc;
+
+  /**
+   * @param wac this application's Spring {@link WebApplicationContext}.
+   */
+  ZonedDateTimesControllerIntegrationTest(WebApplicationContext wac) {
+    this.wac = wac;
+  }
+
+  @BeforeEach
+  void setUp() {
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(this.wac).build();
+  }
+
+  /**
+   * Tests getting the local date/time of a supplied instant in multiple time-zones, specified using both a comma
+   * separated list and a repeated request param.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void getZonedDateTimesWhenInstantSupplied() throws Exception {
+    this.mockMvc.perform(
+      get("/v1/zoned-date-times")
+        .accept(MediaType.APPLICATION_JSON)
+        .param("zone", "Europe/London,Asia/Kathmandu")
+        .param("zone", "America/St_Johns")
+        .param("instant", "2018-10-06T18:51:44Z")
+    ).andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+      .andExpect(jsonPath("$.zonedDateTimes", hasSize(3)))
+      .andExpect(jsonPath("$.zonedDateTimes[0].zone").value("Europe/London"))
+      .andExpect(jsonPath("$.zonedDateTimes[0].dateTime").value("2018-10-06T19:51:44+01:00"))
+      .andExpect(jsonPath("$.zonedDateTimes[0].offsetSeconds").value(3600))
+      .andExpect(jsonPath("$.zonedDateTimes[1].dateTime").value("2018-10-07T00:36:44+05:45"))
+      .andExpect(jsonPath("$.zonedDateTimes[2].dateTime").value("2018-10-06T16:21:44-02:30"));
+  }
+
+  /**
+   * Tests getting the local date/time of the platform time in a time-zone.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void getZonedDateTimesWhenPlatformTime() throws Exception {
+    final Instant now = Instant.now();
+
+    final String responseBody = this.mockMvc.perform(
+      get("/v1/zoned-date-times")
+        .accept(MediaType.APPLICATION_JSON)
+        .param("zone", "UTC")
+    ).andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+
+    final String dateTime = responseBody.replaceAll(".*\"dateTime\":\"([^\"]+)\".*", "$1");
+    assertThat(OffsetDateTime.parse(dateTime).toEpochSecond())
+      .isBetween(now.getEpochSecond(), now.getEpochSecond() + 1);
+  }
+
+  /**
+   * Tests making a request with invalid request params.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void getZonedDateTimesWhenInvalidRequestParams() throws Exception {
+    this.mockMvc.perform(get("/v1/zoned-date-times").param("zone", "Europe/London,Europe/Nowhere"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.code").value(ApiErrorCode.INVALID_REQUEST_PARAM_VALUE.toString()))
+      .andExpect(jsonPath("$.message", containsString("'zone'")));
+    this.mockMvc.perform(get("/v1/zoned-date-times"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.message", containsString("'zone'")));
+    this.mockMvc.perform(get("/v1/zoned-date-times").param("zone", "UTC").param("instant", "yesterday"))
+      .andExpect(status().isBadRequest())
+      .andExpect(jsonPath("$.message", containsString("'instant'")));
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.shm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+
+/**
+ * Tests of {@link SharedMemoryPlatformTimePublisher} and {@link SharedMemoryPlatformTimeReader}, which exchange the
+ * platform time via a memory-mapped file in a temporary directory.
+ */
+class SharedMemoryPlatformTimePublisherTest {
+
+  private static final long PLATFORM_EPOCH_MILLI = Instant.parse("2018-10-06T18:51:44.500Z").toEpochMilli();
+
+  private final AtomicLong epochMilli = new AtomicLong(PLATFORM_EPOCH_MILLI);
+  private final PlatformDateTimeProvider platformDateTimeProvider = () -> Instant.ofEpochMilli(this.epochMilli.get());
+  private Path directory;
+  private Path path;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.directory = Files.createTempDirectory(getClass().getSimpleName());
+    this.path = this.directory.resolve("platform-time.shm");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    Files.deleteIfExists(this.path);
+    Files.deleteIfExists(this.directory);
+  }
+
+  /**
+   * Tests that once started the publisher publishes the platform time, with the layout's header, and that a reader in
+   * the same or another process sees it.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void publishPlatformTime() throws Exception {
+    final SharedMemoryPlatformTimePublisher publisher = newPublisher(60_000_000L);
+    publisher.start();
+    try (SharedMemoryPlatformTimeReader reader = new SharedMemoryPlatformTimeReader(this.path)) {
+      assertThat(reader.getEpochMilli()).isEqualTo(PLATFORM_EPOCH_MILLI);
+      final SharedMemoryPlatformTimeReader.Snapshot snapshot = reader.read();
+      assertThat(snapshot.getEpochMilli()).isEqualTo(PLATFORM_EPOCH_MILLI);
+      assertThat(snapshot.getSequence()).isEqualTo(2);
+      // With no clock health provider, the clock is assumed to be healthy
+      assertThat(snapshot.isHealthy()).isTrue();
+      assertThat(snapshot.isHealthMonitored()).isFalse();
+      assertThat(snapshot.isSlewing()).isFalse();
+      assertThat(snapshot.isStopped()).isFalse();
+      assertThat(snapshot.getClockOffsetNanos()).isZero();
+      assertThat(snapshot.getPublishIntervalMicros()).isEqualTo(60_000_000);
+
+      this.epochMilli.addAndGet(1000);
+      publisher.publish();
+
+      assertThat(reader.getEpochMilli()).isEqualTo(PLATFORM_EPOCH_MILLI + 1000);
+      assertThat(reader.read().getSequence()).isEqualTo(4);
+    } finally {
+      publisher.stop();
+    }
+  }
+
+  /**
+   * Tests that on stopping, the publisher publishes a final record marked as stopped, and that a subsequent publisher
+   * of the same file continues its sequence no.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void stopAndRestart() throws Exception {
+    final SharedMemoryPlatformTimePublisher publisher = newPublisher(60_000_000L);
+    publisher.start();
+    publisher.stop();
+    try (SharedMemoryPlatformTimeReader reader = new SharedMemoryPlatformTimeReader(this.path)) {
+      SharedMemoryPlatformTimeReader.Snapshot snapshot = reader.read();
+      assertThat(snapshot.isStopped()).isTrue();
+      assertThat(snapshot.getSequence()).isEqualTo(4);
+
+      final SharedMemoryPlatformTimePublisher restartedPublisher = newPublisher(60_000_000L);
+      restartedPublisher.start();
+      try {
+        snapshot = reader.read();
+        assertThat(snapshot.isStopped()).isFalse();
+        assertThat(snapshot.getSequence()).isEqualTo(6);
+      } finally {
+        restartedPublisher.stop();
+      }
+    }
+  }
+
+  /**
+   * Tests that a reader sees the platform time advance, whilst it's published concurrently at a short interval, and
+   * never sees a partially written record.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void readWhilstPublishing() throws Exception {
+    final PlatformDateTimeProvider advancingProvider = () -> Instant.ofEpochMilli(this.epochMilli.incrementAndGet());
+    final SharedMemoryPlatformTimePublisher publisher =
+      new SharedMemoryPlatformTimePublisher(advancingProvider, null, this.path, 100);
+    publisher.start();
+    try (SharedMemoryPlatformTimeReader reader = new SharedMemoryPlatformTimeReader(this.path)) {
+      SharedMemoryPlatformTimeReader.Snapshot previous = reader.read();
+      final long deadlineNanos = System.nanoTime() + 5_000_000_000L;
+      int changes = 0;
+      while (changes < 100 && System.nanoTime() < deadlineNanos) {
+        final SharedMemoryPlatformTimeReader.Snapshot snapshot = reader.read();
+        assertThat(snapshot.getSequence() % 2).isZero();
+        assertThat(snapshot.getSequence()).isGreaterThanOrEqualTo(previous.getSequence());
+        assertThat(snapshot.getEpochMilli()).isGreaterThanOrEqualTo(previous.getEpochMilli());
+        assertThat(snapshot.getFlags()).isEqualTo(SharedMemoryLayout.FLAG_HEALTHY);
+        if (snapshot.getSequence() != previous.getSequence()) {
+          changes++;
+        }
+        previous = snapshot;
+      }
+      assertThat(changes).isEqualTo(100);
+    } finally {
+      publisher.stop();
+    }
+  }
+
+  /**
+   * Tests that if the publisher dies whilst writing a record, leaving the sequence no. odd, a read fails once the max
+   * write time has elapsed, rather than retrying forever, and that reads succeed again once a record is published.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void readWhilstWriteStalled() throws Exception {
+    final SharedMemoryPlatformTimePublisher publisher = newPublisher(60_000_000L);
+    publisher.start();
+    publisher.stop();
+    try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+         SharedMemoryPlatformTimeReader reader = new SharedMemoryPlatformTimeReader(this.path, 100)) {
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SharedMemoryLayout.FILE_SIZE);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putLong(SharedMemoryLayout.SEQUENCE_OFFSET, 5);
+
+      assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+        assertThatThrownBy(reader::getEpochMilli).isInstanceOf(IllegalStateException.class)
+          .hasMessageContaining("writing record [5]");
+        assertThatThrownBy(reader::read).isInstanceOf(IllegalStateException.class)
+          .hasMessageContaining("writing record [5]");
+      });
+
+      buffer.putLong(SharedMemoryLayout.SEQUENCE_OFFSET, 6);
+      assertThat(reader.getEpochMilli()).isEqualTo(PLATFORM_EPOCH_MILLI);
+      assertThat(reader.read().getSequence()).isEqualTo(6);
+    }
+  }
+
+  /**
+   * Tests that a reader can't be created for a file which doesn't contain a published platform time.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void readInvalidFile() throws Exception {
+    Files.write(this.path, new byte[SharedMemoryLayout.FILE_SIZE - 1]);
+    assertThatThrownBy(() -> new SharedMemoryPlatformTimeReader(this.path)).isInstanceOf(IOException.class)
+      .hasMessageContaining("too small");
+
+    Files.write(this.path, new byte[SharedMemoryLayout.FILE_SIZE]);
+    assertThatThrownBy(() -> new SharedMemoryPlatformTimeReader(this.path)).isInstanceOf(IOException.class)
+      .hasMessageContaining("doesn't contain a published platform time");
+  }
+
+  private SharedMemoryPlatformTimePublisher newPublisher(long publishIntervalMicros) {
+    return new SharedMemoryPlatformTimePublisher(this.platformDateTimeProvider, null, this.path,
+      publishIntervalMicros);
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Copyright 2018-present the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.neiljbrown.service.time.presentation.sntp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.neiljbrown.service.time.business.PlatformDateTimeProvider;
+
+/**
+ * Tests of {@link SntpServer}, using a client which exchanges packets with the server over the loopback interface.
+ */
+class SntpServerTest {
+
+  private static final Instant PLATFORM_TIME = Instant.parse("2018-10-06T18:51:44.500Z");
+
+  private final PlatformDateTimeProvider platformDateTimeProvider = () -> PLATFORM_TIME;
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private SntpServer sntpServer;
+  private DatagramSocket client;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    this.sntpServer = new SntpServer(this.platformDateTimeProvider, "127.0.0.1", 0, 2, this.meterRegistry);
+    this.sntpServer.start();
+    this.client = new DatagramSocket();
+    this.client.setSoTimeout(5000);
+    this.client.connect(this.sntpServer.getLocalAddress());
+  }
+
+  @AfterEach
+  void tearDown() {
+    this.client.close();
+    this.sntpServer.stop();
+  }
+
+  /**
+   * Tests that a valid SNTP client request is answered with a server response containing the platform time.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void answerValidRequest() throws Exception {
+    final long clientTransmitTimestamp = 0x0123456789ABCDEFL;
+    final ByteBuffer request = ByteBuffer.allocate(SntpServer.PACKET_SIZE);
+    request.put(0, (byte) ((4 << 3) | SntpServer.MODE_CLIENT));
+    request.put(2, (byte) 6);
+    request.putLong(40, clientTransmitTimestamp);
+
+    final ByteBuffer response = exchange(request.array());
+
+    assertThat(response.limit()).isEqualTo(SntpServer.PACKET_SIZE);
+    assertThat(response.get(0)).isEqualTo((byte) ((4 << 3) | SntpServer.MODE_SERVER));
+    assertThat(response.get(1)).isEqualTo((byte) 1);
+    assertThat(response.get(2)).isEqualTo((byte) 6);
+    assertThat(response.getLong(24)).isEqualTo(clientTransmitTimestamp);
+    final long transmitTimestamp = response.getLong(40);
+    assertThat((transmitTimestamp >>> 32) - SntpServer.NTP_EPOCH_OFFSET_SECONDS)
+      .isEqualTo(PLATFORM_TIME.getEpochSecond());
+    assertThat(transmitTimestamp & 0xFFFFFFFFL).isEqualTo(1L << 31);
+    assertThat(response.getLong(32)).isEqualTo(transmitTimestamp);
+    assertThat(this.sntpServer.getPacketsReceived()).isEqualTo(1);
+    assertThat(this.sntpServer.getPacketsAnswered()).isEqualTo(1);
+    assertThat(this.sntpServer.getPacketsDropped()).isZero();
+  }
+
+  /**
+   * Tests that requests which aren't valid SNTP client requests are dropped without a response.
+   *
+   * @throws Exception if an unexpected error occurs on execution of this test.
+   */
+  @Test
+  void dropInvalidRequests() throws Exception {
+    // Too short
+    this.client.send(new DatagramPacket(new byte[SntpServer.PACKET_SIZE - 1], SntpServer.PACKET_SIZE - 1));
+    // Server, rather than client, mode
+    final byte[] serverModePacket = new byte[SntpServer.PACKET_SIZE];
+    serverModePacket[0] = (byte) ((4 << 3) | SntpServer.MODE_SERVER);
+    this.client.send(new DatagramPacket(serverModePacket, serverModePacket.length));
+
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (this.sntpServer.getPacketsDropped() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertThat(this.sntpServer.getPacketsReceived()).isEqualTo(2);
+    assertThat(this.sntpServer.getPacketsDropped()).isEqualTo(2);
+    assertThat(this.sntpServer.getPacketsAnswered()).isZero();
+    assertThat(this.meterRegistry.get("sntp.packets.received").functionCounter().count()).isEqualTo(2);
+    assertThat(this.meterRegistry.get("sntp.packets").tag("outcome", "dropped").functionCounter().count())
+      .isEqualTo(2);
+    assertThat(this.meterRegistry.get("sntp.packets").tag("outcome", "answered").functionCounter().count()).isZero();
+  }
+
+  private ByteBuffer exchange(byte[] request) throws Exception {
+    this.client.send(new DatagramPacket(request, request.length));
+    final byte[] responseBuffer = new byte[512];
+    final DatagramPacket response = new DatagramPacket(responseBuffer, responseBuffer.length);
+    this.client.receive(response);
+    return ByteBuffer.wrap(responseBuffer, 0, response.getLength()).slice();
+  }
+}